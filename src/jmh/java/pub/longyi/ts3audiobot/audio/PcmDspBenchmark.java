@@ -0,0 +1,91 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 18:50
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 PcmDspBenchmark 相关功能。
+ */
+
+
+/**
+ * PcmDsp 标量与向量实现的对比基准。
+ *
+ * <p>职责：在 20ms、48kHz 立体声帧（960 采样/声道）上测量采样转换与增益的单帧耗时。</p>
+ * <p>线程安全：由 JMH 按线程隔离状态。</p>
+ * <p>约束：运行 {@code ./gradlew jmh}；向量实现不可用时 vector 参数组直接报错，便于发现缺少模块参数。</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class PcmDspBenchmark {
+    private static final int FRAME_SAMPLES = 960 * 2;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"80", "150"})
+    public int volumePercent;
+
+    private PcmDsp.Kernel dsp;
+    private int gain;
+    private final byte[] frame = new byte[FRAME_SAMPLES * 2];
+    private final byte[] output = new byte[FRAME_SAMPLES * 2];
+    private final short[] samples = new short[FRAME_SAMPLES];
+
+    /**
+     * 执行 setup 操作。
+     */
+    @Setup
+    public void setup() {
+        dsp = "vector".equals(kernel) ? PcmDsp.vectorKernel() : PcmDsp.scalarKernel();
+        if (dsp == null) {
+            throw new IllegalStateException("jdk.incubator.vector not enabled");
+        }
+        gain = PcmDsp.gainForVolume(volumePercent);
+        new Random(1L).nextBytes(frame);
+    }
+
+
+    /**
+     * 执行 applyGain 操作。
+     * @return 输出缓冲区
+     */
+    @Benchmark
+    public byte[] applyGain() {
+        dsp.applyGain(frame, output, FRAME_SAMPLES, gain);
+        return output;
+    }
+
+
+    /**
+     * 执行 toShorts 操作。
+     * @return 输出采样
+     */
+    @Benchmark
+    public short[] toShorts() {
+        dsp.toShorts(frame, FRAME_SAMPLES, samples);
+        return samples;
+    }
+}
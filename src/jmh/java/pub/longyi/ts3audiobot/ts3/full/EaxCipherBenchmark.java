@@ -0,0 +1,110 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.EAXBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-17 00:20
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 EaxCipherBenchmark 相关功能。
+ */
+
+
+/**
+ * EAX 数据包加密的实现对比基准。
+ *
+ * <p>职责：按语音包大小测量单包加密耗时，每包按包序号改写密钥前两个字节，与实际发送一致；
+ * 对比原先每包重新初始化 {@link EAXBlockCipher} 并分配输出数组的做法与 {@link EaxCipher} 的两种 AES 实现。</p>
+ * <p>线程安全：由 JMH 按线程隔离状态。</p>
+ * <p>约束：运行 {@code ./gradlew jmh -PjmhArgs=EaxCipher}。</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EaxCipherBenchmark {
+    private static final int HEADER_LEN = 5;
+
+    @Param({"bc-eax", "engine-bc", "engine-jce"})
+    public String impl;
+
+    // 语音包负载：低码率语音、常见音乐码率、上限附近。
+    @Param({"60", "160", "400"})
+    public int payload;
+
+    private final byte[] baseKey = new byte[EaxCipher.KEY_LEN];
+    private final byte[] key = new byte[EaxCipher.KEY_LEN];
+    private final byte[] nonce = new byte[16];
+    private final byte[] header = new byte[HEADER_LEN];
+    private byte[] plain;
+    private byte[] sealed;
+    private EaxCipher engine;
+    private EAXBlockCipher eax;
+    private int packetId;
+
+
+    /**
+     * 执行 setup 操作。
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(7L);
+        random.nextBytes(baseKey);
+        random.nextBytes(nonce);
+        random.nextBytes(header);
+        plain = new byte[payload];
+        random.nextBytes(plain);
+        sealed = new byte[payload + EaxCipher.TAG_LEN];
+        switch (impl) {
+            case "engine-bc" -> engine = EaxCipher.bouncyCastle();
+            case "engine-jce" -> engine = EaxCipher.jce();
+            default -> eax = new EAXBlockCipher(new AESEngine());
+        }
+    }
+
+
+    /**
+     * 执行 encryptPacket 操作。
+     * @return 认证标签首字节，防止结果被消除
+     * @throws Exception 加密失败
+     */
+    @Benchmark
+    public byte encryptPacket() throws Exception {
+        packetId = (packetId + 1) & 0xFFFF;
+        System.arraycopy(baseKey, 0, key, 0, EaxCipher.KEY_LEN);
+        key[0] ^= (byte) (packetId >> 8);
+        key[1] ^= (byte) packetId;
+        if (engine != null) {
+            engine.encrypt(key, nonce, header, plain, 0, payload, sealed, 0, sealed, payload);
+            return sealed[payload];
+        }
+        // 原实现：每包新建密钥与 AEAD 参数、重新初始化并分配输出数组。
+        eax.init(true, new AEADParameters(new KeyParameter(key.clone()), EaxCipher.TAG_LEN * 8, nonce.clone(), header));
+        byte[] result = new byte[eax.getOutputSize(payload)];
+        int len = eax.processBytes(plain, 0, payload, result, 0);
+        len += eax.doFinal(result, len);
+        return result[len - EaxCipher.TAG_LEN];
+    }
+}
@@ -0,0 +1,150 @@
+package pub.longyi.ts3audiobot.ts3.protocol;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:55
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 PacketStatisticsBenchmark 相关功能。
+ */
+
+
+/**
+ * 分桶实现与原列表实现的 PacketStatistics 对比基准。
+ *
+ * <p>职责：模拟 100 个机器人各以 50 包/秒发送语音，测量每轮（每个机器人一个包）记录的耗时；
+ * 时钟由基准自行推进，列表实现保持一分钟约 3000 个数据点的稳定状态。</p>
+ * <p>线程安全：由 JMH 按线程隔离状态。</p>
+ * <p>约束：运行 {@code ./gradlew jmh -PjmhArgs=PacketStatistics}。</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketStatisticsBenchmark {
+    private static final long PACKET_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(20L);
+    private static final int WARM_PACKETS = 3000;
+    private static final int VOICE_PACKET_BYTES = 180;
+
+    @Param({"bucketed", "list"})
+    public String impl;
+
+    @Param({"100"})
+    public int bots;
+
+    private long now;
+    private Recorder[] recorders;
+
+    /**
+     * 执行 setup 操作：先填满一分钟的窗口。
+     */
+    @Setup
+    public void setup() {
+        LongSupplier clock = () -> now;
+        recorders = new Recorder[bots];
+        for (int i = 0; i < bots; i++) {
+            recorders[i] = "list".equals(impl) ? new ListRecorder(clock) : new BucketRecorder(clock);
+        }
+        for (int n = 0; n < WARM_PACKETS; n++) {
+            recordRound();
+        }
+    }
+
+
+    /**
+     * 执行 recordVoiceRound 操作。
+     * @return 最后一个机器人最近一秒的发送字节数
+     */
+    @Benchmark
+    public int recordVoiceRound() {
+        recordRound();
+        return recorders[bots - 1].lastSecond();
+    }
+
+    private void recordRound() {
+        now += PACKET_INTERVAL_NANOS;
+        for (Recorder recorder : recorders) {
+            recorder.record(VOICE_PACKET_BYTES);
+        }
+    }
+
+    private interface Recorder {
+        void record(int size);
+
+        int lastSecond();
+    }
+
+    private static final class BucketRecorder implements Recorder {
+        private final PacketStatistics stats;
+
+        private BucketRecorder(LongSupplier clock) {
+            this.stats = new PacketStatistics(clock);
+        }
+
+        @Override
+        public void record(int size) {
+            stats.processOutgoing(size);
+        }
+
+        @Override
+        public int lastSecond() {
+            return stats.getSentBytesLastSecond();
+        }
+    }
+
+    /**
+     * 原实现：同步列表保存每个包，每次记录都遍历清理一分钟前的数据点。
+     */
+    private static final class ListRecorder implements Recorder {
+        private final LongSupplier clock;
+        private final List<long[]> points = Collections.synchronizedList(new ArrayList<>());
+
+        private ListRecorder(LongSupplier clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void record(int size) {
+            long time = clock.getAsLong();
+            points.add(new long[] {time, size});
+            long cutoff = time - TimeUnit.SECONDS.toNanos(60L);
+            points.removeIf(point -> point[0] < cutoff);
+        }
+
+        @Override
+        public int lastSecond() {
+            long since = clock.getAsLong() - TimeUnit.SECONDS.toNanos(1L);
+            synchronized (points) {
+                int total = 0;
+                for (long[] point : points) {
+                    if (point[0] >= since) {
+                        total += (int) point[1];
+                    }
+                }
+                return total;
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package pub.longyi.ts3audiobot.audio;
 
 import pub.longyi.ts3audiobot.queue.Track;
 
+import java.util.function.Consumer;
+
 /**
  * Created by: Arthur Zhu
  * Email: zhushuai.net@gmail.com
@@ -28,10 +30,21 @@ public interface AudioEngine {
     void play(Track track);
 
     /**
-     * 执行 pause 操作。
+     * 暂停播放：保留当前会话与解码进程，停止取帧后缓冲写满，解码侧通过背压自然阻塞。
      */
     void pause();
 
+    /**
+     * 从暂停处继续发送，不重启解码进程。
+     * @return 是否已恢复，false 时调用方需重新播放并跳转
+     */
+    boolean resume();
+
+    /**
+     * 暂停超过保留时长时结束解码进程，由调用方周期性调用。
+     */
+    void releaseIdleSuspension();
+
     /**
      * 执行 stop 操作。
      */
@@ -54,4 +67,29 @@ public interface AudioEngine {
      * @return 返回值
      */
     boolean isPlaying();
+
+    /**
+     * 预加载下一首：提前启动待命解码器，当前曲目播放完毕时无缝切换。
+     * @param track 已完成缓存/解析的下一首曲目
+     * @return 是否已接受预加载，false 时调用方应在当前曲目结束后按原流程播放
+     */
+    boolean prepareNext(Track track);
+
+    /**
+     * 取消尚未切换的预加载曲目。
+     */
+    void cancelNext();
+
+    /**
+     * 设置无缝切换回调，在预加载曲目接替播放的帧上触发。
+     * @param listener 参数 listener，回调线程为发送线程，实现需尽快返回
+     */
+    void setTrackTransitionListener(Consumer<Track> listener);
+
+    /**
+     * 在后台为即将播放的曲目准备开头片段，开播时先发送片段以缩短起播等待；不支持时无操作。
+     * @param track 队列中的曲目
+     */
+    default void prepareSnippet(Track track) {
+    }
 }
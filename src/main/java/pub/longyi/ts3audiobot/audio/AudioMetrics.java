@@ -0,0 +1,164 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:45
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 AudioMetrics 相关功能。
+ */
+
+
+/**
+ * 单个机器人音频引擎的累计指标。
+ *
+ * <p>职责：记录解码、发送、无连接丢弃、解码重启与每首曲目开播到首帧发出的耗时，
+ * 与流水线计数器、当前码率与复杂度一起生成快照，供指标接口导出。</p>
+ * <p>线程安全：线程安全，记录路径无锁；计数只增不减，不随播放重置。</p>
+ * <p>约束：首帧耗时只统计 {@link #markTrackStart()} 之后发出的第一帧，无缝切歌不计入。</p>
+ */
+public final class AudioMetrics {
+    private static final long[] FIRST_FRAME_UPPER_MICROS = {
+        20_000L, 50_000L, 100_000L, 200_000L, 500_000L, 1_000_000L, 2_000_000L, 5_000_000L, 10_000_000L, 30_000_000L
+    };
+
+    private final LongAdder pcmFrames = new LongAdder();
+    private final LongAdder pcmBytes = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder droppedNoConnection = new LongAdder();
+    private final LongAdder decoderRestarts = new LongAdder();
+    private final LongAdder tracksStarted = new LongAdder();
+    private final TimingHistogram firstFrame = new TimingHistogram(FIRST_FRAME_UPPER_MICROS);
+    private final AtomicLong trackStartedAt = new AtomicLong();
+
+    private volatile long lastFirstFrameMicros;
+
+
+    /**
+     * 记录解码阶段写出的一帧 PCM。
+     * @param length 帧字节数
+     */
+    void recordPcmFrame(int length) {
+        pcmFrames.increment();
+        pcmBytes.add(length);
+    }
+
+
+    /**
+     * 记录发出的一帧 Opus，并在曲目开始后的第一帧记录首帧耗时。
+     * @param length 帧字节数
+     */
+    void recordFrameSent(int length) {
+        framesSent.increment();
+        bytesSent.add(length);
+        if (trackStartedAt.get() == 0L) {
+            return;
+        }
+        long started = trackStartedAt.getAndSet(0L);
+        if (started != 0L) {
+            long nanos = System.nanoTime() - started;
+            firstFrame.recordNanos(nanos);
+            lastFirstFrameMicros = Math.max(0L, nanos) / 1_000L;
+        }
+    }
+
+
+    /**
+     * 记录语音连接断开时丢弃的一帧。
+     */
+    void recordDroppedNoConnection() {
+        droppedNoConnection.increment();
+    }
+
+
+    /**
+     * 记录一次曲目中途重启解码（跳转或改音量导致）。
+     */
+    void recordDecoderRestart() {
+        decoderRestarts.increment();
+    }
+
+
+    /**
+     * 标记新曲目开始播放，首帧耗时从此刻起算。
+     */
+    void markTrackStart() {
+        tracksStarted.increment();
+        trackStartedAt.set(System.nanoTime());
+    }
+
+
+    /**
+     * 生成指标快照。
+     * @param pipeline 流水线计数器
+     * @param silentFramesSuppressed 静音抑制未发送的累计帧数
+     * @param bitrate 当前编码码率，未知时为 -1
+     * @param complexity 当前编码复杂度
+     * @return 快照
+     */
+    Snapshot snapshot(AudioPipeline.Counters pipeline, long silentFramesSuppressed, int bitrate, int complexity) {
+        return new Snapshot(
+            pcmFrames.sum(),
+            pcmBytes.sum(),
+            framesSent.sum(),
+            bytesSent.sum(),
+            droppedNoConnection.sum(),
+            pipeline.encodeFailures(),
+            silentFramesSuppressed,
+            pipeline.underruns(),
+            pipeline.overruns(),
+            decoderRestarts.sum(),
+            tracksStarted.sum(),
+            bitrate,
+            complexity,
+            lastFirstFrameMicros,
+            pipeline.encodeTime(),
+            firstFrame.snapshot()
+        );
+    }
+
+    /**
+     * 音频引擎指标快照。
+     * @param pcmFrames 解码写出的 PCM 帧数
+     * @param pcmBytes 解码写出的 PCM 字节数
+     * @param framesSent 发出的 Opus 帧数
+     * @param bytesSent 发出的 Opus 字节数
+     * @param droppedNoConnection 语音连接断开时丢弃的帧数
+     * @param droppedEncodeFailure 编码失败被跳过的帧数
+     * @param droppedSilence 静音抑制未发送的帧数
+     * @param underruns 发送节拍到期但无可用帧的次数
+     * @param overruns 上游因缓冲已满等待超过两个帧周期的次数
+     * @param decoderRestarts 曲目中途重启解码的次数
+     * @param tracksStarted 开始播放的曲目数
+     * @param bitrate 当前编码码率，未知时为 -1
+     * @param complexity 当前编码复杂度
+     * @param lastFirstFrameMicros 最近一首曲目开播到首帧发出的耗时（微秒）
+     * @param encodeTime 单帧编码耗时分布
+     * @param firstFrame 开播到首帧发出的耗时分布
+     */
+    public record Snapshot(
+        long pcmFrames,
+        long pcmBytes,
+        long framesSent,
+        long bytesSent,
+        long droppedNoConnection,
+        long droppedEncodeFailure,
+        long droppedSilence,
+        long underruns,
+        long overruns,
+        long decoderRestarts,
+        long tracksStarted,
+        int bitrate,
+        int complexity,
+        long lastFirstFrameMicros,
+        TimingHistogram.Snapshot encodeTime,
+        TimingHistogram.Snapshot firstFrame
+    ) {
+    }
+}
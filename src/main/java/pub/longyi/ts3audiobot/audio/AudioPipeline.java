@@ -0,0 +1,557 @@
+package pub.longyi.ts3audiobot.audio;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 13:45
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 AudioPipeline 相关功能。
+ */
+
+
+/**
+ * 单次播放的解码 → 编码 → 定时发送三段式流水线。
+ *
+ * <p>职责：
+ * <ul>
+ *     <li>解码：解码线程把 PCM 帧写入 PCM 环形缓冲。</li>
+ *     <li>编码：编码线程按音量与响度增益处理后编码到 Opus 环形缓冲，附加码率车道（广播订阅者）各编码一次。</li>
+ *     <li>发送：{@link GaplessDispatcher} 在每个帧时钟节拍取出主缓冲与各车道的同一帧发送。</li>
+ * </ul>
+ * 可选地录制 100% 音量的编码输出或测量综合响度，输入正常结束时交给回调。</p>
+ * <p>线程安全：{@link #onPcmFrame} 只能由一个解码线程调用；{@link #dispatch} 由帧时钟线程调用；
+ * {@link #close()} 可由任意线程调用。</p>
+ * <p>约束：各阶段只通过有界单生产者/单消费者缓冲交互；每次播放/跳转创建新实例，关闭后不可重用。</p>
+ */
+@Slf4j
+final class AudioPipeline implements AudioFrameConsumer, FrameSource {
+    private static final long OVERRUN_WAIT_NS = TimeUnit.MILLISECONDS.toNanos(2L * FrameClock.FRAME_MS);
+    private static final long ENCODER_JOIN_MS = 1000L;
+    private static final String THREAD_ENCODER = "opus-encoder";
+
+    private final String name;
+    private final PcmFormat format;
+    private final OpusFrameEncoder encoder;
+    private final Output output;
+    private final Counters counters;
+    private final FrameRing pcmRing;
+    private final FrameRing opusRing;
+    private final OpusFrameEncoder[] laneEncoders;
+    private final FrameRing[] laneRings;
+
+    private volatile boolean closed;
+    private Thread encoderThread;
+    private OpusFrameFile.Writer recording;
+    private Consumer<OpusFrameFile.Writer> recordingComplete;
+    private int trackGain = PcmDsp.UNITY_GAIN;
+    private LoudnessMeter loudnessMeter;
+    private Consumer<LoudnessMeter> loudnessComplete;
+
+    /**
+     * 创建 AudioPipeline 实例。
+     * @param name 名称（机器人 ID），用于线程名
+     * @param bufferFrames 每级缓冲的帧数
+     * @param format PCM 格式
+     * @param frameBytes 单帧 PCM 字节数
+     * @param encoder 该机器人独享的帧编码器
+     * @param output 发送阶段回调
+     * @param counters 跨播放累计的计数器
+     */
+    AudioPipeline(
+        String name,
+        int bufferFrames,
+        PcmFormat format,
+        int frameBytes,
+        OpusFrameEncoder encoder,
+        Output output,
+        Counters counters
+    ) {
+        this(name, bufferFrames, format, frameBytes, encoder, new OpusFrameEncoder[0], output, counters);
+    }
+
+
+    /**
+     * 创建带附加码率车道的 AudioPipeline 实例。
+     * @param name 名称（机器人 ID），用于线程名
+     * @param bufferFrames 每级缓冲的帧数
+     * @param format PCM 格式
+     * @param frameBytes 单帧 PCM 字节数
+     * @param encoder 该机器人独享的帧编码器
+     * @param laneEncoders 附加码率车道的编码器，车道序号即数组下标
+     * @param output 发送阶段回调
+     * @param counters 跨播放累计的计数器
+     */
+    AudioPipeline(
+        String name,
+        int bufferFrames,
+        PcmFormat format,
+        int frameBytes,
+        OpusFrameEncoder encoder,
+        OpusFrameEncoder[] laneEncoders,
+        Output output,
+        Counters counters
+    ) {
+        this.name = name;
+        this.format = format;
+        this.encoder = encoder;
+        this.output = output;
+        this.counters = counters;
+        this.pcmRing = new FrameRing(bufferFrames, frameBytes);
+        this.opusRing = new FrameRing(bufferFrames, OpusFrameEncoder.MAX_OPUS_PACKET);
+        this.laneEncoders = laneEncoders.clone();
+        this.laneRings = new FrameRing[laneEncoders.length];
+        for (int i = 0; i < laneRings.length; i++) {
+            laneRings[i] = new FrameRing(bufferFrames, OpusFrameEncoder.MAX_OPUS_PACKET);
+        }
+    }
+
+
+    /**
+     * 录制本次编码输出，需在 {@link #start()} 之前调用。
+     * @param writer 缓存写入器
+     * @param onComplete 输入正常结束后的回调，由其决定提交或放弃
+     */
+    synchronized void recordTo(OpusFrameFile.Writer writer, Consumer<OpusFrameFile.Writer> onComplete) {
+        this.recording = writer;
+        this.recordingComplete = onComplete;
+    }
+
+
+    /**
+     * 设置响度归一化的静态增益，需在 {@link #start()} 之前调用。
+     * @param gain Q14 增益
+     */
+    synchronized void applyTrackGain(int gain) {
+        this.trackGain = PcmDsp.clampGain(gain);
+    }
+
+
+    /**
+     * 测量本次输入的综合响度，需在 {@link #start()} 之前调用。
+     * @param meter 响度计
+     * @param onComplete 输入正常结束后的回调，先于录制回调执行
+     */
+    synchronized void measureLoudness(LoudnessMeter meter, Consumer<LoudnessMeter> onComplete) {
+        this.loudnessMeter = meter;
+        this.loudnessComplete = onComplete;
+    }
+
+
+    /**
+     * 启动编码线程；发送阶段由调用方挂到帧时钟上。
+     */
+    synchronized void start() {
+        encoderThread = new Thread(this::encodeLoop, THREAD_ENCODER + "-" + name);
+        encoderThread.setDaemon(true);
+        encoderThread.start();
+    }
+
+
+    /**
+     * 解码阶段：把一帧 PCM 写入缓冲，缓冲已满时阻塞等待编码阶段腾出空间。
+     * @param data 参数 data
+     * @param length 参数 length
+     * @param format 参数 format
+     */
+    @Override
+    public void onPcmFrame(byte[] data, int length, PcmFormat format) {
+        try {
+            if (!awaitSpace(pcmRing)) {
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        byte[] slot = pcmRing.claim();
+        int copied = Math.min(length, slot.length);
+        System.arraycopy(data, 0, slot, 0, copied);
+        pcmRing.publish(copied);
+    }
+
+
+    /**
+     * 解码阶段输入结束，剩余帧发送完毕后 {@link #isDrained()} 返回 true。
+     */
+    void finishInput() {
+        pcmRing.markEnded();
+    }
+
+
+    /**
+     * 发送阶段：由帧时钟在每个节拍调用。
+     * @param deliver 是否发送，false 表示丢弃过期帧
+     * @return 是否取到了帧
+     */
+    @Override
+    public boolean dispatch(boolean deliver) {
+        if (closed) {
+            return false;
+        }
+        byte[] frame = opusRing.peek();
+        if (frame == null) {
+            return false;
+        }
+        boolean silent = opusRing.peekSilent();
+        // 发送失败也要让出槽位，否则同一帧会在每个节拍重试，播放卡死。
+        try {
+            if (deliver) {
+                output.sendFrame(frame, opusRing.peekLength(), silent);
+            }
+        } finally {
+            for (int lane = 0; lane < laneRings.length; lane++) {
+                dispatchLane(lane, deliver, silent);
+            }
+            opusRing.release();
+        }
+        return true;
+    }
+
+
+    /**
+     * 执行 onUnderrun 操作。
+     */
+    @Override
+    public void onUnderrun() {
+        counters.underruns.increment();
+    }
+
+
+    /**
+     * 判断输入已结束且所有帧都已发送。
+     * @return 是否已排空
+     */
+    @Override
+    public boolean isDrained() {
+        return !closed && opusRing.isDrained();
+    }
+
+
+    /**
+     * 停止所有阶段并丢弃缓冲中的帧。
+     */
+    @Override
+    public void close() {
+        Thread encoding;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            encoding = encoderThread;
+            encoderThread = null;
+        }
+        pcmRing.close();
+        opusRing.close();
+        for (FrameRing ring : laneRings) {
+            ring.close();
+        }
+        if (encoding != null && encoding != Thread.currentThread()) {
+            encoding.interrupt();
+            try {
+                encoding.join(ENCODER_JOIN_MS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        abortRecording();
+    }
+
+
+    /**
+     * 执行 pcmBuffered 操作。
+     * @return PCM 缓冲中的帧数
+     */
+    int pcmBuffered() {
+        return pcmRing.size();
+    }
+
+
+    /**
+     * 执行 opusBuffered 操作。
+     * @return Opus 缓冲中的帧数
+     */
+    int opusBuffered() {
+        return opusRing.size();
+    }
+
+    private void encodeLoop() {
+        try {
+            while (!closed) {
+                if (!pcmRing.awaitFrame(TimeUnit.MILLISECONDS.toNanos(FrameClock.FRAME_MS))) {
+                    if (pcmRing.isDrained()) {
+                        opusRing.markEnded();
+                        completeLoudness();
+                        completeRecording();
+                        return;
+                    }
+                    continue;
+                }
+                if (!awaitSpace(opusRing)) {
+                    return;
+                }
+                encodeOne();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            log.error("[Audio] encoder stage failed name={}", name, ex);
+            opusRing.markEnded();
+            abortRecording();
+        }
+    }
+
+    private void encodeOne() {
+        byte[] pcm = pcmRing.peek();
+        int length = pcmRing.peekLength();
+        byte[] slot = opusRing.claim();
+        LoudnessMeter meter = loudnessMeter;
+        if (meter != null) {
+            meter.accept(pcm, length);
+        }
+        // 仍然编码静音帧：编码器状态、缓存录制与车道都按连续帧序号对齐，是否发送由发送阶段决定。
+        boolean silent = SilenceGate.isSilent(pcm, length);
+        int volume = output.volumePercent();
+        int gain = combinedGain(volume);
+        long started = System.nanoTime();
+        int encoded = encoder.encodeWithGain(pcm, length, format, gain, slot);
+        counters.encodeTime.recordNanos(System.nanoTime() - started);
+        if (encoded > 0) {
+            encodeLanes(pcm, length, gain);
+        }
+        pcmRing.release();
+        if (encoded <= 0) {
+            counters.encodeFailures.increment();
+            // 缺帧会让缓存的帧序号与播放位置错位，不再录制。
+            abortRecording();
+            return;
+        }
+        record(slot, encoded, volume);
+        opusRing.publish(encoded, silent);
+    }
+
+    private int combinedGain(int volume) {
+        int volumeGain = PcmDsp.gainForVolume(volume);
+        if (trackGain == PcmDsp.UNITY_GAIN) {
+            return volumeGain;
+        }
+        return PcmDsp.clampGain((int) (((long) volumeGain * trackGain + PcmDsp.GAIN_ROUNDING) >> PcmDsp.GAIN_SHIFT));
+    }
+
+    private void encodeLanes(byte[] pcm, int length, int gain) {
+        for (int lane = 0; lane < laneEncoders.length; lane++) {
+            // 车道缓冲与主缓冲同步发布、同步释放，主缓冲有空位时车道缓冲必有空位。
+            FrameRing ring = laneRings[lane];
+            int encoded = laneEncoders[lane].encodeWithGain(pcm, length, format, gain, ring.claim());
+            if (encoded <= 0) {
+                counters.encodeFailures.increment();
+            }
+            // 失败时发布空帧占位，保持与主缓冲逐帧对齐。
+            ring.publish(Math.max(0, encoded));
+        }
+    }
+
+    private void dispatchLane(int lane, boolean deliver, boolean silent) {
+        FrameRing ring = laneRings[lane];
+        byte[] laneFrame = ring.peek();
+        if (laneFrame == null) {
+            return;
+        }
+        try {
+            int laneLength = ring.peekLength();
+            if (deliver && laneLength > 0) {
+                output.sendLaneFrame(lane, laneFrame, laneLength, silent);
+            }
+        } finally {
+            ring.release();
+        }
+    }
+
+    private void record(byte[] frame, int length, int volume) {
+        OpusFrameFile.Writer writer;
+        synchronized (this) {
+            writer = recording;
+        }
+        if (writer == null) {
+            return;
+        }
+        if (volume != 100) {
+            abortRecording();
+            return;
+        }
+        try {
+            writer.append(frame, length);
+        } catch (IOException ex) {
+            log.debug("[Audio] opus frame recording failed name={}", name, ex);
+            abortRecording();
+        }
+    }
+
+    /**
+     * 放弃当前录制，编码参数中途变化时调用。
+     */
+    void cancelRecording() {
+        abortRecording();
+    }
+
+    private void completeLoudness() {
+        LoudnessMeter meter;
+        Consumer<LoudnessMeter> callback;
+        synchronized (this) {
+            meter = loudnessMeter;
+            callback = loudnessComplete;
+            loudnessMeter = null;
+            loudnessComplete = null;
+        }
+        if (meter == null) {
+            return;
+        }
+        try {
+            callback.accept(meter);
+        } catch (RuntimeException ex) {
+            log.warn("[Audio] loudness measurement commit failed name={}", name, ex);
+        }
+    }
+
+    private void completeRecording() {
+        OpusFrameFile.Writer writer;
+        Consumer<OpusFrameFile.Writer> callback;
+        synchronized (this) {
+            writer = recording;
+            callback = recordingComplete;
+            recording = null;
+            recordingComplete = null;
+        }
+        if (writer == null) {
+            return;
+        }
+        try {
+            callback.accept(writer);
+        } catch (RuntimeException ex) {
+            log.warn("[Audio] opus frame recording commit failed name={}", name, ex);
+            writer.abort();
+        }
+    }
+
+    private void abortRecording() {
+        OpusFrameFile.Writer writer;
+        synchronized (this) {
+            writer = recording;
+            recording = null;
+            recordingComplete = null;
+        }
+        if (writer != null) {
+            writer.abort();
+        }
+    }
+
+    private boolean awaitSpace(FrameRing ring) throws InterruptedException {
+        if (ring.claim() != null) {
+            return true;
+        }
+        // 缓冲满是正常的背压；只有下游超过两个帧周期仍未取走数据才记为溢出。
+        boolean counted = false;
+        while (!ring.awaitSpace(OVERRUN_WAIT_NS)) {
+            if (ring.isClosed()) {
+                return false;
+            }
+            if (!counted) {
+                counters.overruns.increment();
+                counted = true;
+            }
+        }
+        return !ring.isClosed();
+    }
+
+    /**
+     * 发送阶段回调。
+     */
+    interface Output {
+        /**
+         * 执行 volumePercent 操作。
+         * @return 当前音量百分比
+         */
+        int volumePercent();
+
+
+        /**
+         * 发送一帧 Opus 数据，数组在返回后会被复用。
+         * @param data 参数 data
+         * @param length 参数 length
+         */
+        void sendFrame(byte[] data, int length);
+
+
+        /**
+         * 发送一帧 Opus 数据并附带编码前的静音判断，数组在返回后会被复用。
+         * @param data 参数 data
+         * @param length 参数 length
+         * @param silent 该帧是否静音
+         */
+        default void sendFrame(byte[] data, int length, boolean silent) {
+            sendFrame(data, length);
+        }
+
+
+        /**
+         * 发送附加码率车道的一帧，与同一节拍的主帧对应，数组在返回后会被复用。
+         * @param lane 车道序号
+         * @param data 参数 data
+         * @param length 参数 length
+         */
+        default void sendLaneFrame(int lane, byte[] data, int length) {
+        }
+
+
+        /**
+         * 发送附加码率车道的一帧并附带主帧的静音判断，数组在返回后会被复用。
+         * @param lane 车道序号
+         * @param data 参数 data
+         * @param length 参数 length
+         * @param silent 该帧是否静音
+         */
+        default void sendLaneFrame(int lane, byte[] data, int length, boolean silent) {
+            sendLaneFrame(lane, data, length);
+        }
+    }
+
+    /**
+     * 跨播放累计的流水线计数器。
+     */
+    static final class Counters {
+        private static final long[] ENCODE_UPPER_MICROS = {
+            50L, 100L, 250L, 500L, 1_000L, 2_000L, 5_000L, 10_000L, 20_000L
+        };
+
+        private final LongAdder underruns = new LongAdder();
+        private final LongAdder overruns = new LongAdder();
+        private final LongAdder encodeFailures = new LongAdder();
+        // 只统计主编码器，广播车道的额外编码不计入。
+        private final TimingHistogram encodeTime = new TimingHistogram(ENCODE_UPPER_MICROS);
+
+        long underruns() {
+            return underruns.sum();
+        }
+
+        long overruns() {
+            return overruns.sum();
+        }
+
+        long encodeFailures() {
+            return encodeFailures.sum();
+        }
+
+        TimingHistogram.Snapshot encodeTime() {
+            return encodeTime.snapshot();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package pub.longyi.ts3audiobot.audio;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 14:10
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 AudioPipelineStats 相关功能。
+ */
+
+
+/**
+ * 单个机器人的音频流水线统计快照。
+ *
+ * @param bufferFrames 每级缓冲的帧数上限
+ * @param pcmBuffered 当前 PCM 缓冲帧数（解码 → 编码）
+ * @param opusBuffered 当前 Opus 缓冲帧数（编码 → 发送）
+ * @param underruns 发送节拍到期但无可用帧的累计次数
+ * @param overruns 上游因缓冲已满等待超过两个帧周期的累计次数
+ * @param encodeFailures 编码失败被跳过的累计帧数
+ * @param silentFramesSuppressed 连续静音超过挂起时长后未发送的累计帧数
+ * @param silentBytesSaved 未发送的静音帧累计字节数
+ */
+public record AudioPipelineStats(
+    int bufferFrames,
+    int pcmBuffered,
+    int opusBuffered,
+    long underruns,
+    long overruns,
+    long encodeFailures,
+    long silentFramesSuppressed,
+    long silentBytesSaved
+) {
+}
@@ -0,0 +1,102 @@
+package pub.longyi.ts3audiobot.audio;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 16:05
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 CachedOpusSource 相关功能。
+ */
+
+
+/**
+ * 直接发送已编码 Opus 帧的帧来源。
+ *
+ * <p>职责：按节拍从内存映射的预编码缓存文件或可直通的 Opus 容器读取下一帧交给发送回调，不启动 ffmpeg 也不做编码；
+ * 跳转只需换算起始帧序号。</p>
+ * <p>线程安全：{@link #dispatch} 只能由帧时钟线程调用；{@link #positionMs()} 与 {@link #close()}
+ * 可由任意线程调用。</p>
+ * <p>约束：帧内容不经增益处理，音量不为 100% 时调用方应改用实时转码。</p>
+ */
+final class CachedOpusSource implements FrameSource {
+    private final OpusFrames reader;
+    private final AudioPipeline.Output output;
+    private final byte[] frame = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+
+    private volatile int nextFrame;
+    private volatile boolean closed;
+
+    /**
+     * 创建 CachedOpusSource 实例。
+     * @param reader 已打开的帧序列
+     * @param positionMs 起始播放位置（毫秒）
+     * @param output 发送回调
+     */
+    CachedOpusSource(OpusFrames reader, long positionMs, AudioPipeline.Output output) {
+        this.reader = reader;
+        this.output = output;
+        this.nextFrame = reader.frameIndexOf(positionMs);
+    }
+
+
+    /**
+     * 发送阶段：由帧时钟在每个节拍调用。
+     * @param deliver 是否发送，false 表示丢弃过期帧
+     * @return 是否取到了帧
+     */
+    @Override
+    public boolean dispatch(boolean deliver) {
+        int index = nextFrame;
+        if (closed || index >= reader.frameCount()) {
+            return false;
+        }
+        try {
+            if (deliver) {
+                int length = reader.read(index, frame);
+                output.sendFrame(frame, length);
+            }
+        } finally {
+            // 发送失败也前进，避免同一帧在每个节拍重试。
+            nextFrame = index + 1;
+        }
+        return true;
+    }
+
+
+    /**
+     * 执行 isDrained 操作。
+     * @return 是否已发送完所有帧
+     */
+    @Override
+    public boolean isDrained() {
+        return !closed && nextFrame >= reader.frameCount();
+    }
+
+
+    /**
+     * 数据全部在内存中，不会出现欠载。
+     */
+    @Override
+    public void onUnderrun() {
+    }
+
+
+    /**
+     * 执行 close 操作。
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+
+    /**
+     * 执行 positionMs 操作。
+     * @return 下一帧对应的播放位置（毫秒）
+     */
+    long positionMs() {
+        return (long) nextFrame * reader.frameMs();
+    }
+}
@@ -4,6 +4,8 @@ import io.github.jaredmdobson.concentus.OpusApplication;
 import io.github.jaredmdobson.concentus.OpusEncoder;
 import io.github.jaredmdobson.concentus.OpusSignal;
 
+import java.util.Arrays;
+
 /**
  * Created by: Arthur Zhu
  * Email: zhushuai.net@gmail.com
@@ -20,17 +22,25 @@ import io.github.jaredmdobson.concentus.OpusSignal;
  *
  * <p>职责：负责 ConcentusOpusEncoder 相关功能。</p>
  * <p>线程安全：无显式保证。</p>
- * <p>约束：调用方需遵守方法契约。</p>
+ * <p>约束：调用方需遵守方法契约；内部复用采样与输出缓冲区，同一实例只能由单线程编码。
+ * 码率与预期丢包率可由任意线程设置，在编码线程的下一帧编码前生效。</p>
  */
 public final class ConcentusOpusEncoder implements pub.longyi.ts3audiobot.audio.OpusEncoder {
     private static final int MAX_PACKET = 4096;
     private static final int MIN_BITRATE = 6000;
     private static final int MAX_BITRATE = 192000;
-    private static final int DEFAULT_BITRATE = 128000;
+    static final int DEFAULT_BITRATE = 128000;
+    private static final int DEFAULT_COMPLEXITY = 10;
 
     private final OpusEncoder encoder;
     private final int frameSize;
+    private final short[] pcmSamples;
+    private final byte[] packetScratch = new byte[MAX_PACKET];
     private volatile int bitrate = DEFAULT_BITRATE;
+    private volatile int packetLossPercent;
+    private int appliedBitrate = DEFAULT_BITRATE;
+    private int appliedPacketLossPercent;
+    private int complexity = DEFAULT_COMPLEXITY;
 
     /**
      * 创建 ConcentusOpusEncoder 实例。
@@ -43,11 +53,12 @@ public final class ConcentusOpusEncoder implements pub.longyi.ts3audiobot.audio.
         }
         int samplesPerChannel = format.sampleRate() * frameMs / 1000;
         this.frameSize = samplesPerChannel;
+        this.pcmSamples = new short[samplesPerChannel * format.channels()];
         try {
             encoder = new OpusEncoder(format.sampleRate(), format.channels(), OpusApplication.OPUS_APPLICATION_AUDIO);
             encoder.setSignalType(OpusSignal.OPUS_SIGNAL_MUSIC);
             encoder.setBitrate(DEFAULT_BITRATE);
-            encoder.setComplexity(10);
+            encoder.setComplexity(DEFAULT_COMPLEXITY);
         } catch (Exception ex) {
             throw new IllegalStateException("Failed to initialize Opus encoder", ex);
         }
@@ -66,23 +77,35 @@ public final class ConcentusOpusEncoder implements pub.longyi.ts3audiobot.audio.
         if (pcm == null || length <= 0) {
             return new byte[0];
         }
-        short[] pcmSamples = toShorts(pcm, length);
-        int expectedSamples = frameSize * format.channels();
-        if (pcmSamples.length != expectedSamples) {
-            short[] adjusted = new short[expectedSamples];
-            System.arraycopy(pcmSamples, 0, adjusted, 0, Math.min(pcmSamples.length, expectedSamples));
-            pcmSamples = adjusted;
+        int encoded = encode(pcm, length, format, packetScratch, 0);
+        byte[] result = new byte[encoded];
+        System.arraycopy(packetScratch, 0, result, 0, encoded);
+        return result;
+    }
+
+
+    /**
+     * 执行 encode 操作，结果直接写入调用方缓冲区。
+     * <p>采样转换复用内部 short 缓冲区，不足一帧时尾部补零，稳态下不产生任何分配。</p>
+     * @param pcm 参数 pcm
+     * @param length 参数 length
+     * @param format 参数 format
+     * @param out 参数 out
+     * @param outOffset 参数 outOffset
+     * @return 返回值
+     */
+    @Override
+    public int encode(byte[] pcm, int length, PcmFormat format, byte[] out, int outOffset) {
+        if (pcm == null || length <= 0 || out == null) {
+            return 0;
         }
-        byte[] out = new byte[MAX_PACKET];
-        int encoded;
+        toShorts(pcm, length, pcmSamples);
+        applySettings();
         try {
-            encoded = encoder.encode(pcmSamples, 0, frameSize, out, 0, out.length);
+            return encoder.encode(pcmSamples, 0, frameSize, out, outOffset, out.length - outOffset);
         } catch (Exception ex) {
             throw new IllegalStateException("Opus encode failed", ex);
         }
-        byte[] result = new byte[encoded];
-        System.arraycopy(out, 0, result, 0, encoded);
-        return result;
     }
 
 
@@ -91,13 +114,36 @@ public final class ConcentusOpusEncoder implements pub.longyi.ts3audiobot.audio.
      * @param bitrate 参数 bitrate
      */
     public void setBitrate(int bitrate) {
-        int target = Math.max(MIN_BITRATE, Math.min(MAX_BITRATE, bitrate));
+        this.bitrate = Math.max(MIN_BITRATE, Math.min(MAX_BITRATE, bitrate));
+    }
+
+
+    /**
+     * 执行 setExpectedPacketLoss 操作。
+     * @param percent 参数 percent
+     */
+    @Override
+    public void setExpectedPacketLoss(int percent) {
+        this.packetLossPercent = Math.max(0, Math.min(100, percent));
+    }
+
+
+    /**
+     * 执行 setComplexity 操作，只能由编码线程调用。
+     * @param complexity 参数 complexity
+     */
+    @Override
+    public void setComplexity(int complexity) {
+        int target = Math.max(0, Math.min(10, complexity));
+        if (target == this.complexity) {
+            return;
+        }
         try {
-            encoder.setBitrate(target);
+            encoder.setComplexity(target);
         } catch (Exception ex) {
-            throw new IllegalStateException("Failed to update Opus bitrate", ex);
+            throw new IllegalStateException("Failed to update Opus complexity", ex);
         }
-        this.bitrate = target;
+        this.complexity = target;
     }
 
 
@@ -109,14 +155,28 @@ public final class ConcentusOpusEncoder implements pub.longyi.ts3audiobot.audio.
         return bitrate;
     }
 
-    private static short[] toShorts(byte[] pcm, int length) {
-        int samples = length / 2;
-        short[] out = new short[samples];
-        for (int i = 0; i < samples; i++) {
-            int lo = pcm[i * 2] & 0xFF;
-            int hi = pcm[i * 2 + 1] << 8;
-            out[i] = (short) (hi | lo);
+    private void applySettings() {
+        int targetBitrate = bitrate;
+        int targetLoss = packetLossPercent;
+        try {
+            if (targetBitrate != appliedBitrate) {
+                encoder.setBitrate(targetBitrate);
+                appliedBitrate = targetBitrate;
+            }
+            if (targetLoss != appliedPacketLossPercent) {
+                encoder.setUseInbandFEC(targetLoss > 0);
+                encoder.setPacketLossPercent(targetLoss);
+                appliedPacketLossPercent = targetLoss;
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to update Opus encoder settings", ex);
+        }
+    }
+
+    private static void toShorts(byte[] pcm, int length, short[] out) {
+        int samples = PcmDsp.toShorts(pcm, length, out);
+        if (samples < out.length) {
+            Arrays.fill(out, samples, out.length, (short) 0);
         }
-        return out;
     }
 }
@@ -1,16 +1,25 @@
 package pub.longyi.ts3audiobot.audio;
 
 import lombok.extern.slf4j.Slf4j;
+import pub.longyi.ts3audiobot.config.AppConfig;
 import pub.longyi.ts3audiobot.config.ConfigService;
 import pub.longyi.ts3audiobot.queue.Track;
 import pub.longyi.ts3audiobot.ts3.Ts3VoiceClient;
 import pub.longyi.ts3audiobot.ts3.full.TsFullClient;
 import pub.longyi.ts3audiobot.util.RuntimeToolPathResolver;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Created by: Arthur Zhu
@@ -24,15 +33,22 @@ import java.util.List;
 
 
 /**
- * FfmpegAudioEngine 相关功能。
+ * 单个机器人的播放引擎。
  *
- * <p>职责：负责 FfmpegAudioEngine 相关功能。</p>
- * <p>线程安全：无显式保证。</p>
- * <p>约束：调用方需遵守方法契约。</p>
+ * <p>职责：为当前曲目选择音源并交给共享帧时钟按节拍发送：
+ * <ul>
+ *     <li>直通：本地 Opus（WebM/Ogg）符合频道要求时直接发送原始包。</li>
+ *     <li>缓存：命中预编码帧缓存或开头片段时直接发送缓存帧，片段结束处接上转码。</li>
+ *     <li>转码：ffmpeg 或进程内 Opus 解码 → {@link AudioPipeline} 编码，完整播放后录制缓存并测量响度。</li>
+ *     <li>广播：其他机器人可订阅本引擎，只解码一次，按订阅者码率各编码一次。</li>
+ * </ul>
+ * 另外负责下一首预加载与无缝衔接、堆外 PCM 历史内的跳转，以及按连接质量调整码率与 FEC。</p>
+ * <p>线程安全：控制方法互斥执行；曲目交接发生在帧时钟线程，通过 streamLock 交换当前/预加载曲目。</p>
+ * <p>约束：可选协作对象（缓存、响度、复杂度调节器、进程池、片段生成器）为 null 时对应功能关闭。</p>
  */
 @Slf4j
 public final class FfmpegAudioEngine implements AudioEngine {
-    private static final int FRAME_MS = 20;
+    private static final int FRAME_MS = FrameClock.FRAME_MS;
     private static final PcmFormat PCM_FORMAT = new PcmFormat(48000, 2, 16);
     private static final double OPUS_VOICE_MIN_KIB = 2.73;
     private static final double OPUS_VOICE_MAX_KIB = 7.71;
@@ -54,46 +70,133 @@ public final class FfmpegAudioEngine implements AudioEngine {
     private static final String YT_DLP_ARG_OUTPUT = "-o";
     private static final long CHANNEL_CODEC_QUERY_COOLDOWN_SUCCESS_MS = 180_000L;
     private static final long CHANNEL_CODEC_QUERY_COOLDOWN_FAILURE_MS = 30_000L;
+    private static final long NETWORK_ADAPT_INTERVAL_MS = 5000L;
+    private static final int FULL_VOLUME_PERCENT = 100;
+    private static final long RECORDING_MIN_TOLERANCE_MS = 2000L;
+    // 可从头顺序读取的容器；mp4/m4a 的索引可能在文件末尾，经 stdin 读取时 ffmpeg 无法回头定位。
+    private static final Set<String> STREAMABLE_EXTENSIONS = Set.of("webm", "weba", "opus", "ogg", "mp3");
 
     private final ConfigService configService;
     private final String ffmpegPath;
     private final String ytDlpPath;
     private final String ytMusicPath;
     private final Ts3VoiceClient voiceClient;
-    private final OpusEncoder opusEncoder;
-    private final FfmpegPcmPump pump;
+    private final OpusEncoder[] opusEncoders;
+    private final OpusFrameEncoder[] frameEncoders;
+    private final FrameClock frameClock;
+    private final OpusFrameStore opusFrameStore;
+    private final ProgressiveAudioSource progressiveSource;
+    private final LoudnessStore loudnessStore;
+    private final OpusComplexityGovernor.Handle complexityHandle;
+    private final WarmFfmpegPool warmPool;
+    private final OpusSnippetWarmer snippetWarmer;
+    private final String botId;
+    private final int bufferFrames;
+    private final boolean opusPassthrough;
+    private final long pauseKeepAliveMs;
+    private final int loudnessTargetLufs;
+    private final boolean networkAdaptive;
+    private final boolean javaOpusDecode;
+    private final PcmHistory.Buffers historyBuffers;
+    private final NetworkBitrateController networkController = new NetworkBitrateController();
+    private final SilenceGate silenceGate;
+    private final AudioPipeline.Counters pipelineCounters = new AudioPipeline.Counters();
+    private final AudioMetrics metrics = new AudioMetrics();
+    private final AudioPipeline.Output pipelineOutput = new StreamOutput(new int[0]);
+    private final List<BroadcastSubscriber> broadcastSubscribers = new CopyOnWriteArrayList<>();
+    private final Object streamLock = new Object();
 
     private volatile boolean playing;
     private volatile int volumePercent = 100;
     private volatile int channelBitrateBps = -1;
-    private volatile String currentStreamUrl;
-    private volatile String currentSourceId;
-    private volatile String currentSourceType;
-    private volatile long lastStatsAt;
-    private volatile long pcmFrames;
-    private volatile long pcmBytes;
-    private volatile long opusBytes;
-    private volatile long droppedFrames;
-    private volatile long droppedNoConn;
-    private volatile long droppedEncode;
+    private volatile Track currentTrack;
+    private volatile PlaybackSession session;
+    private volatile TrackStream activeStream;
+    private volatile TrackStream standbyStream;
+    private volatile Consumer<Track> transitionListener;
+    private volatile FfmpegAudioEngine broadcastLeader;
+    private volatile long suspendedAt;
     private volatile long nextChannelCodecQueryAt;
-
-    private static final long STATS_INTERVAL_MS = 5000L;
+    private volatile long nextNetworkAdaptAt;
+    private volatile int expectedPacketLoss;
 
     /**
      * 创建 FfmpegAudioEngine 实例。
+     * @param botId 所属机器人 ID，用于帧时钟统计
      * @param configService 参数 configService
      * @param voiceClient 参数 voiceClient
+     * @param frameClock 共享帧时钟
+     * @param opusFrameStore 预编码帧缓存位置，null 表示不使用
+     * @param progressiveSource 边播边缓存的音源，null 表示不使用
+     * @param loudnessStore 曲目响度的保存位置，null 表示不做响度归一化
+     * @param complexityGovernor 共享的编码复杂度调节器，null 表示固定最高复杂度
+     * @param warmPool 共享的预启动 ffmpeg 进程池，null 表示总是冷启动解码进程
+     * @param snippetWarmer 共享的开头片段生成器，null 表示不生成片段（已有片段仍会使用）
      */
-    public FfmpegAudioEngine(ConfigService configService, Ts3VoiceClient voiceClient) {
+    public FfmpegAudioEngine(
+        String botId,
+        ConfigService configService,
+        Ts3VoiceClient voiceClient,
+        FrameClock frameClock,
+        OpusFrameStore opusFrameStore,
+        ProgressiveAudioSource progressiveSource,
+        LoudnessStore loudnessStore,
+        OpusComplexityGovernor complexityGovernor,
+        WarmFfmpegPool warmPool,
+        OpusSnippetWarmer snippetWarmer
+    ) {
         this.configService = configService;
+        this.botId = botId;
+        this.frameClock = frameClock;
+        this.opusFrameStore = opusFrameStore;
+        this.progressiveSource = progressiveSource;
+        this.loudnessStore = loudnessStore;
+        this.complexityHandle = complexityGovernor == null ? null : complexityGovernor.register(botId);
+        this.warmPool = warmPool;
+        this.snippetWarmer = snippetWarmer;
         var config = configService.get();
+        this.bufferFrames = config.audio == null ? AppConfig.Audio.DEFAULT_BUFFER_FRAMES : config.audio.bufferFrames;
+        this.opusPassthrough = config.audio == null
+            ? AppConfig.Audio.DEFAULT_OPUS_PASSTHROUGH
+            : config.audio.opusPassthrough;
+        int keepAliveSeconds = config.audio == null
+            ? AppConfig.Audio.DEFAULT_PAUSE_KEEPALIVE_SECONDS
+            : config.audio.pauseKeepAliveSeconds;
+        this.pauseKeepAliveMs = keepAliveSeconds * 1000L;
+        this.loudnessTargetLufs = config.audio == null
+            ? AppConfig.Audio.DEFAULT_LOUDNESS_TARGET_LUFS
+            : config.audio.loudnessTargetLufs;
+        this.networkAdaptive = config.audio == null
+            ? AppConfig.Audio.DEFAULT_NETWORK_ADAPTIVE
+            : config.audio.networkAdaptive;
+        this.javaOpusDecode = config.audio == null
+            ? AppConfig.Audio.DEFAULT_JAVA_OPUS_DECODE
+            : config.audio.javaOpusDecode;
+        int historySeconds = config.audio == null
+            ? AppConfig.Audio.DEFAULT_HISTORY_SECONDS
+            : config.audio.historySeconds;
+        int historyFrames = historySeconds * 1000 / FRAME_MS;
+        // 除了已播放的窗口，还要容纳两级缓冲中尚未播放的预读帧；当前曲目与预加载曲目各保留一块缓冲。
+        this.historyBuffers = historyFrames <= 0
+            ? null
+            : new PcmHistory.Buffers(historyFrames + 2 * bufferFrames, PCM_FORMAT.frameBytes(FRAME_MS), 2);
+        int silenceHangoverMs = config.audio == null
+            ? AppConfig.Audio.DEFAULT_SILENCE_HANGOVER_MS
+            : config.audio.silenceHangoverMs;
+        this.silenceGate = new SilenceGate(silenceHangoverMs / FRAME_MS);
         this.ffmpegPath = config.tools.ffmpegPath;
         this.ytDlpPath = config.resolvers.external.yt;
         this.ytMusicPath = config.resolvers.external.ytmusic;
         this.voiceClient = voiceClient;
-        this.opusEncoder = new ConcentusOpusEncoder(PCM_FORMAT, FRAME_MS);
-        this.pump = new FfmpegPcmPump(ffmpegPath, PCM_FORMAT, FRAME_MS, this::onPcmFrame, this::onPcmFinished);
+        // 当前曲目与预加载曲目各用一个编码器，二者在衔接前会同时编码。
+        this.opusEncoders = new OpusEncoder[] {
+            new ConcentusOpusEncoder(PCM_FORMAT, FRAME_MS),
+            new ConcentusOpusEncoder(PCM_FORMAT, FRAME_MS)
+        };
+        this.frameEncoders = new OpusFrameEncoder[] {
+            new OpusFrameEncoder(opusEncoders[0], PCM_FORMAT.frameBytes(FRAME_MS), complexityHandle),
+            new OpusFrameEncoder(opusEncoders[1], PCM_FORMAT.frameBytes(FRAME_MS), complexityHandle)
+        };
     }
 
 
@@ -102,15 +205,14 @@ public final class FfmpegAudioEngine implements AudioEngine {
      * @param track 参数 track
      */
     @Override
-    public void play(Track track) {
+    public synchronized void play(Track track) {
         log.info("[Audio] play track={} source={} ffmpeg={}", track.title(), track.sourceType(), ffmpegPath);
-        currentStreamUrl = track.streamUrl();
-        currentSourceId = track.sourceId();
-        currentSourceType = track.sourceType();
+        leaveBroadcast();
+        currentTrack = track;
         playing = true;
-        resetStats();
+        metrics.markTrackStart();
         updateChannelBitrate();
-        startPump(track, 0);
+        startSession(track, 0);
     }
 
 
@@ -118,11 +220,50 @@ public final class FfmpegAudioEngine implements AudioEngine {
      * 执行 pause 操作。
      */
     @Override
-    public void pause() {
+    public synchronized void pause() {
         log.info("[Audio] pause");
+        leaveBroadcast();
         playing = false;
-        pump.stop();
-        voiceClient.sendOpusFrame(new byte[0], 0);
+        if (!suspendSession()) {
+            closeSession();
+        }
+        endVoiceSession();
+    }
+
+
+    /**
+     * 执行 resume 操作。
+     * @return 是否从暂停的会话继续发送
+     */
+    @Override
+    public synchronized boolean resume() {
+        PlaybackSession suspended;
+        synchronized (streamLock) {
+            suspended = session;
+        }
+        if (suspendedAt == 0L || suspended == null || currentTrack == null) {
+            return false;
+        }
+        long idleMs = System.currentTimeMillis() - suspendedAt;
+        suspendedAt = 0L;
+        playing = true;
+        suspended.dispatcher.start(frameClock, botId);
+        log.info("[Audio] resume suspended session after {}ms", idleMs);
+        return true;
+    }
+
+
+    /**
+     * 执行 releaseIdleSuspension 操作。
+     */
+    @Override
+    public synchronized void releaseIdleSuspension() {
+        long since = suspendedAt;
+        if (since == 0L || System.currentTimeMillis() - since < pauseKeepAliveMs) {
+            return;
+        }
+        log.info("[Audio] suspended session idle over {}ms, releasing decoder", pauseKeepAliveMs);
+        closeSession();
     }
 
 
@@ -130,14 +271,13 @@ public final class FfmpegAudioEngine implements AudioEngine {
      * 执行 stop 操作。
      */
     @Override
-    public void stop() {
+    public synchronized void stop() {
         log.info("[Audio] stop");
+        leaveBroadcast();
         playing = false;
-        currentStreamUrl = null;
-        currentSourceId = null;
-        currentSourceType = null;
-        pump.stop();
-        voiceClient.sendOpusFrame(new byte[0], 0);
+        currentTrack = null;
+        closeSession();
+        endVoiceSession();
     }
 
 
@@ -146,12 +286,15 @@ public final class FfmpegAudioEngine implements AudioEngine {
      * @param positionMs 参数 positionMs
      */
     @Override
-    public void seek(long positionMs) {
+    public synchronized void seek(long positionMs) {
         log.info("[Audio] seek {}ms", positionMs);
         if (!playing) {
             return;
         }
-        startPump(currentSourceType, currentSourceId, currentStreamUrl, positionMs);
+        if (seekWithinHistory(positionMs)) {
+            return;
+        }
+        restartSession(positionMs);
     }
 
 
@@ -160,9 +303,23 @@ public final class FfmpegAudioEngine implements AudioEngine {
      * @param percent 参数 percent
      */
     @Override
-    public void setVolume(int percent) {
+    public synchronized void setVolume(int percent) {
         volumePercent = Math.max(0, Math.min(200, percent));
         log.info("[Audio] volume {}%", volumePercent);
+        if (volumePercent == FULL_VOLUME_PERCENT) {
+            return;
+        }
+        // 直通包与预编码缓存帧都不经增益处理，音量变化后改回实时转码。
+        TrackStream standby = standbyStream;
+        if (standby != null && sendsUnprocessedFrames(standby.source)) {
+            cancelNext();
+        }
+        TrackStream active = activeStream;
+        if (playing && active != null && active.source instanceof CachedOpusSource cached) {
+            restartSession(cached.positionMs());
+        } else if (playing && active != null && active.source instanceof SplicedFrameSource spliced && spliced.inHead()) {
+            restartSession(spliced.headPositionMs());
+        }
     }
 
 
@@ -175,86 +332,745 @@ public final class FfmpegAudioEngine implements AudioEngine {
         return playing;
     }
 
-    private void onPcmFrame(byte[] data, int length, PcmFormat format) {
-        pcmFrames++;
-        pcmBytes += length;
-        if (!voiceClient.isConnected()) {
-            droppedFrames++;
-            droppedNoConn++;
-            logStatsIfNeeded();
+
+    /**
+     * 预加载下一首：启动待命解码/编码，缓冲填满后阻塞等待，当前曲目排空的同一节拍接替发送。
+     * @param track 参数 track
+     * @return 是否已接受预加载
+     */
+    @Override
+    public synchronized boolean prepareNext(Track track) {
+        if (track == null || !playing) {
+            return false;
+        }
+        cancelNext();
+        PlaybackSession current;
+        OpusFrameEncoder encoder;
+        synchronized (streamLock) {
+            current = session;
+            if (current == null || standbyStream != null) {
+                // 会话已结束，或上一首预加载正在交接。
+                return false;
+            }
+            TrackStream active = activeStream;
+            encoder = active != null && active.encoder == frameEncoders[0] ? frameEncoders[1] : frameEncoders[0];
+        }
+        TrackStream next = openStream(track, 0L, encoder);
+        if (next == null) {
+            return false;
+        }
+        synchronized (streamLock) {
+            if (session == current && standbyStream == null && current.dispatcher.offerStandby(next.source)) {
+                standbyStream = next;
+                log.info("[Audio] next track prefetched title={} source={}", track.title(), track.sourceType());
+                return true;
+            }
+        }
+        next.close();
+        return false;
+    }
+
+
+    /**
+     * 执行 cancelNext 操作。
+     */
+    @Override
+    public synchronized void cancelNext() {
+        TrackStream dropped;
+        synchronized (streamLock) {
+            PlaybackSession current = session;
+            dropped = standbyStream;
+            if (dropped == null || current == null || !current.dispatcher.cancelStandby(dropped.source)) {
+                return;
+            }
+            standbyStream = null;
+        }
+        dropped.close();
+        log.info("[Audio] next track prefetch cancelled title={}", dropped.track.title());
+    }
+
+
+    /**
+     * 执行 setTrackTransitionListener 操作。
+     * @param listener 参数 listener
+     */
+    @Override
+    public void setTrackTransitionListener(Consumer<Track> listener) {
+        this.transitionListener = listener;
+    }
+
+
+    /**
+     * 按本机器人当前频道码率与曲目响度增益请求生成开头片段；源音频不在本地时跳过。
+     * @param track 队列中的曲目
+     */
+    @Override
+    public void prepareSnippet(Track track) {
+        if (snippetWarmer == null || track == null || track.id() == null) {
+            return;
+        }
+        Path source = null;
+        if (isLocalFile(track.streamUrl())) {
+            source = Path.of(track.streamUrl());
+        } else if (opusFrameStore != null) {
+            source = opusFrameStore.findCachedAudio(track.id()).orElse(null);
+        }
+        if (source == null) {
             return;
         }
-        byte[] pcm = applyVolume(data, length);
-        byte[] opus = opusEncoder.encode(pcm, pcm.length, format);
-        if (opus.length == 0) {
-            droppedFrames++;
-            droppedEncode++;
-            logStatsIfNeeded();
+        if (currentBitrate() <= 0) {
             return;
         }
-        opusBytes += opus.length;
-        voiceClient.sendOpusFrame(opus, opus.length);
-        logStatsIfNeeded();
+        // 片段按频道码率生成，只在码率未被网络自适应压低时使用。
+        snippetWarmer.request(track.id(), source, channelCapBitrate(), resolveTrackGain(track).orElse(PcmDsp.UNITY_GAIN));
+    }
+
+
+    /**
+     * 订阅另一个引擎的广播：停止自身播放，之后由对方在每个节拍直接向本机器人的语音客户端发送。
+     * 本机器人频道码率与对方不同时，对方从下一次开流起为该码率额外编码一路。
+     * @param leader 广播源引擎
+     */
+    public synchronized void followBroadcast(FfmpegAudioEngine leader) {
+        if (leader == null || leader == this) {
+            throw new IllegalArgumentException("Broadcast source must be another bot");
+        }
+        if (leader.broadcastLeader != null) {
+            throw new IllegalStateException("Bot " + leader.botId + " is itself following a broadcast");
+        }
+        if (!broadcastSubscribers.isEmpty()) {
+            throw new IllegalStateException("Bot " + botId + " has broadcast subscribers");
+        }
+        leaveBroadcast();
+        playing = false;
+        currentTrack = null;
+        closeSession();
+        updateChannelBitrate();
+        int bitrate = currentBitrate();
+        leader.broadcastSubscribers.add(new BroadcastSubscriber(this, bitrate));
+        broadcastLeader = leader;
+        log.info("[Audio] broadcast follow leader={} bitrate={}", leader.botId, bitrate);
+    }
+
+
+    /**
+     * 退出当前订阅的广播；未订阅时无操作。
+     */
+    public synchronized void leaveBroadcast() {
+        FfmpegAudioEngine leader = broadcastLeader;
+        if (leader == null) {
+            return;
+        }
+        broadcastLeader = null;
+        leader.broadcastSubscribers.removeIf(subscriber -> subscriber.engine() == this);
+        endOwnVoiceSession();
+        log.info("[Audio] broadcast leave leader={}", leader.botId);
+    }
+
+
+    /**
+     * 让所有订阅者退出本引擎的广播，机器人移除前调用。
+     */
+    public void closeBroadcast() {
+        for (BroadcastSubscriber subscriber : broadcastSubscribers) {
+            subscriber.engine().leaveBroadcast();
+        }
+    }
+
+
+    /**
+     * 执行 broadcastLeaderId 操作。
+     * @return 正在订阅的广播源机器人 ID，未订阅时返回 null
+     */
+    public String broadcastLeaderId() {
+        FfmpegAudioEngine leader = broadcastLeader;
+        return leader == null ? null : leader.botId;
+    }
+
+
+    /**
+     * 生成当前流水线统计快照。
+     * @return 快照
+     */
+    public AudioPipelineStats pipelineStats() {
+        AudioPipeline current = activePipeline();
+        return new AudioPipelineStats(
+            bufferFrames,
+            current == null ? 0 : current.pcmBuffered(),
+            current == null ? 0 : current.opusBuffered(),
+            pipelineCounters.underruns(),
+            pipelineCounters.overruns(),
+            pipelineCounters.encodeFailures(),
+            silenceGate.suppressedFrames(),
+            silenceGate.suppressedBytes()
+        );
     }
 
-    private void onPcmFinished() {
+
+    /**
+     * 生成指标快照。
+     * @return 快照
+     */
+    public AudioMetrics.Snapshot metrics() {
+        int complexity = complexityHandle == null ? OpusComplexityGovernor.MAX_COMPLEXITY : complexityHandle.complexity();
+        return metrics.snapshot(pipelineCounters, silenceGate.suppressedFrames(), currentBitrate(), complexity);
+    }
+
+    private void onPcmFrame(AudioPipeline target, byte[] data, int length, PcmFormat format) {
+        metrics.recordPcmFrame(length);
+        target.onPcmFrame(data, length, format);
+    }
+
+    private static AudioPipeline pipelineOf(FrameSource source) {
+        if (source instanceof SplicedFrameSource spliced) {
+            source = spliced.tail();
+        }
+        return source instanceof AudioPipeline pipeline ? pipeline : null;
+    }
+
+    private static boolean sendsUnprocessedFrames(FrameSource source) {
+        return source instanceof CachedOpusSource
+            || source instanceof SplicedFrameSource spliced && spliced.inHead();
+    }
+
+    private void onPlaybackDrained() {
         if (!playing) {
             return;
         }
         playing = false;
-        voiceClient.sendOpusFrame(new byte[0], 0);
+        endVoiceSession();
         log.info("[Audio] track finished");
     }
 
-    private byte[] applyVolume(byte[] data, int length) {
-        if (volumePercent == 100) {
-            byte[] copy = new byte[length];
-            System.arraycopy(data, 0, copy, 0, length);
-            return copy;
-        }
-        double gain = volumePercent / 100.0;
-        byte[] output = new byte[length];
-        for (int i = 0; i + 1 < length; i += 2) {
-            int sample = (data[i + 1] << 8) | (data[i] & 0xff);
-            int scaled = (int) Math.round(sample * gain);
-            if (scaled > Short.MAX_VALUE) {
-                scaled = Short.MAX_VALUE;
-            } else if (scaled < Short.MIN_VALUE) {
-                scaled = Short.MIN_VALUE;
+    private void sendEncodedFrame(byte[] data, int length, boolean silent) {
+        if (!voiceClient.isConnected()) {
+            metrics.recordDroppedNoConnection();
+            return;
+        }
+        metrics.recordFrameSent(length);
+        sendVoiceFrame(data, length, silent);
+        adaptToNetworkIfNeeded();
+    }
+
+    private AudioPipeline activePipeline() {
+        TrackStream active = activeStream;
+        return active == null ? null : pipelineOf(active.source);
+    }
+
+    private void restartSession(long positionMs) {
+        metrics.recordDecoderRestart();
+        startSession(currentTrack, positionMs);
+    }
+
+    private void startSession(Track track, long positionMs) {
+        // 先停掉旧会话（含预加载曲目）的读取线程再换流水线，保证旧帧不会写入新一轮播放的缓冲。
+        closeSession();
+        if (track == null) {
+            return;
+        }
+        TrackStream stream = openStream(track, positionMs, frameEncoders[0]);
+        if (stream == null) {
+            return;
+        }
+        PlaybackSession next = new PlaybackSession(stream);
+        synchronized (streamLock) {
+            session = next;
+            activeStream = stream;
+        }
+        next.dispatcher.start(frameClock, botId);
+    }
+
+    private boolean suspendSession() {
+        if (pauseKeepAliveMs <= 0L) {
+            return false;
+        }
+        PlaybackSession current;
+        synchronized (streamLock) {
+            current = session;
+        }
+        if (current == null) {
+            return false;
+        }
+        // 停止取帧后两级缓冲写满，读取线程阻塞在写入上，ffmpeg 与上游下载进程随管道写满一同停下。
+        current.dispatcher.suspend();
+        suspendedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    private void closeSession() {
+        suspendedAt = 0L;
+        PlaybackSession closing;
+        TrackStream active;
+        TrackStream standby;
+        synchronized (streamLock) {
+            closing = session;
+            active = activeStream;
+            standby = standbyStream;
+            session = null;
+            activeStream = null;
+            standbyStream = null;
+        }
+        if (closing != null) {
+            closing.dispatcher.close();
+        }
+        if (standby != null) {
+            standby.close();
+        }
+        if (active != null) {
+            active.close();
+        }
+    }
+
+    private TrackStream openStream(Track track, long positionMs, OpusFrameEncoder encoder) {
+        int[] laneBitrates = laneBitrates();
+        OptionalInt knownGain = resolveTrackGain(track);
+        int trackGain = knownGain.orElse(PcmDsp.UNITY_GAIN);
+        // 响度未知时跳过缓存，让这次从头播放经过转码完成测量。
+        boolean needsMeasurement = knownGain.isEmpty() && isLoudnessEnabled() && track.durationMs() > 0L;
+        if (laneBitrates.length == 0) {
+            // 直通包与缓存帧只有一种码率，有订阅者需要其他码率时走转码分车道编码。
+            // 直通优先于响度归一化：原始包无法施加增益，直通的曲目按原始响度播放，也不做测量。
+            TrackStream passthrough = openPassthroughStream(track, positionMs);
+            if (passthrough != null) {
+                return passthrough;
+            }
+            TrackStream cached = needsMeasurement ? null : openCachedStream(track, positionMs, trackGain);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        AudioPipeline pipeline = createPipeline(encoder, laneBitrates, trackGain);
+        // 从头播放且有开头片段时先发送片段，解码从片段结束处开始，在同一帧序号接上。
+        OpusFrameFile.Reader snippet = positionMs <= 0L && laneBitrates.length == 0
+            ? openSnippet(track, trackGain)
+            : null;
+        long decodeFromMs = snippet == null ? positionMs : (long) snippet.frameCount() * FRAME_MS;
+        if (positionMs <= 0L) {
+            if (needsMeasurement) {
+                pipeline.measureLoudness(
+                    new LoudnessMeter(PCM_FORMAT.channels()),
+                    meter -> commitLoudness(track, meter, decodeFromMs)
+                );
+            }
+            startRecording(track, pipeline, trackGain, snippet);
+        }
+        FrameSource source = snippet == null
+            ? pipeline
+            : new SplicedFrameSource(new CachedOpusSource(snippet, 0L, pipelineOutput), pipeline);
+        AudioFrameConsumer direct = (data, length, format) -> onPcmFrame(pipeline, data, length, format);
+        PcmHistory history = newHistory();
+        PcmHistoryFeed feed = history == null
+            ? null
+            : new PcmHistoryFeed(history, PCM_FORMAT, decodeFromMs / FRAME_MS, direct, pipeline::finishInput);
+        AudioFrameConsumer consumer = feed == null ? direct : feed;
+        Runnable onFinish = feed == null ? pipeline::finishInput : feed::finishInput;
+        OpusFileDecoder fileDecoder = openFileDecoder(track, consumer, onFinish);
+        if (fileDecoder != null) {
+            TrackStream stream = new TrackStream(track, fileDecoder, feed, source, encoder);
+            pipeline.start();
+            fileDecoder.start(decodeFromMs);
+            return stream;
+        }
+        FfmpegPcmPump pump = new FfmpegPcmPump(
+            ffmpegPath,
+            PCM_FORMAT,
+            FRAME_MS,
+            consumer,
+            onFinish,
+            false,
+            warmPool
+        );
+        TrackStream stream = new TrackStream(track, pump, feed, source, encoder);
+        pipeline.start();
+        try {
+            if (startPump(pump, track, decodeFromMs)) {
+                return stream;
+            }
+        } catch (RuntimeException ex) {
+            stream.close();
+            throw ex;
+        }
+        stream.close();
+        return null;
+    }
+
+    private AudioPipeline createPipeline(OpusFrameEncoder encoder, int[] laneBitrates, int trackGain) {
+        AudioPipeline pipeline = new AudioPipeline(
+            botId,
+            bufferFrames,
+            PCM_FORMAT,
+            PCM_FORMAT.frameBytes(FRAME_MS),
+            encoder,
+            createLaneEncoders(laneBitrates),
+            laneBitrates.length == 0 ? pipelineOutput : new StreamOutput(laneBitrates),
+            pipelineCounters
+        );
+        pipeline.applyTrackGain(trackGain);
+        return pipeline;
+    }
+
+    private OpusFrameFile.Reader openSnippet(Track track, int trackGain) {
+        int bitrate = cacheBitrate();
+        if (opusFrameStore == null
+            || volumePercent != FULL_VOLUME_PERCENT
+            || bitrate <= 0
+            || !isLocalFile(track.streamUrl())) {
+            // 远程音源从片段结束处开始解码会绕过边播边缓存，只对本地文件拼接。
+            return null;
+        }
+        Optional<Path> file = opusFrameStore.findOpusSnippet(track.id(), bitrate);
+        if (file.isEmpty()) {
+            return null;
+        }
+        try {
+            OpusFrameFile.Reader reader = OpusFrameFile.open(file.get());
+            if (reader.frameMs() != FRAME_MS || reader.frameCount() == 0 || reader.gain() != trackGain) {
+                return null;
             }
-            output[i] = (byte) (scaled & 0xff);
-            output[i + 1] = (byte) ((scaled >> 8) & 0xff);
+            log.info("[Audio] play opus snippet title={} frames={}", track.title(), reader.frameCount());
+            return reader;
+        } catch (IOException ex) {
+            log.debug("[Audio] opus snippet unreadable file={}", file.get(), ex);
+            return null;
         }
-        return output;
     }
 
-    private void resetStats() {
-        lastStatsAt = System.currentTimeMillis();
-        pcmFrames = 0;
-        pcmBytes = 0;
-        opusBytes = 0;
-        droppedFrames = 0;
-        droppedNoConn = 0;
-        droppedEncode = 0;
+    private PcmHistory newHistory() {
+        // 每条流独占一份窗口，堆外缓冲在流关闭时交还，由下一条流（包括无缝衔接的下一首）复用。
+        return historyBuffers == null ? null : new PcmHistory(historyBuffers);
     }
 
-    private void logStatsIfNeeded() {
-        long now = System.currentTimeMillis();
-        if (now - lastStatsAt < STATS_INTERVAL_MS) {
+    private boolean seekWithinHistory(long positionMs) {
+        TrackStream active;
+        synchronized (streamLock) {
+            active = activeStream;
+        }
+        long frame = Math.max(0L, positionMs) / FRAME_MS;
+        if (active == null || active.feed == null || active.track != currentTrack || !active.feed.covers(frame)) {
+            return false;
+        }
+        cancelNext();
+        AudioPipeline pipeline = createPipeline(
+            active.encoder,
+            laneBitrates(),
+            resolveTrackGain(active.track).orElse(PcmDsp.UNITY_GAIN)
+        );
+        AudioFrameConsumer consumer = (data, length, format) -> onPcmFrame(pipeline, data, length, format);
+        pipeline.start();
+        PlaybackSession previous;
+        PlaybackSession next;
+        synchronized (streamLock) {
+            boolean rewound = activeStream == active
+                && standbyStream == null
+                && active.feed.rewind(frame, consumer, pipeline::finishInput);
+            if (rewound) {
+                // 解码器与历史窗口交给新的流水线继续使用，旧流水线只回收缓冲。
+                TrackStream stream = new TrackStream(active.track, active.decoder, active.feed, pipeline, active.encoder);
+                next = new PlaybackSession(stream);
+                previous = session;
+                session = next;
+                activeStream = stream;
+            } else {
+                next = null;
+                previous = null;
+            }
+        }
+        if (next == null) {
+            pipeline.close();
+            return false;
+        }
+        if (previous != null) {
+            previous.dispatcher.close();
+        }
+        active.source.close();
+        next.dispatcher.start(frameClock, botId);
+        log.info("[Audio] seek within pcm history {}ms", positionMs);
+        return true;
+    }
+
+    private OpusFileDecoder openFileDecoder(Track track, AudioFrameConsumer consumer, Runnable onFinish) {
+        String streamUrl = track.streamUrl();
+        if (!javaOpusDecode || !isLocalFile(streamUrl)) {
+            return null;
+        }
+        OpusPacketIndex index;
+        try {
+            index = OpusPacketIndex.openForDecode(Path.of(streamUrl));
+        } catch (IOException ex) {
+            log.debug("[Audio] in-process opus decode unavailable title={} reason={}", track.title(), ex.getMessage());
+            return null;
+        }
+        log.info(
+            "[Audio] in-process opus decode title={} packets={} channels={}",
+            track.title(),
+            index.frameCount(),
+            index.channels()
+        );
+        return new OpusFileDecoder(index, PCM_FORMAT, FRAME_MS, consumer, onFinish);
+    }
+
+    private TrackStream openPassthroughStream(Track track, long positionMs) {
+        int bitrate = currentBitrate();
+        String streamUrl = track.streamUrl();
+        if (!opusPassthrough || volumePercent != FULL_VOLUME_PERCENT || bitrate <= 0 || !isLocalFile(streamUrl)) {
+            return null;
+        }
+        OpusPacketIndex index;
+        try {
+            index = OpusPacketIndex.open(Path.of(streamUrl));
+        } catch (IOException ex) {
+            log.info("[Audio] opus passthrough unavailable title={} reason={}", track.title(), ex.getMessage());
+            return null;
+        }
+        if (index.averageBitrate() > bitrate || !index.fitsVoicePacket()) {
+            log.info(
+                "[Audio] opus passthrough skipped title={} averageBitrate={} channelBitrate={} maxPacket={}",
+                track.title(),
+                index.averageBitrate(),
+                bitrate,
+                index.maxPacketBytes()
+            );
+            return null;
+        }
+        log.info(
+            "[Audio] opus passthrough title={} frames={} averageBitrate={} channels={}",
+            track.title(),
+            index.frameCount(),
+            index.averageBitrate(),
+            index.channels()
+        );
+        return new TrackStream(track, null, null, new CachedOpusSource(index, positionMs, pipelineOutput), null);
+    }
+
+    private TrackStream openCachedStream(Track track, long positionMs, int trackGain) {
+        int bitrate = cacheBitrate();
+        if (opusFrameStore == null || volumePercent != FULL_VOLUME_PERCENT || bitrate <= 0) {
+            return null;
+        }
+        Optional<Path> file = opusFrameStore.findOpusFrames(track.id(), bitrate);
+        if (file.isEmpty()) {
+            return null;
+        }
+        try {
+            OpusFrameFile.Reader reader = OpusFrameFile.open(file.get());
+            if (reader.frameMs() != FRAME_MS || reader.frameCount() == 0) {
+                return null;
+            }
+            if (reader.gain() != trackGain) {
+                // 缓存录制时的归一化增益与当前不同（响度刚测得或目标响度已修改），重新转码录制。
+                log.info("[Audio] opus frame cache gain mismatch title={} cached={} expected={}",
+                    track.title(), reader.gain(), trackGain);
+                return null;
+            }
+            log.info(
+                "[Audio] play from opus frame cache title={} bitrate={} frames={}",
+                track.title(),
+                bitrate,
+                reader.frameCount()
+            );
+            return new TrackStream(track, null, null, new CachedOpusSource(reader, positionMs, pipelineOutput), null);
+        } catch (IOException ex) {
+            log.warn("[Audio] opus frame cache unreadable, fallback to transcode file={}", file.get(), ex);
+            return null;
+        }
+    }
+
+    private void startRecording(Track track, AudioPipeline pipeline, int trackGain, OpusFrames prefix) {
+        int bitrate = cacheBitrate();
+        if (opusFrameStore == null
+            || volumePercent != FULL_VOLUME_PERCENT
+            || bitrate <= 0
+            || track.durationMs() <= 0L) {
+            // 时长未知（直播流等）无法判断是否完整播放，不录制。
             return;
         }
-        lastStatsAt = now;
+        Path target = opusFrameStore.opusFramesTarget(track.id(), bitrate);
+        if (target == null) {
+            return;
+        }
+        try {
+            OpusFrameFile.Writer writer = OpusFrameFile.create(target, FRAME_MS, bitrate, trackGain);
+            if (prefix != null) {
+                // 开头片段与本次转码同码率同增益，先写入片段帧，录制结果仍是从头开始的完整曲目。
+                byte[] frame = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+                try {
+                    for (int i = 0; i < prefix.frameCount(); i++) {
+                        writer.append(frame, prefix.read(i, frame));
+                    }
+                } catch (IOException ex) {
+                    writer.abort();
+                    throw ex;
+                }
+            }
+            pipeline.recordTo(writer, recorded -> commitRecording(track, recorded, trackGain));
+        } catch (IOException ex) {
+            log.debug("[Audio] opus frame recording unavailable target={}", target, ex);
+        }
+    }
+
+    private void commitRecording(Track track, OpusFrameFile.Writer writer, int trackGain) {
+        long recordedMs = (long) writer.frames() * FRAME_MS;
+        if (!coversTrack(track, recordedMs)) {
+            // ffmpeg 中途失败同样会结束输入，帧数明显不足时不提交。
+            log.info(
+                "[Audio] opus frame recording discarded title={} recordedMs={} durationMs={}",
+                track.title(),
+                recordedMs,
+                track.durationMs()
+            );
+            writer.abort();
+            return;
+        }
+        if (resolveTrackGain(track).orElse(PcmDsp.UNITY_GAIN) != trackGain) {
+            // 响度测量先于录制完成；测得的增益与录制时不同，这份缓存下次也不会命中。
+            log.info("[Audio] opus frame recording discarded after loudness measurement title={}", track.title());
+            writer.abort();
+            return;
+        }
+        try {
+            Path file = writer.commit();
+            opusFrameStore.onOpusFramesCommitted(track.id(), file);
+            log.info("[Audio] opus frame cache committed title={} frames={}", track.title(), writer.frames());
+        } catch (IOException ex) {
+            log.warn("[Audio] opus frame cache commit failed title={}", track.title(), ex);
+        }
+    }
+
+    private void commitLoudness(Track track, LoudnessMeter meter, long skippedMs) {
+        // 从开头片段之后开始测量时，片段时长计入覆盖判断。
+        if (!coversTrack(track, skippedMs + meter.measuredMs())) {
+            log.info(
+                "[Audio] loudness measurement discarded title={} measuredMs={} durationMs={}",
+                track.title(),
+                meter.measuredMs(),
+                track.durationMs()
+            );
+            return;
+        }
+        double integrated = meter.integratedLufs();
+        loudnessStore.storeLoudness(track.id(), integrated);
         log.info(
-            "[Audio] stats frames={} pcmBytes={} opusBytes={} dropped={} noConn={} encodeFail={}",
-            pcmFrames,
-            pcmBytes,
-            opusBytes,
-            droppedFrames,
-            droppedNoConn,
-            droppedEncode
+            "[Audio] loudness measured title={} integrated={}LUFS gain={}",
+            track.title(),
+            String.format("%.1f", integrated),
+            LoudnessMeter.gainForTarget(integrated, loudnessTargetLufs)
         );
     }
 
+    private boolean coversTrack(Track track, long measuredMs) {
+        long toleranceMs = Math.max(RECORDING_MIN_TOLERANCE_MS, track.durationMs() / 50);
+        return measuredMs + toleranceMs >= track.durationMs();
+    }
+
+    private boolean isLoudnessEnabled() {
+        return loudnessStore != null && loudnessTargetLufs != 0 && loudnessStore.isLoudnessStoreEnabled();
+    }
+
+    private OptionalInt resolveTrackGain(Track track) {
+        if (!isLoudnessEnabled() || track.id() == null) {
+            return OptionalInt.empty();
+        }
+        OptionalDouble integrated = loudnessStore.findLoudness(track.id());
+        if (integrated.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(LoudnessMeter.gainForTarget(integrated.getAsDouble(), loudnessTargetLufs));
+    }
+
+    private int[] laneBitrates() {
+        int own = currentBitrate();
+        return broadcastSubscribers.stream()
+            .mapToInt(BroadcastSubscriber::bitrate)
+            .filter(bitrate -> bitrate > 0 && bitrate != own)
+            .distinct()
+            .toArray();
+    }
+
+    private OpusFrameEncoder[] createLaneEncoders(int[] bitrates) {
+        OpusFrameEncoder[] encoders = new OpusFrameEncoder[bitrates.length];
+        for (int i = 0; i < bitrates.length; i++) {
+            ConcentusOpusEncoder opusEncoder = new ConcentusOpusEncoder(PCM_FORMAT, FRAME_MS);
+            opusEncoder.setBitrate(bitrates[i]);
+            encoders[i] = new OpusFrameEncoder(opusEncoder, PCM_FORMAT.frameBytes(FRAME_MS), complexityHandle);
+        }
+        return encoders;
+    }
+
+    private void endVoiceSession() {
+        endOwnVoiceSession();
+        for (BroadcastSubscriber subscriber : broadcastSubscribers) {
+            subscriber.engine().endOwnVoiceSession();
+        }
+    }
+
+    private void endOwnVoiceSession() {
+        if (!silenceGate.reset()) {
+            voiceClient.sendOpusFrame(new byte[0], 0);
+        }
+    }
+
+    private void sendVoiceFrame(byte[] data, int length, boolean silent) {
+        switch (silenceGate.admit(silent, length)) {
+            case SEND -> voiceClient.sendOpusFrame(data, length);
+            // 零长度帧让服务器与客户端结束当前语音会话，下一个非静音帧会开启新会话。
+            case END_SESSION -> voiceClient.sendOpusFrame(new byte[0], 0);
+            case SUPPRESS -> {
+            }
+        }
+    }
+
+    private int currentBitrate() {
+        // 两个编码器的码率总是同步设置。
+        return opusEncoders[0] instanceof ConcentusOpusEncoder encoder ? encoder.getBitrate() : -1;
+    }
+
+    private int channelCapBitrate() {
+        return channelBitrateBps > 0 ? channelBitrateBps : ConcentusOpusEncoder.DEFAULT_BITRATE;
+    }
+
+    private int cacheBitrate() {
+        // 帧缓存与开头片段按频道码率存取；网络自适应压低码率期间既不命中也不录制，
+        // 否则低码率内容会以频道码率的名义写入缓存，链路恢复后仍以低码率重放。
+        int cap = channelCapBitrate();
+        return currentBitrate() == cap ? cap : -1;
+    }
+
+    private void handover(PlaybackSession owner, FrameSource next) {
+        TrackStream finished;
+        TrackStream started;
+        synchronized (streamLock) {
+            started = standbyStream;
+            if (session != owner || started == null || started.source != next) {
+                return;
+            }
+            finished = activeStream;
+            activeStream = started;
+            standbyStream = null;
+            currentTrack = started.track;
+        }
+        if (finished != null) {
+            // 上一首已排空，解码与编码线程均已退出，这里只回收缓冲与历史窗口。
+            if (finished.feed != null) {
+                finished.feed.close();
+            }
+            finished.source.close();
+        }
+        log.info("[Audio] gapless handover title={} source={}", started.track.title(), started.track.sourceType());
+        Consumer<Track> listener = transitionListener;
+        if (listener != null) {
+            listener.accept(started.track);
+        }
+    }
+
+    private void finishSession(PlaybackSession owner) {
+        synchronized (streamLock) {
+            if (session != owner) {
+                return;
+            }
+        }
+        onPlaybackDrained();
+    }
+
     private void updateChannelBitrate() {
         long now = System.currentTimeMillis();
         if (now < nextChannelCodecQueryAt) {
@@ -280,8 +1096,16 @@ public final class FfmpegAudioEngine implements AudioEngine {
         }
         int bitrate = resolveBitrate(codecInfo.codec(), codecInfo.quality());
         this.channelBitrateBps = bitrate;
-        if (opusEncoder instanceof ConcentusOpusEncoder encoder) {
-            encoder.setBitrate(bitrate);
+        // 频道码率是上限；链路拥塞时沿用网络自适应已降低的码率。
+        int effective = networkAdaptive ? networkController.onChannelBitrate(bitrate) : bitrate;
+        boolean applied = false;
+        for (OpusEncoder opusEncoder : opusEncoders) {
+            if (opusEncoder instanceof ConcentusOpusEncoder encoder) {
+                encoder.setBitrate(effective);
+                applied = true;
+            }
+        }
+        if (applied) {
             log.info(
                 "[Audio] channel codec query result codec={} quality={} bitrate={}bps",
                 codecInfo.codec(),
@@ -300,29 +1124,115 @@ public final class FfmpegAudioEngine implements AudioEngine {
         nextChannelCodecQueryAt = now + CHANNEL_CODEC_QUERY_COOLDOWN_SUCCESS_MS;
     }
 
-    private void startPump(Track track, long positionMs) {
-        if (track == null) {
+    private void adaptToNetworkIfNeeded() {
+        if (!networkAdaptive) {
             return;
         }
-        startPump(track.sourceType(), track.sourceId(), track.streamUrl(), positionMs);
+        long now = System.currentTimeMillis();
+        if (now < nextNetworkAdaptAt) {
+            return;
+        }
+        nextNetworkAdaptAt = now + NETWORK_ADAPT_INTERVAL_MS;
+        if (!(voiceClient instanceof TsFullClient fullClient)) {
+            return;
+        }
+        int cap = channelCapBitrate();
+        NetworkBitrateController.Decision decision = networkController.update(fullClient.linkStats(), cap);
+        int previousBitrate = currentBitrate();
+        int previousLoss = expectedPacketLoss;
+        for (OpusEncoder opusEncoder : opusEncoders) {
+            if (opusEncoder instanceof ConcentusOpusEncoder encoder) {
+                encoder.setBitrate(decision.bitrate());
+            }
+            opusEncoder.setExpectedPacketLoss(decision.packetLossPercent());
+        }
+        expectedPacketLoss = decision.packetLossPercent();
+        int bitrate = currentBitrate();
+        if (bitrate != previousBitrate) {
+            // 帧缓存只收录频道码率的编码结果，码率中途变化后正在录制的内容不再完整。
+            cancelRecordings();
+        }
+        if (bitrate != previousBitrate || decision.packetLossPercent() != previousLoss) {
+            log.info(
+                "[Audio] network adapt bitrate={}->{}bps fecLoss={}% loss={}%",
+                previousBitrate,
+                bitrate,
+                decision.packetLossPercent(),
+                String.format("%.1f", networkController.smoothedLossPercent())
+            );
+        }
+    }
+
+    private void cancelRecordings() {
+        for (TrackStream stream : new TrackStream[] {activeStream, standbyStream}) {
+            AudioPipeline pipeline = stream == null ? null : pipelineOf(stream.source);
+            if (pipeline != null) {
+                pipeline.cancelRecording();
+            }
+        }
     }
 
-    private void startPump(String sourceType, String sourceId, String streamUrl, long positionMs) {
+    private boolean startPump(FfmpegPcmPump pump, Track track, long positionMs) {
+        String streamUrl = track.streamUrl();
         if (isLocalFile(streamUrl)) {
+            if (positionMs <= 0L && tryStartLocalWithInput(pump, Path.of(streamUrl))) {
+                return true;
+            }
             pump.start(streamUrl, positionMs);
-            return;
+            return true;
         }
-        if (tryStartWithPipe(sourceType, sourceId, positionMs)) {
-            return;
+        // 与帧缓存录制一致，只在从头播放时边播边缓存；跳转时沿用原有方式以免从头下载到目标位置。
+        if (positionMs <= 0L && tryStartProgressive(pump, track)) {
+            return true;
+        }
+        if (tryStartWithPipe(pump, track.sourceType(), track.sourceId(), positionMs)) {
+            return true;
         }
         if (streamUrl == null || streamUrl.isBlank()) {
             log.warn("[Audio] stream url empty, skip play");
-            return;
+            return false;
         }
         pump.start(streamUrl, positionMs);
+        return true;
+    }
+
+    private boolean tryStartProgressive(FfmpegPcmPump pump, Track track) {
+        if (progressiveSource == null) {
+            return false;
+        }
+        Optional<InputStream> input = progressiveSource.openProgressive(botId, track);
+        if (input.isEmpty()) {
+            return false;
+        }
+        if (!pump.startWithInput(input.get(), 0L)) {
+            return false;
+        }
+        log.info("[Audio] progressive cache enabled track={}", track.id());
+        return true;
+    }
+
+    private boolean tryStartLocalWithInput(FfmpegPcmPump pump, Path file) {
+        // 由程序写入文件内容才能接管预启动的进程；跳转仍让 ffmpeg 直接打开文件，以便按索引定位。
+        if (warmPool == null || !STREAMABLE_EXTENSIONS.contains(extensionOf(file))) {
+            return false;
+        }
+        InputStream input;
+        try {
+            input = Files.newInputStream(file);
+        } catch (IOException ex) {
+            log.debug("[Audio] local file unreadable, fallback to ffmpeg input file={}", file, ex);
+            return false;
+        }
+        return pump.startWithInput(input, 0L);
+    }
+
+    private static String extensionOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
     }
 
-    private boolean tryStartWithPipe(String sourceType, String sourceId, long positionMs) {
+    private boolean tryStartWithPipe(FfmpegPcmPump pump, String sourceType, String sourceId, long positionMs) {
         if (!isYtSource(sourceType)) {
             return false;
         }
@@ -417,4 +1327,106 @@ public final class FfmpegAudioEngine implements AudioEngine {
         int bitrate = (int) Math.round(kib * 1024 * 8);
         return Math.max(OPUS_MIN_BITRATE, Math.min(OPUS_MAX_BITRATE, bitrate));
     }
+
+    private final class StreamOutput implements AudioPipeline.Output {
+        private final int[] laneBitrates;
+
+        private StreamOutput(int[] laneBitrates) {
+            this.laneBitrates = laneBitrates;
+        }
+
+        @Override
+        public int volumePercent() {
+            return volumePercent;
+        }
+
+        @Override
+        public void sendFrame(byte[] data, int length) {
+            // 缓存与直通音源没有 PCM，按包长判断静音。
+            sendFrame(data, length, SilenceGate.isSilentPacket(length));
+        }
+
+        @Override
+        public void sendFrame(byte[] data, int length, boolean silent) {
+            sendEncodedFrame(data, length, silent);
+            // 没有对应车道的订阅者（含本次开流后才加入的）收听主码率。
+            for (BroadcastSubscriber subscriber : broadcastSubscribers) {
+                if (!hasLane(subscriber.bitrate())) {
+                    subscriber.engine().sendVoiceFrame(data, length, silent);
+                }
+            }
+        }
+
+        @Override
+        public void sendLaneFrame(int lane, byte[] data, int length, boolean silent) {
+            int bitrate = laneBitrates[lane];
+            for (BroadcastSubscriber subscriber : broadcastSubscribers) {
+                if (subscriber.bitrate() == bitrate) {
+                    subscriber.engine().sendVoiceFrame(data, length, silent);
+                }
+            }
+        }
+
+        private boolean hasLane(int bitrate) {
+            for (int laneBitrate : laneBitrates) {
+                if (laneBitrate == bitrate) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record BroadcastSubscriber(FfmpegAudioEngine engine, int bitrate) {
+    }
+
+    private final class PlaybackSession implements GaplessDispatcher.Listener {
+        private final GaplessDispatcher dispatcher;
+
+        private PlaybackSession(TrackStream first) {
+            this.dispatcher = new GaplessDispatcher(first.source, this);
+        }
+
+        @Override
+        public void onHandover(FrameSource previous, FrameSource next) {
+            handover(this, next);
+        }
+
+        @Override
+        public void onFinished() {
+            finishSession(this);
+        }
+    }
+
+    private static final class TrackStream {
+        private final Track track;
+        private final PcmSource decoder;
+        private final PcmHistoryFeed feed;
+        private final FrameSource source;
+        private final OpusFrameEncoder encoder;
+
+        private TrackStream(
+            Track track,
+            PcmSource decoder,
+            PcmHistoryFeed feed,
+            FrameSource source,
+            OpusFrameEncoder encoder
+        ) {
+            this.track = track;
+            this.decoder = decoder;
+            this.feed = feed;
+            this.source = source;
+            this.encoder = encoder;
+        }
+
+        private void close() {
+            if (feed != null) {
+                feed.close();
+            }
+            if (decoder != null) {
+                decoder.stop();
+            }
+            source.close();
+        }
+    }
 }
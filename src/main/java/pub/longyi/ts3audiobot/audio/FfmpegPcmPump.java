@@ -4,11 +4,9 @@ import lombok.extern.slf4j.Slf4j;
 import pub.longyi.ts3audiobot.util.RuntimeToolPathResolver;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,7 +32,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <p>约束：调用方需遵守方法契约。</p>
  */
 @Slf4j
-public final class FfmpegPcmPump {
+public final class FfmpegPcmPump implements PcmSource {
     private static final long STOP_TIMEOUT_MS = 2000L;
     private static final int PIPE_BUFFER_SIZE = 16 * 1024;
     private static final String PIPE_INPUT = "pipe:0";
@@ -42,8 +40,6 @@ public final class FfmpegPcmPump {
     private static final String LABEL_FFMPEG = "FFmpeg";
     private static final String LABEL_INPUT = "Input";
     private static final String THREAD_FFMPEG_READER = "ffmpeg-pcm-reader";
-    private static final String THREAD_FFMPEG_STDERR = "ffmpeg-pcm-stderr";
-    private static final String THREAD_INPUT_STDERR = "input-pipe-stderr";
     private static final String THREAD_INPUT_PIPE = "input-pipe";
     private static final String FFMPEG_ARG_HIDE_BANNER = "-hide_banner";
     private static final String FFMPEG_ARG_NO_STATS = "-nostats";
@@ -64,27 +60,17 @@ public final class FfmpegPcmPump {
     private final int frameMs;
     private final AudioFrameConsumer consumer;
     private final Runnable onFinish;
+    private final boolean realtime;
+    private final WarmFfmpegPool warmPool;
     private final AtomicBoolean running = new AtomicBoolean(false);
 
+    private AtomicBoolean session;
     private Process process;
     private Process inputProcess;
+    private InputStream pipeInput;
     private Thread readerThread;
-    private Thread stderrThread;
-    private Thread inputStderrThread;
     private Thread pipeThread;
 
-    /**
-     * 创建 FfmpegPcmPump 实例。
-     * @param ffmpegPath 参数 ffmpegPath
-     * @param format 参数 format
-     * @param frameMs 参数 frameMs
-     * @param consumer 参数 consumer
-     */
-    public FfmpegPcmPump(String ffmpegPath, PcmFormat format, int frameMs, AudioFrameConsumer consumer) {
-        this(ffmpegPath, format, frameMs, consumer, null);
-    }
-
-
     /**
      * 创建 FfmpegPcmPump 实例。
      * @param ffmpegPath 参数 ffmpegPath
@@ -92,19 +78,25 @@ public final class FfmpegPcmPump {
      * @param frameMs 参数 frameMs
      * @param consumer 参数 consumer
      * @param onFinish 参数 onFinish
+     * @param realtime true 时按帧长自行节拍；false 时尽快读取，由 consumer 通过阻塞施加背压
+     * @param warmPool 预启动进程池，同时记录启动到首帧的耗时；为 null 时总是冷启动且不记录
      */
     public FfmpegPcmPump(
         String ffmpegPath,
         PcmFormat format,
         int frameMs,
         AudioFrameConsumer consumer,
-        Runnable onFinish
+        Runnable onFinish,
+        boolean realtime,
+        WarmFfmpegPool warmPool
     ) {
         this.ffmpegPath = ffmpegPath;
         this.format = format;
         this.frameMs = frameMs;
         this.consumer = consumer;
         this.onFinish = onFinish;
+        this.realtime = realtime;
+        this.warmPool = warmPool;
     }
 
 
@@ -119,6 +111,7 @@ public final class FfmpegPcmPump {
             throw new IllegalArgumentException("input required");
         }
         stop();
+        long requestedAt = System.nanoTime();
         List<String> command = buildCommand(input, startMs);
         Process ffmpeg = startProcess(command, LABEL_FFMPEG);
         if (ffmpeg == null) {
@@ -126,12 +119,12 @@ public final class FfmpegPcmPump {
         }
         process = ffmpeg;
         running.set(true);
-        startReaderThreads(ffmpeg, THREAD_FFMPEG_READER, THREAD_FFMPEG_STDERR);
+        startReaderThread(ffmpeg, requestedAt, false);
     }
 
 
     /**
-     * 执行 startWithPipe 操作。
+     * 以输入命令的 stdout 作为 ffmpeg 输入启动，两者由操作系统管道直接相连，不经 JVM 复制。
      * @param inputCommand 参数 inputCommand
      * @param startMs 参数 startMs
      * @return 返回值
@@ -142,22 +135,60 @@ public final class FfmpegPcmPump {
             throw new IllegalArgumentException("inputCommand required");
         }
         stop();
-        Process source = startProcess(inputCommand, LABEL_INPUT);
-        if (source == null) {
+        long requestedAt = System.nanoTime();
+        List<String> ffmpegCommand = buildCommand(PIPE_INPUT, startMs);
+        List<Process> chain;
+        try {
+            chain = ProcessBuilder.startPipeline(List.of(
+                new ProcessBuilder(inputCommand),
+                new ProcessBuilder(ffmpegCommand)
+            ));
+        } catch (IOException ex) {
+            // startPipeline 失败时已销毁链上已启动的进程。
+            log.warn("[{}] failed to start pipeline", LABEL_INPUT, ex);
             return false;
         }
-        List<String> ffmpegCommand = buildCommand(PIPE_INPUT, startMs);
-        Process ffmpeg = startProcess(ffmpegCommand, LABEL_FFMPEG);
+        Process source = chain.get(0);
+        Process ffmpeg = chain.get(1);
+        onProcessStarted(source, inputCommand, LABEL_INPUT);
+        onProcessStarted(ffmpeg, ffmpegCommand, LABEL_FFMPEG);
+        closeQuietly(source.getOutputStream());
+        inputProcess = source;
+        process = ffmpeg;
+        running.set(true);
+        startReaderThread(ffmpeg, requestedAt, false);
+        return true;
+    }
+
+
+    /**
+     * 以调用方提供的字节流作为 ffmpeg 输入启动；停止时关闭该流。
+     * 从头播放且配置了进程池时优先接管预启动的进程。
+     * @param input 源字节流，所有权转交给本实例
+     * @param startMs 参数 startMs
+     * @return ffmpeg 启动成功时返回 true，失败时已关闭 input
+     */
+    public synchronized boolean startWithInput(InputStream input, long startMs) {
+        Objects.requireNonNull(input, "input");
+        stop();
+        long requestedAt = System.nanoTime();
+        List<String> command = buildCommand(PIPE_INPUT, startMs);
+        Process ffmpeg = startMs <= 0 && warmPool != null ? warmPool.acquire(command) : null;
+        boolean warm = ffmpeg != null;
+        if (warm) {
+            log.info("[{}] attached warm pid={}", LABEL_FFMPEG, safePid(ffmpeg));
+        } else {
+            ffmpeg = startProcess(command, LABEL_FFMPEG);
+        }
         if (ffmpeg == null) {
-            safeDestroy(source);
+            closeQuietly(input);
             return false;
         }
-        inputProcess = source;
+        pipeInput = input;
         process = ffmpeg;
         running.set(true);
-        startPipeThread(source, ffmpeg);
-        startReaderThreads(ffmpeg, THREAD_FFMPEG_READER, THREAD_FFMPEG_STDERR);
-        startInputStderrThread(source);
+        startPipeThread(input, ffmpeg);
+        startReaderThread(ffmpeg, requestedAt, warm);
         return true;
     }
 
@@ -165,30 +196,35 @@ public final class FfmpegPcmPump {
     /**
      * 执行 stop 操作。
      */
+    @Override
     public synchronized void stop() {
         running.set(false);
         Process source = inputProcess;
         inputProcess = null;
+        InputStream input = pipeInput;
+        pipeInput = null;
         Process ffmpeg = process;
         process = null;
+        if (session != null) {
+            session.set(false);
+            session = null;
+        }
+        Thread reader = readerThread;
         if (readerThread != null) {
             readerThread.interrupt();
             readerThread = null;
         }
-        if (stderrThread != null) {
-            stderrThread.interrupt();
-            stderrThread = null;
-        }
-        if (inputStderrThread != null) {
-            inputStderrThread.interrupt();
-            inputStderrThread = null;
-        }
         if (pipeThread != null) {
             pipeThread.interrupt();
             pipeThread = null;
         }
+        if (input != null) {
+            // 阻塞在读取上的管道线程不响应中断，关闭输入流使其退出。
+            closeQuietly(input);
+        }
         stopProcess(source, LABEL_INPUT);
         stopProcess(ffmpeg, LABEL_FFMPEG);
+        awaitReader(reader);
     }
 
 
@@ -196,22 +232,24 @@ public final class FfmpegPcmPump {
      * 执行 isRunning 操作。
      * @return 返回值
      */
+    @Override
     public boolean isRunning() {
         return running.get();
     }
 
-    private void readLoop(Process proc) {
+    private void readLoop(Process proc, AtomicBoolean current, long requestedAt, boolean warm) {
         int frameBytes = format.frameBytes(frameMs);
         byte[] buffer = new byte[frameBytes];
         long startAt = System.nanoTime();
         long frameIndex = 0;
+        boolean firstFrame = true;
         try (InputStream inputStream = new BufferedInputStream(proc.getInputStream())) {
-            while (running.get()) {
+            while (isCurrent(current)) {
                 int offset = 0;
                 while (offset < buffer.length) {
                     int read = inputStream.read(buffer, offset, buffer.length - offset);
                     if (read < 0) {
-                        if (running.get()) {
+                        if (isCurrent(current)) {
                             running.set(false);
                             log.info("[{}] PCM output ended", LABEL_FFMPEG);
                             if (onFinish != null) {
@@ -222,43 +260,48 @@ public final class FfmpegPcmPump {
                     }
                     offset += read;
                 }
+                if (firstFrame) {
+                    firstFrame = false;
+                    recordFirstFrame(requestedAt, warm);
+                }
                 consumer.onPcmFrame(buffer, buffer.length, format);
-                frameIndex++;
-                paceFrame(startAt, frameIndex);
+                if (realtime) {
+                    frameIndex++;
+                    paceFrame(startAt, frameIndex);
+                }
             }
         } catch (IOException ex) {
-            if (running.get()) {
+            if (isCurrent(current)) {
                 log.error("ffmpeg read loop failed", ex);
             }
         } finally {
-            running.set(false);
+            // 已被 stop/重新 start 取代的读取线程不能清除新一轮播放的运行标记。
+            if (current.get()) {
+                running.set(false);
+            }
         }
     }
 
-    private void readStderr(Process proc, String label) {
-        try (InputStream stream = proc.getErrorStream();
-             BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.isBlank()) {
-                    log.info("[{}] {}", label, line);
-                }
-            }
-        } catch (IOException ex) {
-            if (running.get()) {
-                log.warn("[{}] stderr read failed", label, ex);
-            }
-        } finally {
-            try {
-                int code = proc.waitFor();
-                if (code != 0) {
-                    log.warn("[{}] process exited code={}", label, code);
-                } else {
-                    log.info("[{}] process exited code={}", label, code);
-                }
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-            }
+    private void recordFirstFrame(long requestedAt, boolean warm) {
+        long elapsed = System.nanoTime() - requestedAt;
+        if (warmPool != null) {
+            warmPool.recordFirstFrame(warm, elapsed);
+        }
+        log.debug("[{}] first frame after {}ms warm={}", LABEL_FFMPEG, elapsed / 1_000_000L, warm);
+    }
+
+    private boolean isCurrent(AtomicBoolean current) {
+        return running.get() && current.get();
+    }
+
+    private void awaitReader(Thread reader) {
+        if (reader == null || reader == Thread.currentThread()) {
+            return;
+        }
+        try {
+            reader.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -266,7 +309,7 @@ public final class FfmpegPcmPump {
         ProcessBuilder builder = new ProcessBuilder(command);
         try {
             Process proc = builder.start();
-            log.info("[{}] started pid={} command={}", label, safePid(proc), String.join(" ", command));
+            onProcessStarted(proc, command, label);
             return proc;
         } catch (IOException ex) {
             log.warn("[{}] failed to start", label, ex);
@@ -274,30 +317,29 @@ public final class FfmpegPcmPump {
         }
     }
 
-    private void startReaderThreads(Process ffmpeg, String readerName, String stderrName) {
-        readerThread = new Thread(() -> readLoop(ffmpeg), readerName);
-        readerThread.setDaemon(true);
-        readerThread.start();
-        stderrThread = new Thread(() -> readStderr(ffmpeg, LABEL_FFMPEG), stderrName);
-        stderrThread.setDaemon(true);
-        stderrThread.start();
+    private void onProcessStarted(Process proc, List<String> command, String label) {
+        log.info("[{}] started pid={} command={}", label, safePid(proc), String.join(" ", command));
+        ProcessStderrMultiplexer.shared().register(proc, label);
     }
 
-    private void startInputStderrThread(Process source) {
-        inputStderrThread = new Thread(() -> readStderr(source, LABEL_INPUT), THREAD_INPUT_STDERR);
-        inputStderrThread.setDaemon(true);
-        inputStderrThread.start();
+    private void startReaderThread(Process ffmpeg, long requestedAt, boolean warm) {
+        AtomicBoolean current = new AtomicBoolean(true);
+        session = current;
+        readerThread = new Thread(() -> readLoop(ffmpeg, current, requestedAt, warm), THREAD_FFMPEG_READER);
+        readerThread.setDaemon(true);
+        readerThread.start();
     }
 
-    private void startPipeThread(Process source, Process target) {
+    private void startPipeThread(InputStream source, Process target) {
         pipeThread = new Thread(() -> pipeLoop(source, target), THREAD_INPUT_PIPE);
         pipeThread.setDaemon(true);
         pipeThread.start();
     }
 
-    private void pipeLoop(Process source, Process target) {
-        try (InputStream inputStream = new BufferedInputStream(source.getInputStream());
-             OutputStream outputStream = new BufferedOutputStream(target.getOutputStream())) {
+    private void pipeLoop(InputStream source, Process target) {
+        // 每次读到的整块直接写入管道，不再经过额外的缓冲与逐块 flush。
+        try (InputStream inputStream = source;
+             OutputStream outputStream = target.getOutputStream()) {
             byte[] buffer = new byte[PIPE_BUFFER_SIZE];
             while (running.get()) {
                 int read = inputStream.read(buffer);
@@ -305,7 +347,6 @@ public final class FfmpegPcmPump {
                     return;
                 }
                 outputStream.write(buffer, 0, read);
-                outputStream.flush();
             }
         } catch (IOException ex) {
             if (running.get()) {
@@ -314,6 +355,14 @@ public final class FfmpegPcmPump {
         }
     }
 
+    private void closeQuietly(Closeable stream) {
+        try {
+            stream.close();
+        } catch (IOException ex) {
+            log.debug("[{}] stream close failed", LABEL_INPUT, ex);
+        }
+    }
+
     private void safeDestroy(Process proc) {
         if (proc != null) {
             proc.destroy();
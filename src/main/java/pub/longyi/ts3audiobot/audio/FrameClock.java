@@ -0,0 +1,506 @@
+package pub.longyi.ts3audiobot.audio;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pub.longyi.ts3audiobot.config.AppConfig;
+import pub.longyi.ts3audiobot.config.ConfigService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 11:05
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 FrameClock 相关功能。
+ */
+
+
+/**
+ * 所有机器人共享的 20ms 音频帧时钟。
+ *
+ * <p>职责：由单个高优先级线程按绝对截止时间（起点 + n × 20ms）节拍，消除累计漂移，并在每个节拍为所有已注册
+ * 的句柄发放一帧许可，直接在时钟线程上派发已编码好的帧；同时统计每个机器人的迟到、抖动与欠载。</p>
+ * <p>线程安全：线程安全；派发回调只在时钟线程上调用。</p>
+ * <p>约束：迟到策略 CATCH_UP 最多累积 {@code maxCatchUpFrames} 个许可并连续补发；DROP 只发送最新一帧，
+ * 过期帧由派发方丢弃以保持与墙钟对齐。</p>
+ */
+@Slf4j
+@Component
+public final class FrameClock {
+    public static final int FRAME_MS = 20;
+    static final long PERIOD_NS = TimeUnit.MILLISECONDS.toNanos(FRAME_MS);
+    private static final long SPIN_THRESHOLD_NS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int DROP_PERMIT_CAP = 50;
+    private static final String THREAD_NAME = "audio-frame-clock";
+    private static final Handle[] NO_HANDLES = new Handle[0];
+    private static final TickSource SYSTEM_TICKS = new TickSource() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public boolean awaitDeadline(long deadlineNs) {
+            return waitUntil(deadlineNs);
+        }
+    };
+
+    private final AppConfig.LateFramePolicy policy;
+    private final int permitCap;
+    private final TickSource tickSource;
+    private final Object lock = new Object();
+    private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+    private final TimingHistogram tickLateness = new TimingHistogram();
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder missedTicks = new LongAdder();
+
+    private volatile Handle[] handles = NO_HANDLES;
+    private Thread clockThread;
+    private boolean shutdown;
+
+    /**
+     * 创建 FrameClock 实例。
+     * @param configService 参数 configService
+     */
+    @Autowired
+    public FrameClock(ConfigService configService) {
+        this(resolvePolicy(configService), resolveMaxCatchUp(configService));
+    }
+
+    FrameClock(AppConfig.LateFramePolicy policy, int maxCatchUpFrames) {
+        this(policy, maxCatchUpFrames, SYSTEM_TICKS);
+    }
+
+    FrameClock(AppConfig.LateFramePolicy policy, int maxCatchUpFrames, TickSource tickSource) {
+        this.policy = policy == null ? AppConfig.LateFramePolicy.CATCH_UP : policy;
+        this.permitCap = this.policy == AppConfig.LateFramePolicy.DROP
+            ? DROP_PERMIT_CAP
+            : Math.max(1, maxCatchUpFrames);
+        this.tickSource = Objects.requireNonNull(tickSource, "tickSource");
+    }
+
+
+    /**
+     * 注册一个由时钟线程直接派发帧的发送方，时钟线程随首个注册自动启动。
+     * @param name 统计名称（通常为机器人 ID）
+     * @param dispatcher 每个节拍在时钟线程上调用的派发回调
+     * @return 帧句柄，用完需关闭
+     */
+    public Handle register(String name, Dispatcher dispatcher) {
+        Objects.requireNonNull(dispatcher, "dispatcher");
+        String key = name == null || name.isBlank() ? "unnamed" : name;
+        Timing timing = timings.computeIfAbsent(key, Timing::new);
+        Handle handle = new Handle(this, timing, dispatcher);
+        synchronized (lock) {
+            if (shutdown) {
+                throw new IllegalStateException("frame clock shut down");
+            }
+            Handle[] next = Arrays.copyOf(handles, handles.length + 1);
+            next[handles.length] = handle;
+            handles = next;
+            timing.active.incrementAndGet();
+            if (clockThread == null) {
+                clockThread = new Thread(this::runClock, THREAD_NAME);
+                clockThread.setDaemon(true);
+                clockThread.setPriority(Thread.MAX_PRIORITY);
+                clockThread.start();
+            }
+        }
+        return handle;
+    }
+
+
+    /**
+     * 生成时钟与各机器人的时序统计快照。
+     * @return 快照
+     */
+    public ClockStats snapshot() {
+        List<HandleStats> bots = new ArrayList<>(timings.size());
+        for (Timing timing : timings.values()) {
+            bots.add(new HandleStats(
+                timing.name,
+                timing.active.get() > 0,
+                timing.dispatched.sum(),
+                timing.dropped.sum(),
+                timing.discardedTicks.sum(),
+                timing.underruns.sum(),
+                timing.lateness.snapshot(),
+                timing.jitter.snapshot()
+            ));
+        }
+        bots.sort((left, right) -> left.name().compareTo(right.name()));
+        return new ClockStats(
+            policy.name(),
+            FRAME_MS,
+            handles.length,
+            ticks.sum(),
+            missedTicks.sum(),
+            tickLateness.snapshot(),
+            bots
+        );
+    }
+
+
+    /**
+     * 清空所有时序统计，便于压测前后对比。
+     */
+    public void resetStats() {
+        tickLateness.reset();
+        ticks.reset();
+        missedTicks.reset();
+        timings.values().removeIf(timing -> timing.active.get() <= 0);
+        for (Timing timing : timings.values()) {
+            timing.reset();
+        }
+    }
+
+
+    /**
+     * 执行 shutdown 操作。
+     */
+    @PreDestroy
+    public void shutdown() {
+        Handle[] current;
+        synchronized (lock) {
+            shutdown = true;
+            current = handles;
+            handles = NO_HANDLES;
+            if (clockThread != null) {
+                clockThread.interrupt();
+                clockThread = null;
+            }
+        }
+        for (Handle handle : current) {
+            handle.closed = true;
+        }
+    }
+
+    private void unregister(Handle handle) {
+        synchronized (lock) {
+            Handle[] current = handles;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == handle) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            Handle[] next = new Handle[current.length - 1];
+            System.arraycopy(current, 0, next, 0, index);
+            System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+            handles = next.length == 0 ? NO_HANDLES : next;
+            handle.timing.active.decrementAndGet();
+        }
+    }
+
+    private void runClock() {
+        log.info("[FrameClock] started policy={} permitCap={}", policy, permitCap);
+        long startNs = tickSource.nanoTime();
+        long tick = 0;
+        while (true) {
+            if (!hasHandles()) {
+                break;
+            }
+            tick++;
+            long deadline = startNs + tick * PERIOD_NS;
+            if (!tickSource.awaitDeadline(deadline)) {
+                break;
+            }
+            long late = tickSource.nanoTime() - deadline;
+            ticks.increment();
+            tickLateness.recordNanos(late);
+            if (late >= PERIOD_NS) {
+                long missed = late / PERIOD_NS;
+                missedTicks.add(missed);
+                // DROP 直接跳过错过的节拍；CATCH_UP 最多补 permitCap 个，更久的停顿同样重新对齐。
+                long skip = policy == AppConfig.LateFramePolicy.DROP ? missed : Math.max(0L, missed - permitCap);
+                tick += skip;
+            }
+            for (Handle handle : handles) {
+                grantSafely(handle, deadline);
+            }
+        }
+        log.info("[FrameClock] stopped");
+    }
+
+    private void grantSafely(Handle handle, long deadline) {
+        try {
+            handle.grant(deadline);
+        } catch (RuntimeException ex) {
+            // 单个发送方异常不能拖垮其它机器人的节拍。
+            log.warn("[FrameClock] dispatch failed name={}", handle.timing.name, ex);
+        }
+    }
+
+    private boolean hasHandles() {
+        synchronized (lock) {
+            if (handles.length > 0 && !shutdown) {
+                return true;
+            }
+            if (clockThread == Thread.currentThread()) {
+                clockThread = null;
+            }
+            return false;
+        }
+    }
+
+    private static boolean waitUntil(long deadline) {
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return true;
+            }
+            if (remaining > SPIN_THRESHOLD_NS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NS);
+            } else {
+                Thread.onSpinWait();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+    }
+
+    private static AppConfig.LateFramePolicy resolvePolicy(ConfigService configService) {
+        AppConfig config = configService == null ? null : configService.get();
+        if (config == null || config.audio == null) {
+            return AppConfig.LateFramePolicy.CATCH_UP;
+        }
+        return config.audio.lateFramePolicy;
+    }
+
+    private static int resolveMaxCatchUp(ConfigService configService) {
+        AppConfig config = configService == null ? null : configService.get();
+        if (config == null || config.audio == null) {
+            return AppConfig.Audio.DEFAULT_MAX_CATCH_UP_FRAMES;
+        }
+        return config.audio.maxCatchUpFrames;
+    }
+
+    /**
+     * 由时钟线程在每个节拍调用的帧派发回调。
+     *
+     * <p>约束：实现必须非阻塞且只做一帧的工作，否则会推迟同一节拍内其它机器人的发送。</p>
+     */
+    public interface Dispatcher {
+        /**
+         * 取出一帧并发送或丢弃。
+         * @param deliver true 表示发送，false 表示该帧已过期应直接丢弃（DROP 策略）
+         * @return 是否取到了帧，false 表示当前无可用帧
+         */
+        boolean dispatch(boolean deliver);
+
+
+        /**
+         * 帧到期但没有可用帧时回调，默认不处理。
+         */
+        default void onUnderrun() {
+        }
+    }
+
+    /**
+     * 节拍时间来源：提供单调时钟并等待截止时刻。
+     *
+     * <p>约束：只由时钟线程调用；测试可注入手动推进的实现，不依赖真实时间。</p>
+     */
+    interface TickSource {
+        /**
+         * 执行 nanoTime 操作。
+         * @return 当前单调时间（纳秒）
+         */
+        long nanoTime();
+
+
+        /**
+         * 等待到截止时刻。
+         * @param deadlineNs 截止时刻（纳秒，与 {@link #nanoTime()} 同一基准）
+         * @return 到达截止时刻时返回 true；时钟线程被中断时返回 false
+         */
+        boolean awaitDeadline(long deadlineNs);
+    }
+
+    /**
+     * 单个发送方的帧许可句柄。
+     *
+     * <p>线程安全：许可只在时钟线程上发放与消耗；{@link #close()} 可由任意线程调用。</p>
+     */
+    public static final class Handle implements AutoCloseable {
+        private final FrameClock clock;
+        private final Timing timing;
+        private final Dispatcher dispatcher;
+        private final AtomicInteger permits = new AtomicInteger();
+
+        private volatile boolean closed;
+        private boolean armed;
+        private long lastDispatchNs;
+
+        private Handle(FrameClock clock, Timing timing, Dispatcher dispatcher) {
+            this.clock = clock;
+            this.timing = timing;
+            this.dispatcher = dispatcher;
+        }
+
+
+        /**
+         * 执行 isClosed 操作。
+         * @return 句柄是否已关闭
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+
+        /**
+         * 注销句柄，之后的节拍不再派发。
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            clock.unregister(this);
+        }
+
+        private boolean isStale(int available) {
+            return clock.policy == AppConfig.LateFramePolicy.DROP && available > 1;
+        }
+
+        private void recordDispatch(long scheduled) {
+            long now = clock.tickSource.nanoTime();
+            timing.lateness.recordNanos(now - scheduled);
+            if (lastDispatchNs != 0L) {
+                timing.jitter.recordNanos(Math.abs(now - lastDispatchNs - PERIOD_NS));
+            }
+            lastDispatchNs = now;
+            timing.dispatched.increment();
+        }
+
+        private void grant(long deadline) {
+            if (!armed) {
+                // 首帧就绪即发送，此后才开始累积许可，避免解码器启动耗时被当成迟到而补发或丢帧。
+                if (dispatcher.dispatch(true)) {
+                    armed = true;
+                    recordDispatch(deadline);
+                }
+                return;
+            }
+            while (true) {
+                int current = permits.get();
+                if (current >= clock.permitCap) {
+                    timing.discardedTicks.increment();
+                    break;
+                }
+                if (permits.compareAndSet(current, current + 1)) {
+                    break;
+                }
+            }
+            drain(deadline);
+        }
+
+        private void drain(long deadline) {
+            int available = permits.get();
+            while (available > 0 && !closed) {
+                boolean stale = isStale(available);
+                if (!dispatcher.dispatch(!stale)) {
+                    if (!closed) {
+                        timing.underruns.increment();
+                        dispatcher.onUnderrun();
+                    }
+                    return;
+                }
+                if (stale) {
+                    timing.dropped.increment();
+                } else {
+                    recordDispatch(deadline - (available - 1) * PERIOD_NS);
+                }
+                available = permits.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Timing {
+        private final String name;
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder dispatched = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder discardedTicks = new LongAdder();
+        private final LongAdder underruns = new LongAdder();
+        private final TimingHistogram lateness = new TimingHistogram();
+        private final TimingHistogram jitter = new TimingHistogram();
+
+        private Timing(String name) {
+            this.name = Objects.requireNonNull(name, "name");
+        }
+
+        private void reset() {
+            dispatched.reset();
+            dropped.reset();
+            discardedTicks.reset();
+            underruns.reset();
+            lateness.reset();
+            jitter.reset();
+        }
+    }
+
+    /**
+     * 帧时钟统计快照。
+     * @param lateFramePolicy 迟到帧策略
+     * @param frameMs 帧长（毫秒）
+     * @param activeHandles 当前注册的句柄数
+     * @param ticks 已执行节拍数
+     * @param missedTicks 时钟线程自身错过的节拍数
+     * @param tickLateness 时钟线程唤醒迟到分布
+     * @param bots 各机器人统计
+     */
+    public record ClockStats(
+        String lateFramePolicy,
+        int frameMs,
+        int activeHandles,
+        long ticks,
+        long missedTicks,
+        TimingHistogram.Snapshot tickLateness,
+        List<HandleStats> bots
+    ) {
+    }
+
+    /**
+     * 单个机器人的帧时序统计。
+     * @param name 名称（机器人 ID）
+     * @param active 是否正在播放
+     * @param framesDispatched 已按时钟发送的帧数
+     * @param framesDropped DROP 策略下丢弃的过期帧数
+     * @param ticksDiscarded 许可已满时被丢弃的节拍数
+     * @param underruns 派发模式下帧到期但发送缓冲为空的次数
+     * @param lateness 帧实际发送时刻相对计划时刻的迟到分布
+     * @param jitter 相邻两帧发送间隔与 20ms 的偏差分布
+     */
+    public record HandleStats(
+        String name,
+        boolean active,
+        long framesDispatched,
+        long framesDropped,
+        long ticksDiscarded,
+        long underruns,
+        TimingHistogram.Snapshot lateness,
+        TimingHistogram.Snapshot jitter
+    ) {
+    }
+}
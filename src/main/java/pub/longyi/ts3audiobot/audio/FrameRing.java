@@ -0,0 +1,254 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 13:20
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 FrameRing 相关功能。
+ */
+
+
+/**
+ * 预分配槽位的单生产者/单消费者帧环形缓冲。
+ *
+ * <p>职责：在相邻两个音频阶段之间传递定长帧，槽位在构造时一次分配，读写路径无锁、无分配。</p>
+ * <p>线程安全：仅允许一个生产者线程调用 {@link #claim()}/{@link #publish(int, boolean)}/{@link #awaitSpace(long)}，
+ * 一个消费者线程调用 {@link #peek()}/{@link #peekLength()}/{@link #peekSilent()}/{@link #release()}/{@link #awaitFrame(long)}；
+ * {@link #close()} 与 {@link #size()} 可由任意线程调用。</p>
+ * <p>约束：{@link #claim()} 返回的槽位在 {@link #publish(int)} 之前不可见；{@link #peek()} 返回的槽位在
+ * {@link #release()} 之后可能被覆盖。</p>
+ */
+final class FrameRing {
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final boolean[] silent;
+    private final int mask;
+    private final int capacity;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile Thread producerWaiter;
+    private volatile Thread consumerWaiter;
+    private volatile boolean closed;
+    private volatile boolean ended;
+
+    /**
+     * 创建 FrameRing 实例。
+     * @param capacity 帧数上限
+     * @param slotBytes 单个槽位字节数
+     */
+    FrameRing(int capacity, int slotBytes) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = capacity;
+        this.mask = size - 1;
+        this.slots = new byte[size][slotBytes];
+        this.lengths = new int[size];
+        this.silent = new boolean[size];
+    }
+
+
+    /**
+     * 生产者获取下一个可写槽位。
+     * @return 可写槽位，缓冲已满时返回 null
+     */
+    byte[] claim() {
+        long t = tail.get();
+        if (t - head.get() >= capacity) {
+            return null;
+        }
+        return slots[(int) t & mask];
+    }
+
+
+    /**
+     * 生产者提交已写入的槽位。
+     * @param length 帧字节数
+     */
+    void publish(int length) {
+        publish(length, false);
+    }
+
+
+    /**
+     * 生产者提交已写入的槽位并附带静音标记。
+     * @param length 帧字节数
+     * @param silentFrame 该帧是否静音
+     */
+    void publish(int length, boolean silentFrame) {
+        long t = tail.get();
+        lengths[(int) t & mask] = length;
+        silent[(int) t & mask] = silentFrame;
+        tail.set(t + 1);
+        Thread waiter = consumerWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+
+    /**
+     * 生产者标记输入结束，消费者读完剩余帧后即可结束。
+     */
+    void markEnded() {
+        ended = true;
+        Thread waiter = consumerWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+
+    /**
+     * 消费者读取队首槽位。
+     * @return 队首槽位，缓冲为空时返回 null
+     */
+    byte[] peek() {
+        long h = head.get();
+        if (h >= tail.get()) {
+            return null;
+        }
+        return slots[(int) h & mask];
+    }
+
+
+    /**
+     * 消费者读取队首帧长度，需先通过 {@link #peek()} 确认非空。
+     * @return 帧字节数
+     */
+    int peekLength() {
+        return lengths[(int) head.get() & mask];
+    }
+
+
+    /**
+     * 消费者读取队首帧的静音标记，需先通过 {@link #peek()} 确认非空。
+     * @return 是否静音
+     */
+    boolean peekSilent() {
+        return silent[(int) head.get() & mask];
+    }
+
+
+    /**
+     * 消费者释放队首槽位。
+     */
+    void release() {
+        head.set(head.get() + 1);
+        Thread waiter = producerWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+
+    /**
+     * 生产者等待可写槽位。
+     * @param timeoutNs 最长等待时间（纳秒）
+     * @return 是否已有可写槽位
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    boolean awaitSpace(long timeoutNs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNs;
+        producerWaiter = Thread.currentThread();
+        try {
+            while (claim() == null && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return !closed;
+        } finally {
+            producerWaiter = null;
+        }
+    }
+
+
+    /**
+     * 消费者等待可读帧。
+     * @param timeoutNs 最长等待时间（纳秒）
+     * @return 是否已有可读帧
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    boolean awaitFrame(long timeoutNs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNs;
+        consumerWaiter = Thread.currentThread();
+        try {
+            while (peek() == null && !closed && !ended) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return !closed && peek() != null;
+        } finally {
+            consumerWaiter = null;
+        }
+    }
+
+
+    /**
+     * 关闭缓冲并唤醒两端等待线程。
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(producerWaiter);
+        LockSupport.unpark(consumerWaiter);
+    }
+
+
+    /**
+     * 执行 isClosed 操作。
+     * @return 是否已关闭
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+
+    /**
+     * 判断输入已结束且所有帧都已被消费。
+     * @return 是否已排空
+     */
+    boolean isDrained() {
+        return ended && head.get() >= tail.get();
+    }
+
+
+    /**
+     * 执行 size 操作。
+     * @return 当前缓冲帧数
+     */
+    int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+
+
+    /**
+     * 执行 capacity 操作。
+     * @return 帧数上限
+     */
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,48 @@
+package pub.longyi.ts3audiobot.audio;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 15:40
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 FrameSource 相关功能。
+ */
+
+
+/**
+ * 单首曲目在发送阶段的 Opus 帧来源。
+ *
+ * <p>职责：向 {@link GaplessDispatcher} 按节拍提供 Opus 帧，屏蔽实时转码与预编码缓存两种来源的差异。</p>
+ * <p>线程安全：{@link #dispatch}/{@link #isDrained()}/{@link #onUnderrun()} 由帧时钟线程调用；
+ * {@link #close()} 可由任意线程调用。</p>
+ * <p>约束：关闭后不可重用。</p>
+ */
+interface FrameSource {
+    /**
+     * 取出一帧并发送或丢弃。
+     * @param deliver 是否发送，false 表示丢弃过期帧
+     * @return 是否取到了帧
+     */
+    boolean dispatch(boolean deliver);
+
+
+    /**
+     * 判断所有帧都已取出且不会再有新帧。
+     * @return 是否已排空
+     */
+    boolean isDrained();
+
+
+    /**
+     * 帧到期但没有可用帧时回调。
+     */
+    void onUnderrun();
+
+
+    /**
+     * 停止产出并释放资源。
+     */
+    void close();
+}
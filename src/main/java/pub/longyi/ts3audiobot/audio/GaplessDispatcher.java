@@ -0,0 +1,188 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 15:05
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 GaplessDispatcher 相关功能。
+ */
+
+
+/**
+ * 一次连续播放会话在帧时钟上的发送句柄，支持曲目间无缝衔接。
+ *
+ * <p>职责：把帧时钟节拍转发给当前帧来源；当前帧来源排空且已挂入待命帧来源时，在同一个节拍内改由待命
+ * 帧来源发送，中间不插入静音帧也不结束语音会话；没有待命帧来源时视为播放结束。</p>
+ * <p>线程安全：{@link #dispatch}/{@link #onUnderrun} 由帧时钟线程调用；{@link #offerStandby}、
+ * {@link #cancelStandby}、{@link #suspend()} 与 {@link #close()} 可由任意线程调用，待命帧来源的交接通过 CAS 保证只发生一次。</p>
+ * <p>约束：回调在帧时钟线程执行，实现不得阻塞。</p>
+ */
+final class GaplessDispatcher implements FrameClock.Dispatcher {
+    private final Listener listener;
+    private final AtomicReference<FrameSource> standby = new AtomicReference<>();
+    private final LongAdder handovers = new LongAdder();
+
+    private volatile FrameSource current;
+    private volatile boolean finished;
+    private volatile FrameClock.Handle handle;
+
+    /**
+     * 创建 GaplessDispatcher 实例。
+     * @param first 首个（当前）帧来源
+     * @param listener 交接与结束回调
+     */
+    GaplessDispatcher(FrameSource first, Listener listener) {
+        this.current = first;
+        this.listener = listener;
+    }
+
+
+    /**
+     * 注册到帧时钟开始发送。
+     * @param frameClock 共享帧时钟
+     * @param name 名称（机器人 ID），用于帧时钟统计
+     */
+    synchronized void start(FrameClock frameClock, String name) {
+        handle = frameClock.register(name, this);
+    }
+
+
+    /**
+     * 挂入待命帧来源，当前帧来源排空时接替发送。
+     * @param next 已启动的待命帧来源
+     * @return 是否挂入成功，会话已结束或已有待命帧来源时返回 false
+     */
+    boolean offerStandby(FrameSource next) {
+        if (finished) {
+            return false;
+        }
+        return standby.compareAndSet(null, next);
+    }
+
+
+    /**
+     * 撤下尚未接替的待命帧来源。
+     * @param expected 期望撤下的帧来源
+     * @return 是否撤下成功，false 表示已交接或从未挂入
+     */
+    boolean cancelStandby(FrameSource expected) {
+        return standby.compareAndSet(expected, null);
+    }
+
+
+    /**
+     * 发送阶段：由帧时钟在每个节拍调用。
+     * @param deliver 是否发送，false 表示丢弃过期帧
+     * @return 是否取到了帧
+     */
+    @Override
+    public boolean dispatch(boolean deliver) {
+        if (finished) {
+            return false;
+        }
+        FrameSource active = current;
+        if (active.dispatch(deliver)) {
+            return true;
+        }
+        if (!active.isDrained()) {
+            return false;
+        }
+        FrameSource next = standby.getAndSet(null);
+        if (next == null) {
+            finish();
+            return false;
+        }
+        current = next;
+        handovers.increment();
+        listener.onHandover(active, next);
+        // 同一节拍内由下一首补上这一帧，衔接处不出现空拍。
+        return next.dispatch(deliver);
+    }
+
+
+    /**
+     * 执行 onUnderrun 操作。
+     */
+    @Override
+    public void onUnderrun() {
+        current.onUnderrun();
+    }
+
+
+    /**
+     * 暂停发送：从帧时钟注销，但保留当前与待命帧来源，之后可再次 {@link #start} 从下一帧继续。
+     */
+    void suspend() {
+        FrameClock.Handle registered;
+        synchronized (this) {
+            registered = handle;
+            handle = null;
+        }
+        if (registered != null) {
+            registered.close();
+        }
+    }
+
+
+    /**
+     * 停止发送；不关闭帧来源，由调用方负责。
+     */
+    void close() {
+        finished = true;
+        FrameClock.Handle registered;
+        synchronized (this) {
+            registered = handle;
+            handle = null;
+        }
+        if (registered != null) {
+            registered.close();
+        }
+    }
+
+
+    /**
+     * 执行 current 操作。
+     * @return 当前正在发送的帧来源
+     */
+    FrameSource current() {
+        return current;
+    }
+
+
+    /**
+     * 执行 handovers 操作。
+     * @return 已完成的无缝交接次数
+     */
+    long handovers() {
+        return handovers.sum();
+    }
+
+    private void finish() {
+        close();
+        listener.onFinished();
+    }
+
+    /**
+     * 会话回调，均在帧时钟线程触发。
+     */
+    interface Listener {
+        /**
+         * 待命帧来源已接替发送。
+         * @param previous 已排空的上一首帧来源
+         * @param next 接替发送的帧来源
+         */
+        void onHandover(FrameSource previous, FrameSource next);
+
+
+        /**
+         * 当前帧来源排空且没有待命帧来源，播放结束。
+         */
+        void onFinished();
+    }
+}
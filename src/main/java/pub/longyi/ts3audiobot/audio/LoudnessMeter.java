@@ -0,0 +1,192 @@
+package pub.longyi.ts3audiobot.audio;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 19:30
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 LoudnessMeter 相关功能。
+ */
+
+
+/**
+ * 增量计算的 EBU R128 综合响度（ITU-R BS.1770-4）。
+ *
+ * <p>职责：逐帧接收 48kHz s16le PCM，经 K 计权滤波后按 100ms 步进累计 400ms 块能量；
+ * 块能量计入固定 0.05 LU 分辨率的直方图，结束时按 -70 LUFS 绝对门限与 -10 LU 相对门限求综合响度。
+ * 内存占用与曲目时长无关。</p>
+ * <p>线程安全：非线程安全，只能由一个线程写入。</p>
+ * <p>约束：仅支持 48kHz；各声道权重均为 1（立体声/单声道）。</p>
+ */
+final class LoudnessMeter {
+    static final int SAMPLE_RATE = 48000;
+    private static final int STEP_FRAMES = SAMPLE_RATE / 10;
+    private static final int BLOCK_STEPS = 4;
+    private static final double LOUDNESS_OFFSET = -0.691;
+    private static final double ABSOLUTE_GATE_LUFS = -70.0;
+    private static final double RELATIVE_GATE_LU = -10.0;
+    private static final double HISTOGRAM_MAX_LUFS = 5.0;
+    private static final double HISTOGRAM_STEP_LU = 0.05;
+    private static final int HISTOGRAM_BINS =
+        (int) Math.ceil((HISTOGRAM_MAX_LUFS - ABSOLUTE_GATE_LUFS) / HISTOGRAM_STEP_LU);
+    private static final double SAMPLE_SCALE = 1.0 / 32768.0;
+    // 静音时滤波器状态会衰减到非规格化数，运算显著变慢；叠加一个远低于可闻范围的常量避免这种情况。
+    private static final double ANTI_DENORMAL = 1e-20;
+    static final double MAX_BOOST_DB = 10.0;
+    static final double MAX_CUT_DB = -20.0;
+    static final double DEAD_ZONE_DB = 0.5;
+
+    // BS.1770-4 在 48kHz 下的 K 计权系数：第一级高架滤波，第二级 RLB 高通。
+    private static final double SHELF_B0 = 1.53512485958697;
+    private static final double SHELF_B1 = -2.69169618940638;
+    private static final double SHELF_B2 = 1.19839281085285;
+    private static final double SHELF_A1 = -1.69065929318241;
+    private static final double SHELF_A2 = 0.73248077421585;
+    private static final double HIGHPASS_B0 = 1.0;
+    private static final double HIGHPASS_B1 = -2.0;
+    private static final double HIGHPASS_B2 = 1.0;
+    private static final double HIGHPASS_A1 = -1.99004745483398;
+    private static final double HIGHPASS_A2 = 0.99007225036621;
+
+    private final int channels;
+    private final double[] shelfZ1;
+    private final double[] shelfZ2;
+    private final double[] highpassZ1;
+    private final double[] highpassZ2;
+    private final double[] stepEnergies = new double[BLOCK_STEPS];
+    private final long[] binCounts = new long[HISTOGRAM_BINS];
+    private final double[] binEnergies = new double[HISTOGRAM_BINS];
+    private double stepSum;
+    private int stepFrames;
+    private long steps;
+    private long frames;
+
+    /**
+     * 创建 LoudnessMeter 实例。
+     * @param channels 声道数
+     */
+    LoudnessMeter(int channels) {
+        if (channels <= 0) {
+            throw new IllegalArgumentException("channels must be positive");
+        }
+        this.channels = channels;
+        this.shelfZ1 = new double[channels];
+        this.shelfZ2 = new double[channels];
+        this.highpassZ1 = new double[channels];
+        this.highpassZ2 = new double[channels];
+    }
+
+
+    /**
+     * 累计一段交错的 s16le PCM，尾部不足一个采样帧的字节被忽略。
+     * @param pcm PCM 字节
+     * @param length 有效字节数
+     */
+    void accept(byte[] pcm, int length) {
+        int frameBytes = channels * 2;
+        int usable = Math.min(length, pcm.length) / frameBytes * frameBytes;
+        for (int offset = 0; offset < usable; offset += frameBytes) {
+            for (int channel = 0; channel < channels; channel++) {
+                int index = offset + channel * 2;
+                double x = ((pcm[index + 1] << 8) | (pcm[index] & 0xff)) * SAMPLE_SCALE + ANTI_DENORMAL;
+                double shelf = SHELF_B0 * x + shelfZ1[channel];
+                shelfZ1[channel] = SHELF_B1 * x - SHELF_A1 * shelf + shelfZ2[channel];
+                shelfZ2[channel] = SHELF_B2 * x - SHELF_A2 * shelf;
+                double weighted = HIGHPASS_B0 * shelf + highpassZ1[channel];
+                highpassZ1[channel] = HIGHPASS_B1 * shelf - HIGHPASS_A1 * weighted + highpassZ2[channel];
+                highpassZ2[channel] = HIGHPASS_B2 * shelf - HIGHPASS_A2 * weighted;
+                stepSum += weighted * weighted;
+            }
+            frames++;
+            if (++stepFrames == STEP_FRAMES) {
+                completeStep();
+            }
+        }
+    }
+
+
+    /**
+     * 执行 measuredMs 操作。
+     * @return 已累计的音频时长（毫秒）
+     */
+    long measuredMs() {
+        return frames * 1000L / SAMPLE_RATE;
+    }
+
+
+    /**
+     * 计算门限后的综合响度。
+     * @return LUFS；没有高于绝对门限的块（静音或不足 400ms）时返回负无穷
+     */
+    double integratedLufs() {
+        long gatedCount = 0L;
+        double gatedEnergy = 0.0;
+        for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+            gatedCount += binCounts[bin];
+            gatedEnergy += binEnergies[bin];
+        }
+        if (gatedCount == 0L) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double relativeGate = loudness(gatedEnergy / gatedCount) + RELATIVE_GATE_LU;
+        long count = 0L;
+        double energy = 0.0;
+        for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+            long binCount = binCounts[bin];
+            // 同一分箱内的块响度相差不足 0.05 LU，按分箱均值与相对门限比较。
+            if (binCount > 0L && loudness(binEnergies[bin] / binCount) > relativeGate) {
+                count += binCount;
+                energy += binEnergies[bin];
+            }
+        }
+        return count == 0L ? Double.NEGATIVE_INFINITY : loudness(energy / count);
+    }
+
+
+    /**
+     * 把综合响度换算为达到目标响度所需的静态增益。
+     * @param integratedLufs 综合响度
+     * @param targetLufs 目标响度
+     * @return Q14 增益；响度未知或与目标相差不足 {@link #DEAD_ZONE_DB} 时返回单位增益
+     */
+    static int gainForTarget(double integratedLufs, double targetLufs) {
+        if (!Double.isFinite(integratedLufs)) {
+            return PcmDsp.UNITY_GAIN;
+        }
+        double gainDb = Math.max(MAX_CUT_DB, Math.min(MAX_BOOST_DB, targetLufs - integratedLufs));
+        if (Math.abs(gainDb) < DEAD_ZONE_DB) {
+            return PcmDsp.UNITY_GAIN;
+        }
+        return PcmDsp.clampGain((int) Math.round(PcmDsp.UNITY_GAIN * Math.pow(10.0, gainDb / 20.0)));
+    }
+
+    private void completeStep() {
+        stepEnergies[(int) (steps % BLOCK_STEPS)] = stepSum / STEP_FRAMES;
+        steps++;
+        stepSum = 0.0;
+        stepFrames = 0;
+        if (steps < BLOCK_STEPS) {
+            return;
+        }
+        // 400ms 块每 100ms 前进一次（75% 重叠），块能量即最近四个步进的均值。
+        double blockEnergy = 0.0;
+        for (double stepEnergy : stepEnergies) {
+            blockEnergy += stepEnergy;
+        }
+        blockEnergy /= BLOCK_STEPS;
+        double blockLoudness = loudness(blockEnergy);
+        if (!(blockLoudness > ABSOLUTE_GATE_LUFS)) {
+            return;
+        }
+        int bin = (int) ((blockLoudness - ABSOLUTE_GATE_LUFS) / HISTOGRAM_STEP_LU);
+        bin = Math.min(HISTOGRAM_BINS - 1, bin);
+        binCounts[bin]++;
+        binEnergies[bin] += blockEnergy;
+    }
+
+    private static double loudness(double energy) {
+        return LOUDNESS_OFFSET + 10.0 * Math.log10(energy);
+    }
+}
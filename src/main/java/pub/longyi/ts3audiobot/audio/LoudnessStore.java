@@ -0,0 +1,43 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.util.OptionalDouble;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 19:30
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 LoudnessStore 接口相关功能。
+ */
+
+
+/**
+ * 曲目综合响度的持久化位置。
+ *
+ * <p>职责：与曲目缓存条目一同保存首次完整播放时测得的综合响度，之后的播放据此计算静态增益。</p>
+ * <p>线程安全：实现需支持多线程调用。</p>
+ * <p>约束：缓存关闭时不可保存，查找返回空、保存为空操作；响度可以是负无穷（静音曲目）。</p>
+ */
+public interface LoudnessStore {
+    /**
+     * 执行 isLoudnessStoreEnabled 操作。
+     * @return 测得的响度能否保存；不能保存时播放器不为测量放弃直通与帧缓存
+     */
+    boolean isLoudnessStoreEnabled();
+
+    /**
+     * 查找已保存的综合响度。
+     * @param trackId 曲目 ID
+     * @return 综合响度（LUFS）
+     */
+    OptionalDouble findLoudness(String trackId);
+
+    /**
+     * 保存综合响度。
+     * @param trackId 曲目 ID
+     * @param integratedLufs 综合响度（LUFS）
+     */
+    void storeLoudness(String trackId, double integratedLufs);
+}
@@ -0,0 +1,138 @@
+package pub.longyi.ts3audiobot.audio;
+
+import pub.longyi.ts3audiobot.ts3.full.PacketHandler;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 20:40
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 NetworkBitrateController 相关功能。
+ */
+
+
+/**
+ * 按语音连接的链路质量调整 Opus 码率与带内 FEC。
+ *
+ * <p>职责：每个统计窗口比较相邻两次 {@link PacketHandler.LinkStats} 快照，以 PING 丢失率与命令重传率中较大者
+ * 估计丢包率（指数平滑），并把往返时延与连接以来的最低值比较判断排队拥塞。拥塞时码率乘性降低
+ * （不低于 {@value #MIN_BITRATE}bps 与上限中的较小者），连续 {@value #STABLE_WINDOWS_TO_RAISE} 个窗口无拥塞后
+ * 按频道上限的 1/8 加性恢复，始终不超过频道上限；
+ * 平滑丢包率达到 {@value #FEC_ON_LOSS_PERCENT}% 时向编码器声明预期丢包以启用带内 FEC，低于
+ * {@value #FEC_OFF_LOSS_PERCENT}% 时关闭。</p>
+ * <p>线程安全：方法互斥执行。</p>
+ * <p>约束：一个实例对应一条语音连接；首次调用只记录基线，不做调整。</p>
+ */
+final class NetworkBitrateController {
+    static final int MIN_BITRATE = 24_000;
+    static final double CONGESTED_LOSS_PERCENT = 3.0;
+    static final double FEC_ON_LOSS_PERCENT = 1.0;
+    static final double FEC_OFF_LOSS_PERCENT = 0.5;
+    static final int MAX_FEC_LOSS_PERCENT = 30;
+    static final int STABLE_WINDOWS_TO_RAISE = 3;
+    static final double RTT_SLACK_MS = 80.0;
+    private static final double LOSS_SMOOTHING = 0.3;
+    private static final int RAISE_STEPS = 8;
+
+    private PacketHandler.LinkStats previous;
+    private double smoothedLossPercent;
+    private double baseRttMs = Double.MAX_VALUE;
+    private int targetBitrate = -1;
+    private int packetLossPercent;
+    private int stableWindows;
+
+    /**
+     * 处理一个统计窗口结束时的链路快照。
+     * @param stats 链路快照
+     * @param capBitrate 频道编码质量对应的码率上限
+     * @return 编码器应使用的设置
+     */
+    synchronized Decision update(PacketHandler.LinkStats stats, int capBitrate) {
+        int cap = Math.max(1, capBitrate);
+        if (targetBitrate <= 0 || targetBitrate > cap) {
+            targetBitrate = cap;
+        }
+        PacketHandler.LinkStats last = previous;
+        previous = stats;
+        if (last == null || stats == null) {
+            return decision();
+        }
+        double loss = Math.max(
+            lossPercent(stats.pingsSent() - last.pingsSent(), stats.pongsReceived() - last.pongsReceived()),
+            ratioPercent(stats.commandResends() - last.commandResends(), stats.commandsSent() - last.commandsSent())
+        );
+        smoothedLossPercent = smoothedLossPercent * (1.0 - LOSS_SMOOTHING) + loss * LOSS_SMOOTHING;
+        double rttMs = stats.pingSeconds() * 1000.0;
+        double deviationMs = stats.deviationSeconds() * 1000.0;
+        boolean rttValid = stats.pongsReceived() > 0L;
+        if (rttValid) {
+            baseRttMs = Math.min(baseRttMs, rttMs);
+        }
+        boolean queueing = rttValid && rttMs > baseRttMs * 2.0 + Math.max(RTT_SLACK_MS, deviationMs * 4.0);
+        if (smoothedLossPercent >= CONGESTED_LOSS_PERCENT || queueing) {
+            stableWindows = 0;
+            targetBitrate = Math.max(Math.min(MIN_BITRATE, cap), targetBitrate * 3 / 4);
+        } else if (++stableWindows >= STABLE_WINDOWS_TO_RAISE && targetBitrate < cap) {
+            stableWindows = 0;
+            targetBitrate = Math.min(cap, targetBitrate + cap / RAISE_STEPS);
+        }
+        if (smoothedLossPercent >= FEC_ON_LOSS_PERCENT) {
+            packetLossPercent = Math.min(MAX_FEC_LOSS_PERCENT, (int) Math.ceil(smoothedLossPercent));
+        } else if (smoothedLossPercent < FEC_OFF_LOSS_PERCENT) {
+            packetLossPercent = 0;
+        }
+        return decision();
+    }
+
+
+    /**
+     * 频道码率重新查询后，按新的上限限制当前目标码率。
+     * @param capBitrate 频道编码质量对应的码率上限
+     * @return 编码器应使用的码率
+     */
+    synchronized int onChannelBitrate(int capBitrate) {
+        int cap = Math.max(1, capBitrate);
+        if (targetBitrate <= 0 || targetBitrate > cap) {
+            targetBitrate = cap;
+        }
+        return targetBitrate;
+    }
+
+
+    /**
+     * 执行 smoothedLossPercent 操作。
+     * @return 平滑后的丢包率估计
+     */
+    synchronized double smoothedLossPercent() {
+        return smoothedLossPercent;
+    }
+
+    private Decision decision() {
+        return new Decision(targetBitrate, packetLossPercent);
+    }
+
+    private static double lossPercent(long sent, long received) {
+        if (sent <= 0L) {
+            return 0.0;
+        }
+        // 上个窗口末尾发出的 PING 可能在本窗口才收到回应，收到数可以大于发送数。
+        return Math.max(0L, sent - received) * 100.0 / sent;
+    }
+
+    private static double ratioPercent(long count, long total) {
+        if (count <= 0L) {
+            return 0.0;
+        }
+        return Math.min(100.0, count * 100.0 / Math.max(1L, total));
+    }
+
+    /**
+     * 编码器设置。
+     * @param bitrate 目标码率
+     * @param packetLossPercent 向编码器声明的预期丢包率，0 表示关闭带内 FEC
+     */
+    record Decision(int bitrate, int packetLossPercent) {
+    }
+}
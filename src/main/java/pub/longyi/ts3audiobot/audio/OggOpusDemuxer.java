@@ -0,0 +1,119 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 16:55
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OggOpusDemuxer 相关功能。
+ */
+
+
+/**
+ * Ogg Opus（RFC 7845）解复用器。
+ *
+ * <p>职责：逐页解析 Ogg 分段表，把首包 OpusHead 与之后的音频包登记到 {@link OpusPacketIndex.Builder}，
+ * 第二包 OpusTags（可能跨页）直接跳过。</p>
+ * <p>线程安全：实例只允许单线程使用。</p>
+ * <p>约束：只支持单个逻辑流；跨页的音频包无法在映射文件中连续读取，遇到时放弃直通。文件尾不完整的页被忽略。</p>
+ */
+final class OggOpusDemuxer {
+    private static final int CAPTURE_PATTERN = 0x4F676753;
+    private static final int PAGE_HEADER_BYTES = 27;
+    private static final int FLAG_CONTINUED = 0x01;
+    private static final int LACING_CONTINUE = 255;
+    private static final int HEAD_PACKET = 0;
+    private static final int TAGS_PACKET = 1;
+    private static final int FIRST_AUDIO_PACKET = 2;
+
+    private final ByteBuffer data;
+    private final OpusPacketIndex.Builder builder;
+    private int packetIndex;
+
+    /**
+     * 创建 OggOpusDemuxer 实例。
+     * @param data 整个文件的数据
+     * @param builder 索引登记入口
+     */
+    OggOpusDemuxer(ByteBuffer data, OpusPacketIndex.Builder builder) {
+        this.data = data;
+        this.builder = builder;
+    }
+
+
+    /**
+     * 解析全部页面。
+     * @throws IOException 不满足直通条件
+     */
+    void demux() throws IOException {
+        int limit = data.limit();
+        int position = 0;
+        int serial = 0;
+        boolean spanning = false;
+        while (position + PAGE_HEADER_BYTES <= limit) {
+            if (data.getInt(position) != CAPTURE_PATTERN) {
+                throw new IOException("Ogg capture pattern lost at " + position);
+            }
+            if (data.get(position + 4) != 0) {
+                throw new IOException("unsupported Ogg version");
+            }
+            int headerType = data.get(position + 5) & 0xff;
+            int pageSerial = data.getInt(position + 14);
+            if (position == 0) {
+                serial = pageSerial;
+            } else if (pageSerial != serial) {
+                throw new IOException("multiplexed Ogg streams");
+            }
+            int segments = data.get(position + 26) & 0xff;
+            int body = position + PAGE_HEADER_BYTES + segments;
+            if (body > limit) {
+                break;
+            }
+            if (((headerType & FLAG_CONTINUED) != 0) != spanning) {
+                throw new IOException("Ogg continuation mismatch at " + position);
+            }
+            int packetStart = body;
+            int cursor = body;
+            for (int i = 0; i < segments; i++) {
+                int lace = data.get(position + PAGE_HEADER_BYTES + i) & 0xff;
+                cursor += lace;
+                if (lace == LACING_CONTINUE) {
+                    continue;
+                }
+                if (cursor > limit) {
+                    return;
+                }
+                if (spanning) {
+                    // 跨页包的尾部：只有 OpusTags 允许跨页，整包跳过。
+                    spanning = false;
+                    packetIndex++;
+                } else {
+                    onPacket(packetStart, cursor - packetStart);
+                }
+                packetStart = cursor;
+            }
+            if (packetStart != cursor) {
+                if (packetIndex == TAGS_PACKET) {
+                    spanning = true;
+                } else {
+                    throw new IOException("Opus packet spans Ogg pages at frame " + (packetIndex - FIRST_AUDIO_PACKET));
+                }
+            }
+            position = cursor;
+        }
+    }
+
+    private void onPacket(int offset, int length) throws IOException {
+        int index = packetIndex++;
+        if (index == HEAD_PACKET) {
+            builder.head(offset, length);
+        } else if (index >= FIRST_AUDIO_PACKET) {
+            builder.add(offset, length);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package pub.longyi.ts3audiobot.audio;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pub.longyi.ts3audiobot.config.AppConfig;
+import pub.longyi.ts3audiobot.config.ConfigService;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 20:10
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OpusComplexityGovernor 相关功能。
+ */
+
+
+/**
+ * 所有机器人共享的 Opus 编码复杂度调节器。
+ *
+ * <p>职责：汇总各机器人每帧的编码耗时，每秒把总耗时与 CPU 预算（核数 × 配置的百分比）比较一次。
+ * 超出预算时优先把耗时最多的机器人降一档，直到预计节省的耗时覆盖超出部分；单帧编码耗时超过半个帧长的机器人
+ * 无论总量如何都会降档。总耗时低于预算的 {@value #RAISE_BELOW_PERCENT}% 时每次只给复杂度最低的一个机器人升一档，
+ * 避免在预算边缘来回振荡。</p>
+ * <p>线程安全：线程安全；{@link Handle#recordEncode(long)} 可由多个编码线程并发调用。</p>
+ * <p>约束：复杂度范围 [{@value #MIN_COMPLEXITY}, {@value #MAX_COMPLEXITY}]；预算为 0 时关闭调节，所有机器人保持最高复杂度。</p>
+ */
+@Slf4j
+@Component
+public final class OpusComplexityGovernor {
+    public static final int MIN_COMPLEXITY = 0;
+    public static final int MAX_COMPLEXITY = 10;
+    static final int RAISE_BELOW_PERCENT = 75;
+    // 经验值：Concentus 每降一档复杂度，编码耗时大约减少一成。
+    static final int STEP_SAVING_PERCENT = 10;
+    static final long FRAME_BUDGET_NS = FrameClock.PERIOD_NS / 2;
+    private static final long INTERVAL_MS = 1000L;
+    private static final String THREAD_NAME = "audio-complexity-governor";
+
+    private final int cpuPercent;
+    private final int processors;
+    private final Map<String, Handle> handles = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+
+    private ScheduledExecutorService scheduler;
+    private long lastEvaluationNs;
+    private volatile double loadPercent;
+
+    /**
+     * 创建 OpusComplexityGovernor 实例。
+     * @param configService 参数 configService
+     */
+    @Autowired
+    public OpusComplexityGovernor(ConfigService configService) {
+        this(resolveCpuPercent(configService), Runtime.getRuntime().availableProcessors());
+    }
+
+    OpusComplexityGovernor(int cpuPercent, int processors) {
+        this.cpuPercent = Math.max(0, Math.min(100, cpuPercent));
+        this.processors = Math.max(1, processors);
+    }
+
+
+    /**
+     * 取得机器人的调节句柄，同名机器人共用一个句柄；首次注册时启动调节线程。
+     * @param name 机器人 ID
+     * @return 句柄
+     */
+    public Handle register(String name) {
+        String key = name == null || name.isBlank() ? "unnamed" : name;
+        Handle handle = handles.computeIfAbsent(key, Handle::new);
+        if (isEnabled()) {
+            synchronized (lock) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, THREAD_NAME);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    lastEvaluationNs = System.nanoTime();
+                    scheduler.scheduleWithFixedDelay(this::evaluateSafely, INTERVAL_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    log.info("[Audio] complexity governor started cpuPercent={} processors={}", cpuPercent, processors);
+                }
+            }
+        }
+        return handle;
+    }
+
+
+    /**
+     * 机器人移除后丢弃其句柄。
+     * @param name 机器人 ID
+     */
+    public void remove(String name) {
+        if (name != null) {
+            handles.remove(name);
+        }
+    }
+
+
+    /**
+     * 生成各机器人当前复杂度的快照。
+     * @return 快照
+     */
+    public GovernorStats snapshot() {
+        List<BotComplexity> bots = new ArrayList<>(handles.size());
+        for (Handle handle : handles.values()) {
+            long frames = handle.lastFrames;
+            bots.add(new BotComplexity(
+                handle.name,
+                handle.complexity,
+                frames,
+                frames == 0L ? 0L : handle.lastNanos / frames / 1000L
+            ));
+        }
+        bots.sort(Comparator.comparing(BotComplexity::name));
+        return new GovernorStats(isEnabled(), cpuPercent, processors, loadPercent, bots);
+    }
+
+
+    /**
+     * 执行 shutdown 操作。
+     */
+    @PreDestroy
+    public void shutdown() {
+        synchronized (lock) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
+
+    /**
+     * 按上一个统计窗口的耗时调整各机器人的复杂度。
+     * @param elapsedNs 统计窗口长度
+     */
+    void evaluate(long elapsedNs) {
+        if (!isEnabled() || elapsedNs <= 0L) {
+            return;
+        }
+        List<Handle> active = new ArrayList<>(handles.size());
+        long total = 0L;
+        for (Handle handle : handles.values()) {
+            handle.lastNanos = handle.encodeNanos.sumThenReset();
+            handle.lastFrames = handle.frames.sumThenReset();
+            if (handle.lastFrames > 0L) {
+                active.add(handle);
+                total += handle.lastNanos;
+            }
+        }
+        double capacity = (double) elapsedNs * processors;
+        loadPercent = total * 100.0 / capacity;
+        long budget = (long) (capacity * cpuPercent / 100.0);
+        if (total > budget) {
+            lower(active, total - budget);
+        } else {
+            for (Handle handle : active) {
+                if (handle.lastNanos / handle.lastFrames > FRAME_BUDGET_NS) {
+                    step(handle, -1);
+                }
+            }
+            if (total < budget / 100L * RAISE_BELOW_PERCENT) {
+                raiseOne(active);
+            }
+        }
+    }
+
+    private void lower(List<Handle> active, long excess) {
+        active.sort(Comparator.comparingLong((Handle handle) -> handle.lastNanos).reversed());
+        long remaining = excess;
+        for (Handle handle : active) {
+            if (remaining <= 0L) {
+                break;
+            }
+            if (step(handle, -1)) {
+                remaining -= handle.lastNanos / 100L * STEP_SAVING_PERCENT;
+            }
+        }
+    }
+
+    private void raiseOne(List<Handle> active) {
+        Handle candidate = null;
+        for (Handle handle : active) {
+            if (handle.complexity >= MAX_COMPLEXITY
+                || handle.lastNanos / handle.lastFrames > FRAME_BUDGET_NS / 100L * RAISE_BELOW_PERCENT) {
+                continue;
+            }
+            if (candidate == null
+                || handle.complexity < candidate.complexity
+                || (handle.complexity == candidate.complexity && handle.lastNanos < candidate.lastNanos)) {
+                candidate = handle;
+            }
+        }
+        if (candidate != null) {
+            step(candidate, 1);
+        }
+    }
+
+    private boolean step(Handle handle, int delta) {
+        int current = handle.complexity;
+        int next = Math.max(MIN_COMPLEXITY, Math.min(MAX_COMPLEXITY, current + delta));
+        if (next == current) {
+            return false;
+        }
+        handle.complexity = next;
+        log.info(
+            "[Audio] opus complexity bot={} {}->{} load={}%",
+            handle.name,
+            current,
+            next,
+            String.format("%.1f", loadPercent)
+        );
+        return true;
+    }
+
+    private void evaluateSafely() {
+        long now = System.nanoTime();
+        long elapsed = now - lastEvaluationNs;
+        lastEvaluationNs = now;
+        try {
+            evaluate(elapsed);
+        } catch (RuntimeException ex) {
+            log.warn("[Audio] complexity governor evaluation failed", ex);
+        }
+    }
+
+    private boolean isEnabled() {
+        return cpuPercent > 0;
+    }
+
+    private static int resolveCpuPercent(ConfigService configService) {
+        AppConfig config = configService == null ? null : configService.get();
+        if (config == null || config.audio == null) {
+            return AppConfig.Audio.DEFAULT_ENCODE_CPU_PERCENT;
+        }
+        return config.audio.encodeCpuPercent;
+    }
+
+    /**
+     * 单个机器人的编码耗时统计与目标复杂度。
+     *
+     * <p>线程安全：编码线程记录耗时、读取复杂度；只有调节线程修改复杂度。</p>
+     */
+    public static final class Handle {
+        private final String name;
+        private final LongAdder encodeNanos = new LongAdder();
+        private final LongAdder frames = new LongAdder();
+        private volatile int complexity = MAX_COMPLEXITY;
+        private volatile long lastNanos;
+        private volatile long lastFrames;
+
+        private Handle(String name) {
+            this.name = name;
+        }
+
+
+        /**
+         * 记录一帧的编码耗时。
+         * @param nanos 耗时（纳秒）
+         */
+        public void recordEncode(long nanos) {
+            encodeNanos.add(nanos);
+            frames.increment();
+        }
+
+
+        /**
+         * 执行 complexity 操作。
+         * @return 编码器应使用的复杂度
+         */
+        public int complexity() {
+            return complexity;
+        }
+    }
+
+    /**
+     * 调节器快照。
+     * @param enabled 是否启用调节
+     * @param cpuPercent 编码可占用的 CPU 百分比（按全部核心计）
+     * @param processors 可用核心数
+     * @param loadPercent 上一个统计窗口内编码实际占用的 CPU 百分比
+     * @param bots 各机器人的复杂度
+     */
+    public record GovernorStats(
+        boolean enabled,
+        int cpuPercent,
+        int processors,
+        double loadPercent,
+        List<BotComplexity> bots
+    ) {
+    }
+
+    /**
+     * 单个机器人的复杂度快照。
+     * @param name 机器人 ID
+     * @param complexity 当前复杂度
+     * @param frames 上一个统计窗口内编码的帧数（含多码率车道）
+     * @param avgEncodeMicros 上一个统计窗口内的单帧平均编码耗时（微秒）
+     */
+    public record BotComplexity(String name, int complexity, long frames, long avgEncodeMicros) {
+    }
+}
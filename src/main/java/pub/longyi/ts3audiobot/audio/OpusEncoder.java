@@ -27,4 +27,29 @@ public interface OpusEncoder {
      * @return 返回值
      */
     byte[] encode(byte[] pcm, int length, PcmFormat format);
+
+    /**
+     * 将一帧 PCM 编码到调用方提供的缓冲区，避免每帧分配结果数组。
+     * @param pcm 参数 pcm
+     * @param length 参数 length
+     * @param format 参数 format
+     * @param out 输出缓冲区
+     * @param outOffset 输出起始位置
+     * @return 写入的字节数，编码失败或输入为空时返回 0
+     */
+    int encode(byte[] pcm, int length, PcmFormat format, byte[] out, int outOffset);
+
+    /**
+     * 调整编码复杂度，默认不处理。
+     * @param complexity 复杂度 0-10，越高音质越好、耗时越多
+     */
+    default void setComplexity(int complexity) {
+    }
+
+    /**
+     * 声明预期丢包率，大于 0 时启用带内 FEC，默认不处理。
+     * @param percent 预期丢包率 0-100
+     */
+    default void setExpectedPacketLoss(int percent) {
+    }
 }
@@ -41,4 +41,28 @@ public final class OpusEncoderStub implements OpusEncoder {
         System.arraycopy(pcm, 0, copy, 0, length);
         return copy;
     }
+
+
+    /**
+     * 执行 encode 操作（写入调用方缓冲区）。
+     * @param pcm 参数 pcm
+     * @param length 参数 length
+     * @param format 参数 format
+     * @param out 参数 out
+     * @param outOffset 参数 outOffset
+     * @return 返回值
+     */
+    @Override
+    public int encode(byte[] pcm, int length, PcmFormat format, byte[] out, int outOffset) {
+        if (pcm == null || length <= 0 || out == null) {
+            return 0;
+        }
+        if (!warned) {
+            log.warn("Opus encoder stub in use. Replace with native libopus binding.");
+            warned = true;
+        }
+        int copied = Math.min(length, out.length - outOffset);
+        System.arraycopy(pcm, 0, out, outOffset, copied);
+        return copied;
+    }
 }
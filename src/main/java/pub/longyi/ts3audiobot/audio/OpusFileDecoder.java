@@ -0,0 +1,203 @@
+package pub.longyi.ts3audiobot.audio;
+
+import io.github.jaredmdobson.concentus.OpusDecoder;
+import io.github.jaredmdobson.concentus.OpusException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:15
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OpusFileDecoder 相关功能。
+ */
+
+
+/**
+ * 本地 Opus 文件（Ogg/WebM）的进程内解码器，用 Concentus 代替 ffmpeg 子进程。
+ *
+ * <p>职责：按 {@link OpusPacketIndex#openForDecode} 建立的包索引逐包解码为 48 kHz PCM，拼成定长帧后写入
+ * {@link AudioFrameConsumer}；开头按 OpusHead 的 pre-skip 裁剪，跳转时从目标位置前 {@value #PREROLL_MS}ms
+ * 开始解码以让解码器状态收敛，预滚部分丢弃。输入结束后调用 onFinish。</p>
+ * <p>线程安全：{@link #start(long)}/{@link #stop()} 互斥执行；解码在单独的守护线程中进行，
+ * 由 consumer 通过阻塞施加背压。</p>
+ * <p>约束：输出采样率必须为 48 kHz；单声道源按输出声道数由解码器上混。损坏的包以等长静音代替，
+ * 保持时间轴不变；末尾不足一帧的采样被丢弃。</p>
+ */
+@Slf4j
+final class OpusFileDecoder implements PcmSource {
+    static final int PREROLL_MS = 80;
+    private static final int PREROLL_SAMPLES = OpusPacketIndex.OPUS_SAMPLE_RATE / 1000 * PREROLL_MS;
+    private static final long STOP_TIMEOUT_MS = 2000L;
+    private static final String THREAD_NAME = "opus-file-decoder";
+
+    private final OpusPacketIndex index;
+    private final PcmFormat format;
+    private final int frameMs;
+    private final AudioFrameConsumer consumer;
+    private final Runnable onFinish;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private AtomicBoolean session;
+    private Thread decoderThread;
+
+    /**
+     * 创建 OpusFileDecoder 实例。
+     * @param index 解码用的包索引
+     * @param format 输出 PCM 格式
+     * @param frameMs 输出帧长（毫秒）
+     * @param consumer PCM 帧消费者
+     * @param onFinish 输入结束回调，可为 null
+     */
+    OpusFileDecoder(
+        OpusPacketIndex index,
+        PcmFormat format,
+        int frameMs,
+        AudioFrameConsumer consumer,
+        Runnable onFinish
+    ) {
+        if (format.sampleRate() != OpusPacketIndex.OPUS_SAMPLE_RATE) {
+            throw new IllegalArgumentException("Opus decoding requires 48kHz output");
+        }
+        this.index = index;
+        this.format = format;
+        this.frameMs = frameMs;
+        this.consumer = consumer;
+        this.onFinish = onFinish;
+    }
+
+
+    /**
+     * 从指定位置开始解码。
+     * @param positionMs 起始位置（毫秒）
+     */
+    synchronized void start(long positionMs) {
+        stop();
+        AtomicBoolean current = new AtomicBoolean(true);
+        session = current;
+        running.set(true);
+        decoderThread = new Thread(() -> decodeLoop(Math.max(0L, positionMs), current), THREAD_NAME);
+        decoderThread.setDaemon(true);
+        decoderThread.start();
+    }
+
+
+    /**
+     * 执行 stop 操作。
+     */
+    @Override
+    public synchronized void stop() {
+        running.set(false);
+        if (session != null) {
+            session.set(false);
+            session = null;
+        }
+        Thread thread = decoderThread;
+        decoderThread = null;
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * 执行 isRunning 操作。
+     * @return 是否仍在解码
+     */
+    @Override
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private void decodeLoop(long positionMs, AtomicBoolean current) {
+        int channels = format.channels();
+        OpusDecoder decoder;
+        try {
+            decoder = new OpusDecoder(OpusPacketIndex.OPUS_SAMPLE_RATE, channels);
+        } catch (OpusException ex) {
+            log.error("[Audio] opus decoder init failed", ex);
+            finish(current);
+            return;
+        }
+        short[] pcm = new short[OpusPacketIndex.MAX_PACKET_SAMPLES * channels];
+        byte[] packet = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+        byte[] frame = new byte[format.frameBytes(frameMs)];
+        int filled = 0;
+        int corrupt = 0;
+        long target = index.preSkip() + positionMs * (OpusPacketIndex.OPUS_SAMPLE_RATE / 1000);
+        int packetCount = index.frameCount();
+        int first = 0;
+        long firstStart = 0L;
+        while (first < packetCount && firstStart + index.packetSamples(first) <= target) {
+            firstStart += index.packetSamples(first);
+            first++;
+        }
+        int packetIndex = first;
+        long decodeStart = firstStart;
+        while (packetIndex > 0 && firstStart - decodeStart < PREROLL_SAMPLES) {
+            packetIndex--;
+            decodeStart -= index.packetSamples(packetIndex);
+        }
+        long discard = target - decodeStart;
+        for (; packetIndex < packetCount && isCurrent(current); packetIndex++) {
+            int length = index.read(packetIndex, packet);
+            int decoded;
+            try {
+                decoded = decoder.decode(packet, 0, length, pcm, 0, OpusPacketIndex.MAX_PACKET_SAMPLES, false);
+            } catch (OpusException ex) {
+                corrupt++;
+                decoded = index.packetSamples(packetIndex);
+                Arrays.fill(pcm, 0, decoded * channels, (short) 0);
+            }
+            int sample = (int) Math.min(discard, decoded);
+            discard -= sample;
+            while (sample < decoded) {
+                int copy = Math.min(decoded - sample, (frame.length - filled) / (2 * channels));
+                int end = (sample + copy) * channels;
+                for (int i = sample * channels; i < end; i++) {
+                    short value = pcm[i];
+                    frame[filled++] = (byte) value;
+                    frame[filled++] = (byte) (value >> 8);
+                }
+                sample += copy;
+                if (filled == frame.length) {
+                    consumer.onPcmFrame(frame, frame.length, format);
+                    filled = 0;
+                    if (!isCurrent(current)) {
+                        return;
+                    }
+                }
+            }
+        }
+        if (corrupt > 0) {
+            log.warn("[Audio] opus decode replaced {} corrupt packets with silence", corrupt);
+        }
+        finish(current);
+    }
+
+    private void finish(AtomicBoolean current) {
+        if (!isCurrent(current)) {
+            return;
+        }
+        running.set(false);
+        log.info("[Audio] opus file decode ended");
+        if (onFinish != null) {
+            onFinish.run();
+        }
+    }
+
+    private boolean isCurrent(AtomicBoolean current) {
+        return running.get() && current.get();
+    }
+}
@@ -0,0 +1,119 @@
+package pub.longyi.ts3audiobot.audio;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 10:12
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OpusFrameEncoder 相关功能。
+ */
+
+
+/**
+ * 单个机器人的 PCM → Opus 帧编码路径。
+ *
+ * <p>职责：在每机器人独享的临时缓冲区上就地应用音量并编码，稳态下每帧零分配；
+ * 配置了复杂度调节句柄时记录每帧编码耗时，并在编码前切换到调节器给出的复杂度。</p>
+ * <p>线程安全：非线程安全，同一时刻只能由该机器人的一个编码线程调用。</p>
+ * <p>约束：{@link #output()} 返回的数组会被下一帧覆盖，调用方需在下一次编码前消费完毕。</p>
+ */
+final class OpusFrameEncoder {
+    static final int MAX_OPUS_PACKET = 4096;
+
+    private final OpusEncoder encoder;
+    private final OpusComplexityGovernor.Handle governor;
+    private final byte[] pcmScratch;
+    private final byte[] opusScratch = new byte[MAX_OPUS_PACKET];
+
+    /**
+     * 创建 OpusFrameEncoder 实例。
+     * @param encoder 参数 encoder
+     * @param frameBytes 单帧 PCM 字节数
+     */
+    OpusFrameEncoder(OpusEncoder encoder, int frameBytes) {
+        this(encoder, frameBytes, null);
+    }
+
+
+    /**
+     * 创建 OpusFrameEncoder 实例。
+     * @param encoder 参数 encoder
+     * @param frameBytes 单帧 PCM 字节数
+     * @param governor 所属机器人的复杂度调节句柄，null 表示固定复杂度
+     */
+    OpusFrameEncoder(OpusEncoder encoder, int frameBytes, OpusComplexityGovernor.Handle governor) {
+        this.encoder = encoder;
+        this.governor = governor;
+        this.pcmScratch = new byte[Math.max(0, frameBytes)];
+    }
+
+
+    /**
+     * 编码一帧 PCM，结果写入 {@link #output()}。
+     * @param pcm 参数 pcm
+     * @param length 参数 length
+     * @param format 参数 format
+     * @param volumePercent 音量百分比
+     * @return Opus 字节数，0 表示编码失败
+     */
+    int encode(byte[] pcm, int length, PcmFormat format, int volumePercent) {
+        return encode(pcm, length, format, volumePercent, opusScratch);
+    }
+
+
+    /**
+     * 编码一帧 PCM 并直接写入调用方提供的缓冲区。
+     * @param pcm 参数 pcm
+     * @param length 参数 length
+     * @param format 参数 format
+     * @param volumePercent 音量百分比
+     * @param out 输出缓冲区，长度不小于 {@link #MAX_OPUS_PACKET}
+     * @return Opus 字节数，0 表示编码失败
+     */
+    int encode(byte[] pcm, int length, PcmFormat format, int volumePercent, byte[] out) {
+        return encodeWithGain(pcm, length, format, PcmDsp.gainForVolume(volumePercent), out);
+    }
+
+
+    /**
+     * 以 Q14 增益编码一帧 PCM 并直接写入调用方提供的缓冲区。
+     * @param pcm 参数 pcm
+     * @param length 参数 length
+     * @param format 参数 format
+     * @param gain Q14 增益（音量与响度归一化的乘积）
+     * @param out 输出缓冲区，长度不小于 {@link #MAX_OPUS_PACKET}
+     * @return Opus 字节数，0 表示编码失败
+     */
+    int encodeWithGain(byte[] pcm, int length, PcmFormat format, int gain, byte[] out) {
+        if (pcm == null || length <= 0) {
+            return 0;
+        }
+        byte[] source = pcm;
+        int sourceLength = length;
+        if (gain != PcmDsp.UNITY_GAIN) {
+            // 单位增益时编码器直接读取源帧；其余情况写入临时缓冲区，不修改读取线程的帧缓冲。
+            sourceLength = Math.min(length, pcmScratch.length);
+            PcmDsp.applyGain(pcm, sourceLength, pcmScratch, gain);
+            source = pcmScratch;
+        }
+        if (governor == null) {
+            return encoder.encode(source, sourceLength, format, out, 0);
+        }
+        encoder.setComplexity(governor.complexity());
+        long started = System.nanoTime();
+        int encoded = encoder.encode(source, sourceLength, format, out, 0);
+        governor.recordEncode(System.nanoTime() - started);
+        return encoded;
+    }
+
+
+    /**
+     * 执行 output 操作。
+     * @return 最近一次编码结果所在的缓冲区
+     */
+    byte[] output() {
+        return opusScratch;
+    }
+}
@@ -0,0 +1,306 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 15:45
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OpusFrameFile 相关功能。
+ */
+
+
+/**
+ * 预编码 Opus 帧缓存文件的读写。
+ *
+ * <p>职责：文件由 20 字节头（魔数、版本、帧长毫秒、码率、Q14 增益）与若干“2 字节大端长度 + Opus 包”组成，
+ * 版本 1 的 16 字节头按单位增益读取；
+ * 写入先落到同目录的唯一临时文件，完整结束后原子改名提交；读取时整体内存映射并建立帧偏移索引，跳转即按帧序号定位。</p>
+ * <p>线程安全：{@link Writer} 与 {@link Reader} 实例均只允许单线程使用。</p>
+ * <p>约束：单帧长度不超过 {@link OpusFrameEncoder#MAX_OPUS_PACKET}。</p>
+ */
+public final class OpusFrameFile {
+    static final int MAGIC = 0x54534F46;
+    static final int VERSION = 2;
+    static final int VERSION_WITHOUT_GAIN = 1;
+    static final int HEADER_BYTES = 20;
+    static final int HEADER_BYTES_WITHOUT_GAIN = 16;
+    private static final String PART_SUFFIX = ".part";
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    private OpusFrameFile() {
+    }
+
+
+    /**
+     * 创建写入器，数据先写入 {@code target} 同目录下的临时文件。
+     * @param target 提交后的目标文件
+     * @param frameMs 帧长（毫秒）
+     * @param bitrate 编码码率
+     * @return 写入器
+     * @throws IOException 创建临时文件失败
+     */
+    public static Writer create(Path target, int frameMs, int bitrate) throws IOException {
+        return create(target, frameMs, bitrate, PcmDsp.UNITY_GAIN);
+    }
+
+
+    /**
+     * 创建写入器，记录编码时已应用的响度归一化增益。
+     * @param target 提交后的目标文件
+     * @param frameMs 帧长（毫秒）
+     * @param bitrate 编码码率
+     * @param gain 编码前应用的 Q14 增益
+     * @return 写入器
+     * @throws IOException 创建临时文件失败
+     */
+    public static Writer create(Path target, int frameMs, int bitrate, int gain) throws IOException {
+        // 临时文件名唯一，多个机器人同时录制同一曲目时互不干扰，最后提交者覆盖。
+        Path part = Files.createTempFile(target.getParent(), target.getFileName() + "-", PART_SUFFIX);
+        OutputStream output = new BufferedOutputStream(Files.newOutputStream(part), WRITE_BUFFER_BYTES);
+        Writer writer = new Writer(target, part, output);
+        writer.writeHeader(frameMs, bitrate, gain);
+        return writer;
+    }
+
+
+    /**
+     * 以内存映射方式打开缓存文件。
+     * @param file 缓存文件
+     * @return 读取器
+     * @throws IOException 文件不可读或格式不符
+     */
+    public static Reader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES_WITHOUT_GAIN || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid opus frame file size " + size + ": " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            // 预先载入页面，避免帧时钟线程在发送时触发缺页读盘。
+            mapped.load();
+            return new Reader(file, mapped);
+        }
+    }
+
+    /**
+     * 缓存写入器。
+     */
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path part;
+        private final OutputStream output;
+        private int frames;
+        private boolean closed;
+
+        private Writer(Path target, Path part, OutputStream output) {
+            this.target = target;
+            this.part = part;
+            this.output = output;
+        }
+
+        private void writeHeader(int frameMs, int bitrate, int gain) throws IOException {
+            writeInt(MAGIC);
+            writeInt(VERSION);
+            writeInt(frameMs);
+            writeInt(bitrate);
+            writeInt(gain);
+        }
+
+
+        /**
+         * 追加一帧。
+         * @param data 参数 data
+         * @param length 参数 length
+         * @throws IOException 写入失败
+         */
+        public void append(byte[] data, int length) throws IOException {
+            if (length <= 0 || length > OpusFrameEncoder.MAX_OPUS_PACKET) {
+                throw new IOException("Invalid opus frame length " + length);
+            }
+            output.write(length >>> 8);
+            output.write(length);
+            output.write(data, 0, length);
+            frames++;
+        }
+
+
+        /**
+         * 执行 frames 操作。
+         * @return 已写入帧数
+         */
+        public int frames() {
+            return frames;
+        }
+
+
+        /**
+         * 写入完成：刷盘并原子替换目标文件。
+         * @return 提交后的目标文件
+         * @throws IOException 提交失败，临时文件会被删除
+         */
+        public Path commit() throws IOException {
+            try {
+                closed = true;
+                output.close();
+                try {
+                    Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return target;
+            } catch (IOException ex) {
+                Files.deleteIfExists(part);
+                throw ex;
+            }
+        }
+
+
+        /**
+         * 放弃写入并删除临时文件。
+         */
+        public void abort() {
+            close();
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+                // 临时文件随缓存目录过期一并清理。
+            }
+        }
+
+
+        /**
+         * 关闭输出流；未提交的数据保留在临时文件中，应调用 {@link #abort()} 清理。
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                output.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响后续删除。
+            }
+        }
+
+        private void writeInt(int value) throws IOException {
+            output.write(value >>> 24);
+            output.write(value >>> 16);
+            output.write(value >>> 8);
+            output.write(value);
+        }
+    }
+
+    /**
+     * 缓存读取器，映射随实例回收释放。
+     */
+    public static final class Reader implements OpusFrames {
+        private final ByteBuffer data;
+        private final int frameMs;
+        private final int bitrate;
+        private final int gain;
+        private final int[] offsets;
+        private final int frameCount;
+
+        private Reader(Path file, ByteBuffer data) throws IOException {
+            this.data = data;
+            int version = data.limit() < HEADER_BYTES_WITHOUT_GAIN ? 0 : data.getInt(4);
+            int headerBytes = version == VERSION ? HEADER_BYTES : HEADER_BYTES_WITHOUT_GAIN;
+            if (data.limit() < headerBytes
+                || data.getInt(0) != MAGIC
+                || (version != VERSION && version != VERSION_WITHOUT_GAIN)) {
+                throw new IOException("Unsupported opus frame file: " + file);
+            }
+            this.frameMs = data.getInt(8);
+            this.bitrate = data.getInt(12);
+            this.gain = version == VERSION ? data.getInt(16) : PcmDsp.UNITY_GAIN;
+            int[] index = new int[1024];
+            int count = 0;
+            int position = headerBytes;
+            int limit = data.limit();
+            while (position + 2 <= limit) {
+                int length = data.getShort(position) & 0xffff;
+                if (length == 0 || position + 2 + length > limit) {
+                    break;
+                }
+                if (count == index.length) {
+                    index = Arrays.copyOf(index, count * 2);
+                }
+                index[count++] = position;
+                position += 2 + length;
+            }
+            this.offsets = index;
+            this.frameCount = count;
+        }
+
+
+        /**
+         * 读取指定帧到调用方缓冲区。
+         * @param frameIndex 帧序号
+         * @param out 输出缓冲区，长度不小于 {@link OpusFrameEncoder#MAX_OPUS_PACKET}
+         * @return 帧字节数
+         */
+        @Override
+        public int read(int frameIndex, byte[] out) {
+            int position = offsets[frameIndex];
+            int length = data.getShort(position) & 0xffff;
+            data.get(position + 2, out, 0, length);
+            return length;
+        }
+
+
+        /**
+         * 执行 frameCount 操作。
+         * @return 帧数
+         */
+        @Override
+        public int frameCount() {
+            return frameCount;
+        }
+
+
+        /**
+         * 执行 frameMs 操作。
+         * @return 帧长（毫秒）
+         */
+        @Override
+        public int frameMs() {
+            return frameMs;
+        }
+
+
+        /**
+         * 执行 bitrate 操作。
+         * @return 编码码率
+         */
+        public int bitrate() {
+            return bitrate;
+        }
+
+
+        /**
+         * 执行 gain 操作。
+         * @return 编码前应用的 Q14 增益
+         */
+        public int gain() {
+            return gain;
+        }
+    }
+}
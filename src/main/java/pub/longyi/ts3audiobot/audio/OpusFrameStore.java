@@ -0,0 +1,77 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 16:10
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OpusFrameStore 接口相关功能。
+ */
+
+
+/**
+ * 预编码 Opus 帧缓存的存放位置。
+ *
+ * <p>职责：按曲目与码率定位已提交的缓存文件，并为新录制的缓存分配目标路径；开头片段（曲目前几秒的预编码帧）
+ * 与完整缓存格式相同、分开存放。</p>
+ * <p>线程安全：实现需支持多线程调用。</p>
+ * <p>约束：缓存关闭时查找返回空、目标路径返回 null。</p>
+ */
+public interface OpusFrameStore {
+    /**
+     * 查找已提交的缓存文件。
+     * @param trackId 曲目 ID
+     * @param bitrate 编码码率
+     * @return 缓存文件
+     */
+    Optional<Path> findOpusFrames(String trackId, int bitrate);
+
+    /**
+     * 分配缓存文件的目标路径。
+     * @param trackId 曲目 ID
+     * @param bitrate 编码码率
+     * @return 目标路径，缓存关闭时返回 null
+     */
+    Path opusFramesTarget(String trackId, int bitrate);
+
+    /**
+     * 缓存文件已原子提交。
+     * @param trackId 曲目 ID
+     * @param file 已提交的文件
+     */
+    void onOpusFramesCommitted(String trackId, Path file);
+
+    /**
+     * 查找已提交的开头片段。
+     * @param trackId 曲目 ID
+     * @param bitrate 编码码率
+     * @return 片段文件
+     */
+    default Optional<Path> findOpusSnippet(String trackId, int bitrate) {
+        return Optional.empty();
+    }
+
+    /**
+     * 分配开头片段的目标路径。
+     * @param trackId 曲目 ID
+     * @param bitrate 编码码率
+     * @return 目标路径，不保存片段时返回 null
+     */
+    default Path opusSnippetTarget(String trackId, int bitrate) {
+        return null;
+    }
+
+    /**
+     * 查找已缓存到本地的源音频，用于在播放前生成开头片段。
+     * @param trackId 曲目 ID
+     * @return 本地音频文件
+     */
+    default Optional<Path> findCachedAudio(String trackId) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,54 @@
+package pub.longyi.ts3audiobot.audio;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 16:40
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OpusFrames 接口相关功能。
+ */
+
+
+/**
+ * 已编码、可按帧序号随机读取的 Opus 帧序列。
+ *
+ * <p>职责：统一预编码缓存文件与可直通的 Opus 容器，供 {@link CachedOpusSource} 按节拍逐帧发送。</p>
+ * <p>线程安全：实现只需支持单线程读取。</p>
+ * <p>约束：所有帧时长相同，均为 {@link #frameMs()}。</p>
+ */
+interface OpusFrames {
+    /**
+     * 读取指定帧到调用方缓冲区。
+     * @param frameIndex 帧序号
+     * @param out 输出缓冲区，长度不小于 {@link OpusFrameEncoder#MAX_OPUS_PACKET}
+     * @return 帧字节数
+     */
+    int read(int frameIndex, byte[] out);
+
+    /**
+     * 执行 frameCount 操作。
+     * @return 帧数
+     */
+    int frameCount();
+
+    /**
+     * 执行 frameMs 操作。
+     * @return 帧长（毫秒）
+     */
+    int frameMs();
+
+    /**
+     * 把播放位置换算为帧序号。
+     * @param positionMs 播放位置（毫秒）
+     * @return 帧序号，不超过 {@link #frameCount()}
+     */
+    default int frameIndexOf(long positionMs) {
+        int frameMs = frameMs();
+        if (positionMs <= 0L || frameMs <= 0) {
+            return 0;
+        }
+        return (int) Math.min(frameCount(), positionMs / frameMs);
+    }
+}
@@ -0,0 +1,333 @@
+package pub.longyi.ts3audiobot.audio;
+
+import pub.longyi.ts3audiobot.ts3.protocol.ProtocolConst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 16:45
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OpusPacketIndex 相关功能。
+ */
+
+
+/**
+ * 本地 Opus 容器（Ogg/WebM）的包索引，用于跳过解码与重新编码直接发送原始 Opus 包。
+ *
+ * <p>职责：内存映射整个文件，由 {@link OggOpusDemuxer} 或 {@link WebmOpusDemuxer} 解复用出每个 Opus 包的
+ * 偏移与长度；{@link #open(Path)} 建立直通索引时逐包校验时长均为 20ms，{@link #openForDecode(Path)} 建立解码索引时
+ * 接受任意合法时长并记录每包采样数。任何不满足条件的情况都以 {@link IOException} 说明原因，调用方据此回退到 ffmpeg。</p>
+ * <p>线程安全：建立完成后只读，读取方法只允许单线程调用。</p>
+ * <p>约束：只支持单个音频轨、声道映射族 0（单声道/立体声）、输出增益为 0 的 Opus；直通时 OpusHead 的 pre-skip
+ * 不做裁剪（典型值约 6.5ms，可忽略），解码时由 {@link OpusFileDecoder} 裁掉。解码索引的帧序号即包序号，
+ * 不能用于按 20ms 帧直通。</p>
+ */
+final class OpusPacketIndex implements OpusFrames {
+    static final int OPUS_SAMPLE_RATE = 48000;
+    static final int FRAME_SAMPLES = OPUS_SAMPLE_RATE / 1000 * FrameClock.FRAME_MS;
+    private static final int OGG_CAPTURE = 0x4F676753;
+    private static final int EBML_MAGIC = 0x1A45DFA3;
+    private static final long OPUS_HEAD_MAGIC = 0x4F70757348656164L;
+    private static final int OPUS_HEAD_MIN_BYTES = 19;
+    private static final int[] SILK_FRAME_SAMPLES = {480, 960, 1920, 2880};
+    private static final int[] CELT_FRAME_SAMPLES = {120, 240, 480, 960};
+    static final int MAX_PACKET_SAMPLES = OPUS_SAMPLE_RATE / 1000 * 120;
+
+    private final ByteBuffer data;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] samples;
+    private final int frameCount;
+    private final int channels;
+    private final int preSkip;
+    private final long payloadBytes;
+    private final int maxPacketBytes;
+
+    private OpusPacketIndex(Builder builder) {
+        this.data = builder.data;
+        this.offsets = builder.offsets;
+        this.lengths = builder.lengths;
+        this.samples = builder.samples;
+        this.frameCount = builder.count;
+        this.channels = builder.channels;
+        this.preSkip = builder.preSkip;
+        this.payloadBytes = builder.payloadBytes;
+        this.maxPacketBytes = builder.maxPacketBytes;
+    }
+
+
+    /**
+     * 打开本地文件并建立包索引，按文件头识别 Ogg 或 WebM/Matroska。
+     * @param file 本地音频文件
+     * @return 包索引
+     * @throws IOException 文件不可读，或不满足直通条件（消息为原因）
+     */
+    static OpusPacketIndex open(Path file) throws IOException {
+        return open(file, true);
+    }
+
+
+    /**
+     * 打开本地文件并建立解码用的包索引，包时长可为 2.5ms 至 120ms 的任意合法值。
+     * @param file 本地音频文件
+     * @return 包索引
+     * @throws IOException 文件不可读，或不是可解码的单轨 Opus（消息为原因）
+     */
+    static OpusPacketIndex openForDecode(Path file) throws IOException {
+        return open(file, false);
+    }
+
+    private static OpusPacketIndex open(Path file, boolean passthrough) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Integer.BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("unsupported file size " + size);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        Builder builder = new Builder(data, passthrough);
+        int magic = data.getInt(0);
+        if (magic == OGG_CAPTURE) {
+            new OggOpusDemuxer(data, builder).demux();
+        } else if (magic == EBML_MAGIC) {
+            new WebmOpusDemuxer(data, builder).demux();
+        } else {
+            throw new IOException("not an Ogg or WebM container");
+        }
+        return builder.build();
+    }
+
+
+    /**
+     * 执行 read 操作。
+     * @param frameIndex 帧序号
+     * @param out 输出缓冲区
+     * @return 帧字节数
+     */
+    @Override
+    public int read(int frameIndex, byte[] out) {
+        int length = lengths[frameIndex];
+        data.get(offsets[frameIndex], out, 0, length);
+        return length;
+    }
+
+
+    /**
+     * 执行 frameCount 操作。
+     * @return 帧数
+     */
+    @Override
+    public int frameCount() {
+        return frameCount;
+    }
+
+
+    /**
+     * 执行 frameMs 操作。
+     * @return 帧长（毫秒）
+     */
+    @Override
+    public int frameMs() {
+        return FrameClock.FRAME_MS;
+    }
+
+
+    /**
+     * 执行 channels 操作。
+     * @return 声道数
+     */
+    int channels() {
+        return channels;
+    }
+
+
+    /**
+     * 执行 packetSamples 操作。
+     * @param index 包序号
+     * @return 该包的采样数（每声道，48 kHz）
+     */
+    int packetSamples(int index) {
+        return samples == null ? FRAME_SAMPLES : samples[index];
+    }
+
+
+    /**
+     * 执行 preSkip 操作。
+     * @return 解码开头应丢弃的采样数（每声道，48 kHz）
+     */
+    int preSkip() {
+        return preSkip;
+    }
+
+
+    /**
+     * 执行 averageBitrate 操作。
+     * @return 按包负载计算的平均码率（bps）
+     */
+    int averageBitrate() {
+        long totalSamples = 0L;
+        for (int i = 0; i < frameCount; i++) {
+            totalSamples += packetSamples(i);
+        }
+        return (int) (payloadBytes * 8L * OPUS_SAMPLE_RATE / totalSamples);
+    }
+
+
+    /**
+     * 执行 maxPacketBytes 操作。
+     * @return 最大单包字节数
+     */
+    int maxPacketBytes() {
+        return maxPacketBytes;
+    }
+
+
+    /**
+     * 判断每个包都能装进一个 TS3 语音包。
+     * @return 最大单包不超过 {@link ProtocolConst#MAX_VOICE_DATA} 字节时为 true
+     */
+    boolean fitsVoicePacket() {
+        return maxPacketBytes <= ProtocolConst.MAX_VOICE_DATA;
+    }
+
+
+    /**
+     * 计算单个 Opus 包包含的采样数（48 kHz），依据 RFC 6716 第 3.1 节的 TOC 字节。
+     * @param data 数据
+     * @param offset 包起始偏移
+     * @param length 包长度
+     * @return 采样数，包不合法时返回 -1
+     */
+    static int packetSamples(ByteBuffer data, int offset, int length) {
+        if (length < 1) {
+            return -1;
+        }
+        int toc = data.get(offset) & 0xff;
+        int config = toc >>> 3;
+        int frameSamples;
+        if (config < 12) {
+            frameSamples = SILK_FRAME_SAMPLES[config & 3];
+        } else if (config < 16) {
+            frameSamples = (config & 1) == 0 ? 480 : 960;
+        } else {
+            frameSamples = CELT_FRAME_SAMPLES[config & 3];
+        }
+        int frames = switch (toc & 3) {
+            case 0 -> 1;
+            case 1, 2 -> 2;
+            default -> length < 2 ? -1 : data.get(offset + 1) & 0x3f;
+        };
+        return frames <= 0 ? -1 : frames * frameSamples;
+    }
+
+    /**
+     * 解复用器向索引登记 OpusHead 与音频包的入口。
+     */
+    static final class Builder {
+        private final ByteBuffer data;
+        private final boolean passthrough;
+        private int[] offsets = new int[1024];
+        private int[] lengths = new int[1024];
+        private int[] samples;
+        private int count;
+        private int channels;
+        private int preSkip;
+        private long payloadBytes;
+        private int maxPacketBytes;
+
+        private Builder(ByteBuffer data, boolean passthrough) {
+            this.data = data;
+            this.passthrough = passthrough;
+            this.samples = passthrough ? null : new int[1024];
+        }
+
+
+        /**
+         * 登记 OpusHead（Ogg 首包或 WebM 的 CodecPrivate）。
+         * @param offset 起始偏移
+         * @param length 长度
+         * @throws IOException 不是可直通的 OpusHead
+         */
+        void head(int offset, int length) throws IOException {
+            if (length < OPUS_HEAD_MIN_BYTES || data.getLong(offset) != OPUS_HEAD_MAGIC) {
+                throw new IOException("missing OpusHead");
+            }
+            int version = data.get(offset + 8) & 0xff;
+            int channelCount = data.get(offset + 9) & 0xff;
+            // OpusHead 字段为小端序。
+            short outputGain = Short.reverseBytes(data.getShort(offset + 16));
+            int mappingFamily = data.get(offset + 18) & 0xff;
+            if ((version >>> 4) != 0) {
+                throw new IOException("unsupported OpusHead version " + version);
+            }
+            if (mappingFamily != 0 || channelCount < 1 || channelCount > 2) {
+                throw new IOException("unsupported channel layout channels=" + channelCount + " family=" + mappingFamily);
+            }
+            if (outputGain != 0) {
+                throw new IOException("non-zero output gain " + outputGain);
+            }
+            channels = channelCount;
+            preSkip = Short.toUnsignedInt(Short.reverseBytes(data.getShort(offset + 10)));
+        }
+
+
+        /**
+         * 登记一个音频包。
+         * @param offset 起始偏移
+         * @param length 长度
+         * @throws IOException 包长度或时长不满足索引条件
+         */
+        void add(int offset, int length) throws IOException {
+            if (channels == 0) {
+                throw new IOException("audio packet before OpusHead");
+            }
+            if (length <= 0 || length > OpusFrameEncoder.MAX_OPUS_PACKET) {
+                throw new IOException("invalid packet length " + length + " at frame " + count);
+            }
+            int packetSamples = packetSamples(data, offset, length);
+            if (passthrough && packetSamples != FRAME_SAMPLES) {
+                throw new IOException(
+                    "packet of " + packetSamples + " samples at frame " + count + ", need " + FRAME_SAMPLES
+                );
+            }
+            if (packetSamples <= 0 || packetSamples > MAX_PACKET_SAMPLES) {
+                throw new IOException("invalid packet of " + packetSamples + " samples at frame " + count);
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                if (samples != null) {
+                    samples = Arrays.copyOf(samples, count * 2);
+                }
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+            if (samples != null) {
+                samples[count] = packetSamples;
+            }
+            count++;
+            payloadBytes += length;
+            maxPacketBytes = Math.max(maxPacketBytes, length);
+        }
+
+        private OpusPacketIndex build() throws IOException {
+            if (channels == 0) {
+                throw new IOException("missing OpusHead");
+            }
+            if (count == 0) {
+                throw new IOException("no audio packets");
+            }
+            return new OpusPacketIndex(this);
+        }
+    }
+}
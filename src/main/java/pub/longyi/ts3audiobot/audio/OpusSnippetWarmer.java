@@ -0,0 +1,292 @@
+package pub.longyi.ts3audiobot.audio;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pub.longyi.ts3audiobot.config.AppConfig;
+import pub.longyi.ts3audiobot.config.ConfigService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:40
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 OpusSnippetWarmer 相关功能。
+ */
+
+
+/**
+ * 所有机器人共享的开头片段生成器。
+ *
+ * <p>职责：曲目加入队列或成为下一首时，在后台把本地源音频的前几秒按频道码率与响度增益预先编码为 Opus 帧，
+ * 以与完整帧缓存相同的格式存入 {@link OpusFrameStore}；开播时引擎先发送片段，同时从片段结束位置启动转码。</p>
+ * <p>线程安全：线程安全；生成在单独的守护线程中依次进行。</p>
+ * <p>约束：同一曲目与码率同时只生成一次，排队的请求超过 {@value #MAX_PENDING} 个时丢弃新请求；
+ * 已有完整帧缓存或增益一致的片段时跳过。片段秒数为 0 时不生成。</p>
+ */
+@Slf4j
+@Component
+public final class OpusSnippetWarmer {
+    static final int MAX_PENDING = 32;
+    private static final int FRAME_MS = FrameClock.FRAME_MS;
+    private static final PcmFormat PCM_FORMAT = new PcmFormat(48000, 2, 16);
+    private static final long PRODUCE_TIMEOUT_MS = 30_000L;
+    private static final String THREAD_NAME = "audio-opus-snippet";
+
+    private final int snippetFrames;
+    private final OpusFrameStore store;
+    private final Producer producer;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final LongAdder produced = new LongAdder();
+    private final Object lock = new Object();
+
+    private ExecutorService worker;
+    private volatile boolean closed;
+
+    /**
+     * 创建 OpusSnippetWarmer 实例。
+     * @param configService 参数 configService
+     * @param store 片段的保存位置
+     */
+    @Autowired
+    public OpusSnippetWarmer(ConfigService configService, OpusFrameStore store) {
+        this(resolveSeconds(configService), store, new FfmpegProducer(resolveFfmpegPath(configService)));
+    }
+
+    OpusSnippetWarmer(int seconds, OpusFrameStore store, Producer producer) {
+        int clamped = Math.max(0, Math.min(AppConfig.Audio.MAX_SNIPPET_SECONDS, seconds));
+        this.snippetFrames = clamped * 1000 / FRAME_MS;
+        this.store = store;
+        this.producer = producer;
+    }
+
+
+    /**
+     * 请求在后台生成开头片段，已有可用片段或完整帧缓存时不做任何事。
+     * @param trackId 曲目 ID
+     * @param source 本地源音频
+     * @param bitrate 频道编码码率
+     * @param gain 编码前应用的 Q14 响度增益
+     */
+    public void request(String trackId, Path source, int bitrate, int gain) {
+        if (snippetFrames == 0 || closed || store == null || trackId == null || trackId.isBlank()
+            || source == null || bitrate <= 0) {
+            return;
+        }
+        String key = trackId + "@" + bitrate;
+        if (pending.size() >= MAX_PENDING || !pending.add(key)) {
+            return;
+        }
+        try {
+            executor().execute(() -> {
+                try {
+                    produce(trackId, source, bitrate, gain);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pending.remove(key);
+        }
+    }
+
+
+    /**
+     * 执行 produced 操作。
+     * @return 已生成的片段数
+     */
+    public long produced() {
+        return produced.sum();
+    }
+
+
+    /**
+     * 执行 shutdown 操作：停止生成，进行中的片段不提交。
+     */
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        synchronized (lock) {
+            if (worker != null) {
+                worker.shutdownNow();
+                worker = null;
+            }
+        }
+    }
+
+    private void produce(String trackId, Path source, int bitrate, int gain) {
+        if (store.findOpusFrames(trackId, bitrate).isPresent() || hasSnippet(trackId, bitrate, gain)) {
+            return;
+        }
+        Path target = store.opusSnippetTarget(trackId, bitrate);
+        if (target == null) {
+            return;
+        }
+        OpusFrameFile.Writer writer;
+        try {
+            writer = OpusFrameFile.create(target, FRAME_MS, bitrate, gain);
+        } catch (IOException ex) {
+            log.warn("[Audio] opus snippet create failed track={}", trackId, ex);
+            return;
+        }
+        try {
+            int frames = producer.produce(source, bitrate, gain, snippetFrames, writer);
+            if (frames <= 0 || closed) {
+                writer.abort();
+                return;
+            }
+            writer.commit();
+            produced.increment();
+            log.info("[Audio] opus snippet ready track={} bitrate={} frames={}", trackId, bitrate, frames);
+        } catch (IOException | RuntimeException ex) {
+            writer.abort();
+            log.warn("[Audio] opus snippet failed track={} source={}", trackId, source, ex);
+        }
+    }
+
+    private boolean hasSnippet(String trackId, int bitrate, int gain) {
+        Optional<Path> file = store.findOpusSnippet(trackId, bitrate);
+        if (file.isEmpty()) {
+            return false;
+        }
+        try {
+            OpusFrameFile.Reader reader = OpusFrameFile.open(file.get());
+            return reader.frameMs() == FRAME_MS && reader.gain() == gain && reader.frameCount() > 0;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private ExecutorService executor() {
+        synchronized (lock) {
+            if (closed) {
+                throw new RejectedExecutionException("warmer closed");
+            }
+            if (worker == null) {
+                worker = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return worker;
+        }
+    }
+
+    private static int resolveSeconds(ConfigService configService) {
+        AppConfig config = configService == null ? null : configService.get();
+        if (config == null || config.audio == null) {
+            return AppConfig.Audio.DEFAULT_SNIPPET_SECONDS;
+        }
+        return config.audio.snippetSeconds;
+    }
+
+    private static String resolveFfmpegPath(ConfigService configService) {
+        AppConfig config = configService == null ? null : configService.get();
+        return config == null || config.tools == null ? null : config.tools.ffmpegPath;
+    }
+
+    /**
+     * 把源音频开头编码为 Opus 帧并写入缓存文件。
+     */
+    @FunctionalInterface
+    interface Producer {
+        /**
+         * 执行 produce 操作。
+         * @param source 本地源音频
+         * @param bitrate 编码码率
+         * @param gain 编码前应用的 Q14 增益
+         * @param frames 需要的帧数
+         * @param writer 缓存写入器，由调用方提交或放弃
+         * @return 写入的帧数，曲目短于片段时少于 frames；0 表示失败
+         * @throws IOException 写入失败
+         */
+        int produce(Path source, int bitrate, int gain, int frames, OpusFrameFile.Writer writer) throws IOException;
+    }
+
+    /**
+     * 用 ffmpeg 解码、Concentus 编码的片段生成方式，与转码播放使用同一格式与帧长。
+     */
+    private static final class FfmpegProducer implements Producer {
+        private final String ffmpegPath;
+
+        private FfmpegProducer(String ffmpegPath) {
+            this.ffmpegPath = ffmpegPath;
+        }
+
+        @Override
+        public int produce(Path source, int bitrate, int gain, int frames, OpusFrameFile.Writer writer)
+            throws IOException {
+            ConcentusOpusEncoder opusEncoder = new ConcentusOpusEncoder(PCM_FORMAT, FRAME_MS);
+            opusEncoder.setBitrate(bitrate);
+            OpusFrameEncoder encoder = new OpusFrameEncoder(opusEncoder, PCM_FORMAT.frameBytes(FRAME_MS));
+            byte[] packet = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+            CountDownLatch done = new CountDownLatch(1);
+            IOException[] failure = new IOException[1];
+            int[] written = new int[1];
+            AudioFrameConsumer consumer = (data, length, format) -> {
+                synchronized (writer) {
+                    if (done.getCount() == 0L) {
+                        return;
+                    }
+                    // 帧序号必须与转码连续对齐，任何一帧编码失败都放弃整段。
+                    int encoded = encoder.encodeWithGain(data, length, format, gain, packet);
+                    try {
+                        if (encoded <= 0) {
+                            throw new IOException("opus encode failed at frame " + written[0]);
+                        }
+                        writer.append(packet, encoded);
+                    } catch (IOException ex) {
+                        failure[0] = ex;
+                        done.countDown();
+                        return;
+                    }
+                    if (++written[0] >= frames) {
+                        done.countDown();
+                    }
+                }
+            };
+            FfmpegPcmPump pump = new FfmpegPcmPump(
+                ffmpegPath,
+                PCM_FORMAT,
+                FRAME_MS,
+                consumer,
+                done::countDown,
+                false,
+                null
+            );
+            boolean finished;
+            try {
+                pump.start(source.toString(), 0L);
+                finished = done.await(PRODUCE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                finished = false;
+            } finally {
+                pump.stop();
+            }
+            synchronized (writer) {
+                done.countDown();
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                return finished ? written[0] : 0;
+            }
+        }
+    }
+}
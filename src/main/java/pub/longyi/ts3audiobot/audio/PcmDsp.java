@@ -0,0 +1,207 @@
+package pub.longyi.ts3audiobot.audio;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteOrder;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 18:50
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 PcmDsp 相关功能。
+ */
+
+
+/**
+ * s16le PCM 帧的逐样本处理入口。
+ *
+ * <p>职责：提供字节到 short 的采样转换，以及带饱和的定点增益；增益大于 1 时经过软限幅，
+ * 超过拐点的样本被平滑压向满幅而不是直接削顶。启动参数包含 {@code --add-modules jdk.incubator.vector}
+ * 且平台为小端序时使用向量实现，否则使用标量实现，两者输出逐位一致。</p>
+ * <p>线程安全：无状态，可并发调用。</p>
+ * <p>约束：增益以 Q14 定点数表示（{@link #UNITY_GAIN} 为 1.0），取值范围 [0, {@link #MAX_GAIN}]。</p>
+ */
+@Slf4j
+final class PcmDsp {
+    static final int GAIN_SHIFT = 14;
+    static final int UNITY_GAIN = 1 << GAIN_SHIFT;
+    static final int MAX_GAIN = (4 << GAIN_SHIFT) - 1;
+    static final int LIMITER_KNEE = 29491;
+    static final int LIMITER_RANGE = Short.MAX_VALUE - LIMITER_KNEE;
+    static final int GAIN_ROUNDING = 1 << (GAIN_SHIFT - 1);
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final Kernel SCALAR = new ScalarKernel();
+    private static final Kernel VECTOR = loadVectorKernel();
+    private static final Kernel KERNEL = VECTOR != null ? VECTOR : SCALAR;
+
+    static {
+        log.info("[Audio] pcm dsp backend={}", KERNEL.name());
+    }
+
+    private PcmDsp() {
+    }
+
+
+    /**
+     * 把 s16le 字节转换为 short 采样，不足 {@code out} 长度的部分不做修改。
+     * @param pcm PCM 字节
+     * @param length 有效字节数
+     * @param out 输出采样
+     * @return 写入的采样数
+     */
+    static int toShorts(byte[] pcm, int length, short[] out) {
+        int samples = Math.min(length / 2, out.length);
+        KERNEL.toShorts(pcm, samples, out);
+        return samples;
+    }
+
+
+    /**
+     * 对 s16le 字节应用定点增益，{@code output} 可以与 {@code data} 为同一数组。
+     * @param data 源 PCM 字节
+     * @param length 有效字节数
+     * @param output 输出 PCM 字节
+     * @param gain Q14 增益
+     */
+    static void applyGain(byte[] data, int length, byte[] output, int gain) {
+        int samples = Math.min(length, Math.min(data.length, output.length)) / 2;
+        KERNEL.applyGain(data, output, samples, clampGain(gain));
+    }
+
+
+    /**
+     * 执行 gainForVolume 操作。
+     * @param volumePercent 音量百分比
+     * @return 对应的 Q14 增益
+     */
+    static int gainForVolume(int volumePercent) {
+        return clampGain((int) (((long) volumePercent * UNITY_GAIN + 50) / 100));
+    }
+
+
+    /**
+     * 执行 backend 操作。
+     * @return 当前使用的实现名称
+     */
+    static String backend() {
+        return KERNEL.name();
+    }
+
+
+    /**
+     * 执行 scalarKernel 操作。
+     * @return 标量实现
+     */
+    static Kernel scalarKernel() {
+        return SCALAR;
+    }
+
+
+    /**
+     * 执行 vectorKernel 操作。
+     * @return 向量实现，当前 JVM 不可用时返回 null
+     */
+    static Kernel vectorKernel() {
+        return VECTOR;
+    }
+
+    static int clampGain(int gain) {
+        return Math.max(0, Math.min(MAX_GAIN, gain));
+    }
+
+    /**
+     * 标量增益公式，向量实现的尾部样本与逐位一致性都以它为准。
+     */
+    static int scaleSample(int sample, int gain, boolean limit) {
+        int scaled = (sample * gain + GAIN_ROUNDING) >> GAIN_SHIFT;
+        if (limit) {
+            int magnitude = Math.abs(scaled);
+            if (magnitude > LIMITER_KNEE) {
+                // 用 float 计算压缩量，向量实现可以使用硬件除法并得到相同结果。
+                float over = magnitude - LIMITER_KNEE;
+                magnitude = LIMITER_KNEE + (int) (over * LIMITER_RANGE / (over + LIMITER_RANGE));
+                scaled = scaled < 0 ? -magnitude : magnitude;
+            }
+        }
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+    }
+
+    private static Kernel loadVectorKernel() {
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN
+            || ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        try {
+            return new VectorPcmKernel();
+        } catch (LinkageError ex) {
+            log.debug("[Audio] vector pcm kernel unavailable", ex);
+            return null;
+        }
+    }
+
+    /**
+     * 采样处理的具体实现。
+     */
+    interface Kernel {
+        /**
+         * 执行 name 操作。
+         * @return 实现名称
+         */
+        String name();
+
+        /**
+         * 转换前 {@code samples} 个采样。
+         * @param pcm PCM 字节
+         * @param samples 采样数
+         * @param out 输出采样
+         */
+        void toShorts(byte[] pcm, int samples, short[] out);
+
+        /**
+         * 对前 {@code samples} 个采样应用增益。
+         * @param data 源 PCM 字节
+         * @param output 输出 PCM 字节
+         * @param samples 采样数
+         * @param gain 已限定范围的 Q14 增益
+         */
+        void applyGain(byte[] data, byte[] output, int samples, int gain);
+    }
+
+    static final class ScalarKernel implements Kernel {
+        @Override
+        public String name() {
+            return "scalar";
+        }
+
+        @Override
+        public void toShorts(byte[] pcm, int samples, short[] out) {
+            toShortsFrom(pcm, 0, samples, out);
+        }
+
+        @Override
+        public void applyGain(byte[] data, byte[] output, int samples, int gain) {
+            applyGainFrom(data, output, 0, samples, gain);
+        }
+
+        static void toShortsFrom(byte[] pcm, int from, int samples, short[] out) {
+            for (int i = from; i < samples; i++) {
+                out[i] = (short) ((pcm[i * 2 + 1] << 8) | (pcm[i * 2] & 0xff));
+            }
+        }
+
+        static void applyGainFrom(byte[] data, byte[] output, int from, int samples, int gain) {
+            boolean limit = gain > UNITY_GAIN;
+            for (int i = from; i < samples; i++) {
+                int offset = i * 2;
+                int sample = (data[offset + 1] << 8) | (data[offset] & 0xff);
+                int scaled = scaleSample(sample, gain, limit);
+                output[offset] = (byte) scaled;
+                output[offset + 1] = (byte) (scaled >> 8);
+            }
+        }
+    }
+}
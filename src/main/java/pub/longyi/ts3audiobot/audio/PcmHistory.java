@@ -0,0 +1,225 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:20
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 PcmHistory 相关功能。
+ */
+
+
+/**
+ * 最近解码的 PCM 帧的堆外环形缓冲。
+ *
+ * <p>职责：按曲目内的绝对帧序号（起播位置 / 帧长）保存解码阶段写出的每一帧，新帧覆盖最旧的帧；
+ * 窗口内既有已经播放的帧，也有缓冲中尚未播放的预读帧。</p>
+ * <p>线程安全：所有方法互斥执行。</p>
+ * <p>约束：单帧不超过构造时给定的字节数，超出部分被截断；堆外缓冲在 {@link #reset(long)} 时从
+ * {@link Buffers} 取得，{@link #release()} 时交还，由同一引擎的下一条流复用。</p>
+ */
+final class PcmHistory {
+    private final Buffers buffers;
+    private final int capacityFrames;
+    private final int frameBytes;
+    private final int[] lengths;
+
+    private ByteBuffer buffer;
+    private long firstFrame;
+    private long nextFrame;
+
+    /**
+     * 创建 PcmHistory 实例。
+     * @param capacityFrames 保存的帧数
+     * @param frameBytes 单帧 PCM 字节数
+     */
+    PcmHistory(int capacityFrames, int frameBytes) {
+        this(new Buffers(capacityFrames, frameBytes, 1));
+    }
+
+
+    /**
+     * 创建 PcmHistory 实例，堆外缓冲取自共用的缓冲池。
+     * @param buffers 缓冲池，决定保存的帧数与单帧字节数
+     */
+    PcmHistory(Buffers buffers) {
+        this.buffers = buffers;
+        this.capacityFrames = buffers.capacityFrames;
+        this.frameBytes = buffers.frameBytes;
+        this.lengths = new int[capacityFrames];
+    }
+
+
+    /**
+     * 清空缓冲，下一次写入的帧序号从 firstFrame 开始。
+     * @param firstFrame 起始帧序号
+     */
+    synchronized void reset(long firstFrame) {
+        if (buffer == null) {
+            buffer = buffers.acquire();
+        }
+        this.firstFrame = firstFrame;
+        this.nextFrame = firstFrame;
+    }
+
+
+    /**
+     * 清空窗口并把堆外缓冲交还缓冲池，之后任何帧都不在窗口内。
+     */
+    synchronized void release() {
+        if (buffer != null) {
+            buffers.recycle(buffer);
+            buffer = null;
+        }
+        nextFrame = firstFrame;
+    }
+
+
+    /**
+     * 追加一帧。
+     * @param data 参数 data
+     * @param length 参数 length
+     */
+    synchronized void append(byte[] data, int length) {
+        if (buffer == null) {
+            reset(0L);
+        }
+        int slot = slot(nextFrame);
+        int copied = Math.min(length, frameBytes);
+        buffer.put(slot * frameBytes, data, 0, copied);
+        lengths[slot] = copied;
+        nextFrame++;
+    }
+
+
+    /**
+     * 读取一帧。
+     * @param frame 帧序号
+     * @param out 输出缓冲，至少一帧大小
+     * @return 帧长度，该帧不在窗口内时返回 -1
+     */
+    synchronized int read(long frame, byte[] out) {
+        if (!contains(frame)) {
+            return -1;
+        }
+        int slot = slot(frame);
+        int length = lengths[slot];
+        buffer.get(slot * frameBytes, out, 0, length);
+        return length;
+    }
+
+
+    /**
+     * 判断帧是否仍在窗口内。
+     * @param frame 帧序号
+     * @return 是否可读
+     */
+    synchronized boolean contains(long frame) {
+        return frame >= oldestFrame() && frame < nextFrame;
+    }
+
+
+    /**
+     * 执行 oldestFrame 操作。
+     * @return 窗口内最旧的帧序号
+     */
+    synchronized long oldestFrame() {
+        return Math.max(firstFrame, nextFrame - capacityFrames);
+    }
+
+
+    /**
+     * 执行 nextFrame 操作。
+     * @return 下一次写入的帧序号，即窗口的上界（不含）
+     */
+    synchronized long nextFrame() {
+        return nextFrame;
+    }
+
+
+    /**
+     * 执行 capacityFrames 操作。
+     * @return 保存的帧数
+     */
+    int capacityFrames() {
+        return capacityFrames;
+    }
+
+
+    /**
+     * 执行 frameBytes 操作。
+     * @return 单帧 PCM 字节数
+     */
+    int frameBytes() {
+        return frameBytes;
+    }
+
+    private int slot(long frame) {
+        return (int) Math.floorMod(frame, (long) capacityFrames);
+    }
+
+    /**
+     * 同一引擎各条流共用的历史窗口堆外缓冲。
+     *
+     * <p>职责：流关闭时交还的缓冲留给下一条流，切歌与无缝衔接不再反复申请堆外内存。</p>
+     * <p>线程安全：所有方法互斥执行。</p>
+     * <p>约束：最多保留 retained 块空闲缓冲，多出的交还后不再引用；保留的缓冲在引擎存续期间不释放。</p>
+     */
+    static final class Buffers {
+        private final int capacityFrames;
+        private final int frameBytes;
+        private final int retained;
+        private final Deque<ByteBuffer> idle = new ArrayDeque<>();
+
+        /**
+         * 创建 Buffers 实例。
+         * @param capacityFrames 每块缓冲保存的帧数
+         * @param frameBytes 单帧 PCM 字节数
+         * @param retained 最多保留的空闲缓冲数
+         */
+        Buffers(int capacityFrames, int frameBytes, int retained) {
+            if (capacityFrames <= 0 || frameBytes <= 0) {
+                throw new IllegalArgumentException("History capacity must be positive");
+            }
+            this.capacityFrames = capacityFrames;
+            this.frameBytes = frameBytes;
+            this.retained = retained;
+        }
+
+
+        /**
+         * 取一块缓冲，没有空闲缓冲时新申请。
+         * @return 堆外缓冲
+         */
+        synchronized ByteBuffer acquire() {
+            ByteBuffer buffer = idle.pollFirst();
+            return buffer != null ? buffer : ByteBuffer.allocateDirect(Math.multiplyExact(capacityFrames, frameBytes));
+        }
+
+
+        /**
+         * 交还一块缓冲。
+         * @param buffer 由 {@link #acquire()} 取得的缓冲
+         */
+        synchronized void recycle(ByteBuffer buffer) {
+            if (idle.size() < retained) {
+                idle.addFirst(buffer);
+            }
+        }
+
+
+        /**
+         * 执行 idle 操作。
+         * @return 当前保留的空闲缓冲数
+         */
+        synchronized int idle() {
+            return idle.size();
+        }
+    }
+}
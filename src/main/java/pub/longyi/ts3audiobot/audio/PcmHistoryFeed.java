@@ -0,0 +1,197 @@
+package pub.longyi.ts3audiobot.audio;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:25
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 PcmHistoryFeed 相关功能。
+ */
+
+
+/**
+ * 解码阶段与流水线之间的分流器：每帧先写入 {@link PcmHistory}，再交给当前的下游。
+ *
+ * <p>职责：跳转目标仍在历史窗口内时，{@link #rewind} 把下游换成新的流水线，由回放线程从目标帧起
+ * 把窗口内的帧依次写入新下游；回放追上解码进度后解码阶段直接接着写入，解码进程不受影响。
+ * 输入结束在回放追上之后才转交给下游。</p>
+ * <p>线程安全：{@link #onPcmFrame}/{@link #finishInput} 由一个解码线程调用，其余方法可由任意线程调用。
+ * 回放期间解码线程阻塞在下一帧上，窗口内尚未回放的帧不会被覆盖。</p>
+ * <p>约束：写入下游时不持有锁，下游阻塞（背压）不会阻塞 {@link #rewind}/{@link #close()}；
+ * 被替换的下游关闭后，写入其中的帧已保存在窗口内，由回放补上。</p>
+ */
+@Slf4j
+final class PcmHistoryFeed implements AudioFrameConsumer {
+    private static final String THREAD_NAME = "pcm-history-replay";
+
+    private final PcmHistory history;
+    private final PcmFormat format;
+
+    private AudioFrameConsumer consumer;
+    private Runnable onFinish;
+    private boolean replaying;
+    private boolean ended;
+    private boolean closed;
+    private long generation;
+    private Thread replayThread;
+
+    /**
+     * 创建 PcmHistoryFeed 实例，并把历史窗口清空到起播位置。
+     * @param history 历史缓冲，由本实例独占使用直到关闭
+     * @param format PCM 格式
+     * @param firstFrame 起播位置的帧序号
+     * @param consumer 下游
+     * @param onFinish 下游的输入结束回调
+     */
+    PcmHistoryFeed(
+        PcmHistory history,
+        PcmFormat format,
+        long firstFrame,
+        AudioFrameConsumer consumer,
+        Runnable onFinish
+    ) {
+        this.history = history;
+        this.format = format;
+        this.consumer = consumer;
+        this.onFinish = onFinish;
+        history.reset(firstFrame);
+    }
+
+
+    /**
+     * 解码阶段：保存一帧并写入当前下游；回放进行中时等待回放追上。
+     * @param data 参数 data
+     * @param length 参数 length
+     * @param format 参数 format
+     */
+    @Override
+    public void onPcmFrame(byte[] data, int length, PcmFormat format) {
+        AudioFrameConsumer target;
+        synchronized (this) {
+            try {
+                while (replaying && !closed) {
+                    wait();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (closed) {
+                return;
+            }
+            history.append(data, length);
+            target = consumer;
+        }
+        target.onPcmFrame(data, length, format);
+    }
+
+
+    /**
+     * 解码阶段输入结束；回放进行中时由回放线程在追上后转交下游。
+     */
+    void finishInput() {
+        Runnable finish;
+        synchronized (this) {
+            ended = true;
+            if (replaying || closed) {
+                return;
+            }
+            finish = onFinish;
+        }
+        finish.run();
+    }
+
+
+    /**
+     * 从历史窗口内的指定帧起改由新下游接收。
+     * @param frame 目标帧序号
+     * @param next 新下游
+     * @param nextFinish 新下游的输入结束回调
+     * @return 目标帧是否在窗口内；为 false 时不做任何改变
+     */
+    synchronized boolean rewind(long frame, AudioFrameConsumer next, Runnable nextFinish) {
+        if (closed || !covers(frame)) {
+            return false;
+        }
+        long current = ++generation;
+        consumer = next;
+        onFinish = nextFinish;
+        replaying = true;
+        replayThread = new Thread(() -> replayLoop(frame, current), THREAD_NAME);
+        replayThread.setDaemon(true);
+        replayThread.start();
+        return true;
+    }
+
+
+    /**
+     * 判断跳转目标是否可由历史窗口满足；目标恰为下一帧时视为满足。
+     * @param frame 目标帧序号
+     * @return 是否在窗口内
+     */
+    synchronized boolean covers(long frame) {
+        return frame == history.nextFrame() || history.contains(frame);
+    }
+
+
+    /**
+     * 停止回放并丢弃之后的所有写入，解码线程随之退出等待；历史窗口的堆外缓冲同时交还缓冲池。
+     */
+    void close() {
+        Thread replay;
+        synchronized (this) {
+            closed = true;
+            replaying = false;
+            generation++;
+            replay = replayThread;
+            replayThread = null;
+            history.release();
+            notifyAll();
+        }
+        if (replay != null && replay != Thread.currentThread()) {
+            replay.interrupt();
+        }
+    }
+
+    private void replayLoop(long from, long current) {
+        byte[] frame = new byte[history.frameBytes()];
+        long cursor = from;
+        while (true) {
+            int length;
+            AudioFrameConsumer target;
+            Runnable finish = null;
+            synchronized (this) {
+                if (generation != current) {
+                    return;
+                }
+                length = history.read(cursor, frame);
+                if (length < 0) {
+                    // 已回放到解码进度，交还给解码线程。
+                    replaying = false;
+                    replayThread = null;
+                    notifyAll();
+                    if (ended) {
+                        finish = onFinish;
+                    }
+                }
+                target = consumer;
+            }
+            if (length < 0) {
+                log.debug("[Audio] pcm history replay caught up frames={}", cursor - from);
+                if (finish != null) {
+                    finish.run();
+                }
+                return;
+            }
+            target.onPcmFrame(frame, length, format);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            cursor++;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package pub.longyi.ts3audiobot.audio;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:10
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 PcmSource 相关功能。
+ */
+
+
+/**
+ * 单首曲目在解码阶段的 PCM 帧来源。
+ *
+ * <p>职责：向 {@link AudioFrameConsumer} 写入 PCM 帧，屏蔽 ffmpeg 子进程与进程内 Opus 解码两种实现的差异。</p>
+ * <p>线程安全：{@link #stop()} 与 {@link #isRunning()} 可由任意线程调用。</p>
+ * <p>约束：停止后不再回调消费者。</p>
+ */
+interface PcmSource {
+    /**
+     * 停止解码并释放线程与进程。
+     */
+    void stop();
+
+
+    /**
+     * 执行 isRunning 操作。
+     * @return 是否仍在解码
+     */
+    boolean isRunning();
+}
@@ -0,0 +1,216 @@
+package pub.longyi.ts3audiobot.audio;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 18:20
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 ProcessStderrMultiplexer 相关功能。
+ */
+
+
+/**
+ * 子进程 stderr 的多路读取器。
+ *
+ * <p>职责：用一个线程轮流读取所有已登记子进程（ffmpeg、yt-dlp 等）的 stderr，按行交给输出回调；
+ * 进程退出后读完剩余内容并记录退出码，随后自动注销。没有登记的进程时线程退出，下次登记时再启动。</p>
+ * <p>线程安全：{@link #register} 可由任意线程调用；读取与回调都在多路读取线程上执行。</p>
+ * <p>约束：只用 {@link InputStream#available()} 判断可读字节，不会阻塞在单个进程上；
+ * 空闲时按 {@link #POLL_INTERVAL_MS} 轮询，日志行最多延迟一个轮询周期。</p>
+ */
+@Slf4j
+public final class ProcessStderrMultiplexer {
+    private static final long POLL_INTERVAL_MS = 50L;
+    private static final int READ_BUFFER_BYTES = 4096;
+    private static final int MAX_LINE_BYTES = 4096;
+    private static final ProcessStderrMultiplexer SHARED = new ProcessStderrMultiplexer(
+        "process-stderr",
+        (label, line) -> log.info("[{}] {}", label, line)
+    );
+
+    private final String threadName;
+    private final BiConsumer<String, String> lineSink;
+    private final Object lock = new Object();
+    private final List<Entry> entries = new ArrayList<>();
+    private Thread thread;
+
+    /**
+     * 创建 ProcessStderrMultiplexer 实例。
+     * @param threadName 读取线程名称
+     * @param lineSink 每行输出的回调，参数为标签与行内容
+     */
+    ProcessStderrMultiplexer(String threadName, BiConsumer<String, String> lineSink) {
+        this.threadName = threadName;
+        this.lineSink = lineSink;
+    }
+
+
+    /**
+     * 执行 shared 操作。
+     * @return 输出到日志的全局实例
+     */
+    public static ProcessStderrMultiplexer shared() {
+        return SHARED;
+    }
+
+
+    /**
+     * 登记一个子进程，之后其 stderr 由多路读取线程读取。
+     * @param process 子进程
+     * @param label 日志标签
+     */
+    public void register(Process process, String label) {
+        Entry entry = new Entry(process, label);
+        synchronized (lock) {
+            entries.add(entry);
+            if (thread == null) {
+                thread = new Thread(this::run, threadName);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+
+    /**
+     * 执行 activeCount 操作。
+     * @return 尚未退出的已登记进程数
+     */
+    int activeCount() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    private void run() {
+        byte[] buffer = new byte[READ_BUFFER_BYTES];
+        while (true) {
+            List<Entry> snapshot;
+            synchronized (lock) {
+                if (entries.isEmpty()) {
+                    thread = null;
+                    return;
+                }
+                snapshot = new ArrayList<>(entries);
+            }
+            boolean progressed = false;
+            for (Entry entry : snapshot) {
+                long before = entry.bytesRead;
+                if (poll(entry, buffer)) {
+                    synchronized (lock) {
+                        entries.remove(entry);
+                    }
+                    progressed = true;
+                } else if (entry.bytesRead != before) {
+                    progressed = true;
+                }
+            }
+            if (!progressed) {
+                try {
+                    Thread.sleep(POLL_INTERVAL_MS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    synchronized (lock) {
+                        thread = null;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取一个进程当前可读的全部 stderr。
+     * @return 进程已退出且输出读完时返回 true
+     */
+    private boolean poll(Entry entry, byte[] buffer) {
+        // 先取存活状态再读：进程退出前写入的内容此时都已在管道里，读完即可结束。
+        boolean exited = !entry.process.isAlive();
+        try {
+            int available = entry.stream.available();
+            while (available > 0) {
+                int read = entry.stream.read(buffer, 0, Math.min(available, buffer.length));
+                if (read < 0) {
+                    break;
+                }
+                entry.append(buffer, read);
+                available = entry.stream.available();
+            }
+        } catch (IOException ex) {
+            // 进程被销毁后流会关闭，按已退出处理。
+            exited = true;
+        }
+        if (!exited) {
+            return false;
+        }
+        entry.finish();
+        return true;
+    }
+
+    private final class Entry {
+        private final Process process;
+        private final String label;
+        private final InputStream stream;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private long bytesRead;
+
+        private Entry(Process process, String label) {
+            this.process = process;
+            this.label = label;
+            this.stream = process.getErrorStream();
+        }
+
+        private void append(byte[] data, int length) {
+            bytesRead += length;
+            for (int i = 0; i < length; i++) {
+                byte b = data[i];
+                if (b == '\n' || b == '\r') {
+                    emitLine();
+                } else if (line.size() < MAX_LINE_BYTES) {
+                    line.write(b);
+                }
+            }
+        }
+
+        private void emitLine() {
+            if (line.size() == 0) {
+                return;
+            }
+            String text = line.toString(Charset.defaultCharset());
+            line.reset();
+            if (!text.isBlank()) {
+                lineSink.accept(label, text);
+            }
+        }
+
+        private void finish() {
+            emitLine();
+            try {
+                stream.close();
+            } catch (IOException ex) {
+                log.debug("[{}] stderr close failed", label, ex);
+            }
+            if (process.isAlive()) {
+                return;
+            }
+            int code = process.exitValue();
+            if (code != 0) {
+                log.warn("[{}] process exited code={}", label, code);
+            } else {
+                log.info("[{}] process exited code={}", label, code);
+            }
+        }
+    }
+}
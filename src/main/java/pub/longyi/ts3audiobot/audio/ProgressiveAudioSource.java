@@ -0,0 +1,35 @@
+package pub.longyi.ts3audiobot.audio;
+
+import pub.longyi.ts3audiobot.queue.Track;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 17:40
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 ProgressiveAudioSource 接口相关功能。
+ */
+
+
+/**
+ * 边播边缓存的音源。
+ *
+ * <p>职责：为尚未缓存的曲目打开源字节流，读取的同时写入缓存临时文件；读到完整结尾后原子提交为缓存，
+ * 未读完即关闭则丢弃临时文件。</p>
+ * <p>线程安全：实现需支持多线程调用；返回的流由单个线程读取，但允许另一个线程调用 close 中止。</p>
+ * <p>约束：返回前已收到首批数据，源在启动阶段失败时返回空，调用方据此回退到原有播放方式。</p>
+ */
+public interface ProgressiveAudioSource {
+    /**
+     * 打开边播边缓存的源字节流。
+     * @param botId 机器人 ID，用于选择鉴权 Cookie
+     * @param track 曲目
+     * @return 源字节流；曲目已缓存、缓存关闭或无法下载时返回空
+     */
+    Optional<InputStream> openProgressive(String botId, Track track);
+}
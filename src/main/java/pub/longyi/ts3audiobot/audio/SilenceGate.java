@@ -0,0 +1,145 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 21:10
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 SilenceGate 相关功能。
+ */
+
+
+/**
+ * 按语音连接抑制静音帧的发送门。
+ *
+ * <p>职责：编码阶段用 {@link #isSilent(byte[], int)} 按帧能量（均方低于 {@value #SILENCE_DBFS} dBFS）标记静音帧，
+ * 没有 PCM 的缓存与直通音源用 {@link #isSilentPacket(int)} 按包长判断；发送阶段每帧调用 {@link #admit(boolean, int)}，
+ * 连续静音超过挂起时长后先要求发送一个零长度帧结束语音会话，之后的静音帧不再发送，直到出现非静音帧
+ * （下一帧会开启新的语音会话）。被抑制的帧数与字节数累计计数。</p>
+ * <p>线程安全：方法互斥执行；计数可由任意线程读取。</p>
+ * <p>约束：一个实例对应一条语音连接；挂起帧数为 0 时所有帧照常发送。</p>
+ */
+final class SilenceGate {
+    static final int SILENCE_DBFS = -60;
+    // Opus 对数字静音只输出几个字节（TOC 加少量熵编码），正常音频在任何可用码率下都远大于此。
+    static final int MAX_SILENT_PACKET_BYTES = 8;
+    // (32768 × 10^(-60/20))² ≈ 1074，16 位样本的均方阈值。
+    private static final long SILENCE_MEAN_SQUARE = 1074L;
+
+    private final int hangoverFrames;
+    private final LongAdder suppressedFrames = new LongAdder();
+    private final LongAdder suppressedBytes = new LongAdder();
+
+    private int silentRun;
+    private boolean suppressing;
+
+    /**
+     * 创建 SilenceGate 实例。
+     * @param hangoverFrames 连续多少个静音帧之后开始抑制，0 表示不抑制
+     */
+    SilenceGate(int hangoverFrames) {
+        this.hangoverFrames = Math.max(0, hangoverFrames);
+    }
+
+
+    /**
+     * 判断一帧 16 位小端 PCM 是否为静音，超过阈值后立即返回，有声帧通常只需检查开头少量样本。
+     * @param pcm PCM 数据
+     * @param length 有效字节数
+     * @return 是否静音
+     */
+    static boolean isSilent(byte[] pcm, int length) {
+        int samples = length / 2;
+        if (samples == 0) {
+            return true;
+        }
+        long limit = SILENCE_MEAN_SQUARE * samples;
+        long energy = 0L;
+        for (int i = 0; i + 1 < length; i += 2) {
+            int sample = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+            energy += (long) sample * sample;
+            if (energy > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 按包长判断已编码的 Opus 帧是否为静音。
+     * @param length 包字节数
+     * @return 是否静音
+     */
+    static boolean isSilentPacket(int length) {
+        return length > 0 && length <= MAX_SILENT_PACKET_BYTES;
+    }
+
+
+    /**
+     * 决定一帧的发送方式。
+     * @param silent 该帧是否静音
+     * @param length 该帧字节数
+     * @return 发送方式
+     */
+    synchronized Action admit(boolean silent, int length) {
+        if (!silent || hangoverFrames == 0) {
+            silentRun = 0;
+            suppressing = false;
+            return Action.SEND;
+        }
+        if (!suppressing && ++silentRun <= hangoverFrames) {
+            return Action.SEND;
+        }
+        suppressedFrames.increment();
+        suppressedBytes.add(length);
+        if (suppressing) {
+            return Action.SUPPRESS;
+        }
+        suppressing = true;
+        return Action.END_SESSION;
+    }
+
+
+    /**
+     * 语音会话在门外结束（曲目结束、停止、退出广播）后清空状态。
+     * @return 会话此前是否已因静音被结束，为 true 时无需再发送结束帧
+     */
+    synchronized boolean reset() {
+        boolean ended = suppressing;
+        silentRun = 0;
+        suppressing = false;
+        return ended;
+    }
+
+
+    /**
+     * 执行 suppressedFrames 操作。
+     * @return 累计被抑制的帧数
+     */
+    long suppressedFrames() {
+        return suppressedFrames.sum();
+    }
+
+
+    /**
+     * 执行 suppressedBytes 操作。
+     * @return 累计节省的 Opus 字节数
+     */
+    long suppressedBytes() {
+        return suppressedBytes.sum();
+    }
+
+    /**
+     * 帧的发送方式：SEND 照常发送，END_SESSION 以零长度帧代替该帧结束语音会话，SUPPRESS 不发送。
+     */
+    enum Action {
+        SEND,
+        END_SESSION,
+        SUPPRESS
+    }
+}
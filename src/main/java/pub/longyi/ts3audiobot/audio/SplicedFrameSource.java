@@ -0,0 +1,117 @@
+package pub.longyi.ts3audiobot.audio;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:35
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 SplicedFrameSource 相关功能。
+ */
+
+
+/**
+ * 把同一首曲目的两段帧来源首尾相接的帧来源。
+ *
+ * <p>职责：先发送开头片段（预编码的前几秒），开头片段排空的同一节拍改由后续来源（从片段结束位置起转码的流水线）发送，
+ * 后续来源在开头片段播放期间完成启动与预读。与 {@link GaplessDispatcher} 的曲目交接不同，切换不产生交接回调。</p>
+ * <p>线程安全：{@link #dispatch}/{@link #isDrained()}/{@link #onUnderrun()} 由帧时钟线程调用；
+ * {@link #close()} 与查询方法可由任意线程调用。</p>
+ * <p>约束：关闭时两段来源一并关闭；开头片段排空后随即关闭。</p>
+ */
+final class SplicedFrameSource implements FrameSource {
+    private final CachedOpusSource head;
+    private final FrameSource tail;
+
+    private volatile boolean inHead = true;
+
+    /**
+     * 创建 SplicedFrameSource 实例。
+     * @param head 开头片段
+     * @param tail 从片段结束位置起的后续来源
+     */
+    SplicedFrameSource(CachedOpusSource head, FrameSource tail) {
+        this.head = head;
+        this.tail = tail;
+    }
+
+
+    /**
+     * 发送阶段：由帧时钟在每个节拍调用。
+     * @param deliver 是否发送，false 表示丢弃过期帧
+     * @return 是否取到了帧
+     */
+    @Override
+    public boolean dispatch(boolean deliver) {
+        if (inHead) {
+            if (head.dispatch(deliver)) {
+                return true;
+            }
+            if (!head.isDrained()) {
+                return false;
+            }
+            inHead = false;
+            head.close();
+        }
+        return tail.dispatch(deliver);
+    }
+
+
+    /**
+     * 执行 isDrained 操作。
+     * @return 两段是否都已排空
+     */
+    @Override
+    public boolean isDrained() {
+        return !inHead && tail.isDrained();
+    }
+
+
+    /**
+     * 执行 onUnderrun 操作。
+     */
+    @Override
+    public void onUnderrun() {
+        if (!inHead) {
+            tail.onUnderrun();
+        }
+    }
+
+
+    /**
+     * 执行 close 操作。
+     */
+    @Override
+    public void close() {
+        head.close();
+        tail.close();
+    }
+
+
+    /**
+     * 执行 inHead 操作。
+     * @return 是否仍在发送开头片段
+     */
+    boolean inHead() {
+        return inHead;
+    }
+
+
+    /**
+     * 执行 headPositionMs 操作。
+     * @return 开头片段中下一帧对应的播放位置（毫秒）
+     */
+    long headPositionMs() {
+        return head.positionMs();
+    }
+
+
+    /**
+     * 执行 tail 操作。
+     * @return 后续来源
+     */
+    FrameSource tail() {
+        return tail;
+    }
+}
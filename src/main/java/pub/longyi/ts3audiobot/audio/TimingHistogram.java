@@ -0,0 +1,176 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 10:48
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 TimingHistogram 相关功能。
+ */
+
+
+/**
+ * 固定分桶的时延直方图（微秒）。
+ *
+ * <p>职责：记录帧时钟的迟到与抖动、解码进程启动到首帧等时延分布，提供均值、最大值与近似分位数。</p>
+ * <p>线程安全：线程安全，记录路径无锁且不分配对象。</p>
+ * <p>约束：分位数按桶上界近似，超出最大桶的样本计入溢出桶。</p>
+ */
+public final class TimingHistogram {
+    private static final long[] DEFAULT_UPPER_MICROS = {
+        100L, 250L, 500L, 1_000L, 2_000L, 5_000L, 10_000L, 20_000L, 50_000L, 100_000L
+    };
+    private static final long OVERFLOW_UPPER_MICROS = Long.MAX_VALUE;
+    private static final double P50 = 0.50;
+    private static final double P99 = 0.99;
+
+    private final long[] upperMicros;
+    private final AtomicLongArray buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * 创建按帧时钟时延分桶（100us 至 100ms）的实例。
+     */
+    public TimingHistogram() {
+        this(DEFAULT_UPPER_MICROS);
+    }
+
+    /**
+     * 创建自定义分桶的实例。
+     * @param upperMicros 各桶上界（微秒，含），须严格递增
+     */
+    public TimingHistogram(long... upperMicros) {
+        if (upperMicros.length == 0) {
+            throw new IllegalArgumentException("bucket bounds required");
+        }
+        for (int i = 1; i < upperMicros.length; i++) {
+            if (upperMicros[i] <= upperMicros[i - 1]) {
+                throw new IllegalArgumentException("bucket bounds must be increasing");
+            }
+        }
+        this.upperMicros = upperMicros.clone();
+        this.buckets = new AtomicLongArray(upperMicros.length + 1);
+    }
+
+
+    /**
+     * 记录一次时延样本。
+     * @param nanos 时延（纳秒），负值按 0 处理
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0L, nanos) / 1_000L;
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+
+    /**
+     * 清空所有样本。
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0L);
+        }
+        count.reset();
+        sumMicros.reset();
+        maxMicros.reset();
+    }
+
+
+    /**
+     * 生成当前分布快照。
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length()];
+        long total = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        List<Bucket> bucketList = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            bucketList.add(new Bucket(upperBound(i), counts[i]));
+        }
+        long sum = sumMicros.sum();
+        long mean = total == 0L ? 0L : sum / total;
+        return new Snapshot(
+            total,
+            sum,
+            mean,
+            maxMicros.get(),
+            percentile(counts, total, P50),
+            percentile(counts, total, P99),
+            bucketList
+        );
+    }
+
+    private int bucketIndex(long micros) {
+        for (int i = 0; i < upperMicros.length; i++) {
+            if (micros <= upperMicros[i]) {
+                return i;
+            }
+        }
+        return upperMicros.length;
+    }
+
+    private long upperBound(int index) {
+        return index < upperMicros.length ? upperMicros[index] : OVERFLOW_UPPER_MICROS;
+    }
+
+    private long percentile(long[] counts, long total, double quantile) {
+        if (total == 0L) {
+            return 0L;
+        }
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return OVERFLOW_UPPER_MICROS;
+    }
+
+    /**
+     * 直方图快照。
+     * @param count 样本数
+     * @param sumMicros 样本总和（微秒）
+     * @param meanMicros 平均值（微秒）
+     * @param maxMicros 最大值（微秒）
+     * @param p50Micros 近似 P50（桶上界，微秒）
+     * @param p99Micros 近似 P99（桶上界，微秒）
+     * @param buckets 各桶计数
+     */
+    public record Snapshot(
+        long count,
+        long sumMicros,
+        long meanMicros,
+        long maxMicros,
+        long p50Micros,
+        long p99Micros,
+        List<Bucket> buckets
+    ) {
+    }
+
+    /**
+     * 单个分桶。
+     * @param upperMicros 桶上界（微秒，含），溢出桶为 Long.MAX_VALUE
+     * @param count 样本数
+     */
+    public record Bucket(long upperMicros, long count) {
+    }
+}
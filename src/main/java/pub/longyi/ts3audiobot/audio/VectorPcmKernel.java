@@ -0,0 +1,108 @@
+package pub.longyi.ts3audiobot.audio;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 18:50
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 VectorPcmKernel 相关功能。
+ */
+
+
+/**
+ * 基于 {@code jdk.incubator.vector} 的 PCM 处理实现。
+ *
+ * <p>职责：按平台首选向量宽度批量处理 s16le 采样；字节向量按本机小端序重解释为 short 向量，
+ * 增益在 int 通道内计算后饱和收窄，不足一个向量的尾部交给标量实现。</p>
+ * <p>线程安全：无状态，可并发调用。</p>
+ * <p>约束：只应由 {@link PcmDsp} 在确认模块可用且平台为小端序后创建；其他情况下加载本类会失败。</p>
+ */
+final class VectorPcmKernel implements PcmDsp.Kernel {
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * 执行 name 操作。
+     * @return 实现名称
+     */
+    @Override
+    public String name() {
+        return "vector-" + BYTES.vectorBitSize();
+    }
+
+
+    /**
+     * 执行 toShorts 操作。
+     * @param pcm PCM 字节
+     * @param samples 采样数
+     * @param out 输出采样
+     */
+    @Override
+    public void toShorts(byte[] pcm, int samples, short[] out) {
+        int step = SHORTS.length();
+        int i = 0;
+        for (; i + step <= samples; i += step) {
+            ByteVector.fromArray(BYTES, pcm, i * 2).reinterpretAsShorts().intoArray(out, i);
+        }
+        PcmDsp.ScalarKernel.toShortsFrom(pcm, i, samples, out);
+    }
+
+
+    /**
+     * 执行 applyGain 操作。
+     * @param data 源 PCM 字节
+     * @param output 输出 PCM 字节
+     * @param samples 采样数
+     * @param gain 已限定范围的 Q14 增益
+     */
+    @Override
+    public void applyGain(byte[] data, byte[] output, int samples, int gain) {
+        boolean limit = gain > PcmDsp.UNITY_GAIN;
+        int step = SHORTS.length();
+        int i = 0;
+        for (; i + step <= samples; i += step) {
+            ShortVector source = ByteVector.fromArray(BYTES, data, i * 2).reinterpretAsShorts();
+            IntVector low = scale((IntVector) source.convertShape(VectorOperators.S2I, INTS, 0), gain, limit);
+            IntVector high = scale((IntVector) source.convertShape(VectorOperators.S2I, INTS, 1), gain, limit);
+            ShortVector scaled = ((ShortVector) low.convertShape(VectorOperators.I2S, SHORTS, 0))
+                .or((ShortVector) high.convertShape(VectorOperators.I2S, SHORTS, -1));
+            scaled.reinterpretAsBytes().intoArray(output, i * 2);
+        }
+        PcmDsp.ScalarKernel.applyGainFrom(data, output, i, samples, gain);
+    }
+
+    /**
+     * 与 {@link PcmDsp#scaleSample} 相同的公式，按通道计算。
+     */
+    private static IntVector scale(IntVector samples, int gain, boolean limit) {
+        IntVector scaled = samples.mul(gain)
+            .add(PcmDsp.GAIN_ROUNDING)
+            .lanewise(VectorOperators.ASHR, PcmDsp.GAIN_SHIFT);
+        if (limit) {
+            IntVector magnitude = scaled.abs();
+            VectorMask<Integer> hot = magnitude.compare(VectorOperators.GT, PcmDsp.LIMITER_KNEE);
+            if (hot.anyTrue()) {
+                FloatVector over = (FloatVector) magnitude.sub(PcmDsp.LIMITER_KNEE).max(0)
+                    .convert(VectorOperators.I2F, 0);
+                IntVector knee = ((IntVector) over.mul(PcmDsp.LIMITER_RANGE)
+                    .div(over.add(PcmDsp.LIMITER_RANGE))
+                    .convert(VectorOperators.F2I, 0))
+                    .add(PcmDsp.LIMITER_KNEE);
+                magnitude = magnitude.blend(knee, hot);
+                scaled = magnitude.lanewise(VectorOperators.NEG, scaled.compare(VectorOperators.LT, 0));
+            }
+        }
+        return scaled.max(Short.MIN_VALUE).min(Short.MAX_VALUE);
+    }
+}
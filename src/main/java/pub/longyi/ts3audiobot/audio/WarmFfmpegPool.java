@@ -0,0 +1,263 @@
+package pub.longyi.ts3audiobot.audio;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pub.longyi.ts3audiobot.config.AppConfig;
+import pub.longyi.ts3audiobot.config.ConfigService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 21:40
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 WarmFfmpegPool 相关功能。
+ */
+
+
+/**
+ * 所有机器人共享的预启动 ffmpeg 进程池。
+ *
+ * <p>职责：按完整命令行（输入固定为 stdin，输出格式固定）保留若干已启动、阻塞在读取 stdin 上的 ffmpeg 进程，
+ * 由 Java 写入源字节的播放直接接管其中一个，省去 fork/exec 与进程初始化；被取走后在后台补足。
+ * 同时记录所有解码进程从请求启动到读到第一帧 PCM 的耗时，按预启动与冷启动分别统计。</p>
+ * <p>线程安全：线程安全；补足进程在单独的守护线程中进行。</p>
+ * <p>约束：只有从头播放（无 -ss）的命令会被预启动；首次使用某条命令时冷启动，并为其建立预启动队列。
+ * 进程池大小为 0 时只记录耗时，不预启动任何进程。</p>
+ */
+@Slf4j
+@Component
+public final class WarmFfmpegPool {
+    // 首帧耗时通常在几十毫秒到数秒之间，帧时钟的默认分桶上限只有 100ms。
+    private static final long[] FIRST_FRAME_UPPER_MICROS = {
+        10_000L, 25_000L, 50_000L, 100_000L, 200_000L, 500_000L, 1_000_000L, 2_000_000L, 5_000_000L, 10_000_000L
+    };
+    private static final String LABEL_FFMPEG = "FFmpeg";
+    private static final String THREAD_NAME = "audio-ffmpeg-warm-pool";
+
+    private final int size;
+    private final Launcher launcher;
+    private final Map<List<String>, ConcurrentLinkedDeque<Process>> idle = new ConcurrentHashMap<>();
+    private final Map<List<String>, AtomicBoolean> refilling = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final TimingHistogram warmFirstFrame = new TimingHistogram(FIRST_FRAME_UPPER_MICROS);
+    private final TimingHistogram coldFirstFrame = new TimingHistogram(FIRST_FRAME_UPPER_MICROS);
+    private final Object lock = new Object();
+
+    private ExecutorService spawner;
+    private volatile boolean closed;
+
+    /**
+     * 创建 WarmFfmpegPool 实例。
+     * @param configService 参数 configService
+     */
+    @Autowired
+    public WarmFfmpegPool(ConfigService configService) {
+        this(resolveSize(configService));
+    }
+
+    WarmFfmpegPool(int size) {
+        this(size, command -> new ProcessBuilder(command).start());
+    }
+
+    WarmFfmpegPool(int size, Launcher launcher) {
+        this.size = Math.max(0, Math.min(AppConfig.Audio.MAX_WARM_DECODERS, size));
+        this.launcher = launcher;
+    }
+
+
+    /**
+     * 取出一个以该命令预启动的进程，并在后台补足。
+     * @param command 完整命令行，输入须为 stdin
+     * @return 预启动的进程；没有可用进程或进程池关闭时返回 null，由调用方冷启动
+     */
+    public Process acquire(List<String> command) {
+        if (size == 0 || closed || command == null || command.isEmpty()) {
+            return null;
+        }
+        List<String> key = List.copyOf(command);
+        ConcurrentLinkedDeque<Process> queue = idle.computeIfAbsent(key, ignored -> new ConcurrentLinkedDeque<>());
+        Process process;
+        while ((process = queue.pollFirst()) != null) {
+            if (process.isAlive()) {
+                break;
+            }
+            log.debug("[Audio] warm ffmpeg exited while idle pid={} exit={}", process.pid(), process.exitValue());
+        }
+        scheduleRefill(key, queue);
+        if (process == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return process;
+    }
+
+
+    /**
+     * 记录一次解码进程从请求启动到第一帧 PCM 的耗时。
+     * @param warm 是否使用了预启动进程
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordFirstFrame(boolean warm, long nanos) {
+        (warm ? warmFirstFrame : coldFirstFrame).recordNanos(nanos);
+    }
+
+
+    /**
+     * 生成进程池快照。
+     * @return 快照
+     */
+    public PoolStats snapshot() {
+        int idleCount = 0;
+        for (ConcurrentLinkedDeque<Process> queue : idle.values()) {
+            idleCount += queue.size();
+        }
+        return new PoolStats(
+            size > 0,
+            size,
+            idleCount,
+            hits.sum(),
+            misses.sum(),
+            warmFirstFrame.snapshot(),
+            coldFirstFrame.snapshot()
+        );
+    }
+
+
+    /**
+     * 执行 shutdown 操作：停止补足并结束所有空闲进程。
+     */
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        synchronized (lock) {
+            if (spawner != null) {
+                spawner.shutdownNow();
+                spawner = null;
+            }
+        }
+        for (ConcurrentLinkedDeque<Process> queue : idle.values()) {
+            Process process;
+            while ((process = queue.pollFirst()) != null) {
+                process.destroy();
+            }
+        }
+    }
+
+    private void scheduleRefill(List<String> command, ConcurrentLinkedDeque<Process> queue) {
+        AtomicBoolean pending = refilling.computeIfAbsent(command, ignored -> new AtomicBoolean());
+        if (queue.size() >= size || !pending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor().execute(() -> {
+                boolean spawned;
+                try {
+                    spawned = refill(command, queue);
+                } finally {
+                    pending.set(false);
+                }
+                // 补足期间又被取走的进程由这里补上，启动失败时等下一次取用再重试。
+                if (spawned) {
+                    scheduleRefill(command, queue);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pending.set(false);
+        }
+    }
+
+    private boolean refill(List<String> command, ConcurrentLinkedDeque<Process> queue) {
+        while (!closed && queue.size() < size) {
+            Process process;
+            try {
+                process = launcher.start(command);
+            } catch (IOException ex) {
+                log.warn("[Audio] warm ffmpeg spawn failed", ex);
+                return false;
+            }
+            ProcessStderrMultiplexer.shared().register(process, LABEL_FFMPEG);
+            queue.addLast(process);
+            log.debug("[Audio] warm ffmpeg ready pid={} idle={}", process.pid(), queue.size());
+        }
+        if (closed) {
+            // 与 shutdown 并发补入的进程由这里结束。
+            Process process;
+            while ((process = queue.pollFirst()) != null) {
+                process.destroy();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private ExecutorService executor() {
+        synchronized (lock) {
+            if (closed) {
+                throw new RejectedExecutionException("pool closed");
+            }
+            if (spawner == null) {
+                spawner = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                log.info("[Audio] warm ffmpeg pool started size={}", size);
+            }
+            return spawner;
+        }
+    }
+
+    private static int resolveSize(ConfigService configService) {
+        AppConfig config = configService == null ? null : configService.get();
+        if (config == null || config.audio == null) {
+            return AppConfig.Audio.DEFAULT_WARM_DECODERS;
+        }
+        return config.audio.warmDecoders;
+    }
+
+    /**
+     * 按命令行启动进程。
+     */
+    @FunctionalInterface
+    interface Launcher {
+        Process start(List<String> command) throws IOException;
+    }
+
+    /**
+     * 进程池快照。
+     * @param enabled 是否预启动进程
+     * @param size 每条命令保留的空闲进程数
+     * @param idle 当前空闲进程总数
+     * @param hits 取到预启动进程的次数
+     * @param misses 没有可用预启动进程、改为冷启动的次数
+     * @param warmFirstFrame 使用预启动进程时从请求到第一帧的耗时分布
+     * @param coldFirstFrame 冷启动时从启动进程到第一帧的耗时分布
+     */
+    public record PoolStats(
+        boolean enabled,
+        int size,
+        int idle,
+        long hits,
+        long misses,
+        TimingHistogram.Snapshot warmFirstFrame,
+        TimingHistogram.Snapshot coldFirstFrame
+    ) {
+    }
+}
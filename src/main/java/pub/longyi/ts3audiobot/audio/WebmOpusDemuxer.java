@@ -0,0 +1,301 @@
+package pub.longyi.ts3audiobot.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 17:05
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 WebmOpusDemuxer 相关功能。
+ */
+
+
+/**
+ * WebM/Matroska 纯音频 Opus 解复用器。
+ *
+ * <p>职责：顺序扫描 EBML 元素，解析 Tracks 中唯一的 A_OPUS 轨道（CodecPrivate 即 OpusHead），并把 Cluster 内
+ * SimpleBlock/Block 的负载作为 Opus 包登记到 {@link OpusPacketIndex.Builder}；Segment、Cluster、BlockGroup
+ * 直接进入子元素，因此长度未知的直播式 Segment/Cluster 也能解析，其余元素按长度跳过。</p>
+ * <p>线程安全：实例只允许单线程使用。</p>
+ * <p>约束：只支持单轨、无 lacing、无 ContentEncoding 的文件；文件尾不完整的元素被忽略。</p>
+ */
+final class WebmOpusDemuxer {
+    private static final int ID_EBML = 0x1A45DFA3;
+    private static final int ID_DOC_TYPE = 0x4282;
+    private static final int ID_SEGMENT = 0x18538067;
+    private static final int ID_TRACKS = 0x1654AE6B;
+    private static final int ID_TRACK_ENTRY = 0xAE;
+    private static final int ID_TRACK_NUMBER = 0xD7;
+    private static final int ID_TRACK_TYPE = 0x83;
+    private static final int ID_CODEC_ID = 0x86;
+    private static final int ID_CODEC_PRIVATE = 0x63A2;
+    private static final int ID_CONTENT_ENCODINGS = 0x6D80;
+    private static final int ID_AUDIO = 0xE1;
+    private static final int ID_SAMPLING_FREQUENCY = 0xB5;
+    private static final int ID_CLUSTER = 0x1F43B675;
+    private static final int ID_BLOCK_GROUP = 0xA0;
+    private static final int ID_BLOCK = 0xA1;
+    private static final int ID_SIMPLE_BLOCK = 0xA3;
+    private static final int TRACK_TYPE_AUDIO = 2;
+    private static final String CODEC_OPUS = "A_OPUS";
+    private static final long UNKNOWN_SIZE = -1L;
+    private static final int BLOCK_HEADER_BYTES = 3;
+    private static final int LACING_MASK = 0x06;
+
+    private final ByteBuffer data;
+    private final OpusPacketIndex.Builder builder;
+    private final int limit;
+    private int position;
+    private long trackNumber = -1L;
+
+    /**
+     * 创建 WebmOpusDemuxer 实例。
+     * @param data 整个文件的数据
+     * @param builder 索引登记入口
+     */
+    WebmOpusDemuxer(ByteBuffer data, OpusPacketIndex.Builder builder) {
+        this.data = data;
+        this.builder = builder;
+        this.limit = data.limit();
+    }
+
+
+    /**
+     * 解析全部元素。
+     * @throws IOException 不满足直通条件
+     */
+    void demux() throws IOException {
+        readEbmlHeader();
+        while (position < limit) {
+            int id = readId();
+            long size = readSize();
+            if (id < 0 || size < UNKNOWN_SIZE) {
+                return;
+            }
+            if (id == ID_SEGMENT || id == ID_CLUSTER || id == ID_BLOCK_GROUP) {
+                continue;
+            }
+            if (size == UNKNOWN_SIZE) {
+                throw new IOException("unknown-size element 0x" + Integer.toHexString(id));
+            }
+            long end = position + size;
+            if (end > limit) {
+                return;
+            }
+            if (id == ID_TRACKS) {
+                readTracks(position, (int) end);
+            } else if (id == ID_SIMPLE_BLOCK || id == ID_BLOCK) {
+                readBlock(position, (int) end);
+            }
+            position = (int) end;
+        }
+    }
+
+    private void readEbmlHeader() throws IOException {
+        int id = readId();
+        long size = readSize();
+        if (id != ID_EBML || size < 0 || position + size > limit) {
+            throw new IOException("invalid EBML header");
+        }
+        int end = (int) (position + size);
+        String docType = "";
+        while (position < end) {
+            int childId = readId();
+            long childSize = readSize();
+            if (childId < 0 || childSize < 0 || position + childSize > end) {
+                throw new IOException("invalid EBML header");
+            }
+            if (childId == ID_DOC_TYPE) {
+                docType = readString(position, (int) childSize);
+            }
+            position += (int) childSize;
+        }
+        if (!"webm".equals(docType) && !"matroska".equals(docType)) {
+            throw new IOException("unsupported DocType " + docType);
+        }
+    }
+
+    private void readTracks(int start, int end) throws IOException {
+        position = start;
+        while (position < end) {
+            int id = readId();
+            long size = readSize();
+            if (id < 0 || size < 0 || position + size > end) {
+                throw new IOException("invalid Tracks element");
+            }
+            if (id == ID_TRACK_ENTRY) {
+                if (trackNumber >= 0) {
+                    throw new IOException("more than one track");
+                }
+                readTrackEntry(position, (int) (position + size));
+            }
+            position += (int) size;
+        }
+        if (trackNumber < 0) {
+            throw new IOException("no track entry");
+        }
+    }
+
+    private void readTrackEntry(int start, int end) throws IOException {
+        int saved = position;
+        position = start;
+        long number = -1L;
+        long type = -1L;
+        String codecId = "";
+        boolean head = false;
+        while (position < end) {
+            int id = readId();
+            long size = readSize();
+            if (id < 0 || size < 0 || position + size > end) {
+                throw new IOException("invalid TrackEntry element");
+            }
+            int length = (int) size;
+            switch (id) {
+                case ID_TRACK_NUMBER -> number = readUnsigned(position, length);
+                case ID_TRACK_TYPE -> type = readUnsigned(position, length);
+                case ID_CODEC_ID -> codecId = readString(position, length);
+                case ID_CODEC_PRIVATE -> {
+                    builder.head(position, length);
+                    head = true;
+                }
+                case ID_CONTENT_ENCODINGS -> throw new IOException("track uses content encoding");
+                case ID_AUDIO -> readAudio(position, position + length);
+                default -> {
+                }
+            }
+            position += length;
+        }
+        if (type != TRACK_TYPE_AUDIO || !CODEC_OPUS.equals(codecId)) {
+            throw new IOException("track is not Opus audio codec=" + codecId);
+        }
+        if (!head || number <= 0) {
+            throw new IOException("incomplete Opus track entry");
+        }
+        trackNumber = number;
+        position = saved;
+    }
+
+    private void readAudio(int start, int end) throws IOException {
+        int saved = position;
+        position = start;
+        while (position < end) {
+            int id = readId();
+            long size = readSize();
+            if (id < 0 || size < 0 || position + size > end) {
+                throw new IOException("invalid Audio element");
+            }
+            if (id == ID_SAMPLING_FREQUENCY) {
+                double rate = readFloat(position, (int) size);
+                if (rate != OpusPacketIndex.OPUS_SAMPLE_RATE) {
+                    throw new IOException("sampling frequency " + rate);
+                }
+            }
+            position += (int) size;
+        }
+        position = saved;
+    }
+
+    private void readBlock(int start, int end) throws IOException {
+        if (trackNumber < 0) {
+            throw new IOException("block before Tracks");
+        }
+        position = start;
+        long track = readSize();
+        if (track != trackNumber) {
+            throw new IOException("block of unknown track " + track);
+        }
+        int flags = position + BLOCK_HEADER_BYTES - 1;
+        if (flags >= end) {
+            throw new IOException("truncated block");
+        }
+        if ((data.get(flags) & LACING_MASK) != 0) {
+            throw new IOException("laced block");
+        }
+        int payload = position + BLOCK_HEADER_BYTES;
+        builder.add(payload, end - payload);
+    }
+
+    /**
+     * 读取元素 ID（保留长度标记位），数据不足时返回 -1。
+     */
+    private int readId() throws IOException {
+        if (position >= limit) {
+            return -1;
+        }
+        int first = data.get(position) & 0xff;
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (first == 0 || length > Integer.BYTES) {
+            throw new IOException("invalid element id at " + position);
+        }
+        if (position + length > limit) {
+            return -1;
+        }
+        int id = 0;
+        for (int i = 0; i < length; i++) {
+            id = (id << 8) | (data.get(position + i) & 0xff);
+        }
+        position += length;
+        return id;
+    }
+
+    /**
+     * 读取 EBML 变长整数（去掉长度标记位）；全 1 表示长度未知，数据不足时返回小于 {@link #UNKNOWN_SIZE} 的值。
+     */
+    private long readSize() throws IOException {
+        if (position >= limit) {
+            return Long.MIN_VALUE;
+        }
+        int first = data.get(position) & 0xff;
+        if (first == 0) {
+            throw new IOException("invalid element size at " + position);
+        }
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (position + length > limit) {
+            return Long.MIN_VALUE;
+        }
+        long value = first & (0xff >>> length);
+        boolean allOnes = value == (0xff >>> length);
+        for (int i = 1; i < length; i++) {
+            int next = data.get(position + i) & 0xff;
+            allOnes &= next == 0xff;
+            value = (value << 8) | next;
+        }
+        position += length;
+        return allOnes ? UNKNOWN_SIZE : value;
+    }
+
+    private long readUnsigned(int offset, int length) throws IOException {
+        if (length > Long.BYTES) {
+            throw new IOException("integer element too long");
+        }
+        long value = 0L;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (data.get(offset + i) & 0xff);
+        }
+        return value;
+    }
+
+    private double readFloat(int offset, int length) throws IOException {
+        return switch (length) {
+            case 0 -> 0.0;
+            case Float.BYTES -> data.getFloat(offset);
+            case Double.BYTES -> data.getDouble(offset);
+            default -> throw new IOException("invalid float element length " + length);
+        };
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        data.get(offset, bytes);
+        int end = 0;
+        while (end < length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, 0, end, StandardCharsets.US_ASCII);
+    }
+}
@@ -2,6 +2,9 @@ package pub.longyi.ts3audiobot.bot;
 
 import lombok.extern.slf4j.Slf4j;
 import pub.longyi.ts3audiobot.audio.AudioEngine;
+import pub.longyi.ts3audiobot.audio.AudioMetrics;
+import pub.longyi.ts3audiobot.audio.AudioPipelineStats;
+import pub.longyi.ts3audiobot.audio.FfmpegAudioEngine;
 import pub.longyi.ts3audiobot.config.AppConfig;
 import pub.longyi.ts3audiobot.media.TrackMediaService;
 import pub.longyi.ts3audiobot.queue.QueueService;
@@ -19,6 +22,7 @@ import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -57,6 +61,8 @@ public final class BotInstance {
     private final ScheduledExecutorService scheduler;
     private final java.util.Random random = new java.util.Random();
     private final ExecutorService profileExecutor;
+    private final ExecutorService prefetchExecutor;
+    private final long prefetchLeadMs;
     private final AtomicLong profileRevision = new AtomicLong();
     private final String baseBotName;
 
@@ -80,6 +86,9 @@ public final class BotInstance {
     private volatile String appliedNickname = "";
     private volatile String appliedAvatarTrackId = "";
     private volatile boolean wasConnected;
+    private volatile long playbackGeneration;
+    private volatile long prefetchAttemptGeneration = -1L;
+    private volatile NextTrackPrefetch prefetchedNext;
 
     private static final long RECONNECT_BASE_MS = 2000L;
     private static final long RECONNECT_MAX_MS = 30_000L;
@@ -97,6 +106,8 @@ public final class BotInstance {
      * 创建 BotInstance 实例。
      * @param id 参数 id
      * @param config 参数 config
+     * @param avatarSyncEnabled 参数 avatarSyncEnabled
+     * @param prefetchSeconds 距曲目结束多少秒开始预加载下一首，0 表示关闭
      * @param client 参数 client
      * @param audioEngine 参数 audioEngine
      * @param queueService 参数 queueService
@@ -106,6 +117,7 @@ public final class BotInstance {
         String id,
         AppConfig.BotConfig config,
         boolean avatarSyncEnabled,
+        int prefetchSeconds,
         Ts3VoiceClient client,
         AudioEngine audioEngine,
         TrackMediaService trackMediaService,
@@ -116,6 +128,7 @@ public final class BotInstance {
         this.id = id;
         this.config = config;
         this.avatarSyncEnabled = avatarSyncEnabled;
+        this.prefetchLeadMs = TimeUnit.SECONDS.toMillis(Math.max(0, prefetchSeconds));
         this.client = client;
         this.audioEngine = audioEngine;
         this.trackMediaService = trackMediaService;
@@ -128,6 +141,15 @@ public final class BotInstance {
             thread.setDaemon(true);
             return thread;
         });
+        this.prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bot-prefetch-" + id);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.audioEngine.setTrackTransitionListener(track -> {
+            long switchedAt = System.currentTimeMillis();
+            scheduler.execute(() -> onTrackTransition(track, switchedAt));
+        });
         if (config != null) {
             this.volumePercent = clampVolume(config.volumePercent);
             this.audioEngine.setVolume(this.volumePercent);
@@ -170,6 +192,9 @@ public final class BotInstance {
         PlaybackMode resolved = playbackMode == null ? PlaybackMode.ORDER : playbackMode;
         PlaybackMode previous = this.playbackMode;
         this.playbackMode = resolved;
+        if (resolved != previous) {
+            invalidatePrefetch();
+        }
         if (resolved == PlaybackMode.RANDOM && previous != PlaybackMode.RANDOM) {
             String playlistId = queueService.getActivePlaylist(id);
             List<QueueItem> queue = queueService.rawList(id, playlistId);
@@ -245,6 +270,80 @@ public final class BotInstance {
     }
 
 
+    /**
+     * 执行 audioPipelineStats 操作。
+     * @return 音频流水线统计，引擎不支持时返回 null
+     */
+    public AudioPipelineStats audioPipelineStats() {
+        if (audioEngine instanceof FfmpegAudioEngine engine) {
+            return engine.pipelineStats();
+        }
+        return null;
+    }
+
+
+    /**
+     * 执行 audioMetrics 操作。
+     * @return 音频引擎累计指标，引擎不支持时返回 null
+     */
+    public AudioMetrics.Snapshot audioMetrics() {
+        if (audioEngine instanceof FfmpegAudioEngine engine) {
+            return engine.metrics();
+        }
+        return null;
+    }
+
+
+    /**
+     * 订阅另一个机器人的广播：暂停自身播放，由对方解码一次后直接向本机器人发送音频帧。
+     * 之后在本机器人上开始播放即退出广播。
+     * @param leader 广播源机器人
+     * @return 引擎支持广播时返回 true
+     */
+    public synchronized boolean followBroadcast(BotInstance leader) {
+        if (!(audioEngine instanceof FfmpegAudioEngine engine)
+            || leader == null
+            || !(leader.audioEngine instanceof FfmpegAudioEngine leaderEngine)) {
+            return false;
+        }
+        pausePlayback();
+        engine.followBroadcast(leaderEngine);
+        return true;
+    }
+
+
+    /**
+     * 退出当前订阅的广播，保持暂停状态。
+     */
+    public synchronized void leaveBroadcast() {
+        if (audioEngine instanceof FfmpegAudioEngine engine) {
+            engine.leaveBroadcast();
+        }
+    }
+
+
+    /**
+     * 让所有订阅者退出本机器人的广播。
+     */
+    public void closeBroadcast() {
+        if (audioEngine instanceof FfmpegAudioEngine engine) {
+            engine.closeBroadcast();
+        }
+    }
+
+
+    /**
+     * 执行 broadcastLeaderId 操作。
+     * @return 正在订阅的广播源机器人 ID，未订阅时返回 null
+     */
+    public String broadcastLeaderId() {
+        if (audioEngine instanceof FfmpegAudioEngine engine) {
+            return engine.broadcastLeaderId();
+        }
+        return null;
+    }
+
+
     /**
      * 执行 setVolumePercent 操作。
      * @param percent 参数 percent
@@ -256,6 +355,17 @@ public final class BotInstance {
     }
 
 
+    /**
+     * 为刚加入队列的曲目在后台准备开头片段。
+     * @param track 队列中的曲目
+     */
+    public void prepareSnippet(Track track) {
+        if (track != null) {
+            audioEngine.prepareSnippet(track);
+        }
+    }
+
+
     /**
      * 执行 playbackPositionMs 操作。
      * @return 返回值
@@ -328,6 +438,7 @@ public final class BotInstance {
         appliedNickname = "";
         appliedAvatarTrackId = "";
         wasConnected = false;
+        invalidatePrefetch();
         audioEngine.stop();
         cancelTask(playbackTask);
         cancelTask(connectionTask);
@@ -347,7 +458,8 @@ public final class BotInstance {
         playbackPositionMs = resolvePlaybackPosition();
         playbackPaused = true;
         trackDisplayActive = false;
-        audioEngine.stop();
+        invalidatePrefetch();
+        audioEngine.pause();
         scheduleClientProfileSync();
     }
 
@@ -363,13 +475,16 @@ public final class BotInstance {
         boolean wasPaused = playbackPaused;
         playbackPaused = false;
         if (wasPaused && currentTrack != null) {
-            currentTrack = prepareTrackForPlayback(currentPlaylistId, currentItemId, currentTrack);
             long resumeAt = Math.max(0L, playbackPositionMs);
             playbackStartedAt = System.currentTimeMillis() - resumeAt;
             trackDisplayActive = true;
-            audioEngine.play(currentTrack);
-            if (resumeAt > 0L) {
-                audioEngine.seek(resumeAt);
+            invalidatePrefetch();
+            if (!audioEngine.resume()) {
+                currentTrack = prepareTrackForPlayback(currentPlaylistId, currentItemId, currentTrack);
+                audioEngine.play(currentTrack);
+                if (resumeAt > 0L) {
+                    audioEngine.seek(resumeAt);
+                }
             }
             scheduleClientProfileSync();
             return;
@@ -386,6 +501,7 @@ public final class BotInstance {
     public synchronized void shutdown() {
         stop();
         profileExecutor.shutdownNow();
+        prefetchExecutor.shutdownNow();
         scheduler.shutdownNow();
     }
 
@@ -427,10 +543,15 @@ public final class BotInstance {
     }
 
     public synchronized boolean handleRemovedQueueItem(String playlistId, String itemId) {
+        NextTrackPrefetch next = prefetchedNext;
+        if (next != null && Objects.equals(next.itemId(), itemId) && Objects.equals(next.playlistId(), playlistId)) {
+            invalidatePrefetch();
+        }
         if (!Objects.equals(currentItemId, itemId) || !Objects.equals(currentPlaylistId, playlistId)) {
             return false;
         }
         boolean shouldContinue = status == BotStatus.RUNNING && !playbackPaused;
+        invalidatePrefetch();
         audioEngine.stop();
         playbackPositionMs = 0L;
         playbackStartedAt = 0L;
@@ -452,15 +573,7 @@ public final class BotInstance {
             resolvedPlaylistId = queueService.getActivePlaylist(id);
         }
         PlaybackMode mode = forceOrder ? PlaybackMode.ORDER : playbackMode;
-        QueueItem resolved = switch (mode) {
-            case RANDOM -> {
-                List<QueueItem> queue = queueService.rawList(id, resolvedPlaylistId);
-                yield shufflePlaybackService.next(id, resolvedPlaylistId, queue, random, currentItemId);
-            }
-            case LOOP -> queueService.nextLoop(id, resolvedPlaylistId);
-            case LIST_LOOP -> queueService.nextListLoop(id, resolvedPlaylistId);
-            default -> queueService.next(id, resolvedPlaylistId);
-        };
+        QueueItem resolved = selectNextItem(resolvedPlaylistId, mode);
         if (resolved == null) {
             boolean changed = trackDisplayActive;
             trackDisplayActive = false;
@@ -489,7 +602,10 @@ public final class BotInstance {
         }
         playbackPositionMs = clamped;
         playbackStartedAt = System.currentTimeMillis() - clamped;
+        invalidatePrefetch();
         if (playbackPaused) {
+            // 暂停中保留的会话停在旧位置，丢弃后恢复时从新位置重新播放。
+            audioEngine.stop();
             return;
         }
         if (!audioEngine.isPlaying()) {
@@ -500,11 +616,131 @@ public final class BotInstance {
 
     private void tickPlayback() {
         if (playbackPaused) {
+            audioEngine.releaseIdleSuspension();
             return;
         }
         if (!audioEngine.isPlaying()) {
             playNext();
+            return;
+        }
+        maybePrefetchNext();
+    }
+
+    private QueueItem selectNextItem(String playlistId, PlaybackMode mode) {
+        return switch (mode) {
+            case RANDOM -> {
+                List<QueueItem> queue = queueService.rawList(id, playlistId);
+                yield shufflePlaybackService.next(id, playlistId, queue, random, currentItemId);
+            }
+            case LOOP -> queueService.nextLoop(id, playlistId);
+            case LIST_LOOP -> queueService.nextListLoop(id, playlistId);
+            default -> queueService.next(id, playlistId);
+        };
+    }
+
+    private QueueItem peekNextItem(String playlistId, PlaybackMode mode) {
+        return switch (mode) {
+            case RANDOM -> {
+                List<QueueItem> queue = queueService.rawList(id, playlistId);
+                yield shufflePlaybackService.peekNext(id, playlistId, queue, random, currentItemId);
+            }
+            case LOOP -> queueService.peekNextLoop(id, playlistId);
+            case LIST_LOOP -> queueService.peekNextListLoop(id, playlistId);
+            default -> queueService.peekNext(id, playlistId);
+        };
+    }
+
+    private synchronized void maybePrefetchNext() {
+        if (prefetchLeadMs <= 0L || playbackPaused || prefetchAttemptGeneration == playbackGeneration) {
+            return;
         }
+        Track track = currentTrack;
+        if (track == null || track.durationMs() <= 0L) {
+            return;
+        }
+        long remainingMs = track.durationMs() - resolvePlaybackPosition();
+        if (remainingMs > prefetchLeadMs) {
+            return;
+        }
+        long generation = playbackGeneration;
+        prefetchAttemptGeneration = generation;
+        String playlistId = queueService.getActivePlaylist(id);
+        QueueItem next = peekNextItem(playlistId, playbackMode);
+        if (next == null) {
+            return;
+        }
+        // 解析与缓存可能涉及下载，放到独立线程，避免阻塞播放调度。
+        prefetchExecutor.execute(() -> runPrefetch(generation, playlistId, next));
+    }
+
+    private void runPrefetch(long generation, String playlistId, QueueItem item) {
+        if (generation != playbackGeneration) {
+            return;
+        }
+        Track prepared;
+        try {
+            prepared = prepareTrackForPlayback(playlistId, item.id(), item.track());
+        } catch (RuntimeException ex) {
+            log.warn("Bot {} prefetch next track failed itemId={}", id, item.id(), ex);
+            return;
+        }
+        completePrefetch(generation, playlistId, item.id(), prepared);
+    }
+
+    private synchronized void completePrefetch(long generation, String playlistId, String itemId, Track prepared) {
+        if (generation != playbackGeneration || prepared == null || !audioEngine.isPlaying()) {
+            return;
+        }
+        if (audioEngine.prepareNext(prepared)) {
+            prefetchedNext = new NextTrackPrefetch(playlistId, itemId, prepared);
+            log.info("Bot {} prefetched next track itemId={} title={}", id, itemId, prepared.title());
+        }
+    }
+
+    private synchronized void onTrackTransition(Track track, long switchedAt) {
+        NextTrackPrefetch next = prefetchedNext;
+        if (next == null || next.track() != track) {
+            return;
+        }
+        prefetchedNext = null;
+        playbackGeneration++;
+        PlaybackMode mode = playbackMode;
+        QueueItem resolved = selectNextItem(next.playlistId(), mode);
+        if (resolved == null || !Objects.equals(resolved.id(), next.itemId())) {
+            // 预加载之后队列发生了变化，按最新选歌结果重新开始播放。
+            log.info("Bot {} prefetched track outdated itemId={} resolved={}",
+                id,
+                next.itemId(),
+                resolved == null ? null : resolved.id()
+            );
+            if (resolved == null) {
+                audioEngine.stop();
+                trackDisplayActive = false;
+                scheduleClientProfileSync();
+                return;
+            }
+            startPlaybackFromQueueItem(next.playlistId(), resolved, mode == PlaybackMode.RANDOM);
+            return;
+        }
+        playbackPaused = false;
+        trackDisplayActive = true;
+        currentItemId = next.itemId();
+        currentPlaylistId = next.playlistId();
+        currentTrack = next.track();
+        playbackPositionMs = 0L;
+        playbackStartedAt = switchedAt;
+        if (mode == PlaybackMode.RANDOM) {
+            queueService.jumpTo(id, next.playlistId(), next.itemId());
+            queueService.next(id, next.playlistId());
+        }
+        prepareNextSnippet(next.playlistId());
+        scheduleClientProfileSync();
+    }
+
+    private void invalidatePrefetch() {
+        playbackGeneration++;
+        prefetchedNext = null;
+        audioEngine.cancelNext();
     }
 
     private void ensureConnected() {
@@ -645,6 +881,7 @@ public final class BotInstance {
         }
         playbackPaused = false;
         trackDisplayActive = true;
+        invalidatePrefetch();
         currentItemId = item.id();
         currentPlaylistId = playlistId;
         currentTrack = prepareTrackForPlayback(playlistId, item.id(), item.track());
@@ -656,9 +893,18 @@ public final class BotInstance {
             queueService.jumpTo(id, playlistId, item.id());
             queueService.next(id, playlistId);
         }
+        prepareNextSnippet(playlistId);
         scheduleClientProfileSync();
     }
 
+    private void prepareNextSnippet(String playlistId) {
+        QueueItem next = peekNextItem(playlistId, playbackMode);
+        if (next == null || next.track() == null) {
+            return;
+        }
+        prefetchExecutor.execute(() -> audioEngine.prepareSnippet(next.track()));
+    }
+
     private void scheduleClientProfileSync() {
         long revision = profileRevision.incrementAndGet();
         log.info("Bot {} schedule profile sync revision={} connected={} paused={} trackActive={}",
@@ -695,56 +941,66 @@ public final class BotInstance {
             );
             return;
         }
-        if (!Objects.equals(targetNickname, appliedNickname) && client.updateClientNickname(targetNickname)) {
+        // 昵称与头像互不依赖，同时发出，在命令流水线中并行等待响应。
+        CompletableFuture<Boolean> nicknameUpdate = Objects.equals(targetNickname, appliedNickname)
+            ? null
+            : client.updateClientNicknameAsync(targetNickname);
+        Path coverFile = resolveAvatarCover(revision, track, nowPlaying);
+        CompletableFuture<Boolean> avatarUpdate = coverFile == null ? null : client.updateClientAvatarAsync(coverFile);
+        if (nicknameUpdate == null) {
+            log.info("Bot {} profile nickname unchanged revision={} nickname={}", id, revision, targetNickname);
+        } else if (nicknameUpdate.join()) {
             appliedNickname = targetNickname;
             log.info("Bot {} profile nickname updated revision={} nickname={}", id, revision, targetNickname);
-        } else if (!Objects.equals(targetNickname, appliedNickname)) {
+        } else {
             log.warn("Bot {} profile nickname update failed revision={} nickname={}", id, revision, targetNickname);
+        }
+        if (avatarUpdate == null) {
+            return;
+        }
+        String trackId = track.id().trim();
+        if (avatarUpdate.join()) {
+            log.info("Bot {} profile avatar updated revision={} trackId={} file={}", id, revision, trackId, coverFile);
         } else {
-            log.info("Bot {} profile nickname unchanged revision={} nickname={}", id, revision, targetNickname);
+            log.warn("Bot {} profile avatar update failed revision={} trackId={} file={}",
+                id,
+                revision,
+                trackId,
+                coverFile
+            );
         }
+    }
+
+    private Path resolveAvatarCover(long revision, Track track, boolean nowPlaying) {
         // 头像同步允许单独关闭；关闭后仅保留昵称同步，避免触发文件传输链路问题。
         if (!avatarSyncEnabled) {
             log.info("Bot {} skip avatar update revision={} reason=avatar_sync_disabled", id, revision);
-            return;
+            return null;
         }
         if (!nowPlaying || track == null || track.id() == null || track.id().isBlank()) {
             log.info("Bot {} skip avatar update revision={} reason=no_playing_track", id, revision);
-            return;
+            return null;
         }
         String trackId = track.id().trim();
         if (Objects.equals(trackId, appliedAvatarTrackId)) {
             log.info("Bot {} skip avatar update revision={} reason=same_track trackId={}", id, revision, trackId);
-            return;
+            return null;
         }
         Optional<Path> coverFile = trackMediaService.findCoverFile(trackId);
         appliedAvatarTrackId = trackId;
-        if (coverFile.isPresent() && revision == profileRevision.get()) {
-            boolean updated = client.updateClientAvatar(coverFile.get());
-            if (updated) {
-                log.info("Bot {} profile avatar updated revision={} trackId={} file={}",
-                    id,
-                    revision,
-                    trackId,
-                    coverFile.get()
-                );
-            } else {
-                log.warn("Bot {} profile avatar update failed revision={} trackId={} file={}",
-                    id,
-                    revision,
-                    trackId,
-                    coverFile.get()
-                );
-            }
-        } else if (coverFile.isEmpty()) {
+        if (coverFile.isEmpty()) {
             log.info("Bot {} skip avatar update revision={} reason=cover_missing trackId={}", id, revision, trackId);
-        } else {
+            return null;
+        }
+        if (revision != profileRevision.get()) {
             log.info("Bot {} skip avatar update revision={} reason=stale_after_cover latest={}",
                 id,
                 revision,
                 profileRevision.get()
             );
+            return null;
         }
+        return coverFile.get();
     }
 
     private boolean shouldShowNowPlaying(Track track) {
@@ -812,4 +1068,7 @@ public final class BotInstance {
         }
         return Math.max(0L, position);
     }
+
+    private record NextTrackPrefetch(String playlistId, String itemId, Track track) {
+    }
 }
@@ -2,6 +2,10 @@ package pub.longyi.ts3audiobot.bot;
 
 import org.springframework.stereotype.Service;
 import pub.longyi.ts3audiobot.audio.FfmpegAudioEngine;
+import pub.longyi.ts3audiobot.audio.FrameClock;
+import pub.longyi.ts3audiobot.audio.OpusComplexityGovernor;
+import pub.longyi.ts3audiobot.audio.OpusSnippetWarmer;
+import pub.longyi.ts3audiobot.audio.WarmFfmpegPool;
 import pub.longyi.ts3audiobot.config.AppConfig;
 import pub.longyi.ts3audiobot.config.ConfigService;
 import pub.longyi.ts3audiobot.media.TrackMediaService;
@@ -10,9 +14,11 @@ import pub.longyi.ts3audiobot.shuffle.ShufflePlaybackService;
 import pub.longyi.ts3audiobot.ts3.Ts3ClientFactory;
 import pub.longyi.ts3audiobot.util.IdGenerator;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -44,6 +50,10 @@ public final class BotManager {
     private final QueueService queueService;
     private final TrackMediaService trackMediaService;
     private final ShufflePlaybackService shufflePlaybackService;
+    private final FrameClock frameClock;
+    private final OpusComplexityGovernor complexityGovernor;
+    private final WarmFfmpegPool warmPool;
+    private final OpusSnippetWarmer snippetWarmer;
 
     /**
      * 创建 BotManager 实例。
@@ -56,13 +66,21 @@ public final class BotManager {
         Ts3ClientFactory ts3ClientFactory,
         QueueService queueService,
         TrackMediaService trackMediaService,
-        ShufflePlaybackService shufflePlaybackService
+        ShufflePlaybackService shufflePlaybackService,
+        FrameClock frameClock,
+        OpusComplexityGovernor complexityGovernor,
+        WarmFfmpegPool warmPool,
+        OpusSnippetWarmer snippetWarmer
     ) {
         this.configService = configService;
         this.ts3ClientFactory = ts3ClientFactory;
         this.queueService = queueService;
         this.trackMediaService = trackMediaService;
         this.shufflePlaybackService = shufflePlaybackService;
+        this.frameClock = frameClock;
+        this.complexityGovernor = complexityGovernor;
+        this.warmPool = warmPool;
+        this.snippetWarmer = snippetWarmer;
     }
 
 
@@ -99,8 +117,20 @@ public final class BotManager {
             id,
             botConfig,
             resolveAvatarSyncEnabled(),
+            resolvePrefetchSeconds(),
             voiceClient,
-            new FfmpegAudioEngine(configService, voiceClient),
+            new FfmpegAudioEngine(
+                id,
+                configService,
+                voiceClient,
+                frameClock,
+                trackMediaService,
+                trackMediaService,
+                trackMediaService,
+                complexityGovernor,
+                warmPool,
+                snippetWarmer
+            ),
             trackMediaService,
             queueService,
             shufflePlaybackService,
@@ -124,6 +154,7 @@ public final class BotManager {
         BotInstance existing = bots.get(id);
         boolean shouldStart = botConfig.run;
         if (existing != null) {
+            existing.closeBroadcast();
             existing.stop();
             bots.remove(id);
         }
@@ -146,10 +177,59 @@ public final class BotManager {
         if (bot == null) {
             return false;
         }
+        bot.closeBroadcast();
         bot.stop();
+        complexityGovernor.remove(id);
         return true;
     }
 
+
+    /**
+     * 让机器人订阅另一个机器人的广播。
+     * @param botId 订阅者机器人 ID
+     * @param leaderId 广播源机器人 ID
+     * @return 两个机器人都存在且引擎支持广播时返回 true
+     */
+    public synchronized boolean followBroadcast(String botId, String leaderId) {
+        BotInstance bot = bots.get(botId);
+        BotInstance leader = bots.get(leaderId);
+        if (bot == null || leader == null) {
+            return false;
+        }
+        return bot.followBroadcast(leader);
+    }
+
+
+    /**
+     * 让机器人退出当前订阅的广播。
+     * @param botId 订阅者机器人 ID
+     * @return 机器人存在时返回 true
+     */
+    public synchronized boolean leaveBroadcast(String botId) {
+        BotInstance bot = bots.get(botId);
+        if (bot == null) {
+            return false;
+        }
+        bot.leaveBroadcast();
+        return true;
+    }
+
+
+    /**
+     * 列出当前的广播订阅关系。
+     * @return 广播源机器人 ID 到订阅者 ID 的映射
+     */
+    public Map<String, List<String>> broadcasts() {
+        Map<String, List<String>> result = new TreeMap<>();
+        for (BotInstance bot : bots.values()) {
+            String leaderId = bot.broadcastLeaderId();
+            if (leaderId != null) {
+                result.computeIfAbsent(leaderId, key -> new ArrayList<>()).add(bot.id());
+            }
+        }
+        return result;
+    }
+
     private String resolveBotId(AppConfig.BotConfig botConfig) {
         String candidate = botConfig == null ? "" : botConfig.name;
         if (candidate != null) {
@@ -201,6 +281,14 @@ public final class BotManager {
         return appConfig.media.avatarEnabled;
     }
 
+    private int resolvePrefetchSeconds() {
+        AppConfig appConfig = configService.get();
+        if (appConfig == null || appConfig.audio == null) {
+            return AppConfig.Audio.DEFAULT_PREFETCH_SECONDS;
+        }
+        return appConfig.audio.prefetchSeconds;
+    }
+
 
     /**
      * 执行 stop 操作。
@@ -30,6 +30,7 @@ public final class AppConfig {
     public final Search search;
     public final Media media;
     public final Audio audio;
+    public final Ts3 ts3;
     public final Resolvers resolvers;
     public final List<BotConfig> bots;
 
@@ -39,6 +40,7 @@ public final class AppConfig {
      * @param configs 参数 configs
      * @param web 参数 web
      * @param tools 参数 tools
+     * @param ts3 参数 ts3
      * @param resolvers 参数 resolvers
      * @param bots 参数 bots
      */
@@ -49,6 +51,7 @@ public final class AppConfig {
         Search search,
         Media media,
         Audio audio,
+        Ts3 ts3,
         Resolvers resolvers,
         List<BotConfig> bots
     ) {
@@ -58,6 +61,7 @@ public final class AppConfig {
         this.search = search;
         this.media = media;
         this.audio = audio;
+        this.ts3 = ts3;
         this.resolvers = resolvers;
         this.bots = bots == null ? new ArrayList<>() : new ArrayList<>(bots);
     }
@@ -297,14 +301,163 @@ public final class AppConfig {
      * <p>职责：音频下载质量配置。</p>
      */
     public static final class Audio {
+        public static final int DEFAULT_MAX_CATCH_UP_FRAMES = 5;
+        public static final int DEFAULT_BUFFER_FRAMES = 25;
+        public static final int MIN_BUFFER_FRAMES = 2;
+        public static final int MAX_BUFFER_FRAMES = 500;
+        public static final int DEFAULT_PREFETCH_SECONDS = 15;
+        public static final int MAX_PREFETCH_SECONDS = 600;
+        public static final boolean DEFAULT_OPUS_PASSTHROUGH = true;
+        public static final int DEFAULT_PAUSE_KEEPALIVE_SECONDS = 300;
+        public static final int MAX_PAUSE_KEEPALIVE_SECONDS = 3600;
+        public static final int DEFAULT_LOUDNESS_TARGET_LUFS = -18;
+        public static final int MIN_LOUDNESS_TARGET_LUFS = -40;
+        public static final int MAX_LOUDNESS_TARGET_LUFS = -5;
+        public static final int DEFAULT_ENCODE_CPU_PERCENT = 50;
+        public static final boolean DEFAULT_NETWORK_ADAPTIVE = true;
+        public static final int DEFAULT_SILENCE_HANGOVER_MS = 200;
+        public static final int MAX_SILENCE_HANGOVER_MS = 10_000;
+        public static final int DEFAULT_WARM_DECODERS = 2;
+        public static final int MAX_WARM_DECODERS = 8;
+        public static final boolean DEFAULT_JAVA_OPUS_DECODE = true;
+        public static final int DEFAULT_HISTORY_SECONDS = 20;
+        public static final int MAX_HISTORY_SECONDS = 600;
+        public static final int DEFAULT_SNIPPET_SECONDS = 3;
+        public static final int MAX_SNIPPET_SECONDS = 10;
+
         public final String quality;
+        public final LateFramePolicy lateFramePolicy;
+        public final int maxCatchUpFrames;
+        public final int bufferFrames;
+        public final int prefetchSeconds;
+        public final boolean opusPassthrough;
+        public final int pauseKeepAliveSeconds;
+        public final int loudnessTargetLufs;
+        public final int encodeCpuPercent;
+        public final boolean networkAdaptive;
+        public final int silenceHangoverMs;
+        public final int warmDecoders;
+        public final boolean javaOpusDecode;
+        public final int historySeconds;
+        public final int snippetSeconds;
 
         /**
          * 创建 Audio 实例。
          * @param quality 参数 quality (auto/standard/high/medium/low)
          */
         public Audio(String quality) {
+            this(
+                quality,
+                LateFramePolicy.CATCH_UP,
+                DEFAULT_MAX_CATCH_UP_FRAMES,
+                DEFAULT_BUFFER_FRAMES,
+                DEFAULT_PREFETCH_SECONDS,
+                DEFAULT_OPUS_PASSTHROUGH,
+                DEFAULT_PAUSE_KEEPALIVE_SECONDS,
+                DEFAULT_LOUDNESS_TARGET_LUFS,
+                DEFAULT_ENCODE_CPU_PERCENT,
+                DEFAULT_NETWORK_ADAPTIVE,
+                DEFAULT_SILENCE_HANGOVER_MS,
+                DEFAULT_WARM_DECODERS,
+                DEFAULT_JAVA_OPUS_DECODE,
+                DEFAULT_HISTORY_SECONDS,
+                DEFAULT_SNIPPET_SECONDS
+            );
+        }
+
+        /**
+         * 创建 Audio 实例。
+         * @param quality 参数 quality (auto/standard/high/medium/low)
+         * @param lateFramePolicy 帧时钟迟到帧策略
+         * @param maxCatchUpFrames 追帧模式下单次最多补发的帧数
+         * @param bufferFrames 音频流水线每级缓冲的帧数
+         * @param prefetchSeconds 距当前曲目结束多少秒开始预加载下一首，0 表示关闭无缝衔接
+         * @param opusPassthrough 本地 Opus（WebM/Ogg）音源符合频道编码要求时是否跳过转码直接发送
+         * @param pauseKeepAliveSeconds 暂停后保留解码进程的秒数，0 表示暂停即结束解码
+         * @param loudnessTargetLufs 响度归一化的目标综合响度（LUFS），0 表示关闭
+         * @param encodeCpuPercent 所有机器人 Opus 编码合计可占用的 CPU 百分比（按全部核心计），0 表示不调节复杂度
+         * @param networkAdaptive 是否按语音连接质量在频道码率上限内调整码率并在丢包时启用带内 FEC
+         * @param silenceHangoverMs 连续静音超过该时长后结束语音会话并停止发送静音帧，0 表示始终发送
+         * @param warmDecoders 预启动并等待输入的 ffmpeg 进程数（所有机器人共享），0 表示关闭
+         * @param javaOpusDecode 本地 Opus（Ogg/WebM）文件需要转码时是否在进程内解码，不启动 ffmpeg
+         * @param historySeconds 转码播放时在堆外保留的已解码 PCM 秒数，跳转目标在其中时不重启解码，0 表示关闭
+         * @param snippetSeconds 为队列中的曲目预先编码并缓存的开头秒数，开播时先发送片段再接上转码，0 表示关闭
+         */
+        public Audio(
+            String quality,
+            LateFramePolicy lateFramePolicy,
+            int maxCatchUpFrames,
+            int bufferFrames,
+            int prefetchSeconds,
+            boolean opusPassthrough,
+            int pauseKeepAliveSeconds,
+            int loudnessTargetLufs,
+            int encodeCpuPercent,
+            boolean networkAdaptive,
+            int silenceHangoverMs,
+            int warmDecoders,
+            boolean javaOpusDecode,
+            int historySeconds,
+            int snippetSeconds
+        ) {
             this.quality = quality;
+            this.lateFramePolicy = lateFramePolicy == null ? LateFramePolicy.CATCH_UP : lateFramePolicy;
+            this.maxCatchUpFrames = Math.max(1, maxCatchUpFrames);
+            this.bufferFrames = Math.max(MIN_BUFFER_FRAMES, Math.min(MAX_BUFFER_FRAMES, bufferFrames));
+            this.prefetchSeconds = Math.max(0, Math.min(MAX_PREFETCH_SECONDS, prefetchSeconds));
+            this.opusPassthrough = opusPassthrough;
+            this.pauseKeepAliveSeconds = Math.max(0, Math.min(MAX_PAUSE_KEEPALIVE_SECONDS, pauseKeepAliveSeconds));
+            this.loudnessTargetLufs = loudnessTargetLufs == 0
+                ? 0
+                : Math.max(MIN_LOUDNESS_TARGET_LUFS, Math.min(MAX_LOUDNESS_TARGET_LUFS, loudnessTargetLufs));
+            this.encodeCpuPercent = Math.max(0, Math.min(100, encodeCpuPercent));
+            this.networkAdaptive = networkAdaptive;
+            this.silenceHangoverMs = Math.max(0, Math.min(MAX_SILENCE_HANGOVER_MS, silenceHangoverMs));
+            this.warmDecoders = Math.max(0, Math.min(MAX_WARM_DECODERS, warmDecoders));
+            this.javaOpusDecode = javaOpusDecode;
+            this.historySeconds = Math.max(0, Math.min(MAX_HISTORY_SECONDS, historySeconds));
+            this.snippetSeconds = Math.max(0, Math.min(MAX_SNIPPET_SECONDS, snippetSeconds));
+        }
+    }
+
+    /**
+     * Ts3 相关功能。
+     *
+     * <p>职责：保存语音服务器连接相关配置。</p>
+     * <p>线程安全：无显式保证。</p>
+     * <p>约束：调用方需遵守方法契约。</p>
+     */
+    public static final class Ts3 {
+        public static final boolean DEFAULT_JCE_CRYPTO = false;
+
+        public final boolean jceCrypto;
+
+        /**
+         * 创建 Ts3 实例。
+         * @param jceCrypto 语音连接的数据包加解密是否使用 JDK 的 AES 实现（可用 AES-NI），否则使用 BouncyCastle
+         */
+        public Ts3(boolean jceCrypto) {
+            this.jceCrypto = jceCrypto;
+        }
+    }
+
+    /**
+     * 帧时钟迟到帧策略：CATCH_UP 连续补发错过的帧，DROP 丢弃过期帧以保持与墙钟对齐。
+     */
+    public enum LateFramePolicy {
+        CATCH_UP,
+        DROP;
+
+        public static LateFramePolicy from(String raw, LateFramePolicy defaultPolicy) {
+            if (raw == null || raw.isBlank()) {
+                return defaultPolicy == null ? CATCH_UP : defaultPolicy;
+            }
+            String normalized = raw.trim().toLowerCase(Locale.ROOT).replace('-', '_');
+            return switch (normalized) {
+                case "catch_up", "catchup" -> CATCH_UP;
+                case "drop" -> DROP;
+                default -> defaultPolicy == null ? CATCH_UP : defaultPolicy;
+            };
         }
     }
 
@@ -102,6 +102,22 @@ public final class ConfigService {
     private static final String KEY_CACHE_YTDLP_CACHE_DIR = "cache.ytdlp_cache_dir";
     private static final String KEY_AUDIO_QUALITY = "audio.quality";
     private static final String DEFAULT_AUDIO_QUALITY = "standard";
+    private static final String KEY_AUDIO_LATE_FRAME_POLICY = "audio.late_frame_policy";
+    private static final String KEY_AUDIO_MAX_CATCH_UP_FRAMES = "audio.max_catch_up_frames";
+    private static final String KEY_AUDIO_BUFFER_FRAMES = "audio.buffer_frames";
+    private static final String KEY_AUDIO_PREFETCH_SECONDS = "audio.prefetch_seconds";
+    private static final String KEY_AUDIO_OPUS_PASSTHROUGH = "audio.opus_passthrough";
+    private static final String KEY_AUDIO_PAUSE_KEEPALIVE_SECONDS = "audio.pause_keepalive_seconds";
+    private static final String KEY_AUDIO_LOUDNESS_TARGET_LUFS = "audio.loudness_target_lufs";
+    private static final String KEY_AUDIO_ENCODE_CPU_PERCENT = "audio.encode_cpu_percent";
+    private static final String KEY_AUDIO_NETWORK_ADAPTIVE = "audio.network_adaptive";
+    private static final String KEY_AUDIO_SILENCE_HANGOVER_MS = "audio.silence_hangover_ms";
+    private static final String KEY_AUDIO_WARM_DECODERS = "audio.warm_decoders";
+    private static final String KEY_AUDIO_JAVA_OPUS_DECODE = "audio.java_opus_decode";
+    private static final String KEY_AUDIO_HISTORY_SECONDS = "audio.history_seconds";
+    private static final String KEY_AUDIO_SNIPPET_SECONDS = "audio.snippet_seconds";
+    private static final AppConfig.LateFramePolicy DEFAULT_AUDIO_LATE_FRAME_POLICY = AppConfig.LateFramePolicy.CATCH_UP;
+    private static final String KEY_TS3_JCE_CRYPTO = "ts3.jce_crypto";
     private static final String KEY_PATHS_FFMPEG = "paths.ffmpeg";
     private static final String KEY_PATHS_YT = "paths.yt";
     private static final String KEY_PATHS_YTMUSIC = "paths.ytmusic";
@@ -254,7 +270,24 @@ public final class ConfigService {
                     resolved.mediaImageCoverSize
                 )
             ),
-            new AppConfig.Audio(resolved.audioQuality),
+            new AppConfig.Audio(
+                resolved.audioQuality,
+                resolved.audioLateFramePolicy,
+                resolved.audioMaxCatchUpFrames,
+                resolved.audioBufferFrames,
+                resolved.audioPrefetchSeconds,
+                resolved.audioOpusPassthrough,
+                resolved.audioPauseKeepAliveSeconds,
+                resolved.audioLoudnessTargetLufs,
+                resolved.audioEncodeCpuPercent,
+                resolved.audioNetworkAdaptive,
+                resolved.audioSilenceHangoverMs,
+                resolved.audioWarmDecoders,
+                resolved.audioJavaOpusDecode,
+                resolved.audioHistorySeconds,
+                resolved.audioSnippetSeconds
+            ),
+            new AppConfig.Ts3(resolved.ts3JceCrypto),
             new AppConfig.Resolvers(new AppConfig.ExternalResolvers(
                 resolved.yt,
                 resolved.ytmusic,
@@ -309,6 +342,76 @@ public final class ConfigService {
         ));
 
         String audioQuality = getSetting(settings, KEY_AUDIO_QUALITY, DEFAULT_AUDIO_QUALITY);
+        AppConfig.LateFramePolicy audioLateFramePolicy = AppConfig.LateFramePolicy.from(
+            getSetting(settings, KEY_AUDIO_LATE_FRAME_POLICY, ""),
+            DEFAULT_AUDIO_LATE_FRAME_POLICY
+        );
+        int audioMaxCatchUpFrames = Math.max(1, parseIntSetting(
+            settings,
+            KEY_AUDIO_MAX_CATCH_UP_FRAMES,
+            AppConfig.Audio.DEFAULT_MAX_CATCH_UP_FRAMES
+        ));
+        int audioBufferFrames = parseIntSetting(
+            settings,
+            KEY_AUDIO_BUFFER_FRAMES,
+            AppConfig.Audio.DEFAULT_BUFFER_FRAMES
+        );
+        int audioPrefetchSeconds = parseIntSetting(
+            settings,
+            KEY_AUDIO_PREFETCH_SECONDS,
+            AppConfig.Audio.DEFAULT_PREFETCH_SECONDS
+        );
+        boolean audioOpusPassthrough = parseBooleanSetting(
+            settings,
+            KEY_AUDIO_OPUS_PASSTHROUGH,
+            AppConfig.Audio.DEFAULT_OPUS_PASSTHROUGH
+        );
+        int audioPauseKeepAliveSeconds = parseIntSetting(
+            settings,
+            KEY_AUDIO_PAUSE_KEEPALIVE_SECONDS,
+            AppConfig.Audio.DEFAULT_PAUSE_KEEPALIVE_SECONDS
+        );
+        int audioLoudnessTargetLufs = parseIntSetting(
+            settings,
+            KEY_AUDIO_LOUDNESS_TARGET_LUFS,
+            AppConfig.Audio.DEFAULT_LOUDNESS_TARGET_LUFS
+        );
+        int audioEncodeCpuPercent = parseIntSetting(
+            settings,
+            KEY_AUDIO_ENCODE_CPU_PERCENT,
+            AppConfig.Audio.DEFAULT_ENCODE_CPU_PERCENT
+        );
+        boolean audioNetworkAdaptive = parseBooleanSetting(
+            settings,
+            KEY_AUDIO_NETWORK_ADAPTIVE,
+            AppConfig.Audio.DEFAULT_NETWORK_ADAPTIVE
+        );
+        int audioSilenceHangoverMs = parseIntSetting(
+            settings,
+            KEY_AUDIO_SILENCE_HANGOVER_MS,
+            AppConfig.Audio.DEFAULT_SILENCE_HANGOVER_MS
+        );
+        int audioWarmDecoders = parseIntSetting(
+            settings,
+            KEY_AUDIO_WARM_DECODERS,
+            AppConfig.Audio.DEFAULT_WARM_DECODERS
+        );
+        boolean audioJavaOpusDecode = parseBooleanSetting(
+            settings,
+            KEY_AUDIO_JAVA_OPUS_DECODE,
+            AppConfig.Audio.DEFAULT_JAVA_OPUS_DECODE
+        );
+        int audioHistorySeconds = parseIntSetting(
+            settings,
+            KEY_AUDIO_HISTORY_SECONDS,
+            AppConfig.Audio.DEFAULT_HISTORY_SECONDS
+        );
+        int audioSnippetSeconds = parseIntSetting(
+            settings,
+            KEY_AUDIO_SNIPPET_SECONDS,
+            AppConfig.Audio.DEFAULT_SNIPPET_SECONDS
+        );
+        boolean ts3JceCrypto = parseBooleanSetting(settings, KEY_TS3_JCE_CRYPTO, AppConfig.Ts3.DEFAULT_JCE_CRYPTO);
 
         String ffmpegPathRaw = getSetting(settings, KEY_FFMPEG, DEFAULT_FFMPEG_PATH);
         String ffmpegPath = FfmpegLocator.resolve(ffmpegPathRaw, configPath, autoDownload);
@@ -343,7 +446,22 @@ public final class ConfigService {
             mediaImageMode,
             mediaImageThumbSize,
             mediaImageCoverSize,
-            audioQuality
+            audioQuality,
+            audioLateFramePolicy,
+            audioMaxCatchUpFrames,
+            audioBufferFrames,
+            audioPrefetchSeconds,
+            audioOpusPassthrough,
+            audioPauseKeepAliveSeconds,
+            audioLoudnessTargetLufs,
+            audioEncodeCpuPercent,
+            audioNetworkAdaptive,
+            audioSilenceHangoverMs,
+            audioWarmDecoders,
+            audioJavaOpusDecode,
+            audioHistorySeconds,
+            audioSnippetSeconds,
+            ts3JceCrypto
         );
     }
 
@@ -534,6 +652,51 @@ public final class ConfigService {
                 settings.put(KEY_MEDIA_IMAGE_COVER_SIZE, Long.toString(mediaImageCoverSize));
             }
             putIfNotBlank(settings, KEY_AUDIO_QUALITY, toml.getString("audio.quality"));
+            putIfNotBlank(settings, KEY_AUDIO_LATE_FRAME_POLICY, toml.getString("audio.late_frame_policy"));
+            Long audioMaxCatchUpFrames = toml.getLong("audio.max_catch_up_frames");
+            if (audioMaxCatchUpFrames != null) {
+                settings.put(KEY_AUDIO_MAX_CATCH_UP_FRAMES, Long.toString(audioMaxCatchUpFrames));
+            }
+            Long audioBufferFrames = toml.getLong("audio.buffer_frames");
+            if (audioBufferFrames != null) {
+                settings.put(KEY_AUDIO_BUFFER_FRAMES, Long.toString(audioBufferFrames));
+            }
+            Long audioPrefetchSeconds = toml.getLong("audio.prefetch_seconds");
+            if (audioPrefetchSeconds != null) {
+                settings.put(KEY_AUDIO_PREFETCH_SECONDS, Long.toString(audioPrefetchSeconds));
+            }
+            putIfNotBlank(settings, KEY_AUDIO_OPUS_PASSTHROUGH, toBooleanString(toml.getBoolean("audio.opus_passthrough")));
+            Long audioPauseKeepAliveSeconds = toml.getLong("audio.pause_keepalive_seconds");
+            if (audioPauseKeepAliveSeconds != null) {
+                settings.put(KEY_AUDIO_PAUSE_KEEPALIVE_SECONDS, Long.toString(audioPauseKeepAliveSeconds));
+            }
+            Long audioLoudnessTargetLufs = toml.getLong("audio.loudness_target_lufs");
+            if (audioLoudnessTargetLufs != null) {
+                settings.put(KEY_AUDIO_LOUDNESS_TARGET_LUFS, Long.toString(audioLoudnessTargetLufs));
+            }
+            Long audioEncodeCpuPercent = toml.getLong("audio.encode_cpu_percent");
+            if (audioEncodeCpuPercent != null) {
+                settings.put(KEY_AUDIO_ENCODE_CPU_PERCENT, Long.toString(audioEncodeCpuPercent));
+            }
+            putIfNotBlank(settings, KEY_AUDIO_NETWORK_ADAPTIVE, toBooleanString(toml.getBoolean("audio.network_adaptive")));
+            Long audioSilenceHangoverMs = toml.getLong("audio.silence_hangover_ms");
+            if (audioSilenceHangoverMs != null) {
+                settings.put(KEY_AUDIO_SILENCE_HANGOVER_MS, Long.toString(audioSilenceHangoverMs));
+            }
+            Long audioWarmDecoders = toml.getLong("audio.warm_decoders");
+            if (audioWarmDecoders != null) {
+                settings.put(KEY_AUDIO_WARM_DECODERS, Long.toString(audioWarmDecoders));
+            }
+            putIfNotBlank(settings, KEY_AUDIO_JAVA_OPUS_DECODE, toBooleanString(toml.getBoolean("audio.java_opus_decode")));
+            Long audioHistorySeconds = toml.getLong("audio.history_seconds");
+            if (audioHistorySeconds != null) {
+                settings.put(KEY_AUDIO_HISTORY_SECONDS, Long.toString(audioHistorySeconds));
+            }
+            Long audioSnippetSeconds = toml.getLong("audio.snippet_seconds");
+            if (audioSnippetSeconds != null) {
+                settings.put(KEY_AUDIO_SNIPPET_SECONDS, Long.toString(audioSnippetSeconds));
+            }
+            putIfNotBlank(settings, KEY_TS3_JCE_CRYPTO, toBooleanString(toml.getBoolean("ts3.jce_crypto")));
             putIfNotBlank(settings, KEY_CACHE_YTDLP_TEMP_DIR, toml.getString("cache.ytdlp_temp_dir"));
             putIfNotBlank(settings, KEY_CACHE_YTDLP_CACHE_DIR, toml.getString("cache.ytdlp_cache_dir"));
 
@@ -584,6 +747,21 @@ public final class ConfigService {
         putSpring(settings, KEY_STORAGE_DATA_DIR, environment, "ts3audiobot.storage.data-dir");
         putSpring(settings, KEY_STORAGE_QUEUE_FILE, environment, "ts3audiobot.storage.queue-file");
         putSpring(settings, KEY_AUDIO_QUALITY, environment, "ts3audiobot.audio.quality");
+        putSpring(settings, KEY_AUDIO_LATE_FRAME_POLICY, environment, "ts3audiobot.audio.late-frame-policy");
+        putSpring(settings, KEY_AUDIO_MAX_CATCH_UP_FRAMES, environment, "ts3audiobot.audio.max-catch-up-frames");
+        putSpring(settings, KEY_AUDIO_BUFFER_FRAMES, environment, "ts3audiobot.audio.buffer-frames");
+        putSpring(settings, KEY_AUDIO_PREFETCH_SECONDS, environment, "ts3audiobot.audio.prefetch-seconds");
+        putSpring(settings, KEY_AUDIO_OPUS_PASSTHROUGH, environment, "ts3audiobot.audio.opus-passthrough");
+        putSpring(settings, KEY_AUDIO_PAUSE_KEEPALIVE_SECONDS, environment, "ts3audiobot.audio.pause-keepalive-seconds");
+        putSpring(settings, KEY_AUDIO_LOUDNESS_TARGET_LUFS, environment, "ts3audiobot.audio.loudness-target-lufs");
+        putSpring(settings, KEY_AUDIO_ENCODE_CPU_PERCENT, environment, "ts3audiobot.audio.encode-cpu-percent");
+        putSpring(settings, KEY_AUDIO_NETWORK_ADAPTIVE, environment, "ts3audiobot.audio.network-adaptive");
+        putSpring(settings, KEY_AUDIO_SILENCE_HANGOVER_MS, environment, "ts3audiobot.audio.silence-hangover-ms");
+        putSpring(settings, KEY_AUDIO_WARM_DECODERS, environment, "ts3audiobot.audio.warm-decoders");
+        putSpring(settings, KEY_AUDIO_JAVA_OPUS_DECODE, environment, "ts3audiobot.audio.java-opus-decode");
+        putSpring(settings, KEY_AUDIO_HISTORY_SECONDS, environment, "ts3audiobot.audio.history-seconds");
+        putSpring(settings, KEY_AUDIO_SNIPPET_SECONDS, environment, "ts3audiobot.audio.snippet-seconds");
+        putSpring(settings, KEY_TS3_JCE_CRYPTO, environment, "ts3audiobot.ts3.jce-crypto");
         putSpring(settings, KEY_CACHE_YTDLP_TEMP_DIR, environment, "ts3audiobot.cache.ytdlp-temp-dir");
         putSpring(settings, KEY_CACHE_YTDLP_CACHE_DIR, environment, "ts3audiobot.cache.ytdlp-cache-dir");
         if (!settings.containsKey(KEY_WEB_PORT)) {
@@ -1030,7 +1208,22 @@ public final class ConfigService {
         AppConfig.ImageMode mediaImageMode,
         int mediaImageThumbSize,
         int mediaImageCoverSize,
-        String audioQuality
+        String audioQuality,
+        AppConfig.LateFramePolicy audioLateFramePolicy,
+        int audioMaxCatchUpFrames,
+        int audioBufferFrames,
+        int audioPrefetchSeconds,
+        boolean audioOpusPassthrough,
+        int audioPauseKeepAliveSeconds,
+        int audioLoudnessTargetLufs,
+        int audioEncodeCpuPercent,
+        boolean audioNetworkAdaptive,
+        int audioSilenceHangoverMs,
+        int audioWarmDecoders,
+        boolean audioJavaOpusDecode,
+        int audioHistorySeconds,
+        int audioSnippetSeconds,
+        boolean ts3JceCrypto
     ) {
     }
 
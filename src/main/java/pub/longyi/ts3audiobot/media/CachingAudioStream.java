@@ -0,0 +1,256 @@
+package pub.longyi.ts3audiobot.media;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 17:45
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 CachingAudioStream 相关功能。
+ */
+
+
+/**
+ * 把源字节流同时写入缓存临时文件的输入流。
+ *
+ * <p>职责：读取方拿到的每个字节同时追加到临时文件；读到结尾且源确认完整（下载进程正常退出、
+ * 字节数与 Content-Length 一致）时交给 {@link Committer} 原子提交，其余情况（提前关闭、读取出错、
+ * 源不完整）都删除临时文件，缓存目录中不会出现残缺文件。缓存写入失败只放弃缓存，不影响播放。</p>
+ * <p>线程安全：读取只允许单线程；{@link #close()} 可由其他线程调用以中止下载，与读取之间通过内部锁协调。</p>
+ * <p>约束：调用方负责最终调用 {@link #close()}。</p>
+ */
+@Slf4j
+final class CachingAudioStream extends InputStream {
+    private static final long PROCESS_EXIT_TIMEOUT_MS = 5000L;
+    private static final int PRIME_BYTES = 16 * 1024;
+
+    private final String label;
+    private final InputStream source;
+    private final Process process;
+    private final long expectedBytes;
+    private final Path temp;
+    private final Committer committer;
+    private final OutputStream cacheOut;
+    private final Object lock = new Object();
+
+    private State state = State.OPEN;
+    private long bytes;
+    private byte[] primed;
+    private int primedOffset;
+    private int primedLength;
+
+    /**
+     * 创建 CachingAudioStream 实例。
+     * @param label 日志标识
+     * @param source 源字节流
+     * @param process 产生源字节流的下载进程，null 表示无
+     * @param expectedBytes 期望的总字节数，未知时为 -1
+     * @param temp 缓存临时文件
+     * @param committer 完整读取后的提交动作
+     * @throws IOException 临时文件无法打开
+     */
+    CachingAudioStream(
+        String label,
+        InputStream source,
+        Process process,
+        long expectedBytes,
+        Path temp,
+        Committer committer
+    ) throws IOException {
+        this.label = label;
+        this.source = source;
+        this.process = process;
+        this.expectedBytes = expectedBytes;
+        this.temp = temp;
+        this.committer = committer;
+        this.cacheOut = new BufferedOutputStream(Files.newOutputStream(temp));
+    }
+
+
+    /**
+     * 阻塞到首批数据到达，数据暂存后由后续读取返回。
+     * @return 收到数据时返回 true，源立即结束时返回 false
+     * @throws IOException 读取失败
+     */
+    boolean awaitData() throws IOException {
+        byte[] head = new byte[PRIME_BYTES];
+        int read = read(head, 0, head.length);
+        if (read <= 0) {
+            return false;
+        }
+        primed = head;
+        primedOffset = 0;
+        primedLength = read;
+        return true;
+    }
+
+
+    /**
+     * 执行 read 操作。
+     * @return 读取的字节，结尾时返回 -1
+     * @throws IOException 读取失败
+     */
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+
+    /**
+     * 执行 read 操作。
+     * @param buffer 输出缓冲区
+     * @param offset 起始偏移
+     * @param length 最大长度
+     * @return 读取的字节数，结尾时返回 -1
+     * @throws IOException 读取失败
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (primed != null) {
+            int count = Math.min(length, primedLength - primedOffset);
+            System.arraycopy(primed, primedOffset, buffer, offset, count);
+            primedOffset += count;
+            if (primedOffset == primedLength) {
+                primed = null;
+            }
+            return count;
+        }
+        int read;
+        try {
+            read = source.read(buffer, offset, length);
+        } catch (IOException ex) {
+            synchronized (lock) {
+                discard("read failed");
+            }
+            throw ex;
+        }
+        synchronized (lock) {
+            if (state != State.OPEN) {
+                return read;
+            }
+            if (read < 0) {
+                finish();
+                return read;
+            }
+            try {
+                cacheOut.write(buffer, offset, read);
+                bytes += read;
+            } catch (IOException ex) {
+                log.warn("[Media] progressive cache write failed {}", label, ex);
+                discard("write failed");
+            }
+        }
+        return read;
+    }
+
+
+    /**
+     * 关闭源并中止下载；尚未提交的临时文件被删除。
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            discard("closed before end of stream");
+        }
+        if (process != null && process.isAlive()) {
+            process.destroy();
+        }
+        try {
+            source.close();
+        } catch (IOException ex) {
+            log.debug("[Media] progressive source close failed {}", label, ex);
+        }
+    }
+
+    private void finish() {
+        String incomplete = verifyComplete();
+        if (incomplete != null) {
+            discard(incomplete);
+            return;
+        }
+        try {
+            cacheOut.close();
+            committer.commit(temp);
+            state = State.COMMITTED;
+            log.info("[Media] progressive cache committed {} bytes={}", label, bytes);
+        } catch (IOException ex) {
+            log.warn("[Media] progressive cache commit failed {}", label, ex);
+            discard("commit failed");
+        }
+    }
+
+    private String verifyComplete() {
+        if (bytes == 0L) {
+            return "empty stream";
+        }
+        if (expectedBytes >= 0L && bytes != expectedBytes) {
+            return "expected " + expectedBytes + " bytes, got " + bytes;
+        }
+        if (process == null) {
+            return null;
+        }
+        try {
+            if (!process.waitFor(PROCESS_EXIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return "downloader did not exit";
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+        int code = process.exitValue();
+        return code == 0 ? null : "downloader exit " + code;
+    }
+
+    private void discard(String reason) {
+        if (state != State.OPEN) {
+            return;
+        }
+        state = State.DISCARDED;
+        try {
+            cacheOut.close();
+        } catch (IOException ex) {
+            log.debug("[Media] progressive cache close failed {}", label, ex);
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException ex) {
+            log.debug("[Media] progressive cache delete failed {}", temp, ex);
+        }
+        log.info("[Media] progressive cache discarded {} reason={}", label, reason);
+    }
+
+    private enum State {
+        OPEN,
+        COMMITTED,
+        DISCARDED
+    }
+
+    /**
+     * 完整读取后的提交动作。
+     */
+    @FunctionalInterface
+    interface Committer {
+        /**
+         * 把临时文件原子移动为缓存文件。
+         * @param temp 已写完并关闭的临时文件
+         * @throws IOException 提交失败
+         */
+        void commit(Path temp) throws IOException;
+    }
+}
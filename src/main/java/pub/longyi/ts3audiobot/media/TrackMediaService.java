@@ -4,6 +4,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
+import pub.longyi.ts3audiobot.audio.LoudnessStore;
+import pub.longyi.ts3audiobot.audio.OpusFrameStore;
+import pub.longyi.ts3audiobot.audio.ProcessStderrMultiplexer;
+import pub.longyi.ts3audiobot.audio.ProgressiveAudioSource;
 import pub.longyi.ts3audiobot.config.AppConfig;
 import pub.longyi.ts3audiobot.config.ConfigService;
 import pub.longyi.ts3audiobot.queue.Track;
@@ -15,6 +19,7 @@ import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -32,6 +37,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -39,14 +45,13 @@ import javax.imageio.ImageIO;
 
 @Slf4j
 @Service
-public final class TrackMediaService {
+public final class TrackMediaService implements OpusFrameStore, ProgressiveAudioSource, LoudnessStore {
     private static final HttpClient HTTP = HttpClient.newBuilder()
         .followRedirects(HttpClient.Redirect.NORMAL)
         .connectTimeout(Duration.ofSeconds(15))
         .build();
 
     private static final Duration DOWNLOAD_TIMEOUT = Duration.ofSeconds(60);
-    private static final long PROCESS_TIMEOUT_MS = 180_000L;
     private static final String MEDIA_DIR_PROPERTY = "ts3audiobot.media.dir";
     private static final String DEFAULT_MEDIA_DIR = "media";
     private static final String CACHE_AUDIO_DIR = "audio";
@@ -54,9 +59,19 @@ public final class TrackMediaService {
     private static final String CACHE_TRACK_DIR = "track";
     private static final String CACHE_TMP_DIR = "tmp";
     private static final String CACHE_TOUCH_FILE = ".last_access";
+    // Must not start with "audio." so findCachedFile never mistakes it for the source audio.
+    private static final String OPUS_FRAMES_PREFIX = "opus-";
+    private static final String OPUS_FRAMES_SUFFIX = ".frames";
+    private static final String OPUS_SNIPPET_SUFFIX = ".snippet";
     private static final String TRACK_BINDING_FILE = "binding.properties";
     private static final String BINDING_AUDIO_KEY = "audioKey";
     private static final String BINDING_COVER_KEY = "coverKey";
+    private static final String LOUDNESS_FILE = "loudness.properties";
+    private static final String LOUDNESS_INTEGRATED_KEY = "integratedLufs";
+    private static final String AUDIO_BASE_NAME = "audio";
+    private static final String YT_DLP_STDOUT = "-";
+    private static final String UNKNOWN_AUDIO_EXTENSION = ".bin";
+    private static final int AUDIO_SNIFF_BYTES = 12;
     private static final int DEFAULT_CACHE_TTL_HOURS = 24 * 30;
     private static final int DEFAULT_THUMB_SIZE = 120;
     private static final int DEFAULT_COVER_SIZE = 360;
@@ -154,6 +169,138 @@ public final class TrackMediaService {
         deleteDirectoryQuietly(resolveLegacyTrackDir(track));
     }
 
+    @Override
+    public Optional<Path> findOpusFrames(String trackId, int bitrate) {
+        if (!mediaCacheEnabled || !audioCacheEnabled || bitrate <= 0) {
+            return Optional.empty();
+        }
+        Path trackDir = resolveTrackCacheEntryDir(trackId);
+        if (trackDir == null) {
+            return Optional.empty();
+        }
+        Path file = trackDir.resolve(opusFramesFileName(bitrate));
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        markCacheEntryTouched(trackDir);
+        return Optional.of(file);
+    }
+
+    @Override
+    public Path opusFramesTarget(String trackId, int bitrate) {
+        if (!mediaCacheEnabled || !audioCacheEnabled || bitrate <= 0) {
+            return null;
+        }
+        Path trackDir = ensureCacheEntryDir(trackCacheDir, trackId);
+        return trackDir == null ? null : trackDir.resolve(opusFramesFileName(bitrate));
+    }
+
+    @Override
+    public void onOpusFramesCommitted(String trackId, Path file) {
+        markCacheEntryTouched(file == null ? null : file.getParent());
+        enforceCacheSizeLimitIfNeeded();
+    }
+
+    @Override
+    public Optional<Path> findOpusSnippet(String trackId, int bitrate) {
+        if (!mediaCacheEnabled || !audioCacheEnabled || bitrate <= 0) {
+            return Optional.empty();
+        }
+        Path trackDir = resolveTrackCacheEntryDir(trackId);
+        if (trackDir == null) {
+            return Optional.empty();
+        }
+        Path file = trackDir.resolve(opusSnippetFileName(bitrate));
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    @Override
+    public Path opusSnippetTarget(String trackId, int bitrate) {
+        if (!mediaCacheEnabled || !audioCacheEnabled || bitrate <= 0) {
+            return null;
+        }
+        Path trackDir = ensureCacheEntryDir(trackCacheDir, trackId);
+        return trackDir == null ? null : trackDir.resolve(opusSnippetFileName(bitrate));
+    }
+
+    @Override
+    public Optional<Path> findCachedAudio(String trackId) {
+        if (!mediaCacheEnabled || !audioCacheEnabled) {
+            return Optional.empty();
+        }
+        return findCachedFile(resolveTrackCacheEntryDir(trackId), "audio.");
+    }
+
+    @Override
+    public boolean isLoudnessStoreEnabled() {
+        return mediaCacheEnabled;
+    }
+
+    @Override
+    public OptionalDouble findLoudness(String trackId) {
+        if (!mediaCacheEnabled) {
+            return OptionalDouble.empty();
+        }
+        Path trackDir = resolveTrackCacheEntryDir(trackId);
+        if (trackDir == null) {
+            return OptionalDouble.empty();
+        }
+        Path file = trackDir.resolve(LOUDNESS_FILE);
+        if (Files.notExists(file)) {
+            return OptionalDouble.empty();
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+            return OptionalDouble.of(Double.parseDouble(properties.getProperty(LOUDNESS_INTEGRATED_KEY, "").trim()));
+        } catch (IOException | NumberFormatException ex) {
+            log.debug("Ignoring unreadable loudness file {}", file, ex);
+            return OptionalDouble.empty();
+        }
+    }
+
+    @Override
+    public void storeLoudness(String trackId, double integratedLufs) {
+        if (!mediaCacheEnabled) {
+            return;
+        }
+        Path trackDir = ensureCacheEntryDir(trackCacheDir, trackId);
+        if (trackDir == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(LOUDNESS_INTEGRATED_KEY, Double.toString(integratedLufs));
+        Path target = trackDir.resolve(LOUDNESS_FILE);
+        try {
+            Path temp = createTempFile("loudness", ".properties");
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                properties.store(output, null);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("Failed to store loudness {}", target, ex);
+        }
+    }
+
+    @Override
+    public Optional<InputStream> openProgressive(String botId, Track track) {
+        if (track == null || isBlank(track.id()) || !mediaCacheEnabled || !audioCacheEnabled) {
+            return Optional.empty();
+        }
+        if (isExistingLocalPath(track.streamUrl())) {
+            return Optional.empty();
+        }
+        Path trackDir = ensureCacheEntryDir(trackCacheDir, track.id());
+        if (trackDir == null || findCachedFile(trackDir, "audio.").isPresent()) {
+            return Optional.empty();
+        }
+        CachingAudioStream stream = openYtDlpProgressive(botId, track, trackDir);
+        if (stream == null && isHttpUrl(track.streamUrl())) {
+            stream = openHttpProgressive(track, trackDir);
+        }
+        return Optional.ofNullable(stream);
+    }
+
     public Optional<Path> findCoverFile(String trackId) {
         return findCoverFile(trackId, 0);
     }
@@ -343,58 +490,11 @@ public final class TrackMediaService {
             enforceCacheSizeLimitIfNeeded();
             return migratedLegacyShared.get().toAbsolutePath().normalize().toString();
         }
-        if (cacheAudioWithYtDlp(botId, track, trackDir)) {
-            markCacheEntryTouched(trackDir);
-            enforceCacheSizeLimitIfNeeded();
-            return findCachedFile(trackDir, "audio.").map(path -> path.toAbsolutePath().normalize().toString()).orElse(track.streamUrl());
-        }
-        if (isHttpUrl(track.streamUrl())) {
-            try {
-                DownloadedFile downloaded = downloadHttpFile(track.streamUrl(), trackDir, "audio", false);
-                if (downloaded != null) {
-                    markCacheEntryTouched(trackDir);
-                    enforceCacheSizeLimitIfNeeded();
-                    return downloaded.path().toAbsolutePath().normalize().toString();
-                }
-            } catch (Exception ex) {
-                log.warn("Failed to cache direct audio for track {}", track.id(), ex);
-            }
-        }
+        // Uncached audio is downloaded while it plays, see openProgressive.
         return track.streamUrl();
     }
 
-    private boolean cacheAudioWithYtDlp(String botId, Track track, Path trackDir) {
-        String sourceId = track.sourceId();
-        if (!isHttpUrl(sourceId)) {
-            return false;
-        }
-        String command = resolveYtCommand(track.sourceType(), sourceId);
-        if (isBlank(command)) {
-            return false;
-        }
-        List<String> args = buildYtDlpCacheArgs(botId, track, trackDir);
-        ProcessBuilder builder = new ProcessBuilder(args);
-        builder.redirectErrorStream(true);
-        try {
-            Process process = builder.start();
-            boolean finished = process.waitFor(PROCESS_TIMEOUT_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
-            if (!finished) {
-                process.destroyForcibly();
-                log.warn("Audio cache timeout for track {}", track.id());
-                return false;
-            }
-            if (process.exitValue() != 0) {
-                log.warn("Audio cache command exit {} for track {}", process.exitValue(), track.id());
-                return false;
-            }
-            return findCachedFile(trackDir, "audio.").isPresent();
-        } catch (Exception ex) {
-            log.warn("Failed to cache audio with yt-dlp for track {}", track.id(), ex);
-            return false;
-        }
-    }
-
-    private List<String> buildYtDlpCacheArgs(String botId, Track track, Path trackDir) {
+    private List<String> buildYtDlpCacheArgs(String botId, Track track) {
         String sourceId = track == null ? "" : track.sourceId();
         String sourceType = track == null ? "" : track.sourceType();
         String command = resolveYtCommand(sourceType, sourceId);
@@ -421,11 +521,132 @@ public final class TrackMediaService {
             }
         }
         args.add("-o");
-        args.add(trackDir.resolve("audio.%(ext)s").toString());
+        args.add(YT_DLP_STDOUT);
         args.add(sourceId);
         return args;
     }
 
+    private CachingAudioStream openYtDlpProgressive(String botId, Track track, Path trackDir) {
+        String sourceId = track.sourceId();
+        if (!isHttpUrl(sourceId) || isBlank(resolveYtCommand(track.sourceType(), sourceId))) {
+            return null;
+        }
+        ProcessBuilder builder = new ProcessBuilder(buildYtDlpCacheArgs(botId, track));
+        Process process = null;
+        try {
+            process = builder.start();
+            // stdout carries the audio bytes; stderr goes to the shared reader so it never blocks the download.
+            ProcessStderrMultiplexer.shared().register(process, "yt-dlp");
+            Path temp = createTempFile(AUDIO_BASE_NAME, "");
+            CachingAudioStream stream = new CachingAudioStream(
+                "track=" + track.id(),
+                process.getInputStream(),
+                process,
+                -1L,
+                temp,
+                file -> commitProgressiveAudio(trackDir, file, UNKNOWN_AUDIO_EXTENSION)
+            );
+            return awaitProgressiveData(stream, track);
+        } catch (Exception ex) {
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            log.warn("Failed to stream audio with yt-dlp for track {}", track.id(), ex);
+            return null;
+        }
+    }
+
+    private CachingAudioStream openHttpProgressive(Track track, Path trackDir) {
+        String url = track.streamUrl();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(DOWNLOAD_TIMEOUT)
+                .header("User-Agent", "Mozilla/5.0 TS3AudioBot")
+                .GET()
+                .build();
+            HttpResponse<InputStream> response = HTTP.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                response.body().close();
+                return null;
+            }
+            String extension = guessExtension(url, response.headers().firstValue("Content-Type").orElse(""), false);
+            CachingAudioStream stream = new CachingAudioStream(
+                "track=" + track.id(),
+                response.body(),
+                null,
+                response.headers().firstValueAsLong("Content-Length").orElse(-1L),
+                createTempFile(AUDIO_BASE_NAME, extension),
+                file -> commitProgressiveAudio(trackDir, file, extension)
+            );
+            return awaitProgressiveData(stream, track);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception ex) {
+            log.warn("Failed to stream direct audio for track {}", track.id(), ex);
+            return null;
+        }
+    }
+
+    private CachingAudioStream awaitProgressiveData(CachingAudioStream stream, Track track) {
+        try {
+            if (stream.awaitData()) {
+                return stream;
+            }
+            log.warn("Audio stream ended before any data for track {}", track.id());
+        } catch (IOException ex) {
+            log.warn("Audio stream failed before any data for track {}", track.id(), ex);
+        }
+        stream.close();
+        return null;
+    }
+
+    private void commitProgressiveAudio(Path trackDir, Path temp, String fallbackExtension) throws IOException {
+        String extension = sniffAudioExtension(temp).orElse(fallbackExtension);
+        Files.createDirectories(trackDir);
+        Path target = trackDir.resolve(AUDIO_BASE_NAME + extension);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        markCacheEntryTouched(trackDir);
+        enforceCacheSizeLimitIfNeeded();
+    }
+
+    private Optional<String> sniffAudioExtension(Path file) throws IOException {
+        byte[] head = new byte[AUDIO_SNIFF_BYTES];
+        int length;
+        try (InputStream in = Files.newInputStream(file)) {
+            length = in.readNBytes(head, 0, head.length);
+        }
+        if (length < 4) {
+            return Optional.empty();
+        }
+        String ascii = new String(head, 0, length, java.nio.charset.StandardCharsets.ISO_8859_1);
+        if (ascii.startsWith("OggS")) {
+            return Optional.of(".ogg");
+        }
+        if ((head[0] & 0xff) == 0x1A && (head[1] & 0xff) == 0x45 && (head[2] & 0xff) == 0xDF && (head[3] & 0xff) == 0xA3) {
+            return Optional.of(".webm");
+        }
+        if (ascii.startsWith("fLaC")) {
+            return Optional.of(".flac");
+        }
+        if (ascii.startsWith("RIFF")) {
+            return Optional.of(".wav");
+        }
+        if (length >= 8 && ascii.startsWith("ftyp", 4)) {
+            return Optional.of(".m4a");
+        }
+        if (ascii.startsWith("ID3")) {
+            return Optional.of(".mp3");
+        }
+        if ((head[0] & 0xff) == 0xFF && (head[1] & 0xF6) == 0xF0) {
+            return Optional.of(".aac");
+        }
+        if ((head[0] & 0xff) == 0xFF && (head[1] & 0xE0) == 0xE0) {
+            return Optional.of(".mp3");
+        }
+        return Optional.empty();
+    }
+
     private String resolveAuthReferer(String sourceType, String sourceId) {
         String normalized = normalizeSourceType(sourceType);
         String lowerSourceId = sourceId == null ? "" : sourceId.toLowerCase(Locale.ROOT);
@@ -1102,6 +1323,14 @@ public final class TrackMediaService {
         return lower.startsWith("http://") || lower.startsWith("https://");
     }
 
+    private String opusFramesFileName(int bitrate) {
+        return OPUS_FRAMES_PREFIX + bitrate + OPUS_FRAMES_SUFFIX;
+    }
+
+    private String opusSnippetFileName(int bitrate) {
+        return OPUS_FRAMES_PREFIX + bitrate + OPUS_SNIPPET_SUFFIX;
+    }
+
     private boolean isBlank(String value) {
         return value == null || value.isBlank();
     }
@@ -228,6 +228,64 @@ public final class QueueService {
     }
 
 
+    /**
+     * 预读顺序模式下的下一首，不移动游标。
+     * @param botId 参数 botId
+     * @param playlistId 参数 playlistId
+     * @return 随后 {@link #next(String, String)} 将返回的条目，没有时返回 null
+     */
+    public QueueItem peekNext(String botId, String playlistId) {
+        synchronized (stateLock) {
+            List<QueueItem> queue = resolveQueue(botId, playlistId);
+            int index = resolvePosition(botId, playlistId);
+            if (index < 0 || index >= queue.size()) {
+                return null;
+            }
+            return queue.get(index);
+        }
+    }
+
+
+    /**
+     * 预读单曲循环模式下的下一首，不移动游标。
+     * @param botId 参数 botId
+     * @param playlistId 参数 playlistId
+     * @return 随后 {@link #nextLoop(String, String)} 将返回的条目，没有时返回 null
+     */
+    public QueueItem peekNextLoop(String botId, String playlistId) {
+        synchronized (stateLock) {
+            List<QueueItem> queue = resolveQueue(botId, playlistId);
+            if (queue.isEmpty()) {
+                return null;
+            }
+            int pos = resolvePosition(botId, playlistId);
+            int index = Math.max(0, Math.min(queue.size() - 1, pos - 1));
+            return queue.get(index);
+        }
+    }
+
+
+    /**
+     * 预读列表循环模式下的下一首，不移动游标。
+     * @param botId 参数 botId
+     * @param playlistId 参数 playlistId
+     * @return 随后 {@link #nextListLoop(String, String)} 将返回的条目，没有时返回 null
+     */
+    public QueueItem peekNextListLoop(String botId, String playlistId) {
+        synchronized (stateLock) {
+            List<QueueItem> queue = resolveQueue(botId, playlistId);
+            if (queue.isEmpty()) {
+                return null;
+            }
+            int index = resolvePosition(botId, playlistId);
+            if (index < 0 || index >= queue.size()) {
+                index = 0;
+            }
+            return queue.get(index);
+        }
+    }
+
+
     /**
      * 鎵ц nextRandom 鎿嶄綔銆?     * @param botId 鍙傛暟 botId
      * @param playlistId 鍙傛暟 playlistId
@@ -93,6 +93,34 @@ public final class ShufflePlaybackService {
         }
     }
 
+    /**
+     * 预读随机序列中的下一首，不移动游标。
+     *
+     * <p>若会话需要重建（歌单变化/脏状态），这里会以当前曲目为锚点提前重建，随后的 {@link #next} 会得到同一首；
+     * 当前轮次已播完时下一轮顺序尚未确定，返回 null。</p>
+     */
+    public QueueItem peekNext(
+        String botId,
+        String playlistId,
+        List<QueueItem> queueItems,
+        Random random,
+        String currentItemId
+    ) {
+        synchronized (stateLock) {
+            SelectionContext context = ensureReady(botId, playlistId, queueItems, random, currentItemId, false);
+            persistSnapshot();
+            if (context == null || context.orderedIds().isEmpty()) {
+                return null;
+            }
+            ShuffleSessionState state = context.state();
+            int nextIndex = state.cursor() + 1;
+            if (nextIndex >= state.orderItemIds().size()) {
+                return null;
+            }
+            return context.itemById().get(state.orderItemIds().get(nextIndex));
+        }
+    }
+
     /**
      * 随机模式回退上一首，按随机序列反向移动。
      */
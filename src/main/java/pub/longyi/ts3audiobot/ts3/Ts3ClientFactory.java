@@ -1,6 +1,7 @@
 package pub.longyi.ts3audiobot.ts3;
 
 import org.springframework.stereotype.Component;
+import pub.longyi.ts3audiobot.config.ConfigService;
 import pub.longyi.ts3audiobot.ts3.full.TsFullClient;
 
 /**
@@ -23,11 +24,22 @@ import pub.longyi.ts3audiobot.ts3.full.TsFullClient;
  */
 @Component
 public final class Ts3ClientFactory {
+    private final ConfigService configService;
+
+    /**
+     * 创建 Ts3ClientFactory 实例。
+     * @param configService 参数 configService
+     */
+    public Ts3ClientFactory(ConfigService configService) {
+        this.configService = configService;
+    }
+
+
     /**
      * 执行 create 操作。
      * @return 返回值
      */
     public Ts3VoiceClient create() {
-        return new TsFullClient();
+        return new TsFullClient(configService.get().ts3.jceCrypto);
     }
 }
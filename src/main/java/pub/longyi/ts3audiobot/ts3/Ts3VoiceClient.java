@@ -1,6 +1,7 @@
 package pub.longyi.ts3audiobot.ts3;
 
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by: Arthur Zhu
@@ -53,4 +54,22 @@ public interface Ts3VoiceClient extends Ts3Client {
     default boolean updateClientAvatar(Path avatarFile) {
         return false;
     }
+
+    /**
+     * 异步更新机器人昵称，不等待服务器响应。
+     * @param nickname 参数 nickname
+     * @return 是否成功，不会异常完成
+     */
+    default CompletableFuture<Boolean> updateClientNicknameAsync(String nickname) {
+        return CompletableFuture.completedFuture(updateClientNickname(nickname));
+    }
+
+    /**
+     * 异步更新机器人头像，不等待上传完成。
+     * @param avatarFile 参数 avatarFile
+     * @return 是否成功，不会异常完成
+     */
+    default CompletableFuture<Boolean> updateClientAvatarAsync(Path avatarFile) {
+        return CompletableFuture.completedFuture(updateClientAvatar(avatarFile));
+    }
 }
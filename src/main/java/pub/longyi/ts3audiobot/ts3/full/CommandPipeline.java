@@ -0,0 +1,233 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import pub.longyi.ts3audiobot.ts3.command.ParsedCommand;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-17 00:30
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 CommandPipeline 相关功能。
+ */
+
+
+/**
+ * 按 return_code 关联的在途命令表。
+ *
+ * <p>职责：允许多条命令同时等待响应，按发送顺序登记；服务器按顺序处理命令，
+ * 不带 return_code 的数据行归属最早登记的命令，error 行按 return_code 完成对应命令。
+ * 并发窗口在收到 flood 错误时收缩为 1，之后每次成功加 1，直到上限。</p>
+ * <p>线程安全：线程安全，内部加锁，不阻塞；响应在完成命令的线程上交付。</p>
+ * <p>约束：调用方需保证登记顺序与命令实际发出的顺序一致；return_code 在 1~32767 之间循环，跳过仍在途的编号。</p>
+ */
+public final class CommandPipeline {
+    private static final int MAX_RETURN_CODE = 0x7FFF;
+
+    private final int maxInFlight;
+    private final Object lock = new Object();
+    private final Map<Integer, Entry> inFlight = new LinkedHashMap<>();
+    private int window;
+    private int nextReturnCode = 1;
+
+    /**
+     * 创建 CommandPipeline 实例。
+     * @param maxInFlight 同时在途的命令数上限
+     */
+    CommandPipeline(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.window = this.maxInFlight;
+    }
+
+
+    /**
+     * 并发窗口有空位时登记一条命令，不等待。
+     * @param commandName 命令名
+     * @return 登记项；窗口已满时为 null
+     */
+    Entry tryRegister(String commandName) {
+        synchronized (lock) {
+            if (inFlight.size() >= window) {
+                return null;
+            }
+            Entry entry = new Entry(allocateReturnCode(), commandName);
+            inFlight.put(entry.returnCode, entry);
+            return entry;
+        }
+    }
+
+
+    /**
+     * 执行 oldest 操作。
+     * @return 最早登记且尚未完成的命令，没有时为 null
+     */
+    Entry oldest() {
+        synchronized (lock) {
+            return inFlight.isEmpty() ? null : inFlight.values().iterator().next();
+        }
+    }
+
+
+    /**
+     * 执行 find 操作。
+     * @param returnCode error 行中的 return_code
+     * @return 对应的在途命令，没有时为 null
+     */
+    Entry find(int returnCode) {
+        synchronized (lock) {
+            return inFlight.get(returnCode);
+        }
+    }
+
+
+    /**
+     * 按命令名查找最早登记的在途命令。
+     * @param commandName 命令名，不区分大小写
+     * @return 在途命令，没有时为 null
+     */
+    Entry findByName(String commandName) {
+        synchronized (lock) {
+            for (Entry entry : inFlight.values()) {
+                if (entry.commandName.equalsIgnoreCase(commandName)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * 以 error 行完成一条命令并移出在途表。
+     * @param entry 在途命令
+     * @param error 该命令的 error 行
+     */
+    void complete(Entry entry, ParsedCommand error) {
+        List<ParsedCommand> lines;
+        synchronized (lock) {
+            if (inFlight.remove(entry.returnCode) != entry) {
+                return;
+            }
+            lines = List.copyOf(entry.lines);
+        }
+        entry.future.complete(new Response(entry.returnCode, lines, error));
+    }
+
+
+    /**
+     * 把未收到响应（超时或已放弃）的命令移出在途表，可重复调用。
+     * @param entry 在途命令
+     */
+    void release(Entry entry) {
+        synchronized (lock) {
+            inFlight.remove(entry.returnCode, entry);
+        }
+    }
+
+
+    /**
+     * 记录一次成功响应，并发窗口加 1。
+     */
+    void onSuccess() {
+        synchronized (lock) {
+            if (window < maxInFlight) {
+                window++;
+            }
+        }
+    }
+
+
+    /**
+     * 记录一次 flood 错误，并发窗口收缩为 1。
+     */
+    void onFlood() {
+        synchronized (lock) {
+            window = 1;
+        }
+    }
+
+
+    /**
+     * 以空响应结束所有在途命令，用于断开或重连，并发窗口恢复上限。
+     */
+    void cancelAll() {
+        List<Entry> cancelled;
+        synchronized (lock) {
+            cancelled = new ArrayList<>(inFlight.values());
+            inFlight.clear();
+            window = maxInFlight;
+        }
+        for (Entry entry : cancelled) {
+            entry.future.complete(null);
+        }
+    }
+
+
+    /**
+     * 执行 window 操作。
+     * @return 当前并发窗口
+     */
+    int window() {
+        synchronized (lock) {
+            return window;
+        }
+    }
+
+
+    /**
+     * 执行 inFlight 操作。
+     * @return 在途命令数
+     */
+    int inFlight() {
+        synchronized (lock) {
+            return inFlight.size();
+        }
+    }
+
+    private int allocateReturnCode() {
+        while (true) {
+            int code = nextReturnCode;
+            nextReturnCode = code >= MAX_RETURN_CODE ? 1 : code + 1;
+            if (!inFlight.containsKey(code)) {
+                return code;
+            }
+        }
+    }
+
+
+    /**
+     * 在途命令。
+     *
+     * <p>职责：保存命令名、return_code、已收到的数据行与完成时交付响应的 future。</p>
+     * <p>线程安全：数据行只由收包线程追加；future 线程安全。</p>
+     * <p>约束：future 以 null 完成表示连接已断开。</p>
+     */
+    static final class Entry {
+        final int returnCode;
+        final String commandName;
+        final List<ParsedCommand> lines = new ArrayList<>();
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+
+        private Entry(int returnCode, String commandName) {
+            this.returnCode = returnCode;
+            this.commandName = commandName;
+        }
+    }
+
+
+    /**
+     * 命令响应。
+     * @param returnCode 命令的 return_code
+     * @param commands error 行之前收到的数据行
+     * @param error error 行
+     */
+    public record Response(int returnCode, List<ParsedCommand> commands, ParsedCommand error) {
+    }
+}
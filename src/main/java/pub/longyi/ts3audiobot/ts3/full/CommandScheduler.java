@@ -0,0 +1,210 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
+import java.util.function.LongSupplier;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-17 01:10
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 CommandScheduler 相关功能。
+ */
+
+
+/**
+ * 单个连接的命令发送队列与后台执行器。
+ *
+ * <p>职责：命令按提交顺序排队，由执行器在 flood 退避结束且 {@link CommandPipeline} 有空位时登记并发出；
+ * 提交方立即拿到 future，不在退避或等待窗口时阻塞。执行器同时承担命令重试的延迟调度与头像上传等后台任务。</p>
+ * <p>线程安全：线程安全；出队与发送串行执行，登记顺序与发出顺序一致。</p>
+ * <p>约束：执行器有 {@value #THREADS} 个守护线程，空闲时回收；其中至多一个可被阻塞任务占用，
+ * 阻塞任务需自行串行化。队首等待窗口超过上限时以 null 完成。</p>
+ */
+@Slf4j
+final class CommandScheduler {
+    static final int THREADS = 2;
+    private static final long IDLE_KEEPALIVE_SECONDS = 30L;
+    private static final String THREAD_NAME = "ts3-command";
+
+    private final CommandPipeline pipeline;
+    private final long windowWaitMs;
+    private final LongSupplier backoffUntilMs;
+    private final BooleanSupplier open;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Object lock = new Object();
+    private final Deque<Pending> queue = new ArrayDeque<>();
+
+    private ScheduledFuture<?> wakeTimer;
+    private long wakeAtMs;
+
+    /**
+     * 创建 CommandScheduler 实例。
+     * @param pipeline 在途命令表
+     * @param windowWaitMs 队首命令等待窗口空位的上限（毫秒）
+     * @param backoffUntilMs flood 退避的结束时刻（毫秒时间戳）
+     * @param open 连接是否仍可用，不可用时丢弃排队的命令
+     */
+    CommandScheduler(CommandPipeline pipeline, long windowWaitMs, LongSupplier backoffUntilMs, BooleanSupplier open) {
+        this.pipeline = pipeline;
+        this.windowWaitMs = windowWaitMs;
+        this.backoffUntilMs = backoffUntilMs;
+        this.open = open;
+        this.executor = new ScheduledThreadPoolExecutor(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setKeepAliveTime(IDLE_KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+
+    /**
+     * 排队一条命令，轮到它时登记 return_code 并调用 send 发出。
+     * @param name 命令名
+     * @param send 以 return_code 发出命令，返回是否已发出
+     * @return 已发出的登记项；连接不可用、等待窗口超时或发送失败时为 null
+     */
+    CompletableFuture<CommandPipeline.Entry> submit(String name, IntPredicate send) {
+        Pending pending = new Pending(name, send);
+        synchronized (lock) {
+            queue.addLast(pending);
+        }
+        wake();
+        return pending.future;
+    }
+
+
+    /**
+     * 在执行器上重新检查队首，用于窗口腾出空位或连接状态变化之后。
+     */
+    void wake() {
+        executor.execute(this::drain);
+    }
+
+
+    /**
+     * 延迟执行一个任务。
+     * @param task 任务，不应长时间阻塞
+     * @param delayMs 延迟（毫秒）
+     */
+    void schedule(Runnable task, long delayMs) {
+        executor.schedule(task, Math.max(0L, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * 在执行器上执行后台任务。
+     * @param task 任务；会阻塞的任务需由调用方保证同一时刻至多一个
+     */
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+
+    /**
+     * 执行 queued 操作。
+     * @return 排队中尚未发出的命令数
+     */
+    int queued() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    private void drain() {
+        synchronized (lock) {
+            while (!queue.isEmpty()) {
+                Pending head = queue.peekFirst();
+                if (!open.getAsBoolean()) {
+                    failQueued();
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                long until = backoffUntilMs.getAsLong();
+                if (until > now) {
+                    if (!head.backoffLogged) {
+                        head.backoffLogged = true;
+                        log.info("[TS3] command delayed name={} waitMs={} reason=flood_backoff", head.name, until - now);
+                    }
+                    wakeAt(until);
+                    return;
+                }
+                CommandPipeline.Entry entry = pipeline.tryRegister(head.name);
+                if (entry == null) {
+                    if (head.windowDeadlineMs == 0L) {
+                        head.windowDeadlineMs = now + windowWaitMs;
+                    }
+                    if (now < head.windowDeadlineMs) {
+                        wakeAt(head.windowDeadlineMs);
+                        return;
+                    }
+                    queue.pollFirst();
+                    log.warn("[TS3] command dropped name={} reason=pending_timeout", head.name);
+                    head.future.complete(null);
+                    continue;
+                }
+                queue.pollFirst();
+                boolean sent;
+                try {
+                    sent = head.send.test(entry.returnCode);
+                } catch (RuntimeException ex) {
+                    log.warn("[TS3] command failed name={} returnCode={}", head.name, entry.returnCode, ex);
+                    sent = false;
+                }
+                if (!sent) {
+                    pipeline.release(entry);
+                    head.future.complete(null);
+                    continue;
+                }
+                head.future.complete(entry);
+            }
+        }
+    }
+
+    private void failQueued() {
+        Pending next;
+        while ((next = queue.pollFirst()) != null) {
+            next.future.complete(null);
+        }
+    }
+
+    private void wakeAt(long atMs) {
+        long now = System.currentTimeMillis();
+        // 已有更早且尚未到期的定时唤醒时不再重复安排；到期的定时器可能正是当前这次执行。
+        if (wakeTimer != null && !wakeTimer.isDone() && wakeAtMs > now && wakeAtMs <= atMs) {
+            return;
+        }
+        if (wakeTimer != null) {
+            wakeTimer.cancel(false);
+        }
+        wakeAtMs = atMs;
+        wakeTimer = executor.schedule(this::drain, Math.max(0L, atMs - now), TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Pending {
+        private final String name;
+        private final IntPredicate send;
+        private final CompletableFuture<CommandPipeline.Entry> future = new CompletableFuture<>();
+        private long windowDeadlineMs;
+        private boolean backoffLogged;
+
+        private Pending(String name, IntPredicate send) {
+            this.name = name;
+            this.send = send;
+        }
+    }
+}
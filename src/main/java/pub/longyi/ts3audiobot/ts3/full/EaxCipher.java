@@ -0,0 +1,312 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.params.KeyParameter;
+import pub.longyi.ts3audiobot.ts3.protocol.ProtocolConst;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-17 00:10
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 EaxCipher 相关功能。
+ */
+
+
+/**
+ * TS3 数据包使用的 AES-128 EAX 加解密引擎。
+ *
+ * <p>职责：按 EAX 定义（三个带前缀的 OMAC 与 CTR）加密或校验解密一个数据包，
+ * 密文直接写入调用方缓冲，CMAC 子密钥、消息暂存区与计数器块在实例内复用；
+ * 分组加密可选 BouncyCastle 的 {@link AESEngine} 或 JDK 的 AES/CBC 与 AES/CTR（可用 AES-NI）。</p>
+ * <p>线程安全：非线程安全，由调用方加锁或每线程一个实例。</p>
+ * <p>约束：密钥与随机数均为 16 字节，认证标签截断为 {@link ProtocolConst#MAC_LEN} 字节；
+ * 输入输出可以是同一数组的同一位置。TS3 每个数据包的密钥都不同，两种实现都要为每个包重建轮密钥；
+ * JDK 实现还要初始化两个密码对象，每包在 JDK 内部复制密钥与计数器并各做一次密钥扩展，
+ * 因此语音连接默认使用 BouncyCastle，只有基准显示 AES-NI 的收益超过这部分开销时才值得改用 JDK 实现。</p>
+ */
+final class EaxCipher {
+    static final int KEY_LEN = 16;
+    static final int TAG_LEN = ProtocolConst.MAC_LEN;
+    private static final int BLOCK = 16;
+    private static final byte[] ZERO_BLOCK = new byte[BLOCK];
+
+    private final BlockBackend backend;
+    private final byte[] subkey1 = new byte[BLOCK];
+    private final byte[] subkey2 = new byte[BLOCK];
+    private final byte[] nonceTag = new byte[BLOCK];
+    private final byte[] headerTag = new byte[BLOCK];
+    private final byte[] cipherTag = new byte[BLOCK];
+    private byte[] message = new byte[512];
+
+    private EaxCipher(BlockBackend backend) {
+        this.backend = backend;
+    }
+
+
+    /**
+     * 创建使用 BouncyCastle AES 的引擎。
+     * @return 引擎
+     */
+    static EaxCipher bouncyCastle() {
+        return new EaxCipher(new BouncyCastleAes());
+    }
+
+
+    /**
+     * 创建使用 JDK AES 的引擎；每个数据包的初始化开销见类说明。
+     * @return 引擎
+     * @throws IllegalStateException JDK 不提供所需的 AES 模式
+     */
+    static EaxCipher jce() {
+        return new EaxCipher(new JceAes());
+    }
+
+
+    /**
+     * 加密并计算认证标签。
+     * @param key 密钥
+     * @param nonce 随机数
+     * @param header 关联数据（包头）
+     * @param in 明文数组
+     * @param inOff 明文起点
+     * @param length 明文长度
+     * @param out 密文数组，写入 length 字节
+     * @param outOff 密文起点
+     * @param tag 标签数组，写入 {@link #TAG_LEN} 字节
+     * @param tagOff 标签起点
+     */
+    void encrypt(
+        byte[] key,
+        byte[] nonce,
+        byte[] header,
+        byte[] in,
+        int inOff,
+        int length,
+        byte[] out,
+        int outOff,
+        byte[] tag,
+        int tagOff
+    ) {
+        prepare(key, nonce, header);
+        backend.ctr(nonceTag, in, inOff, length, out, outOff);
+        omac(2, out, outOff, length, cipherTag);
+        for (int i = 0; i < TAG_LEN; i++) {
+            tag[tagOff + i] = (byte) (nonceTag[i] ^ headerTag[i] ^ cipherTag[i]);
+        }
+    }
+
+
+    /**
+     * 校验认证标签，通过后解密。
+     * @param key 密钥
+     * @param nonce 随机数
+     * @param header 关联数据（包头）
+     * @param in 密文数组
+     * @param inOff 密文起点
+     * @param length 密文长度
+     * @param tag 标签数组
+     * @param tagOff 标签起点
+     * @param out 明文数组，校验通过时写入 length 字节
+     * @param outOff 明文起点
+     * @return 标签是否匹配；不匹配时不写出明文
+     */
+    boolean decrypt(
+        byte[] key,
+        byte[] nonce,
+        byte[] header,
+        byte[] in,
+        int inOff,
+        int length,
+        byte[] tag,
+        int tagOff,
+        byte[] out,
+        int outOff
+    ) {
+        prepare(key, nonce, header);
+        omac(2, in, inOff, length, cipherTag);
+        int diff = 0;
+        for (int i = 0; i < TAG_LEN; i++) {
+            diff |= tag[tagOff + i] ^ nonceTag[i] ^ headerTag[i] ^ cipherTag[i];
+        }
+        if (diff != 0) {
+            return false;
+        }
+        backend.ctr(nonceTag, in, inOff, length, out, outOff);
+        return true;
+    }
+
+    private void prepare(byte[] key, byte[] nonce, byte[] header) {
+        backend.init(key);
+        // CMAC 子密钥：L = E(0)，K1 = dbl(L)，K2 = dbl(K1)。
+        backend.cbcMac(ZERO_BLOCK, BLOCK, subkey1);
+        doubleBlock(subkey1, subkey1);
+        doubleBlock(subkey1, subkey2);
+        omac(0, nonce, 0, nonce.length, nonceTag);
+        omac(1, header, 0, header.length, headerTag);
+    }
+
+    private void omac(int prefix, byte[] data, int offset, int length, byte[] result) {
+        int messageLength = BLOCK + length;
+        boolean complete = messageLength % BLOCK == 0;
+        int padded = complete ? messageLength : (messageLength / BLOCK + 1) * BLOCK;
+        if (message.length < padded) {
+            message = new byte[Math.max(padded, message.length * 2)];
+        }
+        Arrays.fill(message, 0, BLOCK, (byte) 0);
+        message[BLOCK - 1] = (byte) prefix;
+        System.arraycopy(data, offset, message, BLOCK, length);
+        if (!complete) {
+            message[messageLength] = (byte) 0x80;
+            Arrays.fill(message, messageLength + 1, padded, (byte) 0);
+        }
+        byte[] subkey = complete ? subkey1 : subkey2;
+        int last = padded - BLOCK;
+        for (int i = 0; i < BLOCK; i++) {
+            message[last + i] ^= subkey[i];
+        }
+        backend.cbcMac(message, padded, result);
+    }
+
+    private static void doubleBlock(byte[] in, byte[] out) {
+        int carry = (in[0] & 0x80) != 0 ? 0x87 : 0;
+        for (int i = 0; i < BLOCK - 1; i++) {
+            out[i] = (byte) ((in[i] << 1) | ((in[i + 1] & 0xFF) >>> 7));
+        }
+        out[BLOCK - 1] = (byte) ((in[BLOCK - 1] << 1) ^ carry);
+    }
+
+    private interface BlockBackend {
+        void init(byte[] key);
+
+        // 零初始向量的 CBC-MAC，length 为分组长度的整数倍，结果为最后一个分组。
+        void cbcMac(byte[] data, int length, byte[] result);
+
+        // 以 counter 为初始计数器的 CTR，计数器按 128 位大端整数递增。
+        void ctr(byte[] counter, byte[] in, int inOff, int length, byte[] out, int outOff);
+    }
+
+    private static final class BouncyCastleAes implements BlockBackend {
+        private final AESEngine aes = new AESEngine();
+        private final byte[] chain = new byte[BLOCK];
+        private final byte[] counter = new byte[BLOCK];
+        private final byte[] keystream = new byte[BLOCK];
+
+        @Override
+        public void init(byte[] key) {
+            aes.init(true, new KeyParameter(key));
+        }
+
+        @Override
+        public void cbcMac(byte[] data, int length, byte[] result) {
+            Arrays.fill(chain, (byte) 0);
+            for (int offset = 0; offset < length; offset += BLOCK) {
+                for (int i = 0; i < BLOCK; i++) {
+                    chain[i] ^= data[offset + i];
+                }
+                aes.processBlock(chain, 0, chain, 0);
+            }
+            System.arraycopy(chain, 0, result, 0, BLOCK);
+        }
+
+        @Override
+        public void ctr(byte[] initial, byte[] in, int inOff, int length, byte[] out, int outOff) {
+            System.arraycopy(initial, 0, counter, 0, BLOCK);
+            for (int done = 0; done < length; done += BLOCK) {
+                aes.processBlock(counter, 0, keystream, 0);
+                int n = Math.min(BLOCK, length - done);
+                for (int i = 0; i < n; i++) {
+                    out[outOff + done + i] = (byte) (in[inOff + done + i] ^ keystream[i]);
+                }
+                for (int i = BLOCK - 1; i >= 0; i--) {
+                    if (++counter[i] != 0) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class JceAes implements BlockBackend {
+        private static final IvParameterSpec ZERO_IV = new IvParameterSpec(ZERO_BLOCK);
+
+        private final Cipher cbc;
+        private final Cipher ctr;
+        private final PacketKey key = new PacketKey();
+        private byte[] cbcOut = new byte[512];
+
+        private JceAes() {
+            try {
+                cbc = Cipher.getInstance("AES/CBC/NoPadding");
+                ctr = Cipher.getInstance("AES/CTR/NoPadding");
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("AES not available", ex);
+            }
+        }
+
+        @Override
+        public void init(byte[] raw) {
+            System.arraycopy(raw, 0, key.raw, 0, KEY_LEN);
+            try {
+                cbc.init(Cipher.ENCRYPT_MODE, key, ZERO_IV);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("AES init failed", ex);
+            }
+        }
+
+        @Override
+        public void cbcMac(byte[] data, int length, byte[] result) {
+            if (cbcOut.length < length) {
+                cbcOut = new byte[Math.max(length, cbcOut.length * 2)];
+            }
+            try {
+                // doFinal 之后密码对象回到 init 时的状态，下一次仍从零初始向量开始。
+                cbc.doFinal(data, 0, length, cbcOut, 0);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("AES-CBC failed", ex);
+            }
+            System.arraycopy(cbcOut, length - BLOCK, result, 0, BLOCK);
+        }
+
+        @Override
+        public void ctr(byte[] counter, byte[] in, int inOff, int length, byte[] out, int outOff) {
+            try {
+                // 计数器每包不同，JDK 只接受不可变的 IvParameterSpec，这里无法复用。
+                ctr.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(counter));
+                ctr.doFinal(in, inOff, length, out, outOff);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("AES-CTR failed", ex);
+            }
+        }
+    }
+
+    // 每包只改写字节的密钥对象，省去每包的 SecretKeySpec；JDK 初始化时会清零 getEncoded 的结果，因此返回副本。
+    private static final class PacketKey implements SecretKey {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] raw = new byte[KEY_LEN];
+
+        @Override
+        public String getAlgorithm() {
+            return "AES";
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return raw.clone();
+        }
+    }
+}
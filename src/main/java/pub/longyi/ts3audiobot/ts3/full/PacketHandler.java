@@ -7,21 +7,17 @@ import pub.longyi.ts3audiobot.ts3.protocol.PacketFlags;
 import pub.longyi.ts3audiobot.ts3.protocol.PacketKind;
 import pub.longyi.ts3audiobot.ts3.protocol.PacketStatistics;
 import pub.longyi.ts3audiobot.ts3.protocol.PacketType;
+import pub.longyi.ts3audiobot.ts3.protocol.ProtocolConst;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
-import java.net.SocketException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Deque;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 /**
@@ -38,8 +34,8 @@ import java.util.function.Consumer;
 /**
  * PacketHandler 相关功能。
  *
- * <p>职责：负责 PacketHandler 相关功能。</p>
- * <p>线程安全：无显式保证。</p>
+ * <p>职责：负责 PacketHandler 相关功能；收包、重发与 PING 由共享的 {@link UdpReactor} 驱动。</p>
+ * <p>线程安全：收到的数据包与重发、PING 在本连接的串行队列中依次处理；发送可由任意线程调用。</p>
  * <p>约束：调用方需遵守方法契约。</p>
  */
 @Slf4j
@@ -49,24 +45,27 @@ public final class PacketHandler {
     private static final long PING_INTERVAL_MS = 1000L;
 
     private volatile boolean connected;
-    private InetSocketAddress remote;
     private int clientId;
-    private DatagramSocket socket;
-    private Thread receiverThread;
+    private volatile UdpReactor.Registration registration;
     private TsCrypt tsCrypt;
     private final Map<PacketType, Integer> incomingNextIds = new EnumMap<>(PacketType.class);
     private final Map<PacketType, Integer> incomingGenerations = new EnumMap<>(PacketType.class);
     private final Map<Integer, ResendEntry> resendCommand = new ConcurrentHashMap<>();
     private final Map<Integer, ResendEntry> resendCommandLow = new ConcurrentHashMap<>();
     private volatile ResendEntry init1Entry;
-    private final Object sendLock = new Object();
-    private ScheduledExecutorService scheduler;
+    private final UdpReactor reactor;
+    private final VoicePacketWriter voiceWriter = new VoicePacketWriter();
     private int pingId;
     private int pingGeneration;
     private final EnumMap<PacketKind, PacketStatistics> stats = new EnumMap<>(PacketKind.class);
     private final Map<Integer, Long> pingSentTimes = new ConcurrentHashMap<>();
     private final Deque<Double> pingSamples = new ArrayDeque<>();
     private final Object pingLock = new Object();
+    private final LongAdder pingsSent = new LongAdder();
+    private final LongAdder pongsReceived = new LongAdder();
+    private final LongAdder commandsSent = new LongAdder();
+    private final LongAdder commandResends = new LongAdder();
+    private final LongAdder oversizedVoiceDropped = new LongAdder();
 
     private Consumer<Packet> packetEvent;
     private Consumer<String> stopEvent;
@@ -75,6 +74,11 @@ public final class PacketHandler {
      * 创建 PacketHandler 实例。
      */
     public PacketHandler() {
+        this(UdpReactor.shared());
+    }
+
+    PacketHandler(UdpReactor reactor) {
+        this.reactor = reactor;
         for (PacketKind kind : PacketKind.values()) {
             stats.put(kind, new PacketStatistics());
         }
@@ -88,18 +92,18 @@ public final class PacketHandler {
      * @return 返回值
      */
     public boolean connect(InetSocketAddress address, TsCrypt tsCrypt) {
+        closeRegistration();
         resetSessionState();
-        this.remote = address;
         this.tsCrypt = tsCrypt;
         log.info("[TS3] PacketHandler connect {}", address);
         try {
-            socket = new DatagramSocket();
-            socket.connect(address);
+            UdpReactor.Registration opened = reactor.register(address, this::onDatagram, this::onReceiveFailed);
+            registration = opened;
             connected = true;
-            startScheduler();
-            startReceiver();
+            opened.schedule(this::resendLoop, RETRY_INTERVAL_MS);
+            opened.schedule(this::sendPing, PING_INTERVAL_MS);
             return true;
-        } catch (SocketException ex) {
+        } catch (IOException ex) {
             log.error("[TS3] PacketHandler socket error", ex);
             connected = false;
             return false;
@@ -113,11 +117,7 @@ public final class PacketHandler {
     public void stop() {
         boolean wasConnected = connected;
         connected = false;
-        stopScheduler();
-        if (socket != null) {
-            socket.close();
-            socket = null;
-        }
+        closeRegistration();
         resetSessionState();
         if (wasConnected && stopEvent != null) {
             stopEvent.accept("stopped");
@@ -216,50 +216,93 @@ public final class PacketHandler {
         return true;
     }
 
-    private void startReceiver() {
-        receiverThread = new Thread(this::receiveLoop, "ts3-packet-receiver");
-        receiverThread.setDaemon(true);
-        receiverThread.start();
-    }
 
-    private void receiveLoop() {
-        byte[] buffer = new byte[8192];
-        while (connected && socket != null && !socket.isClosed()) {
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-            try {
-                socket.receive(packet);
-            } catch (IOException ex) {
-                if (connected) {
-                    log.error("[TS3] receive failed", ex);
-                }
-                break;
-            }
-            byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
-            Packet tsPacket = Packet.fromRaw(PacketDirection.S2C, data);
-            if (tsPacket == null) {
-                continue;
-            }
-            PacketType type = tsPacket.getPacketType();
-            IncomingInfo info = resolveIncoming(type, tsPacket.getPacketId());
-            tsPacket.setGenerationId(info.generationId);
-            if (tsCrypt != null && !tsCrypt.decrypt(tsPacket)) {
-                log.debug("[TS3] decrypt failed");
-                continue;
-            }
-            recordIncoming(tsPacket, data.length);
-            if (info.inWindow && type != PacketType.INIT1) {
-                int nextId = (tsPacket.getPacketId() + 1) & 0xFFFF;
-                int nextGen = info.generationId + (tsPacket.getPacketId() == 0xFFFF ? 1 : 0);
-                incomingNextIds.put(type, nextId);
-                incomingGenerations.put(type, nextGen);
-            }
-            if (tsPacket.getPacketType() == PacketType.ACK || tsPacket.getPacketType() == PacketType.ACK_LOW) {
-                handleAck(tsPacket);
-                continue;
+    /**
+     * 直接编码并发送一个语音包，不创建 {@link Packet}，也不登记重发。
+     * @param packetId 包序号
+     * @param generationId 包代数
+     * @param codec 编解码器编号
+     * @param data 语音负载
+     * @param length 负载长度
+     * @param sessionId 语音会话号，小于 0 表示不附带
+     * @return 是否已交给系统发送；负载超过 {@link ProtocolConst#MAX_VOICE_DATA} 时丢弃并计数，返回 false
+     */
+    public boolean sendVoice(int packetId, int generationId, byte codec, byte[] data, int length, int sessionId) {
+        UdpReactor.Registration current = registration;
+        if (current == null || !connected) {
+            return false;
+        }
+        if (length < 0 || length > ProtocolConst.MAX_VOICE_DATA) {
+            oversizedVoiceDropped.increment();
+            if (oversizedVoiceDropped.sum() == 1L) {
+                log.warn("[TS3] voice frame dropped, length={} exceeds {}", length, ProtocolConst.MAX_VOICE_DATA);
+            } else {
+                log.debug("[TS3] voice frame dropped, length={}", length);
             }
-            if (packetEvent != null) {
-                packetEvent.accept(tsPacket);
+            return false;
+        }
+        int size;
+        try {
+            synchronized (voiceWriter) {
+                ByteBuffer datagram = voiceWriter.write(
+                    tsCrypt, clientId, packetId, generationId, codec, data, length, sessionId
+                );
+                size = datagram.remaining();
+                if (!current.send(datagram)) {
+                    return false;
+                }
             }
+        } catch (IOException ex) {
+            log.error("[TS3] voice send failed", ex);
+            return false;
+        }
+        stats.get(PacketKind.SPEECH).processOutgoing(size);
+        return true;
+    }
+
+
+    /**
+     * 获取因超长而丢弃的语音包数。
+     * @return 连接以来的累计值
+     */
+    public long getOversizedVoiceDropped() {
+        return oversizedVoiceDropped.sum();
+    }
+
+    private void onDatagram(byte[] data) {
+        if (!connected) {
+            return;
+        }
+        Packet tsPacket = Packet.fromRaw(PacketDirection.S2C, data);
+        if (tsPacket == null) {
+            return;
+        }
+        PacketType type = tsPacket.getPacketType();
+        IncomingInfo info = resolveIncoming(type, tsPacket.getPacketId());
+        tsPacket.setGenerationId(info.generationId);
+        if (tsCrypt != null && !tsCrypt.decrypt(tsPacket)) {
+            log.debug("[TS3] decrypt failed");
+            return;
+        }
+        recordIncoming(tsPacket, data.length);
+        if (info.inWindow && type != PacketType.INIT1) {
+            int nextId = (tsPacket.getPacketId() + 1) & 0xFFFF;
+            int nextGen = info.generationId + (tsPacket.getPacketId() == 0xFFFF ? 1 : 0);
+            incomingNextIds.put(type, nextId);
+            incomingGenerations.put(type, nextGen);
+        }
+        if (tsPacket.getPacketType() == PacketType.ACK || tsPacket.getPacketType() == PacketType.ACK_LOW) {
+            handleAck(tsPacket);
+            return;
+        }
+        if (packetEvent != null) {
+            packetEvent.accept(tsPacket);
+        }
+    }
+
+    private void onReceiveFailed(IOException ex) {
+        if (connected) {
+            log.error("[TS3] receive failed", ex);
         }
     }
 
@@ -288,8 +331,10 @@ public final class PacketHandler {
         PacketType type = packet.getPacketType();
         long now = System.currentTimeMillis();
         if (type == PacketType.COMMAND) {
+            commandsSent.increment();
             resendCommand.put(packet.getPacketId(), new ResendEntry(raw, now, now, packet.getPacketId(), type));
         } else if (type == PacketType.COMMAND_LOW) {
+            commandsSent.increment();
             resendCommandLow.put(packet.getPacketId(), new ResendEntry(raw, now, now, packet.getPacketId(), type));
         } else if (type == PacketType.INIT1) {
             init1Entry = new ResendEntry(raw, now, now, packet.getPacketId(), type);
@@ -310,36 +355,23 @@ public final class PacketHandler {
     }
 
     private boolean sendRaw(byte[] raw) {
-        if (socket == null || !connected) {
+        UdpReactor.Registration current = registration;
+        if (current == null || !connected) {
             return false;
         }
-        DatagramPacket datagram = new DatagramPacket(raw, raw.length, remote);
         try {
-            synchronized (sendLock) {
-                socket.send(datagram);
-            }
-            return true;
+            return current.send(raw);
         } catch (IOException ex) {
             log.error("[TS3] send failed", ex);
             return false;
         }
     }
 
-    private void startScheduler() {
-        stopScheduler();
-        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "ts3-packet-timer");
-            t.setDaemon(true);
-            return t;
-        });
-        scheduler.scheduleAtFixedRate(this::resendLoop, RETRY_INTERVAL_MS, RETRY_INTERVAL_MS, TimeUnit.MILLISECONDS);
-        scheduler.scheduleAtFixedRate(this::sendPing, PING_INTERVAL_MS, PING_INTERVAL_MS, TimeUnit.MILLISECONDS);
-    }
-
-    private void stopScheduler() {
-        if (scheduler != null) {
-            scheduler.shutdownNow();
-            scheduler = null;
+    private void closeRegistration() {
+        UdpReactor.Registration current = registration;
+        registration = null;
+        if (current != null) {
+            current.close();
         }
     }
 
@@ -387,6 +419,7 @@ public final class PacketHandler {
             if (now - entry.lastSent >= RETRY_INTERVAL_MS) {
                 if (sendRaw(entry.raw)) {
                     entry.lastSent = now;
+                    commandResends.increment();
                 }
             }
         }
@@ -407,6 +440,7 @@ public final class PacketHandler {
         ping.setClientId(clientId);
         ping.setFlag(PacketFlags.UNENCRYPTED, true);
         pingSentTimes.put(id, System.nanoTime());
+        pingsSent.increment();
         addOutgoingPacket(ping);
     }
 
@@ -445,6 +479,22 @@ public final class PacketHandler {
         }
     }
 
+    /**
+     * 生成链路质量快照，计数为连接以来的累计值，调用方按两次快照的差值计算丢包与重传比例。
+     * @return 快照
+     */
+    public LinkStats getLinkStats() {
+        PingStats ping = getPingStats();
+        return new LinkStats(
+            ping.pingSeconds(),
+            ping.deviationSeconds(),
+            pingsSent.sum(),
+            pongsReceived.sum(),
+            commandsSent.sum(),
+            commandResends.sum()
+        );
+    }
+
     private void recordOutgoing(Packet packet, int size) {
         PacketKind kind = kindOf(packet.getPacketType());
         PacketStatistics stat = stats.get(kind);
@@ -475,6 +525,7 @@ public final class PacketHandler {
             return;
         }
         double rtt = (System.nanoTime() - sentAt) / 1_000_000_000.0;
+        pongsReceived.increment();
         synchronized (pingLock) {
             pingSamples.addFirst(rtt);
             while (pingSamples.size() > 5) {
@@ -515,4 +566,23 @@ public final class PacketHandler {
 
     public record PingStats(double pingSeconds, double deviationSeconds) {
     }
+
+    /**
+     * 链路质量快照。
+     * @param pingSeconds 平均往返时延（秒）
+     * @param deviationSeconds 往返时延标准差（秒）
+     * @param pingsSent 已发送的 PING 数
+     * @param pongsReceived 已收到且匹配的 PONG 数
+     * @param commandsSent 首次发送的命令包数
+     * @param commandResends 命令包重传次数
+     */
+    public record LinkStats(
+        double pingSeconds,
+        double deviationSeconds,
+        long pingsSent,
+        long pongsReceived,
+        long commandsSent,
+        long commandResends
+    ) {
+    }
 }
@@ -11,14 +11,10 @@ import org.bouncycastle.asn1.x9.X9ECParameters;
 import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.generators.ECKeyPairGenerator;
-import org.bouncycastle.crypto.modes.EAXBlockCipher;
-import org.bouncycastle.crypto.engines.AESEngine;
-import org.bouncycastle.crypto.params.AEADParameters;
 import org.bouncycastle.crypto.params.ECDomainParameters;
 import org.bouncycastle.crypto.params.ECKeyGenerationParameters;
 import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
 import org.bouncycastle.crypto.params.ECPublicKeyParameters;
-import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.crypto.signers.DSADigestSigner;
 import org.bouncycastle.crypto.signers.ECDSASigner;
 import org.bouncycastle.math.ec.ECPoint;
@@ -90,7 +86,11 @@ public final class TsCrypt {
             .getBytes(StandardCharsets.US_ASCII);
 
     private final IdentityData identity;
-    private final EAXBlockCipher eaxCipher = new EAXBlockCipher(new AESEngine());
+    // 发送与接收各用一个引擎和一份按包改写的密钥，互不争用。
+    private final EaxCipher encryptCipher;
+    private final EaxCipher decryptCipher;
+    private final byte[] encryptKey = new byte[EaxCipher.KEY_LEN];
+    private final byte[] decryptKey = new byte[EaxCipher.KEY_LEN];
     private final SecureRandom random = new SecureRandom();
 
     private boolean cryptoInitComplete;
@@ -106,10 +106,22 @@ public final class TsCrypt {
      * @param identity 参数 identity
      */
     public TsCrypt(IdentityData identity) {
+        this(identity, false);
+    }
+
+
+    /**
+     * 创建 TsCrypt 实例。
+     * @param identity 参数 identity
+     * @param jceCipher 数据包加解密是否使用 JDK 的 AES 实现（可用 AES-NI），否则使用 BouncyCastle
+     */
+    public TsCrypt(IdentityData identity, boolean jceCipher) {
         if (identity == null) {
             throw new IllegalArgumentException("identity required");
         }
         this.identity = identity;
+        this.encryptCipher = jceCipher ? EaxCipher.jce() : EaxCipher.bouncyCastle();
+        this.decryptCipher = jceCipher ? EaxCipher.jce() : EaxCipher.bouncyCastle();
         reset();
     }
 
@@ -349,41 +361,69 @@ public final class TsCrypt {
         }
 
         byte[] header = packet.buildHeader();
-        KeyNonce keyNonce = getKeyNonce(
-            packet.getDirection() == PacketDirection.S2C,
-            packet.getPacketId(),
-            packet.getGenerationId(),
-            packet.getPacketType(),
-            !cryptoInitComplete
-        );
-        AEADParameters params = new AEADParameters(
-            new KeyParameter(keyNonce.key),
-            MAC_LEN * 8,
-            keyNonce.nonce,
-            header
-        );
-
-        byte[] result;
-        int len;
+        byte[] data = packet.getData();
+        byte[] raw = new byte[MAC_LEN + header.length + data.length];
+        System.arraycopy(header, 0, raw, MAC_LEN, header.length);
         try {
-            synchronized (eaxCipher) {
-                eaxCipher.init(true, params);
-                result = new byte[eaxCipher.getOutputSize(packet.getData().length)];
-                len = eaxCipher.processBytes(packet.getData(), 0, packet.getData().length, result, 0);
-                len += eaxCipher.doFinal(result, len);
+            synchronized (encryptCipher) {
+                byte[] nonce = keyNonce(
+                    packet.getDirection() == PacketDirection.S2C,
+                    packet.getPacketId(),
+                    packet.getGenerationId(),
+                    packet.getPacketType(),
+                    !cryptoInitComplete,
+                    encryptKey
+                );
+                encryptCipher.encrypt(
+                    encryptKey, nonce, header, data, 0, data.length, raw, MAC_LEN + header.length, raw, 0
+                );
             }
-        } catch (Exception ex) {
+        } catch (RuntimeException ex) {
             throw new IllegalStateException("Encryption failed", ex);
         }
-
-        byte[] raw = new byte[MAC_LEN + header.length + (len - MAC_LEN)];
-        System.arraycopy(result, len - MAC_LEN, raw, 0, MAC_LEN);
-        System.arraycopy(header, 0, raw, MAC_LEN, header.length);
-        System.arraycopy(result, 0, raw, MAC_LEN + header.length, len - MAC_LEN);
         packet.setRaw(raw);
     }
 
 
+    /**
+     * 加密一个客户端发出的数据包并按 MAC、包头、密文的顺序写入输出缓冲，不经过 {@link Packet}。
+     * @param header 已填好的包头
+     * @param packetId 包序号
+     * @param generationId 包代数
+     * @param type 包类型
+     * @param data 明文
+     * @param length 明文长度
+     * @param scratch 密文暂存区，至少 length + MAC_LEN 字节，由调用方复用
+     * @param out 输出缓冲，从当前位置写入
+     */
+    public void encryptInto(
+        byte[] header,
+        int packetId,
+        int generationId,
+        PacketType type,
+        byte[] data,
+        int length,
+        byte[] scratch,
+        ByteBuffer out
+    ) {
+        if (ivStruct == null && cryptoInitComplete) {
+            throw new IllegalStateException("Crypto not initialized");
+        }
+        try {
+            synchronized (encryptCipher) {
+                byte[] nonce = keyNonce(false, packetId, generationId, type, !cryptoInitComplete, encryptKey);
+                encryptCipher.encrypt(encryptKey, nonce, header, data, 0, length, scratch, 0, scratch, length);
+            }
+        } catch (RuntimeException ex) {
+            throw new IllegalStateException("Encryption failed", ex);
+        }
+        // TS3 包把 MAC 放在包头之前。
+        out.put(scratch, length, MAC_LEN);
+        out.put(header);
+        out.put(scratch, 0, length);
+    }
+
+
     /**
      * 执行 decrypt 操作。
      * @param packet 参数 packet
@@ -409,39 +449,33 @@ public final class TsCrypt {
 
     private boolean decryptData(Packet packet, boolean dummyEncryption) {
         byte[] header = packet.buildHeader();
-        KeyNonce keyNonce = getKeyNonce(
-            packet.getDirection() == PacketDirection.S2C,
-            packet.getPacketId(),
-            packet.getGenerationId(),
-            packet.getPacketType(),
-            dummyEncryption
-        );
-        int dataLen = packet.getRaw().length - (MAC_LEN + header.length);
-        AEADParameters params = new AEADParameters(
-            new KeyParameter(keyNonce.key),
-            MAC_LEN * 8,
-            keyNonce.nonce,
-            header
-        );
-
+        byte[] raw = packet.getRaw();
+        int dataLen = raw.length - (MAC_LEN + header.length);
+        if (dataLen < 0) {
+            return false;
+        }
+        byte[] result = new byte[dataLen];
         try {
-            byte[] result;
-            int len;
-            synchronized (eaxCipher) {
-                eaxCipher.init(false, params);
-                result = new byte[eaxCipher.getOutputSize(dataLen + MAC_LEN)];
-                len = eaxCipher.processBytes(packet.getRaw(), MAC_LEN + header.length, dataLen, result, 0);
-                len += eaxCipher.processBytes(packet.getRaw(), 0, MAC_LEN, result, len);
-                len += eaxCipher.doFinal(result, len);
-            }
-            if (len != dataLen) {
-                return false;
+            synchronized (decryptCipher) {
+                byte[] nonce = keyNonce(
+                    packet.getDirection() == PacketDirection.S2C,
+                    packet.getPacketId(),
+                    packet.getGenerationId(),
+                    packet.getPacketType(),
+                    dummyEncryption,
+                    decryptKey
+                );
+                if (!decryptCipher.decrypt(
+                    decryptKey, nonce, header, raw, MAC_LEN + header.length, dataLen, raw, 0, result, 0
+                )) {
+                    return false;
+                }
             }
-            packet.setData(result);
-            return true;
-        } catch (Exception ex) {
+        } catch (RuntimeException ex) {
             return false;
         }
+        packet.setData(result);
+        return true;
     }
 
     private void fakeEncrypt(Packet packet, byte[] mac) {
@@ -528,15 +562,17 @@ public final class TsCrypt {
         }
     }
 
-    private KeyNonce getKeyNonce(
+    private byte[] keyNonce(
         boolean fromServer,
         int packetId,
         int generationId,
         PacketType packetType,
-        boolean dummyEncryption
+        boolean dummyEncryption,
+        byte[] keyOut
     ) {
         if (dummyEncryption) {
-            return new KeyNonce(DUMMY_KEY, DUMMY_NONCE, generationId);
+            System.arraycopy(DUMMY_KEY, 0, keyOut, 0, EaxCipher.KEY_LEN);
+            return DUMMY_NONCE;
         }
         if (ivStruct == null) {
             throw new IllegalStateException("Crypto not initialized");
@@ -554,11 +590,11 @@ public final class TsCrypt {
             cache = new KeyNonce(slice(result, 0, 16), slice(result, 16, 16), generationId);
             cachedKeyNonces[cacheIndex] = cache;
         }
-        byte[] key = slice(cache.key, 0, 16);
-        byte[] nonce = slice(cache.nonce, 0, 16);
-        key[0] ^= (byte) (packetId >> 8);
-        key[1] ^= (byte) (packetId);
-        return new KeyNonce(key, nonce, generationId);
+        // 按包类型与代数缓存的密钥只在前两个字节混入包序号，随机数原样共用。
+        System.arraycopy(cache.key, 0, keyOut, 0, EaxCipher.KEY_LEN);
+        keyOut[0] ^= (byte) (packetId >> 8);
+        keyOut[1] ^= (byte) (packetId);
+        return cache.nonce;
     }
 
     private static byte[] solveRsaChallenge(byte[] data, int offset, int level) {
@@ -38,6 +38,7 @@ import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Consumer;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
@@ -66,8 +67,9 @@ import javax.imageio.stream.MemoryCacheImageOutputStream;
 @Slf4j
 public final class TsFullClient implements Ts3VoiceClient {
     private final PacketHandler packetHandler = new PacketHandler();
-    private final int[] packetCounters = new int[PacketType.values().length];
-    private final int[] generationCounters = new int[PacketType.values().length];
+    private final boolean jceCrypto;
+    // 每种包类型一个计数器，高位为包代数、低 16 位为包序号，自增时序号回绕自然进位到代数。
+    private final AtomicLongArray packetCounters = new AtomicLongArray(PacketType.values().length);
     private volatile boolean connected;
     private ConnectionDataFull connectionData;
     private TsCrypt tsCrypt;
@@ -82,9 +84,13 @@ public final class TsFullClient implements Ts3VoiceClient {
     private volatile byte voiceSessionId = 1;
     private volatile String currentChannelId;
     private volatile boolean channelListRequested;
-    private final Object responseLock = new Object();
-    private volatile PendingCommand pendingCommand;
-    private int returnCodeCounter = 1;
+    // 带 return_code 的命令按发送顺序登记，登记与发出在此锁内完成，保证两者顺序一致。
+    private final CommandPipeline commandPipeline = new CommandPipeline(MAX_COMMANDS_IN_FLIGHT);
+    private final CommandScheduler commandScheduler;
+    private final Object avatarLock = new Object();
+    private CompletableFuture<Boolean> queuedAvatar;
+    private Path queuedAvatarFile;
+    private CompletableFuture<Void> avatarChain = CompletableFuture.completedFuture(null);
     private volatile Consumer<ParsedCommand> errorListener;
     private volatile Runnable loginListener;
     private volatile Consumer<String> stopListener;
@@ -111,7 +117,7 @@ public final class TsFullClient implements Ts3VoiceClient {
     private static final long FLOOD_BACKOFF_INITIAL_MS = 8_000L;
     private static final long FLOOD_BACKOFF_MAX_MS = 60_000L;
     private static final long PENDING_COMMAND_WAIT_MS = 2_000L;
-    private static final long PENDING_COMMAND_POLL_MS = 25L;
+    private static final int MAX_COMMANDS_IN_FLIGHT = 4;
     private static final String CHANNEL_ID_PREFIX = "cid=";
     private static final String CHANNEL_ID_MARKER = "#";
     private static final String CHANNEL_PATH_SEPARATOR = "/";
@@ -138,6 +144,29 @@ public final class TsFullClient implements Ts3VoiceClient {
     private static final String ERROR_ID_PERMISSION_DENIED = "2568";
     private static final String ERROR_MSG_PERMISSION_DENIED = "insufficient client permissions";
 
+    /**
+     * 创建 TsFullClient 实例，数据包加解密使用 BouncyCastle。
+     */
+    public TsFullClient() {
+        this(false);
+    }
+
+
+    /**
+     * 创建 TsFullClient 实例。
+     * @param jceCrypto 数据包加解密是否使用 JDK 的 AES 实现
+     */
+    public TsFullClient(boolean jceCrypto) {
+        this.jceCrypto = jceCrypto;
+        this.commandScheduler = new CommandScheduler(
+            commandPipeline,
+            PENDING_COMMAND_WAIT_MS,
+            () -> floodBackoffUntilMs,
+            () -> connected
+        );
+    }
+
+
     /**
      * 执行 configure 操作。
      * @param config 参数 config
@@ -145,7 +174,7 @@ public final class TsFullClient implements Ts3VoiceClient {
     @Override
     public void configure(ConnectionDataFull config) {
         this.connectionData = config;
-        this.tsCrypt = new TsCrypt(config.identity());
+        this.tsCrypt = new TsCrypt(config.identity(), jceCrypto);
         this.resolvedAvatarMaxFileSizeBytes = AVATAR_MAX_FILE_SIZE_BYTES;
         this.avatarMaxFileSizeResolved = false;
     }
@@ -173,6 +202,8 @@ public final class TsFullClient implements Ts3VoiceClient {
         packetHandler.setPacketEvent(this::onPacket);
         packetHandler.setStopEvent(reason -> {
             connected = false;
+            commandPipeline.cancelAll();
+            commandScheduler.wake();
             log.info("[TS3] connection closed: {}", reason);
             Consumer<String> listener = stopListener;
             if (listener != null) {
@@ -204,6 +235,8 @@ public final class TsFullClient implements Ts3VoiceClient {
         resetVoiceSession();
         packetHandler.stop();
         connected = false;
+        commandPipeline.cancelAll();
+        commandScheduler.wake();
     }
 
 
@@ -281,34 +314,32 @@ public final class TsFullClient implements Ts3VoiceClient {
      */
     @Override
     public boolean updateClientNickname(String nickname) {
+        return updateClientNicknameAsync(nickname).join();
+    }
+
+
+    /**
+     * 异步更新机器人昵称，flood 或超时时按固定间隔重试。
+     * @param nickname 参数 nickname
+     * @return 是否成功，不会异常完成
+     */
+    @Override
+    public CompletableFuture<Boolean> updateClientNicknameAsync(String nickname) {
         if (!connected || nickname == null || nickname.isBlank()) {
             log.info("[TS3] skip nickname update connected={} initComplete={} nicknameBlank={}",
                 connected,
                 initComplete,
                 nickname == null || nickname.isBlank()
             );
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
         String targetNickname = nickname.trim();
-        for (int attempt = 1; attempt <= TRANSIENT_RETRY_MAX; attempt++) {
-            CommandResponse response = requestCommandResponse(
-                "clientupdate",
-                TsCommandBuilder.params("client_nickname", targetNickname)
-            );
-            if (isCommandSuccess(response)) {
-                log.info("[TS3] nickname update success=true nickname={} attempt={}", targetNickname, attempt);
-                return true;
-            }
-            if (!isTransientRetryable(response)) {
-                log.info("[TS3] nickname update success=false nickname={} attempt={}", targetNickname, attempt);
-                return false;
-            }
-            if (attempt < TRANSIENT_RETRY_MAX) {
-                sleepQuietly(TRANSIENT_RETRY_DELAY_MS);
-            }
-        }
-        log.info("[TS3] nickname update success=false nickname={} attempt={}", targetNickname, TRANSIENT_RETRY_MAX);
-        return false;
+        return requestWithRetryAsync("clientupdate", TsCommandBuilder.params("client_nickname", targetNickname), 1)
+            .thenApply(response -> {
+                boolean success = isCommandSuccess(response);
+                log.info("[TS3] nickname update success={} nickname={}", success, targetNickname);
+                return success;
+            });
     }
 
 
@@ -385,6 +416,41 @@ public final class TsFullClient implements Ts3VoiceClient {
         }
     }
 
+    /**
+     * 在命令执行器上更新机器人头像，压缩与文件传输不占用调用方线程。
+     * 上传串行执行；尚未开始的上传只保留最新的头像，合并的调用共用同一个结果。
+     * @param avatarFile 参数 avatarFile
+     * @return 是否成功，不会异常完成
+     */
+    @Override
+    public CompletableFuture<Boolean> updateClientAvatarAsync(Path avatarFile) {
+        synchronized (avatarLock) {
+            queuedAvatarFile = avatarFile;
+            if (queuedAvatar == null) {
+                queuedAvatar = new CompletableFuture<>();
+                avatarChain = avatarChain.thenRunAsync(this::runQueuedAvatarUpdate, commandScheduler::execute);
+            }
+            return queuedAvatar;
+        }
+    }
+
+    private void runQueuedAvatarUpdate() {
+        CompletableFuture<Boolean> result;
+        Path avatarFile;
+        synchronized (avatarLock) {
+            result = queuedAvatar;
+            avatarFile = queuedAvatarFile;
+            queuedAvatar = null;
+            queuedAvatarFile = null;
+        }
+        try {
+            result.complete(updateClientAvatar(avatarFile));
+        } catch (RuntimeException ex) {
+            log.warn("[TS3] avatar update failed file={}", avatarFile, ex);
+            result.complete(false);
+        }
+    }
+
     private int nextAvatarRetryLimit(int currentBytes) {
         int scaled = (int) Math.floor(currentBytes * AVATAR_RETRY_SCALE_FACTOR);
         int bounded = Math.max(AVATAR_RETRY_MIN_FILE_SIZE_BYTES, scaled);
@@ -410,12 +476,12 @@ public final class TsFullClient implements Ts3VoiceClient {
                 "resume", "0",
                 "proto", "1"
             );
-            CommandResponse response = requestCommandResponse("ftinitupload", params);
+            CommandPipeline.Response response = requestCommandResponse("ftinitupload", params);
             if (!isCommandSuccess(response)) {
                 log.warn("[TS3] avatar upload init command failed file={} name={}", avatarFile, avatarName);
                 continue;
             }
-            Map<String, String> parsed = flattenCommandResponse(response == null ? List.of() : response.commands);
+            Map<String, String> parsed = flattenCommandResponse(response == null ? List.of() : response.commands());
             mergeErrorParams(parsed, response);
             waitAndMergeFileTransferPayload(parsed);
             String key = parsed.get("ftkey");
@@ -426,8 +492,8 @@ public final class TsFullClient implements Ts3VoiceClient {
             }
             if (key == null || key.isBlank()) {
                 log.info("[TS3] avatar upload init response commands={} error={}",
-                    summarizeCommands(response == null ? List.of() : response.commands),
-                    response == null || response.error == null ? Map.of() : response.error.params()
+                    summarizeCommands(response == null ? List.of() : response.commands()),
+                    response == null || response.error() == null ? Map.of() : response.error().params()
                 );
                 log.info("[TS3] avatar upload init missing key/port params={}", parsed);
                 continue;
@@ -681,6 +747,15 @@ public final class TsFullClient implements Ts3VoiceClient {
     }
 
 
+    /**
+     * 执行 linkStats 操作。
+     * @return 当前连接的往返时延、PING 丢失与命令重传统计
+     */
+    public PacketHandler.LinkStats linkStats() {
+        return packetHandler.getLinkStats();
+    }
+
+
     /**
      * 执行 fetchChannelCodecInfo 操作。
      * @return 返回值
@@ -719,24 +794,15 @@ public final class TsFullClient implements Ts3VoiceClient {
         if (!connected) {
             return;
         }
-        PacketCounter counter = nextPacket(PacketType.VOICE);
-        int packetId = counter.id;
-        int extra = flagSession ? 1 : 0;
-        byte[] voiceData = new byte[length + 3 + extra];
-        voiceData[0] = (byte) ((packetId >> 8) & 0xFF);
-        voiceData[1] = (byte) (packetId & 0xFF);
-        voiceData[2] = voiceCodec;
-        System.arraycopy(data, 0, voiceData, 3, length);
-        if (flagSession) {
-            voiceData[3 + length] = voiceSessionId;
-        }
-
-        Packet voicePacket = new Packet(PacketDirection.C2S, PacketType.VOICE, packetId, counter.generation, voiceData);
-        voicePacket.setClientId(packetHandler.getClientId());
-        if (flagSession) {
-            voicePacket.setFlag(PacketFlags.COMPRESSED, true);
-        }
-        packetHandler.addOutgoingPacket(voicePacket);
+        long counter = nextCounter(PacketType.VOICE);
+        packetHandler.sendVoice(
+            counterId(counter),
+            counterGeneration(counter),
+            voiceCodec,
+            data,
+            length,
+            flagSession ? voiceSessionId & 0xFF : -1
+        );
     }
 
     private void resetVoiceSession() {
@@ -1211,14 +1277,8 @@ public final class TsFullClient implements Ts3VoiceClient {
         if (cpw != null && !cpw.isBlank()) {
             params.put("cpw", cpw);
         }
-        for (int attempt = 1; attempt <= TRANSIENT_RETRY_MAX; attempt++) {
-            log.info("[TS3] request move to channel cid={} name={} attempt={}/{}",
-                targetCid,
-                target,
-                attempt,
-                TRANSIENT_RETRY_MAX
-            );
-            CommandResponse response = requestCommandResponse("clientmove", params);
+        log.info("[TS3] request move to channel cid={} name={}", targetCid, target);
+        requestWithRetryAsync("clientmove", params, 1).thenAccept(response -> {
             if (isCommandSuccess(response)) {
                 currentChannelId = targetCid;
                 channelRejoinScheduled = false;
@@ -1227,60 +1287,31 @@ public final class TsFullClient implements Ts3VoiceClient {
             if (!isTransientRetryable(response)) {
                 return;
             }
-            if (attempt < TRANSIENT_RETRY_MAX) {
-                sleepQuietly(TRANSIENT_RETRY_DELAY_MS);
+            if (explicitMode) {
+                scheduleExplicitChannelRejoin();
+            } else {
+                scheduleChannelRejoin();
             }
-        }
-        if (explicitMode) {
-            scheduleExplicitChannelRejoin();
-        } else {
-            scheduleChannelRejoin();
-        }
+        });
     }
 
-    private boolean isTransientRetryable(CommandResponse response) {
+    private boolean isTransientRetryable(CommandPipeline.Response response) {
         if (response == null) {
             return true;
         }
         return isFloodError(response);
     }
 
-    private boolean acquirePendingCommandSlot(PendingCommand pending) {
-        long deadline = System.currentTimeMillis() + PENDING_COMMAND_WAIT_MS;
-        while (connected) {
-            synchronized (responseLock) {
-                if (pendingCommand == null) {
-                    pendingCommand = pending;
-                    return true;
-                }
-            }
-            if (System.currentTimeMillis() >= deadline) {
-                return false;
-            }
-            sleepQuietly(PENDING_COMMAND_POLL_MS);
-        }
-        return false;
-    }
-
-    private void waitForFloodBackoff(String commandName) {
-        long now = System.currentTimeMillis();
-        long until = floodBackoffUntilMs;
-        if (until <= now) {
-            return;
-        }
-        long waitMs = until - now;
-        log.info("[TS3] command delayed name={} waitMs={} reason=flood_backoff", commandName, waitMs);
-        sleepQuietly(waitMs);
-    }
-
-    private void applyFloodBackoff(String commandName, CommandResponse response) {
+    private synchronized void applyFloodBackoff(String commandName, CommandPipeline.Response response) {
         if (isCommandSuccess(response)) {
             floodBackoffDelayMs = FLOOD_BACKOFF_INITIAL_MS;
+            commandPipeline.onSuccess();
             return;
         }
         if (!isFloodError(response)) {
             return;
         }
+        commandPipeline.onFlood();
         long delay = Math.max(FLOOD_BACKOFF_INITIAL_MS, floodBackoffDelayMs);
         delay = Math.min(delay, FLOOD_BACKOFF_MAX_MS);
         long until = System.currentTimeMillis() + delay;
@@ -1295,12 +1326,12 @@ public final class TsFullClient implements Ts3VoiceClient {
         );
     }
 
-    private boolean isFloodError(CommandResponse response) {
-        if (response == null || response.error == null || response.error.params() == null) {
+    private boolean isFloodError(CommandPipeline.Response response) {
+        if (response == null || response.error() == null || response.error().params() == null) {
             return false;
         }
-        String id = response.error.params().get("id");
-        String msg = response.error.params().get("msg");
+        String id = response.error().params().get("id");
+        String msg = response.error().params().get("msg");
         if (id != null && ERROR_ID_FLOOD.equals(id.trim())) {
             return true;
         }
@@ -1604,29 +1635,31 @@ public final class TsFullClient implements Ts3VoiceClient {
         sendCommand(command);
     }
 
-    private synchronized PacketCounter nextPacket(PacketType type) {
+    private PacketCounter nextPacket(PacketType type) {
+        long counter = nextCounter(type);
+        return new PacketCounter(counterId(counter), counterGeneration(counter));
+    }
+
+    private long nextCounter(PacketType type) {
         if (type == PacketType.INIT1) {
-            return new PacketCounter(101, 0);
+            return 101L;
         }
-        int idx = type.ordinal();
-        int id = packetCounters[idx] & 0xFFFF;
-        int generation = generationCounters[idx];
-        int next = id + 1;
-        if (next > 0xFFFF) {
-            next = 0;
-            generationCounters[idx] = generation + 1;
-        }
-        packetCounters[idx] = next;
-        return new PacketCounter(id, generation);
+        return packetCounters.getAndIncrement(type.ordinal());
+    }
+
+    private static int counterId(long counter) {
+        return (int) (counter & 0xFFFF);
+    }
+
+    private static int counterGeneration(long counter) {
+        return (int) (counter >>> 16);
     }
 
     private void resetCounters() {
-        for (int i = 0; i < packetCounters.length; i++) {
-            packetCounters[i] = 0;
-            generationCounters[i] = 0;
+        for (int i = 0; i < packetCounters.length(); i++) {
+            packetCounters.set(i, 0L);
         }
-        int commandIdx = PacketType.COMMAND.ordinal();
-        packetCounters[commandIdx] = 1;
+        packetCounters.set(PacketType.COMMAND.ordinal(), 1L);
         lastClientInitPacketId = -1;
         initComplete = false;
         commandQueue.reset();
@@ -1635,58 +1668,91 @@ public final class TsFullClient implements Ts3VoiceClient {
         channelListRequested = false;
         floodBackoffUntilMs = 0L;
         floodBackoffDelayMs = FLOOD_BACKOFF_INITIAL_MS;
+        commandPipeline.cancelAll();
+        commandScheduler.wake();
     }
 
     private List<ParsedCommand> requestCommand(String name, Map<String, String> params) {
-        CommandResponse response = requestCommandResponse(name, params);
-        if (response == null || response.commands == null) {
+        CommandPipeline.Response response = requestCommandResponse(name, params);
+        if (response == null || response.commands() == null) {
             return List.of();
         }
-        return response.commands;
+        return response.commands();
+    }
+
+    private CommandPipeline.Response requestCommandResponse(String name, Map<String, String> params) {
+        return requestCommandAsync(name, params).join();
     }
 
-    private CommandResponse requestCommandResponse(String name, Map<String, String> params) {
+    private CompletableFuture<CommandPipeline.Response> requestWithRetryAsync(
+        String name,
+        Map<String, String> params,
+        int attempt
+    ) {
+        return requestCommandAsync(name, params).thenCompose(response -> {
+            if (isCommandSuccess(response) || !isTransientRetryable(response) || attempt >= TRANSIENT_RETRY_MAX) {
+                return CompletableFuture.completedFuture(response);
+            }
+            log.info("[TS3] command retry name={} attempt={}/{}", name, attempt + 1, TRANSIENT_RETRY_MAX);
+            CompletableFuture<CommandPipeline.Response> retry = new CompletableFuture<>();
+            commandScheduler.schedule(
+                () -> requestWithRetryAsync(name, params, attempt + 1).thenAccept(retry::complete),
+                TRANSIENT_RETRY_DELAY_MS
+            );
+            return retry;
+        });
+    }
+
+
+    /**
+     * 发送一条命令，响应按 return_code 异步交付，多条命令可同时在途。
+     * 不阻塞调用方：命令在命令执行器上排队，等 flood 退避结束且并发窗口有空位后发出；
+     * 响应在收包线程上交付，后续阶段不应阻塞。
+     * @param name 命令名
+     * @param params 命令参数，return_code 由本方法填写
+     * @return 响应；超时、连接断开或发送失败时以 null 完成，不会异常完成
+     */
+    public CompletableFuture<CommandPipeline.Response> requestCommandAsync(String name, Map<String, String> params) {
         if (!connected) {
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
-        waitForFloodBackoff(name);
-        PendingCommand pending = new PendingCommand(nextReturnCode(), name);
-        if (!acquirePendingCommandSlot(pending)) {
-            log.warn("[TS3] command dropped name={} reason=pending_timeout", name);
-            return null;
-        }
-        Map<String, String> merged = new LinkedHashMap<>();
-        if (params != null) {
-            merged.putAll(params);
-        }
-        merged.put("return_code", Integer.toString(pending.returnCode));
-        String command = TsCommandBuilder.build(name, merged);
-        sendCommand(command);
-        CommandResponse response = null;
-        try {
-            response = pending.future.get(COMMAND_RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-            return response;
-        } catch (TimeoutException ex) {
-            log.warn("[TS3] command timeout name={} returnCode={}", name, pending.returnCode);
-            return null;
-        } catch (Exception ex) {
-            log.warn("[TS3] command failed name={} returnCode={}", name, pending.returnCode, ex);
-            return null;
-        } finally {
-            synchronized (responseLock) {
-                if (pendingCommand == pending) {
-                    pendingCommand = null;
-                }
+        return commandScheduler.submit(name, returnCode -> {
+            Map<String, String> merged = new LinkedHashMap<>();
+            if (params != null) {
+                merged.putAll(params);
             }
-            applyFloodBackoff(name, response);
-        }
+            merged.put("return_code", Integer.toString(returnCode));
+            sendCommand(TsCommandBuilder.build(name, merged));
+            return true;
+        }).thenCompose(pending -> pending == null
+            ? CompletableFuture.completedFuture(null)
+            : awaitCommandResponse(name, pending));
+    }
+
+    private CompletableFuture<CommandPipeline.Response> awaitCommandResponse(String name, CommandPipeline.Entry pending) {
+        int returnCode = pending.returnCode;
+        return pending.future
+            .completeOnTimeout(null, COMMAND_RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .handle((response, ex) -> {
+                commandPipeline.release(pending);
+                if (ex != null) {
+                    log.warn("[TS3] command failed name={} returnCode={}", name, returnCode, ex);
+                    return null;
+                }
+                if (response == null && connected) {
+                    log.warn("[TS3] command timeout name={} returnCode={}", name, returnCode);
+                }
+                applyFloodBackoff(name, response);
+                commandScheduler.wake();
+                return response;
+            });
     }
 
-    private boolean isCommandSuccess(CommandResponse response) {
-        if (response == null || response.error == null || response.error.params() == null) {
+    private boolean isCommandSuccess(CommandPipeline.Response response) {
+        if (response == null || response.error() == null || response.error().params() == null) {
             return false;
         }
-        String id = response.error.params().get("id");
+        String id = response.error().params().get("id");
         if (id == null || id.isBlank()) {
             return false;
         }
@@ -1695,8 +1761,8 @@ public final class TsFullClient implements Ts3VoiceClient {
 
     private void collectCommandResponse(ParsedCommand cmd) {
         captureFileTransferInitPayload(cmd);
-        PendingCommand pending = pendingCommand;
-        if (pending == null || cmd == null) {
+        CommandPipeline.Entry oldest = commandPipeline.oldest();
+        if (oldest == null || cmd == null) {
             if (cmd != null && "error".equalsIgnoreCase(cmd.name())) {
                 String returnCodeRaw = cmd.params().get("return_code");
                 String errorId = cmd.params().get("id");
@@ -1715,10 +1781,9 @@ public final class TsFullClient implements Ts3VoiceClient {
         }
         String lower = name.toLowerCase();
         if (lower.startsWith("notify")) {
-            if (pending != null
-                && "ftinitupload".equalsIgnoreCase(pending.commandName)
-                && isFileTransferInitPayload(cmd)) {
-                pending.commands.add(cmd);
+            CommandPipeline.Entry upload = commandPipeline.findByName("ftinitupload");
+            if (upload != null && isFileTransferInitPayload(cmd)) {
+                upload.lines.add(cmd);
             }
             return;
         }
@@ -1736,28 +1801,25 @@ public final class TsFullClient implements Ts3VoiceClient {
             Integer code = parseInt(returnCodeRaw);
             String errorId = cmd.params().get("id");
             String msg = cmd.params().get("msg");
-            if ("ftinitupload".equalsIgnoreCase(pending.commandName)) {
+            // 不带 return_code 时按服务器顺序处理的约定归属最早的命令；编号未知时说明命令已超时放弃。
+            CommandPipeline.Entry pending = code == null ? oldest : commandPipeline.find(code);
+            if (pending != null && "ftinitupload".equalsIgnoreCase(pending.commandName)) {
                 log.info("[TS3] ftinitupload error params={}", cmd.params());
             }
-            logCommandError(pending.commandName, returnCodeRaw, errorId, msg);
+            logCommandError(pending == null ? null : pending.commandName, returnCodeRaw, errorId, msg);
             Consumer<ParsedCommand> listener = errorListener;
             if (listener != null) {
                 listener.accept(cmd);
             }
-            if (code == null || code == pending.returnCode) {
-                pending.future.complete(new CommandResponse(pending.returnCode, List.copyOf(pending.commands), cmd));
-                synchronized (responseLock) {
-                    if (pendingCommand == pending) {
-                        pendingCommand = null;
-                    }
-                }
+            if (pending != null) {
+                commandPipeline.complete(pending, cmd);
             }
             return;
         }
-        if ("ftinitupload".equalsIgnoreCase(pending.commandName)) {
+        if ("ftinitupload".equalsIgnoreCase(oldest.commandName)) {
             log.info("[TS3] ftinitupload response name={} params={}", name, cmd.params());
         }
-        pending.commands.add(cmd);
+        oldest.lines.add(cmd);
     }
 
     private void captureFileTransferInitPayload(ParsedCommand cmd) {
@@ -1857,11 +1919,11 @@ public final class TsFullClient implements Ts3VoiceClient {
         return token.substring(idx + 1);
     }
 
-    private void mergeErrorParams(Map<String, String> parsed, CommandResponse response) {
-        if (parsed == null || response == null || response.error == null || response.error.params() == null) {
+    private void mergeErrorParams(Map<String, String> parsed, CommandPipeline.Response response) {
+        if (parsed == null || response == null || response.error() == null || response.error().params() == null) {
             return;
         }
-        for (Map.Entry<String, String> entry : response.error.params().entrySet()) {
+        for (Map.Entry<String, String> entry : response.error().params().entrySet()) {
             String key = entry.getKey();
             String value = entry.getValue();
             if (key == null || key.isBlank() || value == null || value.isBlank()) {
@@ -1907,15 +1969,6 @@ public final class TsFullClient implements Ts3VoiceClient {
         return port != null && port > 0;
     }
 
-    private int nextReturnCode() {
-        int current = returnCodeCounter;
-        returnCodeCounter++;
-        if (returnCodeCounter > 0x7FFF) {
-            returnCodeCounter = 1;
-        }
-        return current;
-    }
-
     private Integer parseInt(String value) {
         if (value == null || value.isBlank()) {
             return null;
@@ -2405,27 +2458,4 @@ public final class TsFullClient implements Ts3VoiceClient {
      */
     public record ChannelCodecInfo(int codec, int quality) {
     }
-
-    private record CommandResponse(int returnCode, List<ParsedCommand> commands, ParsedCommand error) {
-    }
-
-
-    /**
-     * PendingCommand 相关功能。
-     *
-     * <p>职责：负责 PendingCommand 相关功能。</p>
-     * <p>线程安全：无显式保证。</p>
-     * <p>约束：调用方需遵守方法契约。</p>
-     */
-    private static final class PendingCommand {
-        private final int returnCode;
-        private final String commandName;
-        private final List<ParsedCommand> commands = new ArrayList<>();
-        private final CompletableFuture<CommandResponse> future = new CompletableFuture<>();
-
-        private PendingCommand(int returnCode, String commandName) {
-            this.returnCode = returnCode;
-            this.commandName = commandName;
-        }
-    }
 }
@@ -0,0 +1,372 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 23:00
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 UdpReactor 相关功能。
+ */
+
+
+/**
+ * 所有语音连接共享的 UDP 收发反应器。
+ *
+ * <p>职责：用一个选择器线程在非阻塞 {@link DatagramChannel} 上接收所有连接的数据报，
+ * 一个定时线程触发各连接的重发与 PING，收到的数据报与定时任务交给固定大小的工作线程池处理。
+ * 线程数固定，不随连接数增长。</p>
+ * <p>线程安全：线程安全。同一连接的数据报与定时任务在其串行队列中依次执行，从不并发；
+ * 不同连接之间互不阻塞，除非阻塞的连接数达到工作线程数。</p>
+ * <p>约束：单个连接积压的数据报超过 {@value #MAX_PENDING_DATAGRAMS} 个时丢弃新数据报；
+ * 发送缓冲已满时本次发送失败，由调用方按 UDP 丢包处理。线程为守护线程，首次注册时启动。</p>
+ */
+@Slf4j
+final class UdpReactor {
+    static final int MAX_PENDING_DATAGRAMS = 1024;
+    private static final int MAX_DATAGRAM_BYTES = 8192;
+    // 每批最多处理的任务数，处理完重新排队，避免一个繁忙连接长期占住工作线程。
+    private static final int LANE_BATCH = 64;
+    private static final UdpReactor SHARED = new UdpReactor(
+        "ts3-udp",
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2))
+    );
+
+    private final String threadPrefix;
+    private final int workerThreads;
+    private final Queue<Registration> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final LongAdder datagramsReceived = new LongAdder();
+    private final LongAdder datagramsDropped = new LongAdder();
+    private final Object lock = new Object();
+
+    private Selector selector;
+    private ExecutorService workers;
+    private ScheduledExecutorService timer;
+
+    /**
+     * 创建 UdpReactor 实例。
+     * @param threadPrefix 线程名前缀
+     * @param workerThreads 工作线程数
+     */
+    UdpReactor(String threadPrefix, int workerThreads) {
+        this.threadPrefix = threadPrefix;
+        this.workerThreads = Math.max(1, workerThreads);
+    }
+
+
+    /**
+     * 执行 shared 操作。
+     * @return 全局实例
+     */
+    static UdpReactor shared() {
+        return SHARED;
+    }
+
+
+    /**
+     * 打开连接到远端的非阻塞通道并开始接收。
+     * @param remote 远端地址
+     * @param onDatagram 数据报回调，在该连接的串行队列中执行
+     * @param onReceiveFailed 接收出错回调，之后该连接不再接收
+     * @return 注册句柄
+     * @throws IOException 通道打开或连接失败
+     */
+    Registration register(
+        InetSocketAddress remote,
+        Consumer<byte[]> onDatagram,
+        Consumer<IOException> onReceiveFailed
+    ) throws IOException {
+        ensureStarted();
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.connect(remote);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        Registration registration = new Registration(channel, onDatagram, onReceiveFailed);
+        pendingRegistrations.add(registration);
+        selector.wakeup();
+        return registration;
+    }
+
+
+    /**
+     * 执行 threadCount 操作。
+     * @return 反应器占用的线程数（选择器、定时与工作线程）
+     */
+    int threadCount() {
+        return workerThreads + 2;
+    }
+
+
+    /**
+     * 执行 datagramsReceived 操作。
+     * @return 已接收的数据报数
+     */
+    long datagramsReceived() {
+        return datagramsReceived.sum();
+    }
+
+
+    /**
+     * 执行 datagramsDropped 操作。
+     * @return 因连接积压过多而丢弃的数据报数
+     */
+    long datagramsDropped() {
+        return datagramsDropped.sum();
+    }
+
+    private void ensureStarted() throws IOException {
+        synchronized (lock) {
+            if (selector != null) {
+                return;
+            }
+            selector = Selector.open();
+            workers = Executors.newFixedThreadPool(workerThreads, daemonFactory(threadPrefix + "-worker"));
+            timer = Executors.newSingleThreadScheduledExecutor(daemonFactory(threadPrefix + "-timer"));
+            Thread selectorThread = new Thread(this::selectLoop, threadPrefix + "-selector");
+            selectorThread.setDaemon(true);
+            selectorThread.start();
+        }
+    }
+
+    private void selectLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_BYTES);
+        try {
+            while (true) {
+                selector.select();
+                registerPending();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        ((Registration) key.attachment()).drain(key, buffer);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException ex) {
+            log.error("[TS3] udp reactor selector stopped", ex);
+        }
+    }
+
+    private void registerPending() {
+        Registration registration;
+        while ((registration = pendingRegistrations.poll()) != null) {
+            if (registration.closed.get()) {
+                continue;
+            }
+            try {
+                registration.channel.register(selector, SelectionKey.OP_READ, registration);
+            } catch (IOException ex) {
+                registration.failReceive(ex);
+            }
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+
+    /**
+     * 单个连接的注册句柄。
+     *
+     * <p>职责：发送数据报、登记周期任务，并把该连接的数据报与任务放入串行队列交给工作线程池。</p>
+     * <p>线程安全：线程安全；{@link #send} 可由任意线程并发调用。</p>
+     * <p>约束：关闭后队列中尚未执行的任务被丢弃，周期任务被取消。</p>
+     */
+    final class Registration implements Runnable {
+        private final DatagramChannel channel;
+        private final Consumer<byte[]> onDatagram;
+        private final Consumer<IOException> onReceiveFailed;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingDatagrams = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final List<ScheduledFuture<?>> periodic = new ArrayList<>();
+
+        private Registration(
+            DatagramChannel channel,
+            Consumer<byte[]> onDatagram,
+            Consumer<IOException> onReceiveFailed
+        ) {
+            this.channel = channel;
+            this.onDatagram = onDatagram;
+            this.onReceiveFailed = onReceiveFailed;
+        }
+
+
+        /**
+         * 发送一个数据报。
+         * @param raw 数据
+         * @return 是否已交给系统发送
+         * @throws IOException 发送失败
+         */
+        boolean send(byte[] raw) throws IOException {
+            return send(ByteBuffer.wrap(raw));
+        }
+
+
+        /**
+         * 发送缓冲中从当前位置到上界的数据作为一个数据报。
+         * @param datagram 数据，发送后位置移到上界
+         * @return 是否已交给系统发送
+         * @throws IOException 发送失败
+         */
+        boolean send(ByteBuffer datagram) throws IOException {
+            if (closed.get()) {
+                return false;
+            }
+            return channel.write(datagram) > 0;
+        }
+
+
+        /**
+         * 按固定周期在该连接的串行队列中执行任务。
+         * @param task 任务
+         * @param periodMs 周期（毫秒），首次执行在一个周期之后
+         */
+        void schedule(Runnable task, long periodMs) {
+            synchronized (periodic) {
+                if (closed.get()) {
+                    return;
+                }
+                periodic.add(timer.scheduleAtFixedRate(() -> submit(task), periodMs, periodMs, TimeUnit.MILLISECONDS));
+            }
+        }
+
+
+        /**
+         * 停止接收、取消周期任务并关闭通道，可重复调用。
+         */
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (periodic) {
+                for (ScheduledFuture<?> future : periodic) {
+                    future.cancel(false);
+                }
+                periodic.clear();
+            }
+            try {
+                // 关闭通道会注销其选择键。
+                channel.close();
+            } catch (IOException ex) {
+                log.debug("[TS3] udp channel close failed", ex);
+            }
+            tasks.clear();
+        }
+
+
+        /**
+         * 串行队列：一次最多执行一批任务，之后若仍有任务则重新排队。
+         */
+        @Override
+        public void run() {
+            int executed = 0;
+            Runnable task;
+            while (executed < LANE_BATCH && !closed.get() && (task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    log.error("[TS3] udp connection task failed", ex);
+                }
+                executed++;
+            }
+            scheduled.set(false);
+            if (!closed.get() && !tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                dispatch();
+            }
+        }
+
+        private void drain(SelectionKey key, ByteBuffer buffer) {
+            while (true) {
+                buffer.clear();
+                int read;
+                try {
+                    read = channel.read(buffer);
+                } catch (IOException ex) {
+                    key.cancel();
+                    failReceive(ex);
+                    return;
+                }
+                if (read <= 0) {
+                    return;
+                }
+                datagramsReceived.increment();
+                if (pendingDatagrams.incrementAndGet() > MAX_PENDING_DATAGRAMS) {
+                    pendingDatagrams.decrementAndGet();
+                    datagramsDropped.increment();
+                    continue;
+                }
+                byte[] data = new byte[read];
+                buffer.flip();
+                buffer.get(data);
+                submit(() -> {
+                    pendingDatagrams.decrementAndGet();
+                    onDatagram.accept(data);
+                });
+            }
+        }
+
+        private void failReceive(IOException ex) {
+            if (!closed.get()) {
+                submit(() -> onReceiveFailed.accept(ex));
+            }
+        }
+
+        private void submit(Runnable task) {
+            if (closed.get()) {
+                return;
+            }
+            tasks.add(task);
+            if (scheduled.compareAndSet(false, true)) {
+                dispatch();
+            }
+        }
+
+        private void dispatch() {
+            try {
+                workers.execute(this);
+            } catch (RejectedExecutionException ex) {
+                scheduled.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import pub.longyi.ts3audiobot.ts3.protocol.PacketDirection;
+import pub.longyi.ts3audiobot.ts3.protocol.PacketFlags;
+import pub.longyi.ts3audiobot.ts3.protocol.PacketType;
+import pub.longyi.ts3audiobot.ts3.protocol.ProtocolConst;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 23:05
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 VoicePacketWriter 相关功能。
+ */
+
+
+/**
+ * 客户端语音包的直接编码器。
+ *
+ * <p>职责：把 MAC、包头与语音负载直接写入每个连接一块复用的直接内存缓冲，
+ * 包头按模板只改写包序号与标志位，负载与密文暂存区同样复用，发送路径不再分配数组。</p>
+ * <p>线程安全：非线程安全，由 {@link PacketHandler} 在锁内使用；返回的缓冲在下一次编码前有效。</p>
+ * <p>约束：负载不超过 {@link ProtocolConst#MAX_VOICE_DATA} 字节，超长负载由调用方在编码前丢弃。</p>
+ */
+final class VoicePacketWriter {
+    static final int MAX_VOICE_DATA = ProtocolConst.MAX_VOICE_DATA;
+    // 负载前缀：包序号 2 字节与编解码器 1 字节；会话号后缀 1 字节。
+    private static final int BODY_PREFIX = 3;
+    private static final int SESSION_SUFFIX = 1;
+    // EAX 输出为密文加 MAC，留出余量。
+    private static final int SEAL_SLACK = 2 * ProtocolConst.MAC_LEN + 16;
+    private static final int HEADER_LEN = PacketDirection.C2S.headerLength();
+
+    private final byte[] header = new byte[HEADER_LEN];
+    private final byte[] body = new byte[BODY_PREFIX + MAX_VOICE_DATA + SESSION_SUFFIX];
+    private final byte[] sealed = new byte[body.length + SEAL_SLACK];
+    private final byte[] zeroMac = new byte[ProtocolConst.MAC_LEN];
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(ProtocolConst.MAC_LEN + HEADER_LEN + body.length + SEAL_SLACK);
+
+    private int clientId = -1;
+
+
+    /**
+     * 编码一个语音包。
+     * @param tsCrypt 加密器，为 null 时写入全零 MAC 且不加密
+     * @param clientId 客户端 ID
+     * @param packetId 包序号
+     * @param generationId 包代数
+     * @param codec 编解码器编号
+     * @param data 语音负载
+     * @param length 负载长度
+     * @param sessionId 语音会话号，小于 0 表示不附带
+     * @return 已翻转、可直接发送的缓冲
+     */
+    ByteBuffer write(
+        TsCrypt tsCrypt,
+        int clientId,
+        int packetId,
+        int generationId,
+        byte codec,
+        byte[] data,
+        int length,
+        int sessionId
+    ) {
+        if (length < 0 || length > MAX_VOICE_DATA) {
+            throw new IllegalArgumentException("voice data length out of range: " + length);
+        }
+        if (clientId != this.clientId) {
+            this.clientId = clientId;
+            header[2] = (byte) (clientId >> 8);
+            header[3] = (byte) clientId;
+        }
+        header[0] = (byte) (packetId >> 8);
+        header[1] = (byte) packetId;
+        int typeFlagged = PacketType.VOICE.value() & 0x0F;
+        if (sessionId >= 0) {
+            typeFlagged |= PacketFlags.COMPRESSED.mask();
+        }
+        header[4] = (byte) typeFlagged;
+
+        body[0] = (byte) (packetId >> 8);
+        body[1] = (byte) packetId;
+        body[2] = codec;
+        System.arraycopy(data, 0, body, BODY_PREFIX, length);
+        int bodyLength = BODY_PREFIX + length;
+        if (sessionId >= 0) {
+            body[bodyLength] = (byte) sessionId;
+            bodyLength += SESSION_SUFFIX;
+        }
+
+        buffer.clear();
+        if (tsCrypt == null) {
+            buffer.put(zeroMac).put(header).put(body, 0, bodyLength);
+        } else {
+            tsCrypt.encryptInto(header, packetId, generationId, PacketType.VOICE, body, bodyLength, sealed, buffer);
+        }
+        return buffer.flip();
+    }
+}
@@ -1,8 +1,8 @@
 package pub.longyi.ts3audiobot.ts3.protocol;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 /**
  * Created by: Arthur Zhu
@@ -16,30 +16,46 @@ import java.util.List;
 
 
 /**
- * PacketStatistics 相关功能。
+ * 单类数据包的收发计数与最近一秒/一分钟流量。
  *
- * <p>职责：负责 PacketStatistics 相关功能。</p>
- * <p>线程安全：无显式保证。</p>
- * <p>约束：调用方需遵守方法契约。</p>
+ * <p>职责：累计收发包数与字节数；最近流量按秒分桶保存在固定环形数组中，记录为 O(1)，查询遍历 61 个桶。</p>
+ * <p>线程安全：线程安全，记录与查询均无锁且不分配对象。</p>
+ * <p>约束：窗口最旧的一秒按其在窗口内的时间比例折算，结果为近似值；单个桶每秒最多计 4 GiB，超出部分截断。</p>
  */
 public final class PacketStatistics {
-    private final List<DataPoint> sent = Collections.synchronizedList(new ArrayList<>());
-    private final List<DataPoint> received = Collections.synchronizedList(new ArrayList<>());
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int MINUTE_SECONDS = 60;
+
+    private final LongSupplier clock;
+    private final long origin;
+    private final ByteWindow sent = new ByteWindow();
+    private final ByteWindow received = new ByteWindow();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder sentPackets = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder receivedPackets = new LongAdder();
+
+    /**
+     * 创建 PacketStatistics 实例。
+     */
+    public PacketStatistics() {
+        this(System::nanoTime);
+    }
+
+    PacketStatistics(LongSupplier clock) {
+        this.clock = clock;
+        this.origin = clock.getAsLong();
+    }
 
-    private int sentBytes;
-    private int sentPackets;
-    private int receivedBytes;
-    private int receivedPackets;
 
     /**
      * 执行 processOutgoing 操作。
      * @param size 参数 size
      */
     public void processOutgoing(int size) {
-        sentBytes += size;
-        sentPackets++;
-        sent.add(new DataPoint(System.nanoTime(), size));
-        prune(sent);
+        sentBytes.add(size);
+        sentPackets.increment();
+        sent.add(elapsed(), size);
     }
 
 
@@ -48,10 +64,9 @@ public final class PacketStatistics {
      * @param size 参数 size
      */
     public void processIncoming(int size) {
-        receivedBytes += size;
-        receivedPackets++;
-        received.add(new DataPoint(System.nanoTime(), size));
-        prune(received);
+        receivedBytes.add(size);
+        receivedPackets.increment();
+        received.add(elapsed(), size);
     }
 
 
@@ -60,7 +75,7 @@ public final class PacketStatistics {
      * @return 返回值
      */
     public int getSentPackets() {
-        return sentPackets;
+        return (int) sentPackets.sum();
     }
 
 
@@ -69,7 +84,7 @@ public final class PacketStatistics {
      * @return 返回值
      */
     public int getSentBytes() {
-        return sentBytes;
+        return (int) sentBytes.sum();
     }
 
 
@@ -78,7 +93,7 @@ public final class PacketStatistics {
      * @return 返回值
      */
     public int getReceivedPackets() {
-        return receivedPackets;
+        return (int) receivedPackets.sum();
     }
 
 
@@ -87,7 +102,7 @@ public final class PacketStatistics {
      * @return 返回值
      */
     public int getReceivedBytes() {
-        return receivedBytes;
+        return (int) receivedBytes.sum();
     }
 
 
@@ -96,7 +111,7 @@ public final class PacketStatistics {
      * @return 返回值
      */
     public int getSentBytesLastSecond() {
-        return sumSince(sent, 1_000_000_000L);
+        return sent.sum(elapsed(), 1);
     }
 
 
@@ -105,7 +120,7 @@ public final class PacketStatistics {
      * @return 返回值
      */
     public int getSentBytesLastMinute() {
-        return sumSince(sent, 60_000_000_000L);
+        return sent.sum(elapsed(), MINUTE_SECONDS);
     }
 
 
@@ -114,7 +129,7 @@ public final class PacketStatistics {
      * @return 返回值
      */
     public int getReceivedBytesLastSecond() {
-        return sumSince(received, 1_000_000_000L);
+        return received.sum(elapsed(), 1);
     }
 
 
@@ -123,42 +138,62 @@ public final class PacketStatistics {
      * @return 返回值
      */
     public int getReceivedBytesLastMinute() {
-        return sumSince(received, 60_000_000_000L);
-    }
-
-    private static int sumSince(List<DataPoint> points, long windowNanos) {
-        long now = System.nanoTime() - windowNanos;
-        synchronized (points) {
-            int total = 0;
-            for (DataPoint point : points) {
-                if (point.time >= now) {
-                    total += point.size;
-                }
-            }
-            return total;
-        }
+        return received.sum(elapsed(), MINUTE_SECONDS);
     }
 
-    private static void prune(List<DataPoint> points) {
-        long cutoff = System.nanoTime() - 60_000_000_000L;
-        points.removeIf(point -> point.time < cutoff);
+    private long elapsed() {
+        return Math.max(0L, clock.getAsLong() - origin);
     }
 
 
     /**
-     * DataPoint 相关功能。
+     * 按秒分桶的字节数环形窗口。
      *
-     * <p>职责：负责 DataPoint 相关功能。</p>
-     * <p>线程安全：无显式保证。</p>
-     * <p>约束：调用方需遵守方法契约。</p>
+     * <p>职责：每个桶用一个 long 同时保存所属秒序号（高 32 位）与该秒的字节数（低 32 位），
+     * 进入新的一秒时由 CAS 一次性换成新秒序号并重新计数，不会有字节计入已被复用的桶。</p>
+     * <p>线程安全：线程安全，CAS 重试无锁。</p>
+     * <p>约束：秒序号从统计创建时起算，按 32 位无符号数回绕。</p>
      */
-    private static final class DataPoint {
-        private final long time;
-        private final int size;
+    private static final class ByteWindow {
+        // 一分钟窗口跨越 61 个秒桶：当前一秒的已过部分加上最旧一秒的剩余部分。
+        private static final int SLOTS = MINUTE_SECONDS + 1;
+        private static final long BYTES_MASK = 0xFFFF_FFFFL;
+
+        private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+
+        private void add(long elapsedNanos, int size) {
+            long second = elapsedNanos / NANOS_PER_SECOND;
+            long tag = second & BYTES_MASK;
+            int index = (int) (second % SLOTS);
+            long amount = Math.max(0, size);
+            while (true) {
+                long current = slots.get(index);
+                long bytes = (current >>> 32) == tag ? current & BYTES_MASK : 0L;
+                long next = (tag << 32) | Math.min(BYTES_MASK, bytes + amount);
+                if (slots.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
 
-        private DataPoint(long time, int size) {
-            this.time = time;
-            this.size = size;
+        private int sum(long elapsedNanos, int windowSeconds) {
+            long second = elapsedNanos / NANOS_PER_SECOND;
+            double elapsedFraction = (double) (elapsedNanos % NANOS_PER_SECOND) / NANOS_PER_SECOND;
+            long total = 0L;
+            for (int back = 0; back < windowSeconds; back++) {
+                total += bytesAt(second - back);
+            }
+            // 窗口起点落在 windowSeconds 秒前那个桶的中间，按剩余比例折算。
+            total += Math.round(bytesAt(second - windowSeconds) * (1.0 - elapsedFraction));
+            return (int) Math.min(Integer.MAX_VALUE, total);
+        }
+
+        private long bytesAt(long second) {
+            if (second < 0L) {
+                return 0L;
+            }
+            long value = slots.get((int) (second % SLOTS));
+            return (value >>> 32) == (second & BYTES_MASK) ? value & BYTES_MASK : 0L;
         }
     }
 }
@@ -22,4 +22,7 @@ public final class ProtocolConst {
     private ProtocolConst() {}
 
     public static final int MAC_LEN = 8;
+    public static final int MAX_PACKET_SIZE = 500;
+    // 客户端语音包：MAC、5 字节包头、包序号与编解码器 3 字节、可选的会话号 1 字节，其余为 Opus 负载。
+    public static final int MAX_VOICE_DATA = MAX_PACKET_SIZE - MAC_LEN - 5 - 3 - 1;
 }
@@ -0,0 +1,189 @@
+package pub.longyi.ts3audiobot.web.internal;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pub.longyi.ts3audiobot.audio.AudioMetrics;
+import pub.longyi.ts3audiobot.audio.AudioPipelineStats;
+import pub.longyi.ts3audiobot.audio.FrameClock;
+import pub.longyi.ts3audiobot.audio.OpusComplexityGovernor;
+import pub.longyi.ts3audiobot.audio.WarmFfmpegPool;
+import pub.longyi.ts3audiobot.bot.BotInstance;
+import pub.longyi.ts3audiobot.bot.BotManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+@RestController
+@RequestMapping("/internal/audio")
+public final class InternalAudioController {
+    private final FrameClock frameClock;
+    private final BotManager botManager;
+    private final OpusComplexityGovernor complexityGovernor;
+    private final WarmFfmpegPool warmPool;
+
+    public InternalAudioController(
+        FrameClock frameClock,
+        BotManager botManager,
+        OpusComplexityGovernor complexityGovernor,
+        WarmFfmpegPool warmPool
+    ) {
+        this.frameClock = frameClock;
+        this.botManager = botManager;
+        this.complexityGovernor = complexityGovernor;
+        this.warmPool = warmPool;
+    }
+
+    @GetMapping("/clock")
+    public FrameClock.ClockStats clock() {
+        return frameClock.snapshot();
+    }
+
+    @PostMapping("/clock/reset")
+    public ResponseEntity<Void> resetClock() {
+        frameClock.resetStats();
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/pipelines")
+    public Map<String, AudioPipelineStats> pipelines() {
+        Map<String, AudioPipelineStats> result = new TreeMap<>();
+        for (BotInstance bot : botManager.list()) {
+            AudioPipelineStats stats = bot.audioPipelineStats();
+            if (stats != null) {
+                result.put(bot.id(), stats);
+            }
+        }
+        return result;
+    }
+
+    @GetMapping(value = "/metrics", produces = PrometheusTextWriter.CONTENT_TYPE)
+    public String metrics() {
+        Map<String, AudioMetrics.Snapshot> bots = new TreeMap<>();
+        for (BotInstance bot : botManager.list()) {
+            AudioMetrics.Snapshot metrics = bot.audioMetrics();
+            if (metrics != null) {
+                bots.put(bot.id(), metrics);
+            }
+        }
+        Map<String, FrameClock.HandleStats> timing = new HashMap<>();
+        for (FrameClock.HandleStats stats : frameClock.snapshot().bots()) {
+            timing.put(stats.name(), stats);
+        }
+        PrometheusTextWriter out = new PrometheusTextWriter();
+        writeFamily(out, "ts3audiobot_audio_frames_sent_total", PrometheusTextWriter.COUNTER,
+            "Opus frames sent to the voice connection.", bots, AudioMetrics.Snapshot::framesSent);
+        writeFamily(out, "ts3audiobot_audio_sent_bytes_total", PrometheusTextWriter.COUNTER,
+            "Opus payload bytes sent to the voice connection.", bots, AudioMetrics.Snapshot::bytesSent);
+        writeFamily(out, "ts3audiobot_audio_pcm_frames_total", PrometheusTextWriter.COUNTER,
+            "PCM frames produced by the decoder stage.", bots, AudioMetrics.Snapshot::pcmFrames);
+        out.family("ts3audiobot_audio_frames_dropped_total", PrometheusTextWriter.COUNTER,
+            "Frames not sent, by reason.");
+        for (Map.Entry<String, AudioMetrics.Snapshot> entry : bots.entrySet()) {
+            String bot = entry.getKey();
+            AudioMetrics.Snapshot metrics = entry.getValue();
+            FrameClock.HandleStats clock = timing.get(bot);
+            String name = "ts3audiobot_audio_frames_dropped_total";
+            out.sample(name, metrics.droppedNoConnection(), "bot", bot, "reason", "no_connection");
+            out.sample(name, metrics.droppedEncodeFailure(), "bot", bot, "reason", "encode_failure");
+            out.sample(name, metrics.droppedSilence(), "bot", bot, "reason", "silence");
+            out.sample(name, clock == null ? 0L : clock.framesDropped(), "bot", bot, "reason", "late");
+        }
+        writeFamily(out, "ts3audiobot_audio_underruns_total", PrometheusTextWriter.COUNTER,
+            "Send ticks with no frame ready.", bots, AudioMetrics.Snapshot::underruns);
+        writeFamily(out, "ts3audiobot_audio_overruns_total", PrometheusTextWriter.COUNTER,
+            "Upstream waits longer than two frame periods on a full buffer.", bots, AudioMetrics.Snapshot::overruns);
+        writeFamily(out, "ts3audiobot_audio_decoder_restarts_total", PrometheusTextWriter.COUNTER,
+            "Decoder restarts within a track caused by seeks or volume changes.", bots,
+            AudioMetrics.Snapshot::decoderRestarts);
+        writeFamily(out, "ts3audiobot_audio_tracks_started_total", PrometheusTextWriter.COUNTER,
+            "Tracks started by play requests.", bots, AudioMetrics.Snapshot::tracksStarted);
+        writeFamily(out, "ts3audiobot_audio_bitrate_bps", PrometheusTextWriter.GAUGE,
+            "Current Opus encoder bitrate, -1 when unknown.", bots, AudioMetrics.Snapshot::bitrate);
+        writeFamily(out, "ts3audiobot_audio_complexity", PrometheusTextWriter.GAUGE,
+            "Current Opus encoder complexity.", bots, AudioMetrics.Snapshot::complexity);
+        out.family("ts3audiobot_audio_last_first_frame_seconds", PrometheusTextWriter.GAUGE,
+            "Time from play to the first frame sent for the latest track.");
+        for (Map.Entry<String, AudioMetrics.Snapshot> entry : bots.entrySet()) {
+            out.sample("ts3audiobot_audio_last_first_frame_seconds",
+                entry.getValue().lastFirstFrameMicros() / 1_000_000d, "bot", entry.getKey());
+        }
+        out.family("ts3audiobot_audio_first_frame_seconds", PrometheusTextWriter.HISTOGRAM,
+            "Time from play to the first frame sent, per track.");
+        for (Map.Entry<String, AudioMetrics.Snapshot> entry : bots.entrySet()) {
+            out.histogram("ts3audiobot_audio_first_frame_seconds", entry.getValue().firstFrame(), "bot", entry.getKey());
+        }
+        out.family("ts3audiobot_audio_encode_seconds", PrometheusTextWriter.HISTOGRAM,
+            "Opus encode time per frame.");
+        for (Map.Entry<String, AudioMetrics.Snapshot> entry : bots.entrySet()) {
+            out.histogram("ts3audiobot_audio_encode_seconds", entry.getValue().encodeTime(), "bot", entry.getKey());
+        }
+        out.family("ts3audiobot_audio_frame_lateness_seconds", PrometheusTextWriter.HISTOGRAM,
+            "Frame send time behind the frame clock schedule.");
+        for (String bot : bots.keySet()) {
+            FrameClock.HandleStats clock = timing.get(bot);
+            if (clock != null) {
+                out.histogram("ts3audiobot_audio_frame_lateness_seconds", clock.lateness(), "bot", bot);
+            }
+        }
+        return out.toString();
+    }
+
+    @GetMapping("/complexity")
+    public OpusComplexityGovernor.GovernorStats complexity() {
+        return complexityGovernor.snapshot();
+    }
+
+    @GetMapping("/decoders")
+    public WarmFfmpegPool.PoolStats decoders() {
+        return warmPool.snapshot();
+    }
+
+    @GetMapping("/broadcast")
+    public Map<String, List<String>> broadcasts() {
+        return botManager.broadcasts();
+    }
+
+    @PostMapping("/broadcast/{leaderId}/subscribers/{botId}")
+    public ResponseEntity<String> followBroadcast(@PathVariable String leaderId, @PathVariable String botId) {
+        try {
+            if (!botManager.followBroadcast(botId, leaderId)) {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/broadcast/{leaderId}/subscribers/{botId}")
+    public ResponseEntity<Void> leaveBroadcast(@PathVariable String leaderId, @PathVariable String botId) {
+        BotInstance bot = botManager.get(botId);
+        if (bot == null || !leaderId.equals(bot.broadcastLeaderId())) {
+            return ResponseEntity.notFound().build();
+        }
+        botManager.leaveBroadcast(botId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static void writeFamily(
+        PrometheusTextWriter out,
+        String name,
+        String type,
+        String help,
+        Map<String, AudioMetrics.Snapshot> bots,
+        ToLongFunction<AudioMetrics.Snapshot> value
+    ) {
+        out.family(name, type, help);
+        for (Map.Entry<String, AudioMetrics.Snapshot> entry : bots.entrySet()) {
+            out.sample(name, value.applyAsLong(entry.getValue()), "bot", entry.getKey());
+        }
+    }
+}
\ No newline at end of file
@@ -129,7 +129,7 @@ public final class InternalQueueController {
                 return ResponseEntity.badRequest().body("No resolver could handle the query");
             }
             Track resolved = trackMediaService.prepareForQueue(applyTrackMetadata(item, applyWebsiteSourceType(item.query(), track.get())));
-            return ResponseEntity.ok(queueService.add(botId, resolved, request.addedBy()));
+            return ResponseEntity.ok(prepareSnippet(botId, queueService.add(botId, resolved, request.addedBy())));
         }
         BatchAddResponse response = addBatch(botId, null, items, request.addedBy());
         return ResponseEntity.ok(response);
@@ -160,7 +160,7 @@ public final class InternalQueueController {
                 return ResponseEntity.badRequest().body("No resolver could handle the query");
             }
             Track resolved = trackMediaService.prepareForQueue(applyTrackMetadata(item, applyWebsiteSourceType(item.query(), track.get())));
-            return ResponseEntity.ok(queueService.add(botId, playlistId, resolved, request.addedBy()));
+            return ResponseEntity.ok(prepareSnippet(botId, queueService.add(botId, playlistId, resolved, request.addedBy())));
         }
         BatchAddResponse response = addBatch(botId, playlistId, items, request.addedBy());
         return ResponseEntity.ok(response);
@@ -470,11 +470,19 @@ public final class InternalQueueController {
             QueueItem queueItem = playlistId == null
                 ? queueService.add(botId, resolved, addedBy)
                 : queueService.add(botId, playlistId, resolved, addedBy);
-            added.add(queueItem);
+            added.add(prepareSnippet(botId, queueItem));
         }
         return new BatchAddResponse(added, failed);
     }
 
+    private QueueItem prepareSnippet(String botId, QueueItem item) {
+        BotInstance bot = botManager == null || item == null ? null : botManager.get(botId);
+        if (bot != null) {
+            bot.prepareSnippet(item.track());
+        }
+        return item;
+    }
+
     private List<AddItemRequest> normalizeItems(AddRequest request) {
         if (request == null) {
             return List.of();
@@ -0,0 +1,158 @@
+package pub.longyi.ts3audiobot.web.internal;
+
+import pub.longyi.ts3audiobot.audio.TimingHistogram;
+
+/**
+ * Created by: Arthur Zhu
+ * Email: zhushuai.net@gmail.com
+ * Date: 2026-10-16 22:50
+ * GitHub: https://github.com/ArthurZhu1992
+ *
+ * Description:
+ * 负责 PrometheusTextWriter 相关功能。
+ */
+
+
+/**
+ * Prometheus 文本格式（0.0.4）的输出构造器。
+ *
+ * <p>职责：按指标族输出 HELP/TYPE 行与样本行，把 {@link TimingHistogram} 快照转换为以秒为单位的累计分桶直方图。</p>
+ * <p>线程安全：非线程安全，每次请求新建实例。</p>
+ * <p>约束：同一指标族的样本须在调用 {@link #family} 之后连续写出；标签以键值交替的形式传入。</p>
+ */
+final class PrometheusTextWriter {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    static final String COUNTER = "counter";
+    static final String GAUGE = "gauge";
+    static final String HISTOGRAM = "histogram";
+    private static final double MICROS_PER_SECOND = 1_000_000d;
+    private static final String LABEL_LE = "le";
+    private static final String INF = "+Inf";
+
+    private final StringBuilder out = new StringBuilder();
+
+
+    /**
+     * 开始一个指标族。
+     * @param name 指标名
+     * @param type 指标类型
+     * @param help 说明
+     */
+    void family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(escape(help, false)).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+
+    /**
+     * 写出一个整数样本。
+     * @param name 指标名
+     * @param value 样本值
+     * @param labels 标签，键值交替
+     */
+    void sample(String name, long value, String... labels) {
+        line(name, labels, null, null).append(value).append('\n');
+    }
+
+
+    /**
+     * 写出一个浮点样本。
+     * @param name 指标名
+     * @param value 样本值
+     * @param labels 标签，键值交替
+     */
+    void sample(String name, double value, String... labels) {
+        line(name, labels, null, null).append(format(value)).append('\n');
+    }
+
+
+    /**
+     * 写出一个直方图的累计分桶、总和与样本数，微秒换算为秒。
+     * @param name 指标名（不含 _bucket 等后缀）
+     * @param snapshot 直方图快照
+     * @param labels 标签，键值交替
+     */
+    void histogram(String name, TimingHistogram.Snapshot snapshot, String... labels) {
+        String bucketName = name + "_bucket";
+        long cumulative = 0L;
+        for (TimingHistogram.Bucket bucket : snapshot.buckets()) {
+            cumulative += bucket.count();
+            String le = bucket.upperMicros() == Long.MAX_VALUE ? INF : format(bucket.upperMicros() / MICROS_PER_SECOND);
+            line(bucketName, labels, LABEL_LE, le).append(cumulative).append('\n');
+        }
+        sample(name + "_sum", snapshot.sumMicros() / MICROS_PER_SECOND, labels);
+        sample(name + "_count", cumulative, labels);
+    }
+
+
+    /**
+     * 执行 toString 操作。
+     * @return 已写出的文本
+     */
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private StringBuilder line(String name, String[] labels, String extraKey, String extraValue) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be key/value pairs");
+        }
+        out.append(name);
+        if (labels.length == 0 && extraKey == null) {
+            return out.append(' ');
+        }
+        out.append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendLabel(labels[i], labels[i + 1]);
+        }
+        if (extraKey != null) {
+            if (labels.length > 0) {
+                out.append(',');
+            }
+            appendLabel(extraKey, extraValue);
+        }
+        return out.append("} ");
+    }
+
+    private void appendLabel(String key, String value) {
+        out.append(key).append("=\"").append(escape(value == null ? "" : value, true)).append('"');
+    }
+
+    private static String format(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? INF : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String text, boolean quoted) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '"' -> quoted ? "\\\"" : null;
+                default -> null;
+            };
+            if (replacement == null) {
+                if (escaped != null) {
+                    escaped.append(c);
+                }
+                continue;
+            }
+            if (escaped == null) {
+                escaped = new StringBuilder(text.length() + 8).append(text, 0, i);
+            }
+            escaped.append(replacement);
+        }
+        return escaped == null ? text : escaped.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AudioMetricsTest {
+
+    @Test
+    void firstFrameShouldBeRecordedOncePerTrack() throws Exception {
+        AudioMetrics metrics = new AudioMetrics();
+        metrics.recordFrameSent(100);
+        metrics.markTrackStart();
+        Thread.sleep(5L);
+        metrics.recordFrameSent(120);
+        metrics.recordFrameSent(130);
+        metrics.recordDroppedNoConnection();
+        metrics.recordDecoderRestart();
+
+        AudioMetrics.Snapshot snapshot = metrics.snapshot(new AudioPipeline.Counters(), 7L, 64_000, 9);
+
+        assertEquals(3L, snapshot.framesSent());
+        assertEquals(350L, snapshot.bytesSent());
+        assertEquals(1L, snapshot.droppedNoConnection());
+        assertEquals(7L, snapshot.droppedSilence());
+        assertEquals(1L, snapshot.decoderRestarts());
+        assertEquals(1L, snapshot.tracksStarted());
+        assertEquals(1L, snapshot.firstFrame().count(), "同一曲目只记录第一帧");
+        assertTrue(snapshot.lastFirstFrameMicros() >= 5_000L);
+        assertEquals(64_000, snapshot.bitrate());
+        assertEquals(9, snapshot.complexity());
+    }
+}
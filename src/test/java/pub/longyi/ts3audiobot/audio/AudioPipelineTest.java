@@ -0,0 +1,377 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+import pub.longyi.ts3audiobot.config.AppConfig;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AudioPipelineTest {
+    private static final PcmFormat FORMAT = new PcmFormat(48000, 2, 16);
+    private static final int FRAME_BYTES = FORMAT.frameBytes(FrameClock.FRAME_MS);
+    private static final int BUFFER_FRAMES = 25;
+
+    @Test
+    void ringShouldRespectCapacityAndWrapAround() {
+        FrameRing ring = new FrameRing(3, 4);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                byte[] slot = ring.claim();
+                slot[0] = (byte) (round * 3 + i);
+                ring.publish(1);
+            }
+            assertNull(ring.claim());
+            for (int i = 0; i < 3; i++) {
+                assertEquals((byte) (round * 3 + i), ring.peek()[0]);
+                assertEquals(1, ring.peekLength());
+                ring.release();
+            }
+            assertNull(ring.peek());
+        }
+    }
+
+    @Test
+    void decoderHiccupShorterThanBufferShouldBeInaudible() throws Exception {
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 5);
+        RecordingOutput output = new RecordingOutput();
+        AudioPipeline.Counters counters = new AudioPipeline.Counters();
+        AudioPipeline pipeline = newPipeline(output, counters);
+        GaplessDispatcher dispatcher = new GaplessDispatcher(pipeline, output);
+        int total = 60;
+        try {
+            pipeline.start();
+            dispatcher.start(clock, "test");
+            byte[] frame = new byte[FRAME_BYTES];
+            for (int i = 0; i < total; i++) {
+                if (i == 2 * BUFFER_FRAMES) {
+                    // 缓冲已填满后解码停顿 200ms（10 帧），远小于两级缓冲深度。
+                    Thread.sleep(10L * FrameClock.FRAME_MS);
+                }
+                writeSequence(frame, i);
+                pipeline.onPcmFrame(frame, frame.length, FORMAT);
+            }
+            pipeline.finishInput();
+
+            assertTrue(output.drained.await(total * FrameClock.FRAME_MS * 3L, TimeUnit.MILLISECONDS));
+            assertEquals(total, output.sequences.size());
+            for (int i = 0; i < total; i++) {
+                assertEquals(i, output.sequences.get(i));
+            }
+            assertEquals(0, counters.underruns());
+            assertEquals(0, counters.encodeFailures());
+        } finally {
+            dispatcher.close();
+            pipeline.close();
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void standbyPipelineShouldTakeOverOnTheNextTick() throws Exception {
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 5);
+        RecordingOutput output = new RecordingOutput();
+        AudioPipeline.Counters counters = new AudioPipeline.Counters();
+        AudioPipeline current = newPipeline(output, counters);
+        AudioPipeline standby = newPipeline(output, counters);
+        GaplessDispatcher dispatcher = new GaplessDispatcher(current, output);
+        int perTrack = 20;
+        try {
+            current.start();
+            standby.start();
+            byte[] frame = new byte[FRAME_BYTES];
+            for (int i = 0; i < perTrack; i++) {
+                writeSequence(frame, i);
+                current.onPcmFrame(frame, frame.length, FORMAT);
+            }
+            current.finishInput();
+            // 待命曲目预先解码到缓冲上限后即阻塞，模拟提前启动的下一首。
+            Thread feeder = new Thread(() -> {
+                byte[] next = new byte[FRAME_BYTES];
+                for (int i = 0; i < perTrack; i++) {
+                    writeSequence(next, perTrack + i);
+                    standby.onPcmFrame(next, next.length, FORMAT);
+                }
+                standby.finishInput();
+            });
+            feeder.start();
+            assertTrue(dispatcher.offerStandby(standby));
+            dispatcher.start(clock, "test");
+
+            assertTrue(output.drained.await(perTrack * FrameClock.FRAME_MS * 6L, TimeUnit.MILLISECONDS));
+            feeder.join(1000);
+            assertEquals(2 * perTrack, output.sequences.size());
+            for (int i = 0; i < 2 * perTrack; i++) {
+                assertEquals(i, output.sequences.get(i));
+            }
+            assertEquals(1, output.handovers.get());
+            assertEquals(1L, dispatcher.handovers());
+            assertEquals(0, counters.underruns());
+        } finally {
+            dispatcher.close();
+            current.close();
+            standby.close();
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void laneFramesShouldFollowMainFrameInTheSameTick() throws Exception {
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 5);
+        RecordingOutput output = new RecordingOutput();
+        AudioPipeline.Counters counters = new AudioPipeline.Counters();
+        OpusFrameEncoder[] lanes = {
+            new OpusFrameEncoder(new SequenceEncoder(), FRAME_BYTES),
+            new OpusFrameEncoder(new SequenceEncoder(), FRAME_BYTES)
+        };
+        AudioPipeline pipeline = new AudioPipeline(
+            "test",
+            BUFFER_FRAMES,
+            FORMAT,
+            FRAME_BYTES,
+            new OpusFrameEncoder(new SequenceEncoder(), FRAME_BYTES),
+            lanes,
+            output,
+            counters
+        );
+        GaplessDispatcher dispatcher = new GaplessDispatcher(pipeline, output);
+        int total = 10;
+        try {
+            pipeline.start();
+            dispatcher.start(clock, "test");
+            byte[] frame = new byte[FRAME_BYTES];
+            for (int i = 0; i < total; i++) {
+                writeSequence(frame, i);
+                pipeline.onPcmFrame(frame, frame.length, FORMAT);
+            }
+            pipeline.finishInput();
+
+            assertTrue(output.drained.await(total * FrameClock.FRAME_MS * 3L, TimeUnit.MILLISECONDS));
+            assertEquals(3 * total, output.events.size());
+            for (int i = 0; i < total; i++) {
+                assertEquals("main:" + i, output.events.get(3 * i));
+                assertEquals("lane0:" + i, output.events.get(3 * i + 1));
+                assertEquals("lane1:" + i, output.events.get(3 * i + 2));
+            }
+            assertEquals(0, counters.encodeFailures());
+        } finally {
+            dispatcher.close();
+            pipeline.close();
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void suspendedDispatcherShouldResumeAtTheNextFrame() throws Exception {
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 5);
+        RecordingOutput output = new RecordingOutput();
+        AudioPipeline.Counters counters = new AudioPipeline.Counters();
+        AudioPipeline pipeline = newPipeline(output, counters);
+        GaplessDispatcher dispatcher = new GaplessDispatcher(pipeline, output);
+        int total = 4 * BUFFER_FRAMES;
+        try {
+            pipeline.start();
+            Thread feeder = new Thread(() -> {
+                byte[] frame = new byte[FRAME_BYTES];
+                for (int i = 0; i < total; i++) {
+                    writeSequence(frame, i);
+                    pipeline.onPcmFrame(frame, frame.length, FORMAT);
+                }
+                pipeline.finishInput();
+            });
+            feeder.start();
+            dispatcher.start(clock, "test");
+            while (output.sequences.size() < 10) {
+                Thread.sleep(FrameClock.FRAME_MS);
+            }
+            dispatcher.suspend();
+            int sentBeforeSuspend = output.sequences.size();
+            Thread.sleep(10L * FrameClock.FRAME_MS);
+
+            // 暂停期间不再发送，解码侧被两级缓冲的背压挡住。
+            assertEquals(sentBeforeSuspend, output.sequences.size());
+            assertTrue(feeder.isAlive());
+            dispatcher.start(clock, "test");
+
+            assertTrue(output.drained.await(total * FrameClock.FRAME_MS * 3L, TimeUnit.MILLISECONDS));
+            feeder.join(1000);
+            assertEquals(total, output.sequences.size());
+            for (int i = 0; i < total; i++) {
+                assertEquals(i, output.sequences.get(i));
+            }
+        } finally {
+            dispatcher.close();
+            pipeline.close();
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void stalledSendStageShouldCountOverrun() throws Exception {
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingOutput output = new RecordingOutput(unblock);
+        AudioPipeline.Counters counters = new AudioPipeline.Counters();
+        AudioPipeline pipeline = newPipeline(output, counters);
+        GaplessDispatcher dispatcher = new GaplessDispatcher(pipeline, output);
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 5);
+        Thread producer = new Thread(() -> {
+            byte[] frame = new byte[FRAME_BYTES];
+            for (int i = 0; i < 3 * BUFFER_FRAMES; i++) {
+                pipeline.onPcmFrame(frame, frame.length, FORMAT);
+            }
+        });
+        try {
+            pipeline.start();
+            dispatcher.start(clock, "test");
+            producer.start();
+            producer.join(500);
+
+            assertTrue(counters.overruns() > 0);
+            assertEquals(BUFFER_FRAMES, pipeline.opusBuffered());
+            assertEquals(BUFFER_FRAMES, pipeline.pcmBuffered());
+        } finally {
+            unblock.countDown();
+            dispatcher.close();
+            pipeline.close();
+            producer.join(1000);
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void failedSendShouldStillReleaseTheFrame() throws Exception {
+        List<Integer> sent = new CopyOnWriteArrayList<>();
+        AudioPipeline.Output output = new AudioPipeline.Output() {
+            @Override
+            public int volumePercent() {
+                return 100;
+            }
+
+            @Override
+            public void sendFrame(byte[] data, int length) {
+                int sequence = ((data[0] & 0xff) << 8) | (data[1] & 0xff);
+                if (sequence == 1) {
+                    throw new IllegalStateException("send failed");
+                }
+                sent.add(sequence);
+            }
+        };
+        AudioPipeline pipeline = new AudioPipeline(
+            "test",
+            BUFFER_FRAMES,
+            FORMAT,
+            FRAME_BYTES,
+            new OpusFrameEncoder(new SequenceEncoder(), FRAME_BYTES),
+            output,
+            new AudioPipeline.Counters()
+        );
+        try {
+            pipeline.start();
+            byte[] frame = new byte[FRAME_BYTES];
+            for (int i = 0; i < 3; i++) {
+                writeSequence(frame, i);
+                pipeline.onPcmFrame(frame, frame.length, FORMAT);
+            }
+            pipeline.finishInput();
+            long deadline = System.currentTimeMillis() + 1000L;
+            while (pipeline.opusBuffered() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5L);
+            }
+
+            assertTrue(pipeline.dispatch(true));
+            assertThrows(IllegalStateException.class, () -> pipeline.dispatch(true));
+            // 发送失败的帧已让出，下一节拍继续后面的帧而不是重试同一帧。
+            assertTrue(pipeline.dispatch(true));
+            assertEquals(List.of(0, 2), sent);
+            assertTrue(pipeline.isDrained());
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    private static AudioPipeline newPipeline(RecordingOutput output, AudioPipeline.Counters counters) {
+        return new AudioPipeline(
+            "test",
+            BUFFER_FRAMES,
+            FORMAT,
+            FRAME_BYTES,
+            new OpusFrameEncoder(new SequenceEncoder(), FRAME_BYTES),
+            output,
+            counters
+        );
+    }
+
+    private static void writeSequence(byte[] frame, int sequence) {
+        frame[0] = (byte) (sequence >>> 8);
+        frame[1] = (byte) sequence;
+    }
+
+    private static final class SequenceEncoder implements OpusEncoder {
+        @Override
+        public byte[] encode(byte[] pcm, int length, PcmFormat format) {
+            throw new UnsupportedOperationException("allocating path must not be used");
+        }
+
+        @Override
+        public int encode(byte[] pcm, int length, PcmFormat format, byte[] out, int outOffset) {
+            out[outOffset] = pcm[0];
+            out[outOffset + 1] = pcm[1];
+            return 2;
+        }
+    }
+
+    private static final class RecordingOutput implements AudioPipeline.Output, GaplessDispatcher.Listener {
+        private final List<Integer> sequences = new CopyOnWriteArrayList<>();
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch drained = new CountDownLatch(1);
+        private final AtomicInteger handovers = new AtomicInteger();
+        private final CountDownLatch sendGate;
+
+        private RecordingOutput() {
+            this(new CountDownLatch(0));
+        }
+
+        private RecordingOutput(CountDownLatch sendGate) {
+            this.sendGate = sendGate;
+        }
+
+        @Override
+        public int volumePercent() {
+            return 100;
+        }
+
+        @Override
+        public void sendFrame(byte[] data, int length) {
+            try {
+                sendGate.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            int sequence = ((data[0] & 0xff) << 8) | (data[1] & 0xff);
+            sequences.add(sequence);
+            events.add("main:" + sequence);
+        }
+
+        @Override
+        public void sendLaneFrame(int lane, byte[] data, int length) {
+            events.add("lane" + lane + ":" + (((data[0] & 0xff) << 8) | (data[1] & 0xff)));
+        }
+
+        @Override
+        public void onHandover(FrameSource previous, FrameSource next) {
+            handovers.incrementAndGet();
+        }
+
+        @Override
+        public void onFinished() {
+            drained.countDown();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+import pub.longyi.ts3audiobot.config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameClockTest {
+    private static final int BOTS = 100;
+    private static final int RUN_TICKS = 50;
+
+    @Test
+    void catchUpShouldBurstAccumulatedPermitsUpToLimit() throws Exception {
+        ManualTicks ticks = new ManualTicks();
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 3, ticks);
+        CountingDispatcher dispatcher = new CountingDispatcher(1);
+        try (FrameClock.Handle ignored = clock.register("bot-a", dispatcher)) {
+            ticks.advance(1);
+            for (int i = 0; i < 5; i++) {
+                ticks.advance(1);
+            }
+            assertEquals(5, dispatcher.underruns.get());
+
+            dispatcher.available.set(10);
+            ticks.advance(1);
+
+            assertEquals(List.of(true, true, true, true), dispatcher.delivered);
+            FrameClock.HandleStats stats = stats(clock, "bot-a");
+            assertEquals(4, stats.framesDispatched());
+            assertEquals(0, stats.framesDropped());
+            assertEquals(3, stats.ticksDiscarded());
+            assertEquals(5, stats.underruns());
+
+            ticks.advance(1);
+            assertEquals(5, dispatcher.delivered.size(), "补发后恢复每个节拍一帧");
+        } finally {
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void dropShouldDiscardStaleFramesAndSendOnlyLatest() throws Exception {
+        ManualTicks ticks = new ManualTicks();
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.DROP, 3, ticks);
+        CountingDispatcher dispatcher = new CountingDispatcher(1);
+        try (FrameClock.Handle ignored = clock.register("bot-b", dispatcher)) {
+            ticks.advance(1);
+            for (int i = 0; i < 5; i++) {
+                ticks.advance(1);
+            }
+
+            dispatcher.available.set(10);
+            ticks.advance(1);
+
+            assertEquals(List.of(true, false, false, false, false, false, true), dispatcher.delivered);
+            FrameClock.HandleStats stats = stats(clock, "bot-b");
+            assertEquals(2, stats.framesDispatched());
+            assertEquals(5, stats.framesDropped());
+            assertEquals(0, stats.ticksDiscarded());
+            assertEquals(4, dispatcher.available.get());
+        } finally {
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void stalledClockShouldReplayAtMostMaxCatchUpTicks() throws Exception {
+        ManualTicks ticks = new ManualTicks();
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 3, ticks);
+        CountingDispatcher dispatcher = new CountingDispatcher(100);
+        try (FrameClock.Handle ignored = clock.register("bot-c", dispatcher)) {
+            ticks.advance(1);
+            ticks.advance(10);
+
+            FrameClock.ClockStats stats = clock.snapshot();
+            // 停顿错过 9 个节拍，连续补发的 3 个节拍本身也迟到 2、1、0 个周期。
+            assertEquals(12, stats.missedTicks());
+            assertEquals(5, stats.ticks(), "迟到的节拍之后连续补发 3 个");
+            assertEquals(5, stats(clock, "bot-c").framesDispatched());
+            assertTrue(dispatcher.delivered.stream().allMatch(Boolean::booleanValue));
+        } finally {
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void stalledClockShouldSkipMissedTicksUnderDrop() throws Exception {
+        ManualTicks ticks = new ManualTicks();
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.DROP, 3, ticks);
+        CountingDispatcher dispatcher = new CountingDispatcher(100);
+        try (FrameClock.Handle ignored = clock.register("bot-d", dispatcher)) {
+            ticks.advance(1);
+            ticks.advance(10);
+
+            FrameClock.ClockStats stats = clock.snapshot();
+            assertEquals(9, stats.missedTicks());
+            assertEquals(2, stats.ticks());
+            assertEquals(2, stats(clock, "bot-d").framesDispatched());
+            assertEquals(0, stats(clock, "bot-d").framesDropped());
+        } finally {
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void closedHandleShouldStopDispatching() throws Exception {
+        ManualTicks ticks = new ManualTicks();
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 5, ticks);
+        CountingDispatcher closing = new CountingDispatcher(100);
+        CountingDispatcher staying = new CountingDispatcher(100);
+        FrameClock.Handle handle = clock.register("bot-e", closing);
+        try (FrameClock.Handle ignored = clock.register("bot-f", staying)) {
+            ticks.advance(1);
+            handle.close();
+
+            assertTrue(handle.isClosed());
+            assertEquals(1, clock.snapshot().activeHandles());
+            ticks.advance(2);
+            assertEquals(1, closing.delivered.size());
+            assertEquals(3, staying.delivered.size());
+            assertThrows(NullPointerException.class, () -> clock.register("bot-g", null));
+        } finally {
+            clock.shutdown();
+        }
+    }
+
+    @Test
+    void sharedClockShouldDispatchEveryBotOncePerTick() throws Exception {
+        ManualTicks ticks = new ManualTicks();
+        FrameClock clock = new FrameClock(AppConfig.LateFramePolicy.CATCH_UP, 5, ticks);
+        List<CountingDispatcher> dispatchers = new ArrayList<>();
+        try {
+            for (int i = 0; i < BOTS; i++) {
+                CountingDispatcher dispatcher = new CountingDispatcher(RUN_TICKS);
+                dispatchers.add(dispatcher);
+                clock.register("bot-" + i, dispatcher);
+            }
+            for (int i = 0; i < RUN_TICKS; i++) {
+                ticks.advance(1);
+            }
+
+            for (CountingDispatcher dispatcher : dispatchers) {
+                assertEquals(RUN_TICKS, dispatcher.delivered.size());
+            }
+            FrameClock.ClockStats stats = clock.snapshot();
+            assertEquals(BOTS, stats.bots().size());
+            assertEquals(RUN_TICKS, stats.ticks());
+            assertEquals(0, stats.missedTicks());
+        } finally {
+            clock.shutdown();
+        }
+    }
+
+    private static FrameClock.HandleStats stats(FrameClock clock, String name) {
+        return clock.snapshot().bots().stream()
+            .filter(bot -> bot.name().equals(name))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private static final class CountingDispatcher implements FrameClock.Dispatcher {
+        private final AtomicInteger available;
+        private final AtomicInteger underruns = new AtomicInteger();
+        private final List<Boolean> delivered = new CopyOnWriteArrayList<>();
+
+        private CountingDispatcher(int frames) {
+            this.available = new AtomicInteger(frames);
+        }
+
+        @Override
+        public boolean dispatch(boolean deliver) {
+            if (available.get() <= 0) {
+                return false;
+            }
+            available.decrementAndGet();
+            delivered.add(deliver);
+            return true;
+        }
+
+        @Override
+        public void onUnderrun() {
+            underruns.incrementAndGet();
+        }
+    }
+
+    /**
+     * 手动推进的节拍来源：时钟线程处理完已到期的节拍、重新等待之后，{@link #advance(int)} 才返回。
+     */
+    private static final class ManualTicks implements FrameClock.TickSource {
+        private static final long WAIT_LIMIT_MS = 5_000L;
+
+        private long now;
+        private boolean parked;
+
+        @Override
+        public synchronized long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public synchronized boolean awaitDeadline(long deadlineNs) {
+            try {
+                while (now < deadlineNs) {
+                    parked = true;
+                    notifyAll();
+                    wait();
+                }
+                return true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private synchronized void advance(int frames) throws InterruptedException {
+            awaitParked();
+            now += frames * FrameClock.PERIOD_NS;
+            parked = false;
+            notifyAll();
+            awaitParked();
+        }
+
+        private void awaitParked() throws InterruptedException {
+            long giveUpAt = System.currentTimeMillis() + WAIT_LIMIT_MS;
+            while (!parked) {
+                long remaining = giveUpAt - System.currentTimeMillis();
+                if (remaining <= 0L) {
+                    throw new AssertionError("frame clock did not reach the next deadline");
+                }
+                wait(remaining);
+            }
+        }
+    }
+}
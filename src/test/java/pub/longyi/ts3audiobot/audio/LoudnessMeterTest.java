@@ -0,0 +1,77 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoudnessMeterTest {
+    private static final int FRAME_BYTES = 960 * 2 * 2;
+
+    @Test
+    void stereoSineShouldReadItsPeakLevelInLufs() {
+        LoudnessMeter meter = new LoudnessMeter(2);
+
+        feedSine(meter, -23.0, 10_000);
+
+        // BS.1770 的 1kHz 立体声正弦参考：峰值 -23 dBFS 读数为 -23 LUFS。
+        assertEquals(-23.0, meter.integratedLufs(), 0.1);
+        assertEquals(10_000L, meter.measuredMs());
+    }
+
+    @Test
+    void silenceAndQuietPassagesShouldBeGated() {
+        LoudnessMeter meter = new LoudnessMeter(2);
+
+        feedSine(meter, -20.0, 10_000);
+        feedSilence(meter, 10_000);
+        feedSine(meter, -45.0, 10_000);
+
+        assertEquals(-20.0, meter.integratedLufs(), 0.1);
+    }
+
+    @Test
+    void silentTrackShouldHaveNoLoudness() {
+        LoudnessMeter meter = new LoudnessMeter(2);
+
+        feedSilence(meter, 5_000);
+
+        assertEquals(Double.NEGATIVE_INFINITY, meter.integratedLufs());
+        assertEquals(PcmDsp.UNITY_GAIN, LoudnessMeter.gainForTarget(meter.integratedLufs(), -18.0));
+    }
+
+    @Test
+    void gainShouldBeClampedAndIgnoreSmallDifferences() {
+        assertEquals(PcmDsp.UNITY_GAIN, LoudnessMeter.gainForTarget(-18.3, -18.0));
+        assertEquals(Math.round(PcmDsp.UNITY_GAIN * Math.pow(10.0, -6.0 / 20.0)),
+            LoudnessMeter.gainForTarget(-12.0, -18.0));
+        assertEquals(Math.round(PcmDsp.UNITY_GAIN * Math.pow(10.0, 10.0 / 20.0)),
+            LoudnessMeter.gainForTarget(-40.0, -18.0));
+        assertTrue(LoudnessMeter.gainForTarget(5.0, -18.0) > 0);
+    }
+
+    private static void feedSine(LoudnessMeter meter, double peakDbfs, int durationMs) {
+        double amplitude = 32768.0 * Math.pow(10.0, peakDbfs / 20.0);
+        byte[] frame = new byte[FRAME_BYTES];
+        int frames = durationMs / FrameClock.FRAME_MS;
+        long sampleIndex = 0L;
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < FRAME_BYTES; i += 4) {
+                int sample = (int) Math.round(amplitude * Math.sin(2.0 * Math.PI * 997.0 * sampleIndex / 48000.0));
+                sampleIndex++;
+                frame[i] = (byte) sample;
+                frame[i + 1] = (byte) (sample >> 8);
+                frame[i + 2] = (byte) sample;
+                frame[i + 3] = (byte) (sample >> 8);
+            }
+            meter.accept(frame, frame.length);
+        }
+    }
+
+    private static void feedSilence(LoudnessMeter meter, int durationMs) {
+        byte[] frame = new byte[FRAME_BYTES];
+        for (int f = 0; f < durationMs / FrameClock.FRAME_MS; f++) {
+            meter.accept(frame, frame.length);
+        }
+    }
+}
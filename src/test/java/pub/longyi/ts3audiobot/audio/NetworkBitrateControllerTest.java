@@ -0,0 +1,70 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+import pub.longyi.ts3audiobot.ts3.full.PacketHandler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NetworkBitrateControllerTest {
+    private static final int CAP = 96_000;
+
+    @Test
+    void lossShouldLowerBitrateAndEnableFecThenRecoverToTheCap() {
+        NetworkBitrateController controller = new NetworkBitrateController();
+        Link link = new Link();
+
+        assertEquals(new NetworkBitrateController.Decision(CAP, 0), controller.update(link.window(5, 0, 0.03), CAP));
+        NetworkBitrateController.Decision lossy = controller.update(link.window(5, 2, 0.03), CAP);
+        assertEquals(CAP * 3 / 4, lossy.bitrate());
+        assertEquals(12, lossy.packetLossPercent());
+
+        NetworkBitrateController.Decision decision = lossy;
+        for (int i = 0; i < 30; i++) {
+            decision = controller.update(link.window(5, 0, 0.03), CAP);
+        }
+        assertEquals(new NetworkBitrateController.Decision(CAP, 0), decision);
+    }
+
+    @Test
+    void risingRoundTripShouldLowerBitrateWithoutFec() {
+        NetworkBitrateController controller = new NetworkBitrateController();
+        Link link = new Link();
+        controller.update(link.window(5, 0, 0.03), CAP);
+        controller.update(link.window(5, 0, 0.03), CAP);
+
+        NetworkBitrateController.Decision decision = controller.update(link.window(5, 0, 0.25), CAP);
+
+        assertEquals(new NetworkBitrateController.Decision(CAP * 3 / 4, 0), decision);
+    }
+
+    @Test
+    void bitrateShouldNeverExceedTheChannelCapOrDropBelowTheFloor() {
+        NetworkBitrateController controller = new NetworkBitrateController();
+        Link link = new Link();
+        controller.update(link.window(5, 0, 0.03), CAP);
+        NetworkBitrateController.Decision decision = null;
+        for (int i = 0; i < 20; i++) {
+            decision = controller.update(link.window(5, 5, 0.03), CAP);
+        }
+        assertEquals(NetworkBitrateController.MIN_BITRATE, decision.bitrate());
+        assertEquals(NetworkBitrateController.MAX_FEC_LOSS_PERCENT, decision.packetLossPercent());
+
+        assertEquals(NetworkBitrateController.MIN_BITRATE, controller.onChannelBitrate(CAP));
+        assertEquals(16_000, controller.onChannelBitrate(16_000));
+        assertEquals(16_000, controller.update(link.window(5, 5, 0.03), 16_000).bitrate());
+    }
+
+    /**
+     * 按窗口累加计数的链路快照。
+     */
+    private static final class Link {
+        private long pings;
+        private long pongs;
+
+        private PacketHandler.LinkStats window(int sent, int lost, double rttSeconds) {
+            pings += sent;
+            pongs += sent - lost;
+            return new PacketHandler.LinkStats(rttSeconds, 0.002, pings, pongs, 0L, 0L);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpusComplexityGovernorTest {
+    private static final long WINDOW_NS = TimeUnit.SECONDS.toNanos(1);
+    private static final long FRAMES_PER_WINDOW = 50L;
+
+    @Test
+    void overBudgetShouldLowerTheMostExpensiveBotFirst() {
+        // 2 核 × 10% = 每秒 200ms 预算。
+        OpusComplexityGovernor governor = new OpusComplexityGovernor(10, 2);
+        OpusComplexityGovernor.Handle heavy = governor.register("heavy");
+        OpusComplexityGovernor.Handle light = governor.register("light");
+
+        record(heavy, TimeUnit.MICROSECONDS.toNanos(4_000));
+        record(light, TimeUnit.MICROSECONDS.toNanos(400));
+        governor.evaluate(WINDOW_NS);
+
+        assertEquals(OpusComplexityGovernor.MAX_COMPLEXITY - 1, heavy.complexity());
+        assertEquals(OpusComplexityGovernor.MAX_COMPLEXITY, light.complexity(), "一档已足够覆盖超出部分");
+        assertEquals(11.0, governor.snapshot().loadPercent(), 0.01);
+        governor.shutdown();
+    }
+
+    @Test
+    void headroomShouldRaiseOneBotPerEvaluation() {
+        OpusComplexityGovernor governor = new OpusComplexityGovernor(50, 4);
+        OpusComplexityGovernor.Handle first = governor.register("a");
+        OpusComplexityGovernor.Handle second = governor.register("b");
+        for (int i = 0; i < 3; i++) {
+            record(first, TimeUnit.MILLISECONDS.toNanos(11));
+            record(second, TimeUnit.MILLISECONDS.toNanos(11));
+            governor.evaluate(WINDOW_NS);
+        }
+        assertEquals(7, first.complexity());
+        assertEquals(7, second.complexity());
+
+        record(first, TimeUnit.MICROSECONDS.toNanos(500));
+        record(second, TimeUnit.MICROSECONDS.toNanos(400));
+        governor.evaluate(WINDOW_NS);
+
+        assertEquals(7, first.complexity());
+        assertEquals(8, second.complexity(), "同档位时先恢复耗时更少的机器人");
+        governor.shutdown();
+    }
+
+    @Test
+    void idleBotsShouldKeepTheirComplexityAndDisabledGovernorShouldNeverAdjust() {
+        OpusComplexityGovernor governor = new OpusComplexityGovernor(0, 1);
+        OpusComplexityGovernor.Handle handle = governor.register("bot");
+
+        record(handle, TimeUnit.MILLISECONDS.toNanos(19));
+        governor.evaluate(WINDOW_NS);
+
+        assertEquals(OpusComplexityGovernor.MAX_COMPLEXITY, handle.complexity());
+        assertFalse(governor.snapshot().enabled());
+
+        OpusComplexityGovernor enabled = new OpusComplexityGovernor(1, 1);
+        OpusComplexityGovernor.Handle idle = enabled.register("idle");
+        enabled.evaluate(WINDOW_NS);
+        assertEquals(OpusComplexityGovernor.MAX_COMPLEXITY, idle.complexity());
+        assertTrue(enabled.snapshot().enabled());
+        enabled.remove("idle");
+        assertTrue(enabled.snapshot().bots().isEmpty());
+        enabled.shutdown();
+    }
+
+    private static void record(OpusComplexityGovernor.Handle handle, long nanosPerFrame) {
+        for (long i = 0; i < FRAMES_PER_WINDOW; i++) {
+            handle.recordEncode(nanosPerFrame);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package pub.longyi.ts3audiobot.audio;
+
+import io.github.jaredmdobson.concentus.OpusApplication;
+import io.github.jaredmdobson.concentus.OpusDecoder;
+import io.github.jaredmdobson.concentus.OpusEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpusFileDecoderTest {
+    private static final PcmFormat FORMAT = new PcmFormat(48000, 2, 16);
+    private static final int CHANNELS = 2;
+    private static final int SAMPLES_PER_MS = 48;
+    private static final int PACKET_20MS = 960;
+    // CELT 10ms、双帧同长（code 1），负载为奇数字节时不合法。
+    private static final int CELT_10MS_TWO_FRAMES_TOC = (30 << 3) | 1;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void decodeFromStartShouldTrimPreSkipAndAlignWithSource() throws Exception {
+        short[] source = source(50 * PACKET_20MS);
+        Encoded encoded = encode(source, PACKET_20MS);
+        Path file = write("a.opus", encoded.packets, encoded.lookahead);
+
+        List<byte[]> frames = decode(file, 0L, FrameClock.FRAME_MS);
+
+        int frameSamples = PACKET_20MS;
+        assertEquals((source.length / CHANNELS - encoded.lookahead) / frameSamples, frames.size());
+        for (byte[] frame : frames) {
+            assertEquals(FORMAT.frameBytes(FrameClock.FRAME_MS), frame.length);
+        }
+        short[] decoded = samples(frames);
+        short[] reference = referenceDecode(encoded.packets, 0);
+        assertArrayEquals(slice(reference, encoded.lookahead, decoded.length / CHANNELS), decoded);
+        assertEquals(0, bestLag(source, decoded, 48));
+    }
+
+    @Test
+    void decodeShouldRechunkMixedPacketDurationsIntoFixedFrames() throws Exception {
+        short[] source = source(3 * (240 + 480 + 960 + 1920 + 2880));
+        Encoded encoded = encode(source, 240, 2880, 480, 1920, 960);
+        Path file = write("b.opus", encoded.packets, encoded.lookahead);
+        short[] reference = referenceDecode(encoded.packets, 0);
+
+        for (int frameMs : new int[] {20, 60}) {
+            List<byte[]> frames = decode(file, 0L, frameMs);
+
+            int frameSamples = frameMs * SAMPLES_PER_MS;
+            assertEquals((source.length / CHANNELS - encoded.lookahead) / frameSamples, frames.size());
+            for (byte[] frame : frames) {
+                assertEquals(FORMAT.frameBytes(frameMs), frame.length);
+            }
+            short[] decoded = samples(frames);
+            assertArrayEquals(slice(reference, encoded.lookahead, decoded.length / CHANNELS), decoded);
+        }
+    }
+
+    @Test
+    void seekShouldPrerollAndDiscardUpToTheRequestedSample() throws Exception {
+        short[] source = source(100 * PACKET_20MS);
+        Encoded encoded = encode(source, PACKET_20MS);
+        Path file = write("c.opus", encoded.packets, encoded.lookahead);
+        short[] full = samples(decode(file, 0L, FrameClock.FRAME_MS));
+        int prerollPackets = OpusFileDecoder.PREROLL_MS * SAMPLES_PER_MS / PACKET_20MS;
+
+        for (long positionMs : new long[] {30L, 510L, 1234L}) {
+            List<byte[]> frames = decode(file, positionMs, FrameClock.FRAME_MS);
+
+            long target = encoded.lookahead + positionMs * SAMPLES_PER_MS;
+            int targetPacket = (int) (target / PACKET_20MS);
+            int startPacket = Math.max(0, targetPacket - prerollPackets);
+            int remaining = source.length / CHANNELS - (int) target;
+            assertEquals(remaining / PACKET_20MS, frames.size(), "position " + positionMs);
+            short[] decoded = samples(frames);
+            // 从预滚起点用新解码器解码，丢弃目标之前的采样。
+            short[] expected = referenceDecode(encoded.packets, startPacket);
+            int discard = (int) (target - (long) startPacket * PACKET_20MS);
+            assertArrayEquals(slice(expected, discard, decoded.length / CHANNELS), decoded, "position " + positionMs);
+            // 预滚让解码器状态接近从头解码，200ms 后与之一致；两次解码的帧边界不同，只比较重叠部分。
+            int offset = (int) positionMs * SAMPLES_PER_MS;
+            int overlap = Math.min(decoded.length, full.length - offset * CHANNELS) / CHANNELS;
+            short[] continuous = slice(full, offset, overlap);
+            assertTrue(
+                snrDb(slice(continuous, 0, PACKET_20MS), slice(decoded, 0, PACKET_20MS)) > 12.0,
+                "position " + positionMs
+            );
+            int settled = 200 * SAMPLES_PER_MS;
+            assertTrue(
+                snrDb(slice(continuous, settled, overlap - settled), slice(decoded, settled, overlap - settled)) > 60.0,
+                "position " + positionMs
+            );
+        }
+    }
+
+    @Test
+    void corruptPacketShouldBecomeSilenceOfTheSameDuration() throws Exception {
+        short[] source = source(50 * PACKET_20MS);
+        Encoded encoded = encode(source, PACKET_20MS);
+        int corrupt = 20;
+        List<byte[]> packets = new ArrayList<>(encoded.packets);
+        packets.set(corrupt, new byte[] {(byte) CELT_10MS_TWO_FRAMES_TOC, 1, 2, 3});
+        Path file = write("d.opus", packets, encoded.lookahead);
+
+        List<byte[]> frames = decode(file, 0L, FrameClock.FRAME_MS);
+
+        assertEquals((source.length / CHANNELS - encoded.lookahead) / PACKET_20MS, frames.size());
+        short[] decoded = samples(frames);
+        int corruptStart = corrupt * PACKET_20MS - encoded.lookahead;
+        short[] reference = referenceDecode(encoded.packets, 0);
+        assertArrayEquals(
+            slice(reference, encoded.lookahead, corruptStart),
+            Arrays.copyOf(decoded, corruptStart * CHANNELS)
+        );
+        short[] gap = slice(decoded, corruptStart, PACKET_20MS);
+        assertArrayEquals(new short[PACKET_20MS * CHANNELS], gap);
+        short[] after = slice(decoded, corruptStart + PACKET_20MS, PACKET_20MS);
+        assertTrue(energy(after) > 0L);
+    }
+
+    @Test
+    void constructorShouldRejectNon48kOutput() throws Exception {
+        Encoded encoded = encode(source(10 * PACKET_20MS), PACKET_20MS);
+        OpusPacketIndex index = OpusPacketIndex.openForDecode(write("e.opus", encoded.packets, encoded.lookahead));
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new OpusFileDecoder(index, new PcmFormat(44100, 2, 16), FrameClock.FRAME_MS, (d, l, f) -> { }, null)
+        );
+    }
+
+    private List<byte[]> decode(Path file, long positionMs, int frameMs) throws Exception {
+        OpusPacketIndex index = OpusPacketIndex.openForDecode(file);
+        List<byte[]> frames = new ArrayList<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        OpusFileDecoder decoder = new OpusFileDecoder(
+            index,
+            FORMAT,
+            frameMs,
+            (data, length, format) -> frames.add(Arrays.copyOf(data, length)),
+            finished::countDown
+        );
+        decoder.start(positionMs);
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        decoder.stop();
+        return frames;
+    }
+
+    private Path write(String name, List<byte[]> packets, int preSkip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        oggPage(out, opusHead(preSkip));
+        oggPage(out, "OpusTags".getBytes(StandardCharsets.US_ASCII));
+        for (byte[] packet : packets) {
+            oggPage(out, packet);
+        }
+        Path file = tempDir.resolve(name);
+        Files.write(file, out.toByteArray());
+        return file;
+    }
+
+    // 双声道、左右声道频率不同的扫频信号，便于用互相关定位采样偏移。
+    private static short[] source(int samples) {
+        short[] pcm = new short[samples * CHANNELS];
+        double phaseLeft = 0.0;
+        double phaseRight = 0.0;
+        for (int i = 0; i < samples; i++) {
+            double t = (double) i / samples;
+            phaseLeft += 2 * Math.PI * (200.0 + 1800.0 * t) / FORMAT.sampleRate();
+            phaseRight += 2 * Math.PI * (3000.0 - 2500.0 * t) / FORMAT.sampleRate();
+            pcm[i * CHANNELS] = (short) (Math.sin(phaseLeft) * 8000);
+            pcm[i * CHANNELS + 1] = (short) (Math.sin(phaseRight) * 6000);
+        }
+        return pcm;
+    }
+
+    private static Encoded encode(short[] pcm, int... packetSamples) throws Exception {
+        OpusEncoder encoder = new OpusEncoder(FORMAT.sampleRate(), CHANNELS, OpusApplication.OPUS_APPLICATION_AUDIO);
+        encoder.setBitrate(128_000);
+        List<byte[]> packets = new ArrayList<>();
+        byte[] out = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+        int samples = pcm.length / CHANNELS;
+        for (int offset = 0, i = 0; offset < samples; i++) {
+            int size = packetSamples[i % packetSamples.length];
+            int length = encoder.encode(pcm, offset * CHANNELS, size, out, 0, out.length);
+            packets.add(Arrays.copyOf(out, length));
+            offset += size;
+        }
+        return new Encoded(packets, encoder.getLookahead());
+    }
+
+    private static short[] referenceDecode(List<byte[]> packets, int firstPacket) throws Exception {
+        OpusDecoder decoder = new OpusDecoder(FORMAT.sampleRate(), CHANNELS);
+        short[] pcm = new short[OpusPacketIndex.MAX_PACKET_SAMPLES * CHANNELS];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] packet : packets.subList(firstPacket, packets.size())) {
+            int decoded = decoder.decode(packet, 0, packet.length, pcm, 0, OpusPacketIndex.MAX_PACKET_SAMPLES, false);
+            for (int i = 0; i < decoded * CHANNELS; i++) {
+                out.write(pcm[i]);
+                out.write(pcm[i] >> 8);
+            }
+        }
+        return samples(List.of(out.toByteArray()));
+    }
+
+    private static short[] samples(List<byte[]> frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(frame, 0, frame.length);
+        }
+        byte[] bytes = out.toByteArray();
+        short[] pcm = new short[bytes.length / 2];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) ((bytes[2 * i] & 0xff) | (bytes[2 * i + 1] << 8));
+        }
+        return pcm;
+    }
+
+    private static short[] slice(short[] pcm, int fromSample, int samples) {
+        return Arrays.copyOfRange(pcm, fromSample * CHANNELS, (fromSample + samples) * CHANNELS);
+    }
+
+    // 在 ±maxLag 个采样内寻找解码输出相对源信号互相关最大的偏移。
+    private static int bestLag(short[] source, short[] decoded, int maxLag) {
+        int samples = Math.min(source.length, decoded.length) / CHANNELS - maxLag;
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int lag = -maxLag; lag <= maxLag; lag++) {
+            double score = 0.0;
+            for (int i = maxLag; i < samples; i++) {
+                for (int c = 0; c < CHANNELS; c++) {
+                    score += (double) source[(i + lag) * CHANNELS + c] * decoded[i * CHANNELS + c];
+                }
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = lag;
+            }
+        }
+        return best;
+    }
+
+    private static double snrDb(short[] expected, short[] actual) {
+        double signal = 0.0;
+        double noise = 0.0;
+        for (int i = 0; i < expected.length; i++) {
+            signal += (double) expected[i] * expected[i];
+            double diff = expected[i] - actual[i];
+            noise += diff * diff;
+        }
+        return noise == 0.0 ? Double.POSITIVE_INFINITY : 10.0 * Math.log10(signal / noise);
+    }
+
+    private static long energy(short[] pcm) {
+        long sum = 0L;
+        for (short value : pcm) {
+            sum += (long) value * value;
+        }
+        return sum;
+    }
+
+    private static byte[] opusHead(int preSkip) {
+        ByteBuffer head = ByteBuffer.allocate(19);
+        head.put("OpusHead".getBytes(StandardCharsets.US_ASCII));
+        head.put((byte) 1);
+        head.put((byte) CHANNELS);
+        head.putShort(Short.reverseBytes((short) preSkip));
+        head.putInt(Integer.reverseBytes(48000));
+        head.putShort((short) 0);
+        head.put((byte) 0);
+        return head.array();
+    }
+
+    private static void oggPage(ByteArrayOutputStream out, byte[] packet) throws IOException {
+        int laceCount = packet.length / 255 + 1;
+        ByteBuffer header = ByteBuffer.allocate(27 + laceCount);
+        header.putInt(0x4F676753);
+        header.put((byte) 0);
+        header.put((byte) 0);
+        header.putLong(0L);
+        header.putInt(0x1234);
+        header.putInt(0);
+        header.putInt(0);
+        header.put((byte) laceCount);
+        for (int i = 0; i < laceCount - 1; i++) {
+            header.put((byte) 255);
+        }
+        header.put((byte) (packet.length % 255));
+        out.write(header.array());
+        out.write(packet);
+    }
+
+    private record Encoded(List<byte[]> packets, int lookahead) {
+    }
+}
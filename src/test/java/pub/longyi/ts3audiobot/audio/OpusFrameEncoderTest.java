@@ -0,0 +1,124 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpusFrameEncoderTest {
+    private static final PcmFormat FORMAT = new PcmFormat(48000, 2, 16);
+    private static final int FRAME_MS = 20;
+    private static final int WARMUP_FRAMES = 20_000;
+    private static final int MEASURED_FRAMES = 50_000;
+
+    @Test
+    void steadyStateFramePathShouldNotAllocate() {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        int frameBytes = FORMAT.frameBytes(FRAME_MS);
+        OpusFrameEncoder frameEncoder = new OpusFrameEncoder(new CopyingEncoder(), frameBytes);
+        byte[] frame = sineFrame(frameBytes);
+        CountingSink sink = new CountingSink();
+
+        runFrames(frameEncoder, frame, sink, WARMUP_FRAMES);
+        long threadId = Thread.currentThread().getId();
+        long baselineStart = threads.getThreadAllocatedBytes(threadId);
+        long baselineEnd = threads.getThreadAllocatedBytes(threadId);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        runFrames(frameEncoder, frame, sink, MEASURED_FRAMES);
+        long after = threads.getThreadAllocatedBytes(threadId);
+
+        long overhead = Math.max(0L, baselineEnd - baselineStart);
+        long allocated = Math.max(0L, after - before - overhead);
+        assertTrue(sink.bytes > 0);
+        assertTrue(allocated < MEASURED_FRAMES, "frame path allocated " + allocated + " bytes over "
+            + MEASURED_FRAMES + " frames");
+    }
+
+    @Test
+    void volumeShouldBeAppliedWithoutTouchingSourceFrame() {
+        int frameBytes = FORMAT.frameBytes(FRAME_MS);
+        OpusFrameEncoder frameEncoder = new OpusFrameEncoder(new CopyingEncoder(), frameBytes);
+        byte[] frame = sineFrame(frameBytes);
+        byte[] original = frame.clone();
+
+        int encoded = frameEncoder.encode(frame, frame.length, FORMAT, 50);
+
+        assertEquals(frameBytes, encoded);
+        assertArrayEquals(original, frame);
+        short source = (short) ((original[3] << 8) | (original[2] & 0xff));
+        byte[] out = frameEncoder.output();
+        short scaled = (short) ((out[3] << 8) | (out[2] & 0xff));
+        assertEquals(Math.round(source * 0.5), scaled);
+    }
+
+    @Test
+    void concentusBufferVariantShouldMatchLegacyEncode() {
+        int frameBytes = FORMAT.frameBytes(FRAME_MS);
+        byte[] frame = sineFrame(frameBytes);
+        ConcentusOpusEncoder legacy = new ConcentusOpusEncoder(FORMAT, FRAME_MS);
+        ConcentusOpusEncoder buffered = new ConcentusOpusEncoder(FORMAT, FRAME_MS);
+        byte[] out = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+
+        for (int i = 0; i < 5; i++) {
+            byte[] expected = legacy.encode(frame, frame.length, FORMAT);
+            int encoded = buffered.encode(frame, frame.length, FORMAT, out, 0);
+            assertEquals(expected.length, encoded);
+            for (int b = 0; b < encoded; b++) {
+                assertEquals(expected[b], out[b], "frame " + i + " byte " + b);
+            }
+        }
+    }
+
+    private static void runFrames(OpusFrameEncoder frameEncoder, byte[] frame, CountingSink sink, int frames) {
+        for (int i = 0; i < frames; i++) {
+            int volume = (i & 1) == 0 ? 100 : 80;
+            int encoded = frameEncoder.encode(frame, frame.length, FORMAT, volume);
+            sink.accept(frameEncoder.output(), encoded);
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "allocation counter unavailable");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported(), "allocation counter unsupported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    private static byte[] sineFrame(int frameBytes) {
+        byte[] frame = new byte[frameBytes];
+        for (int i = 0; i + 1 < frameBytes; i += 2) {
+            int sample = (int) (Math.sin(i / 40.0) * 12000);
+            frame[i] = (byte) (sample & 0xff);
+            frame[i + 1] = (byte) ((sample >> 8) & 0xff);
+        }
+        return frame;
+    }
+
+    private static final class CopyingEncoder implements OpusEncoder {
+        @Override
+        public byte[] encode(byte[] pcm, int length, PcmFormat format) {
+            throw new UnsupportedOperationException("allocating path must not be used");
+        }
+
+        @Override
+        public int encode(byte[] pcm, int length, PcmFormat format, byte[] out, int outOffset) {
+            int copied = Math.min(length, out.length - outOffset);
+            System.arraycopy(pcm, 0, out, outOffset, copied);
+            return copied;
+        }
+    }
+
+    private static final class CountingSink {
+        private long bytes;
+
+        private void accept(byte[] data, int length) {
+            bytes += length + (data[0] & 1);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpusFrameFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void committedFileShouldReadBackFramesInOrder() throws Exception {
+        Path target = tempDir.resolve("opus-96000.frames");
+        OpusFrameFile.Writer writer = OpusFrameFile.create(target, 20, 96_000);
+        for (int i = 1; i <= 5; i++) {
+            writer.append(frame(i, i * 10), i * 10);
+        }
+        assertEquals(5, writer.frames());
+        assertEquals(target, writer.commit());
+
+        OpusFrameFile.Reader reader = OpusFrameFile.open(target);
+        assertEquals(5, reader.frameCount());
+        assertEquals(20, reader.frameMs());
+        assertEquals(96_000, reader.bitrate());
+        byte[] out = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i * 10, reader.read(i - 1, out));
+            assertEquals((byte) i, out[0]);
+            assertEquals((byte) i, out[i * 10 - 1]);
+        }
+        assertEquals(List.of(target), listFiles(), "提交后不应留下临时文件");
+    }
+
+    @Test
+    void headerShouldCarryRecordedGainAndReadVersionOneAsUnity() throws Exception {
+        Path target = tempDir.resolve("opus-96000.frames");
+        OpusFrameFile.Writer writer = OpusFrameFile.create(target, 20, 96_000, 9_000);
+        writer.append(frame(1, 4), 4);
+        writer.commit();
+        assertEquals(9_000, OpusFrameFile.open(target).gain());
+
+        Path legacy = tempDir.resolve("legacy.frames");
+        ByteBuffer header = ByteBuffer.allocate(OpusFrameFile.HEADER_BYTES_WITHOUT_GAIN + 2 + 4)
+            .putInt(OpusFrameFile.MAGIC)
+            .putInt(OpusFrameFile.VERSION_WITHOUT_GAIN)
+            .putInt(20)
+            .putInt(96_000)
+            .putShort((short) 4)
+            .put(frame(7, 4));
+        Files.write(legacy, header.array());
+
+        OpusFrameFile.Reader reader = OpusFrameFile.open(legacy);
+        assertEquals(PcmDsp.UNITY_GAIN, reader.gain());
+        assertEquals(1, reader.frameCount());
+        byte[] out = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+        assertEquals(4, reader.read(0, out));
+        assertEquals((byte) 7, out[0]);
+    }
+
+    @Test
+    void abortShouldLeaveNoFiles() throws Exception {
+        Path target = tempDir.resolve("opus-96000.frames");
+        OpusFrameFile.Writer writer = OpusFrameFile.create(target, 20, 96_000);
+        writer.append(frame(1, 8), 8);
+        writer.abort();
+
+        assertFalse(Files.exists(target));
+        assertTrue(listFiles().isEmpty(), "放弃写入后临时文件应被删除");
+    }
+
+    @Test
+    void cachedSourceShouldStartAtSeekFrameAndDrain() throws Exception {
+        Path target = tempDir.resolve("opus-96000.frames");
+        OpusFrameFile.Writer writer = OpusFrameFile.create(target, 20, 96_000);
+        for (int i = 0; i < 10; i++) {
+            writer.append(frame(i, 4), 4);
+        }
+        writer.commit();
+        OpusFrameFile.Reader reader = OpusFrameFile.open(target);
+        assertEquals(3, reader.frameIndexOf(65));
+        assertEquals(10, reader.frameIndexOf(60_000));
+
+        List<Byte> sent = new ArrayList<>();
+        CachedOpusSource source = new CachedOpusSource(reader, 140, new AudioPipeline.Output() {
+            @Override
+            public int volumePercent() {
+                return 100;
+            }
+
+            @Override
+            public void sendFrame(byte[] data, int length) {
+                sent.add(data[0]);
+            }
+        });
+        assertEquals(140, source.positionMs());
+        assertTrue(source.dispatch(false), "丢弃的过期帧也应推进位置");
+        while (source.dispatch(true)) {
+            assertFalse(sent.isEmpty());
+        }
+
+        assertEquals(List.of((byte) 8, (byte) 9), sent);
+        assertTrue(source.isDrained());
+        assertEquals(200, source.positionMs());
+    }
+
+    private static byte[] frame(int marker, int length) {
+        byte[] data = new byte[length];
+        java.util.Arrays.fill(data, (byte) marker);
+        return data;
+    }
+
+    private List<Path> listFiles() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.toList();
+        }
+    }
+}
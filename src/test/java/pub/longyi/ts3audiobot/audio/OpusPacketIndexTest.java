@@ -0,0 +1,238 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pub.longyi.ts3audiobot.ts3.full.PacketHandler;
+import pub.longyi.ts3audiobot.ts3.protocol.ProtocolConst;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpusPacketIndexTest {
+    private static final int CELT_20MS_TOC = 31 << 3;
+    private static final int SILK_40MS_TOC = 2 << 3;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void oggShouldIndexAudioPacketsAfterHeadAndSpanningTags() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        oggPage(file, 0, opusHead(2), new int[] {19});
+        byte[] tags = new byte[300];
+        oggPage(file, 0, Arrays.copyOf(tags, 255), new int[] {255});
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        rest.write(tags, 255, 45);
+        rest.write(packet(CELT_20MS_TOC, 10, 1));
+        rest.write(packet(CELT_20MS_TOC, 20, 2));
+        rest.write(packet(CELT_20MS_TOC, 30, 3));
+        oggPage(file, 1, rest.toByteArray(), new int[] {45, 10, 20, 30});
+
+        OpusPacketIndex index = OpusPacketIndex.open(write("a.opus", file.toByteArray()));
+
+        assertEquals(3, index.frameCount());
+        assertEquals(2, index.channels());
+        assertEquals(30, index.maxPacketBytes());
+        assertEquals(60 * 8 * 1000 / 60, index.averageBitrate());
+        byte[] out = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+        assertEquals(20, index.read(1, out));
+        assertEquals((byte) CELT_20MS_TOC, out[0]);
+        assertEquals((byte) 2, out[19]);
+        assertEquals(2, index.frameIndexOf(45));
+    }
+
+    @Test
+    void passthroughShouldAcceptLargePacketsThatFitOneVoicePacket() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        oggPage(file, 0, opusHead(2), new int[] {19});
+        oggPage(file, 0, new byte[8], new int[] {8});
+        oggPage(file, 0, packet(CELT_20MS_TOC, 450, 1), new int[] {255, 195});
+        OpusPacketIndex fits = OpusPacketIndex.open(write("large.opus", file.toByteArray()));
+
+        assertEquals(450, fits.maxPacketBytes());
+        assertTrue(fits.fitsVoicePacket());
+        byte[] out = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+        int length = fits.read(0, out);
+        PacketHandler handler = new PacketHandler();
+        try (DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            assertTrue(handler.connect(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()), null
+            ));
+            assertTrue(handler.sendVoice(1, 0, (byte) 5, out, length, 0));
+            assertEquals(0L, handler.getOversizedVoiceDropped());
+        } finally {
+            handler.stop();
+        }
+
+        ByteArrayOutputStream oversized = new ByteArrayOutputStream();
+        oggPage(oversized, 0, opusHead(2), new int[] {19});
+        oggPage(oversized, 0, new byte[8], new int[] {8});
+        int tooLong = ProtocolConst.MAX_VOICE_DATA + 1;
+        oggPage(oversized, 0, packet(CELT_20MS_TOC, tooLong, 1), new int[] {255, tooLong - 255});
+        assertFalse(OpusPacketIndex.open(write("oversized.opus", oversized.toByteArray())).fitsVoicePacket());
+    }
+
+    @Test
+    void oggShouldRejectPacketsLongerThanOneFrame() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        oggPage(file, 0, opusHead(2), new int[] {19});
+        oggPage(file, 0, new byte[8], new int[] {8});
+        oggPage(file, 0, packet(SILK_40MS_TOC, 12, 1), new int[] {12});
+        Path path = write("b.opus", file.toByteArray());
+
+        IOException ex = assertThrows(IOException.class, () -> OpusPacketIndex.open(path));
+        assertTrue(ex.getMessage().contains("1920 samples"), ex.getMessage());
+    }
+
+    @Test
+    void decodeIndexShouldAcceptAnyPacketDurationAndKeepPreSkip() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        oggPage(file, 0, opusHead(1), new int[] {19});
+        oggPage(file, 0, new byte[8], new int[] {8});
+        ByteArrayOutputStream audio = new ByteArrayOutputStream();
+        audio.write(packet(SILK_40MS_TOC, 12, 1));
+        audio.write(packet(CELT_20MS_TOC, 20, 2));
+        oggPage(file, 0, audio.toByteArray(), new int[] {12, 20});
+
+        OpusPacketIndex index = OpusPacketIndex.openForDecode(write("c.opus", file.toByteArray()));
+
+        assertEquals(2, index.frameCount());
+        assertEquals(1920, index.packetSamples(0));
+        assertEquals(960, index.packetSamples(1));
+        assertEquals(312, index.preSkip());
+        assertEquals(1, index.channels());
+        assertEquals(32 * 8 * 1000 / 60, index.averageBitrate());
+    }
+
+    @Test
+    void webmShouldIndexBlocksInsideUnknownSizeCluster() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(element(0x1A45DFA3, element(0x4282, "webm".getBytes(StandardCharsets.US_ASCII))));
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        segment.write(element(0x1654AE6B, trackEntry(1, "A_OPUS")));
+        segment.write(id(0x1F43B675));
+        segment.write(0xFF);
+        segment.write(element(0xE7, new byte[] {0}));
+        segment.write(element(0xA3, block(1, packet(CELT_20MS_TOC, 16, 1))));
+        segment.write(element(0xA3, block(1, packet(CELT_20MS_TOC, 24, 2))));
+        segment.write(element(0xA0, element(0xA1, block(1, packet(CELT_20MS_TOC, 8, 3)))));
+        segment.write(element(0x1C53BB6B, new byte[6]));
+        file.write(id(0x18538067));
+        file.write(new byte[] {0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+        file.write(segment.toByteArray());
+
+        OpusPacketIndex index = OpusPacketIndex.open(write("a.webm", file.toByteArray()));
+
+        assertEquals(3, index.frameCount());
+        byte[] out = new byte[OpusFrameEncoder.MAX_OPUS_PACKET];
+        assertEquals(24, index.read(1, out));
+        assertEquals((byte) 2, out[23]);
+        assertEquals(8, index.read(2, out));
+    }
+
+    @Test
+    void webmShouldRejectFilesWithMoreThanOneTrack() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(element(0x1A45DFA3, element(0x4282, "webm".getBytes(StandardCharsets.US_ASCII))));
+        ByteArrayOutputStream tracks = new ByteArrayOutputStream();
+        tracks.write(trackEntry(1, "A_OPUS"));
+        tracks.write(trackEntry(2, "A_OPUS"));
+        file.write(element(0x18538067, element(0x1654AE6B, tracks.toByteArray())));
+        Path path = write("b.webm", file.toByteArray());
+
+        IOException ex = assertThrows(IOException.class, () -> OpusPacketIndex.open(path));
+        assertEquals("more than one track", ex.getMessage());
+    }
+
+    private Path write(String name, byte[] data) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.write(file, data);
+        return file;
+    }
+
+    private static byte[] opusHead(int channels) {
+        ByteBuffer head = ByteBuffer.allocate(19);
+        head.put("OpusHead".getBytes(StandardCharsets.US_ASCII));
+        head.put((byte) 1);
+        head.put((byte) channels);
+        head.putShort(Short.reverseBytes((short) 312));
+        head.putInt(Integer.reverseBytes(48000));
+        head.putShort((short) 0);
+        head.put((byte) 0);
+        return head.array();
+    }
+
+    private static byte[] packet(int toc, int length, int marker) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) marker);
+        data[0] = (byte) toc;
+        return data;
+    }
+
+    private static void oggPage(ByteArrayOutputStream out, int headerType, byte[] body, int[] laces) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(27 + laces.length);
+        header.putInt(0x4F676753);
+        header.put((byte) 0);
+        header.put((byte) headerType);
+        header.putLong(0L);
+        header.putInt(0x1234);
+        header.putInt(0);
+        header.putInt(0);
+        header.put((byte) laces.length);
+        for (int lace : laces) {
+            header.put((byte) lace);
+        }
+        out.write(header.array());
+        out.write(body);
+    }
+
+    private static byte[] trackEntry(int number, String codec) throws IOException {
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        entry.write(element(0xD7, new byte[] {(byte) number}));
+        entry.write(element(0x83, new byte[] {2}));
+        entry.write(element(0x86, codec.getBytes(StandardCharsets.US_ASCII)));
+        entry.write(element(0x63A2, opusHead(2)));
+        entry.write(element(0xE1, element(0xB5, ByteBuffer.allocate(4).putFloat(48000f).array())));
+        return element(0xAE, entry.toByteArray());
+    }
+
+    private static byte[] block(int track, byte[] payload) {
+        ByteBuffer block = ByteBuffer.allocate(4 + payload.length);
+        block.put((byte) (0x80 | track));
+        block.putShort((short) 0);
+        block.put((byte) 0x80);
+        block.put(payload);
+        return block.array();
+    }
+
+    private static byte[] element(int elementId, byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(id(elementId));
+        out.write(0x40 | (payload.length >>> 8));
+        out.write(payload.length & 0xff);
+        out.write(payload);
+        return out.toByteArray();
+    }
+
+    private static byte[] id(int elementId) {
+        int length = elementId > 0xFFFFFF ? 4 : elementId > 0xFFFF ? 3 : elementId > 0xFF ? 2 : 1;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (elementId >>> (8 * (length - 1 - i)));
+        }
+        return bytes;
+    }
+}
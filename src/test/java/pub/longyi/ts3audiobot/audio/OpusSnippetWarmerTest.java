@@ -0,0 +1,148 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpusSnippetWarmerTest {
+    private static final int BITRATE = 96_000;
+    private static final int GAIN = 12_000;
+
+    @TempDir
+    Path tempDir;
+
+    private OpusSnippetWarmer warmer;
+
+    @AfterEach
+    void tearDown() {
+        if (warmer != null) {
+            warmer.shutdown();
+        }
+    }
+
+    @Test
+    void requestShouldCommitSnippetWithRequestedFramesAndGain() throws Exception {
+        DirStore store = new DirStore(tempDir);
+        AtomicInteger calls = new AtomicInteger();
+        warmer = new OpusSnippetWarmer(2, store, producer(calls));
+
+        warmer.request("track-a", tempDir.resolve("a.mp3"), BITRATE, GAIN);
+        awaitProduced(1);
+
+        OpusFrameFile.Reader reader = OpusFrameFile.open(store.findOpusSnippet("track-a", BITRATE).orElseThrow());
+        assertEquals(2000 / FrameClock.FRAME_MS, reader.frameCount());
+        assertEquals(GAIN, reader.gain());
+        assertEquals(BITRATE, reader.bitrate());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void requestShouldSkipWhenSnippetOrFullCacheIsUsable() throws Exception {
+        DirStore store = new DirStore(tempDir);
+        AtomicInteger calls = new AtomicInteger();
+        warmer = new OpusSnippetWarmer(1, store, producer(calls));
+        warmer.request("track-a", tempDir.resolve("a.mp3"), BITRATE, GAIN);
+        awaitProduced(1);
+
+        warmer.request("track-a", tempDir.resolve("a.mp3"), BITRATE, GAIN);
+        Files.writeString(store.opusFramesTarget("track-b", BITRATE), "full");
+        warmer.request("track-b", tempDir.resolve("b.mp3"), BITRATE, GAIN);
+        warmer.request("track-c", tempDir.resolve("c.mp3"), BITRATE, GAIN);
+        awaitProduced(2);
+        assertEquals(2, calls.get(), "增益一致的片段与完整帧缓存都不再生成");
+        assertFalse(store.findOpusSnippet("track-b", BITRATE).isPresent());
+
+        warmer.request("track-a", tempDir.resolve("a.mp3"), BITRATE, GAIN + 1);
+        awaitProduced(3);
+        assertEquals(GAIN + 1, OpusFrameFile.open(store.findOpusSnippet("track-a", BITRATE).orElseThrow()).gain());
+    }
+
+    @Test
+    void failedOrDisabledRequestsShouldNotLeaveSnippets() throws Exception {
+        DirStore store = new DirStore(tempDir);
+        warmer = new OpusSnippetWarmer(0, store, producer(new AtomicInteger()));
+        warmer.request("track-a", tempDir.resolve("a.mp3"), BITRATE, GAIN);
+        warmer.shutdown();
+
+        AtomicInteger calls = new AtomicInteger();
+        warmer = new OpusSnippetWarmer(1, store, (source, bitrate, gain, frames, writer) -> {
+            calls.incrementAndGet();
+            if (source.getFileName().toString().startsWith("bad")) {
+                writer.append(new byte[] {1}, 1);
+                throw new IOException("decode failed");
+            }
+            return producer(calls).produce(source, bitrate, gain, frames, writer);
+        });
+        warmer.request("track-bad", tempDir.resolve("bad.mp3"), BITRATE, GAIN);
+        warmer.request("track-ok", tempDir.resolve("ok.mp3"), BITRATE, GAIN);
+        awaitProduced(1);
+
+        assertFalse(store.findOpusSnippet("track-a", BITRATE).isPresent(), "片段秒数为 0 时不生成");
+        assertFalse(store.findOpusSnippet("track-bad", BITRATE).isPresent());
+        assertTrue(store.findOpusSnippet("track-ok", BITRATE).isPresent());
+    }
+
+    private void awaitProduced(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000L;
+        while (warmer.produced() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(expected, warmer.produced());
+    }
+
+    private static OpusSnippetWarmer.Producer producer(AtomicInteger calls) {
+        return (source, bitrate, gain, frames, writer) -> {
+            calls.incrementAndGet();
+            for (int i = 0; i < frames; i++) {
+                writer.append(new byte[] {(byte) i, 0x10}, 2);
+            }
+            return frames;
+        };
+    }
+
+    private static final class DirStore implements OpusFrameStore {
+        private final Path root;
+
+        private DirStore(Path root) {
+            this.root = root;
+        }
+
+        @Override
+        public Optional<Path> findOpusFrames(String trackId, int bitrate) {
+            return existing(opusFramesTarget(trackId, bitrate));
+        }
+
+        @Override
+        public Path opusFramesTarget(String trackId, int bitrate) {
+            return root.resolve(trackId + "-" + bitrate + ".opus");
+        }
+
+        @Override
+        public void onOpusFramesCommitted(String trackId, Path file) {
+        }
+
+        @Override
+        public Optional<Path> findOpusSnippet(String trackId, int bitrate) {
+            return existing(opusSnippetTarget(trackId, bitrate));
+        }
+
+        @Override
+        public Path opusSnippetTarget(String trackId, int bitrate) {
+            return root.resolve(trackId + "-" + bitrate + ".snippet");
+        }
+
+        private static Optional<Path> existing(Path file) {
+            return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+        }
+    }
+}
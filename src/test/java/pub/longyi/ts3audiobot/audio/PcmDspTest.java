@@ -0,0 +1,100 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PcmDspTest {
+    private static final int FRAME_BYTES = 960 * 2 * 2;
+    private static final int[] VOLUMES = {0, 1, 37, 50, 99, 101, 150, 200};
+
+    @Test
+    void vectorKernelShouldMatchScalarBitForBit() {
+        PcmDsp.Kernel vector = PcmDsp.vectorKernel();
+        Assumptions.assumeTrue(vector != null, "jdk.incubator.vector not enabled");
+        PcmDsp.Kernel scalar = PcmDsp.scalarKernel();
+        // 非整向量长度，覆盖尾部的标量处理。
+        int samples = FRAME_BYTES / 2 - 3;
+        byte[] frame = noiseFrame(FRAME_BYTES, 42L);
+
+        short[] expectedShorts = new short[samples];
+        short[] actualShorts = new short[samples];
+        scalar.toShorts(frame, samples, expectedShorts);
+        vector.toShorts(frame, samples, actualShorts);
+        assertArrayEquals(expectedShorts, actualShorts);
+
+        for (int volume : VOLUMES) {
+            byte[] expected = new byte[FRAME_BYTES];
+            byte[] actual = new byte[FRAME_BYTES];
+            int gain = PcmDsp.gainForVolume(volume);
+            scalar.applyGain(frame, expected, samples, gain);
+            vector.applyGain(frame, actual, samples, gain);
+            assertArrayEquals(expected, actual, "volume " + volume);
+        }
+    }
+
+    @Test
+    void attenuationShouldRoundLikeTheFloatingPointPath() {
+        byte[] frame = noiseFrame(FRAME_BYTES, 7L);
+        byte[] out = new byte[FRAME_BYTES];
+
+        PcmDsp.applyGain(frame, frame.length, out, PcmDsp.gainForVolume(50));
+
+        for (int i = 0; i < FRAME_BYTES; i += 2) {
+            assertEquals(Math.round(sample(frame, i) * 0.5), sample(out, i), "byte " + i);
+        }
+    }
+
+    @Test
+    void boostShouldSoftLimitInsteadOfClipping() {
+        int[] inputs = {0, 1000, 14000, 15000, 20000, 32767, -32768, -20000};
+        byte[] frame = new byte[inputs.length * 2];
+        for (int i = 0; i < inputs.length; i++) {
+            frame[i * 2] = (byte) inputs[i];
+            frame[i * 2 + 1] = (byte) (inputs[i] >> 8);
+        }
+
+        PcmDsp.applyGain(frame, frame.length, frame, PcmDsp.gainForVolume(200));
+
+        assertEquals(0, sample(frame, 0));
+        assertEquals(2000, sample(frame, 2));
+        assertEquals(28000, sample(frame, 4));
+        int previous = 28000;
+        for (int i = 3; i <= 5; i++) {
+            int limited = sample(frame, i * 2);
+            assertTrue(limited > previous && limited < Short.MAX_VALUE, "sample " + i + " = " + limited);
+            previous = limited;
+        }
+        int negativePeak = sample(frame, 12);
+        assertTrue(negativePeak > Short.MIN_VALUE && -negativePeak >= sample(frame, 10), "peak " + negativePeak);
+        assertEquals(-sample(frame, 8), sample(frame, 14));
+    }
+
+    @Test
+    void toShortsShouldReportConvertedSamples() {
+        byte[] frame = {0x34, 0x12, (byte) 0xFF, (byte) 0xFF, 0x01};
+        short[] out = new short[4];
+
+        int samples = PcmDsp.toShorts(frame, frame.length, out);
+
+        assertEquals(2, samples);
+        assertEquals((short) 0x1234, out[0]);
+        assertEquals((short) -1, out[1]);
+        assertEquals(0, out[2]);
+    }
+
+    private static int sample(byte[] data, int offset) {
+        return (short) ((data[offset + 1] << 8) | (data[offset] & 0xff));
+    }
+
+    private static byte[] noiseFrame(int length, long seed) {
+        byte[] frame = new byte[length];
+        new Random(seed).nextBytes(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,124 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PcmHistoryFeedTest {
+    private static final PcmFormat FORMAT = new PcmFormat(48000, 2, 16);
+    private static final int FRAME_BYTES = 8;
+
+    @Test
+    void historyShouldKeepTheLatestFramesByAbsoluteIndex() {
+        PcmHistory history = new PcmHistory(4, FRAME_BYTES);
+        history.reset(100L);
+        for (int i = 0; i < 6; i++) {
+            history.append(frame(i), FRAME_BYTES);
+        }
+
+        assertEquals(102L, history.oldestFrame());
+        assertEquals(106L, history.nextFrame());
+        assertFalse(history.contains(101L));
+        assertFalse(history.contains(106L));
+        byte[] out = new byte[FRAME_BYTES];
+        assertEquals(FRAME_BYTES, history.read(105L, out));
+        assertEquals(5, out[0]);
+        assertEquals(-1, history.read(101L, out));
+    }
+
+    @Test
+    void closedHistoryShouldHandItsBufferToTheNextStream() {
+        PcmHistory.Buffers buffers = new PcmHistory.Buffers(4, FRAME_BYTES, 1);
+        PcmHistory finished = new PcmHistory(buffers);
+        PcmHistory standby = new PcmHistory(buffers);
+        finished.reset(0L);
+        standby.reset(0L);
+        finished.append(frame(7), FRAME_BYTES);
+        assertEquals(0, buffers.idle());
+
+        finished.release();
+        standby.release();
+        assertEquals(1, buffers.idle(), "超出保留数的缓冲不再引用");
+
+        PcmHistory next = new PcmHistory(buffers);
+        next.reset(20L);
+        assertEquals(0, buffers.idle());
+        assertFalse(next.contains(0L), "复用的缓冲不带上一条流的窗口");
+        next.append(frame(8), FRAME_BYTES);
+        byte[] out = new byte[FRAME_BYTES];
+        assertEquals(FRAME_BYTES, next.read(20L, out));
+        assertEquals(8, out[0]);
+    }
+
+    @Test
+    void rewindShouldReplayBufferedFramesBeforeResumingLiveInput() throws Exception {
+        PcmHistory history = new PcmHistory(16, FRAME_BYTES);
+        List<Integer> first = new CopyOnWriteArrayList<>();
+        PcmHistoryFeed feed = new PcmHistoryFeed(history, FORMAT, 50L, collect(first), () -> { });
+        for (int i = 0; i < 5; i++) {
+            feed.onPcmFrame(frame(i), FRAME_BYTES, FORMAT);
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4), first);
+
+        List<Integer> second = new CopyOnWriteArrayList<>();
+        AtomicInteger finished = new AtomicInteger();
+        assertFalse(feed.rewind(49L, collect(second), finished::incrementAndGet), "窗口之前的位置需要重启解码");
+        assertTrue(feed.rewind(52L, collect(second), finished::incrementAndGet));
+        feed.onPcmFrame(frame(5), FRAME_BYTES, FORMAT);
+        feed.finishInput();
+
+        awaitSize(second, 4);
+        assertEquals(List.of(2, 3, 4, 5), second);
+        long deadline = System.currentTimeMillis() + 2000L;
+        while (finished.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(1, finished.get());
+        assertEquals(List.of(0, 1, 2, 3, 4), first, "被替换的下游不再收到帧");
+        assertTrue(feed.covers(56L), "解码进度处视为在窗口内");
+    }
+
+    @Test
+    void closedFeedShouldDropInputAndRefuseRewind() {
+        PcmHistory history = new PcmHistory(4, FRAME_BYTES);
+        List<Integer> frames = new CopyOnWriteArrayList<>();
+        PcmHistoryFeed feed = new PcmHistoryFeed(history, FORMAT, 0L, collect(frames), () -> { });
+        feed.onPcmFrame(frame(1), FRAME_BYTES, FORMAT);
+
+        feed.close();
+        feed.onPcmFrame(frame(2), FRAME_BYTES, FORMAT);
+
+        assertEquals(List.of(1), frames);
+        assertFalse(feed.rewind(0L, collect(frames), () -> { }));
+        assertFalse(history.contains(0L), "关闭后历史窗口已放开");
+
+        history.reset(10L);
+        history.append(frame(3), FRAME_BYTES);
+        byte[] out = new byte[FRAME_BYTES];
+        assertEquals(FRAME_BYTES, history.read(10L, out));
+        assertEquals(3, out[0]);
+    }
+
+    private static AudioFrameConsumer collect(List<Integer> out) {
+        return (data, length, format) -> out.add((int) data[0]);
+    }
+
+    private static void awaitSize(List<Integer> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000L;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+
+    private static byte[] frame(int marker) {
+        byte[] data = new byte[FRAME_BYTES];
+        data[0] = (byte) marker;
+        return data;
+    }
+}
@@ -0,0 +1,98 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProcessStderrMultiplexerTest {
+
+    @Test
+    void linesFromAllProcessesShouldReachTheSink() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        ProcessStderrMultiplexer multiplexer = new ProcessStderrMultiplexer(
+            "test-stderr",
+            (label, line) -> lines.add(label + ":" + line)
+        );
+
+        multiplexer.register(new ExitedProcess("one\r\ntwo\n\n", 0), "a");
+        multiplexer.register(new ExitedProcess("three\npartial", 1), "b");
+        awaitIdle(multiplexer);
+
+        assertEquals(List.of("a:one", "a:two", "b:three", "b:partial"), lines);
+    }
+
+    @Test
+    void multiplexerShouldRestartAfterGoingIdle() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        ProcessStderrMultiplexer multiplexer = new ProcessStderrMultiplexer(
+            "test-stderr",
+            (label, line) -> lines.add(line)
+        );
+
+        multiplexer.register(new ExitedProcess("first\n", 0), "a");
+        awaitIdle(multiplexer);
+        multiplexer.register(new ExitedProcess("second\n", 0), "a");
+        awaitIdle(multiplexer);
+
+        assertEquals(List.of("first", "second"), lines);
+    }
+
+    private static void awaitIdle(ProcessStderrMultiplexer multiplexer) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (multiplexer.activeCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(0, multiplexer.activeCount());
+    }
+
+    private static final class ExitedProcess extends Process {
+        private final InputStream stderr;
+        private final int exitCode;
+
+        private ExitedProcess(String stderr, int exitCode) {
+            this.stderr = new ByteArrayInputStream(stderr.getBytes(StandardCharsets.UTF_8));
+            this.exitCode = exitCode;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return stderr;
+        }
+
+        @Override
+        public int waitFor() {
+            return exitCode;
+        }
+
+        @Override
+        public int exitValue() {
+            return exitCode;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return false;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SilenceGateTest {
+    private static final int FRAME_BYTES = 960 * 2 * 2;
+
+    @Test
+    void energyBelowTheThresholdShouldCountAsSilence() {
+        assertTrue(SilenceGate.isSilent(new byte[FRAME_BYTES], FRAME_BYTES));
+        assertTrue(SilenceGate.isSilent(constant(20), FRAME_BYTES), "-64 dBFS 的底噪视为静音");
+        assertFalse(SilenceGate.isSilent(constant(40), FRAME_BYTES));
+        assertFalse(SilenceGate.isSilent(constant(-3000), FRAME_BYTES));
+
+        assertTrue(SilenceGate.isSilentPacket(3));
+        assertFalse(SilenceGate.isSilentPacket(0));
+        assertFalse(SilenceGate.isSilentPacket(120));
+    }
+
+    @Test
+    void silenceShouldEndTheSessionAfterTheHangoverAndResumeOnSound() {
+        SilenceGate gate = new SilenceGate(3);
+
+        assertEquals(SilenceGate.Action.SEND, gate.admit(false, 100));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(SilenceGate.Action.SEND, gate.admit(true, 4));
+        }
+        assertEquals(SilenceGate.Action.END_SESSION, gate.admit(true, 4));
+        assertEquals(SilenceGate.Action.SUPPRESS, gate.admit(true, 5));
+        assertEquals(SilenceGate.Action.SEND, gate.admit(false, 100));
+        assertEquals(SilenceGate.Action.SEND, gate.admit(true, 4), "恢复发声后重新计算挂起时长");
+
+        assertEquals(2L, gate.suppressedFrames());
+        assertEquals(9L, gate.suppressedBytes());
+    }
+
+    @Test
+    void resetShouldReportAnAlreadyEndedSessionAndZeroHangoverShouldAlwaysSend() {
+        SilenceGate gate = new SilenceGate(1);
+        gate.admit(true, 4);
+        gate.admit(true, 4);
+
+        assertTrue(gate.reset());
+        assertFalse(gate.reset());
+        assertEquals(SilenceGate.Action.SEND, gate.admit(true, 4));
+
+        SilenceGate disabled = new SilenceGate(0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(SilenceGate.Action.SEND, disabled.admit(true, 4));
+        }
+        assertEquals(0L, disabled.suppressedFrames());
+    }
+
+    private static byte[] constant(int sample) {
+        byte[] frame = new byte[FRAME_BYTES];
+        for (int i = 0; i < FRAME_BYTES; i += 2) {
+            frame[i] = (byte) sample;
+            frame[i + 1] = (byte) (sample >> 8);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,144 @@
+package pub.longyi.ts3audiobot.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WarmFfmpegPoolTest {
+    private static final List<String> COMMAND = List.of("ffmpeg", "-i", "pipe:0", "pipe:1");
+
+    @Test
+    void firstUseShouldStartColdAndLaterStartsShouldTakeWarmProcesses() throws Exception {
+        List<IdleProcess> launched = new CopyOnWriteArrayList<>();
+        WarmFfmpegPool pool = new WarmFfmpegPool(2, command -> {
+            IdleProcess process = new IdleProcess();
+            launched.add(process);
+            return process;
+        });
+
+        assertNull(pool.acquire(COMMAND));
+        awaitIdle(pool, 2);
+
+        Process warm = pool.acquire(COMMAND);
+        assertSame(launched.get(0), warm);
+        awaitIdle(pool, 2);
+        assertEquals(3, launched.size());
+        assertNull(pool.acquire(List.of("ffmpeg", "-ss", "10.000", "-i", "pipe:0")), "其他命令各自建立队列");
+
+        WarmFfmpegPool.PoolStats stats = pool.snapshot();
+        assertEquals(1L, stats.hits());
+        assertEquals(2L, stats.misses());
+
+        pool.shutdown();
+        assertEquals(0, pool.snapshot().idle());
+        assertTrue(warm.isAlive(), "已交给调用方的进程不受影响");
+        assertFalse(launched.get(1).isAlive());
+    }
+
+    @Test
+    void exitedIdleProcessShouldBeSkipped() throws Exception {
+        List<IdleProcess> launched = new CopyOnWriteArrayList<>();
+        WarmFfmpegPool pool = new WarmFfmpegPool(1, command -> {
+            IdleProcess process = new IdleProcess();
+            launched.add(process);
+            return process;
+        });
+        pool.acquire(COMMAND);
+        awaitIdle(pool, 1);
+        launched.get(0).destroy();
+
+        assertNull(pool.acquire(COMMAND));
+        awaitIdle(pool, 1);
+        assertSame(launched.get(1), pool.acquire(COMMAND));
+        pool.shutdown();
+    }
+
+    @Test
+    void disabledPoolShouldOnlyRecordFirstFrameLatency() {
+        WarmFfmpegPool pool = new WarmFfmpegPool(0, command -> {
+            throw new AssertionError("should not launch");
+        });
+
+        assertNull(pool.acquire(COMMAND));
+        pool.recordFirstFrame(false, TimeUnit.MILLISECONDS.toNanos(180));
+        pool.recordFirstFrame(true, TimeUnit.MILLISECONDS.toNanos(20));
+
+        WarmFfmpegPool.PoolStats stats = pool.snapshot();
+        assertFalse(stats.enabled());
+        assertEquals(0L, stats.misses());
+        assertEquals(1L, stats.coldFirstFrame().count());
+        assertEquals(200_000L, stats.coldFirstFrame().p50Micros());
+        assertEquals(25_000L, stats.warmFirstFrame().p50Micros());
+        assertNotNull(stats.warmFirstFrame().buckets());
+    }
+
+    private static void awaitIdle(WarmFfmpegPool pool, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (pool.snapshot().idle() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(expected, pool.snapshot().idle());
+    }
+
+    /**
+     * 阻塞在输入上直到被结束的进程。
+     */
+    private static final class IdleProcess extends Process {
+        private volatile boolean alive = true;
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            if (alive) {
+                throw new IllegalThreadStateException("running");
+            }
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+            alive = false;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+
+        @Override
+        public long pid() {
+            return 1L;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pub.longyi.ts3audiobot.media;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingAudioStreamTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void fullyReadStreamShouldCommitTheSameBytes() throws Exception {
+        byte[] data = sample(50_000);
+        Path temp = tempDir.resolve("audio.tmp");
+        Path target = tempDir.resolve("audio.webm");
+        CachingAudioStream stream = newStream(data, data.length, temp, target);
+
+        assertTrue(stream.awaitData());
+        assertFalse(Files.exists(target));
+        byte[] played = stream.readAllBytes();
+        stream.close();
+
+        assertArrayEquals(data, played);
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertFalse(Files.exists(temp));
+    }
+
+    @Test
+    void closingBeforeEndShouldLeaveNoCacheFile() throws Exception {
+        byte[] data = sample(50_000);
+        Path temp = tempDir.resolve("audio.tmp");
+        Path target = tempDir.resolve("audio.webm");
+        CachingAudioStream stream = newStream(data, -1L, temp, target);
+
+        byte[] head = new byte[1000];
+        assertEquals(1000, stream.readNBytes(head, 0, head.length));
+        stream.close();
+
+        assertFalse(Files.exists(temp));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void truncatedDownloadShouldNotBeCommitted() throws Exception {
+        byte[] data = sample(10_000);
+        Path temp = tempDir.resolve("audio.tmp");
+        Path target = tempDir.resolve("audio.webm");
+        CachingAudioStream stream = newStream(data, data.length + 1L, temp, target);
+
+        assertEquals(data.length, stream.readAllBytes().length);
+        stream.close();
+
+        assertFalse(Files.exists(temp));
+        assertFalse(Files.exists(target));
+    }
+
+    private static CachingAudioStream newStream(byte[] data, long expectedBytes, Path temp, Path target)
+        throws IOException {
+        InputStream source = new ByteArrayInputStream(data);
+        return new CachingAudioStream(
+            "test",
+            source,
+            null,
+            expectedBytes,
+            temp,
+            file -> Files.move(file, target, StandardCopyOption.ATOMIC_MOVE)
+        );
+    }
+
+    private static byte[] sample(int length) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) 7);
+        for (int i = 0; i < length; i += 97) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+}
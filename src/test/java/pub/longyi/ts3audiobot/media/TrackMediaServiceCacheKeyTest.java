@@ -119,12 +119,13 @@ class TrackMediaServiceCacheKeyTest {
             "",
             null
         );
-        List<String> args = buildYtDlpCacheArgs(service, track, tempDir.resolve("audio"));
+        List<String> args = buildYtDlpCacheArgs(service, track);
         String joined = String.join("\n", args);
         assertTrue(joined.contains("--referer"));
         assertTrue(joined.contains("https://music.163.com/"));
         assertTrue(joined.contains("--add-headers"));
         assertTrue(joined.contains("Cookie: MUSIC_U=abc123; __csrf=token"));
+        assertTrue(joined.contains("-o\n-\n"));
     }
 
     @Test
@@ -279,6 +280,7 @@ class TrackMediaServiceCacheKeyTest {
             new AppConfig.Search("test", 0),
             new AppConfig.Media(true, true, 20, 720, new AppConfig.Image(true, imageMode, 120, 360)),
             new AppConfig.Audio("standard"),
+            new AppConfig.Ts3(false),
             new AppConfig.Resolvers(new AppConfig.ExternalResolvers("yt-dlp", "yt-dlp", "netease-cloud-music", "qqmusic")),
             List.of()
         ));
@@ -294,9 +296,9 @@ class TrackMediaServiceCacheKeyTest {
     }
 
     @SuppressWarnings("unchecked")
-    private List<String> buildYtDlpCacheArgs(TrackMediaService service, Track track, Path dir) throws Exception {
-        Method method = TrackMediaService.class.getDeclaredMethod("buildYtDlpCacheArgs", String.class, Track.class, Path.class);
+    private List<String> buildYtDlpCacheArgs(TrackMediaService service, Track track) throws Exception {
+        Method method = TrackMediaService.class.getDeclaredMethod("buildYtDlpCacheArgs", String.class, Track.class);
         method.setAccessible(true);
-        return (List<String>) method.invoke(service, "", track, dir);
+        return (List<String>) method.invoke(service, "", track);
     }
 }
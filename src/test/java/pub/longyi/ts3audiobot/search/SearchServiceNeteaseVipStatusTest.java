@@ -116,6 +116,7 @@ class SearchServiceNeteaseVipStatusTest {
             new AppConfig.Search("test", 0),
             new AppConfig.Media(true, true, 20, 720),
             new AppConfig.Audio("standard"),
+            new AppConfig.Ts3(false),
             new AppConfig.Resolvers(new AppConfig.ExternalResolvers("yt-dlp", "yt-dlp", "netease-cloud-music", "qqmusic")),
             List.of()
         );
@@ -76,6 +76,24 @@ class ShufflePlaybackServiceTest {
         assertEquals(first.id(), back.id(), "恢复持久化状态后，prev 应回到上一首");
     }
 
+    @Test
+    void peekNextShouldMatchFollowingNextWithoutMovingCursor() throws Exception {
+        ShufflePlaybackService service = newService(tempDir.resolve("case-4"));
+        List<QueueItem> queue = buildQueue("bot-a", "default", "a", "b", "c", "d", "e");
+        QueueItem current = service.next("bot-a", "default", queue, new Random(5), null);
+        assertNotNull(current);
+
+        for (int i = 0; i < 3; i++) {
+            QueueItem peeked = service.peekNext("bot-a", "default", queue, new Random(5), current.id());
+            QueueItem again = service.peekNext("bot-a", "default", queue, new Random(5), current.id());
+            QueueItem next = service.next("bot-a", "default", queue, new Random(5), current.id());
+            assertNotNull(peeked);
+            assertEquals(peeked.id(), again.id(), "预读不应移动随机游标");
+            assertEquals(peeked.id(), next.id(), "预读结果应与随后的 next 一致");
+            current = next;
+        }
+    }
+
     private ShufflePlaybackService newService(Path caseDir) throws Exception {
         Files.createDirectories(caseDir);
         Path configPath = caseDir.resolve("ts3Audio-config.toml");
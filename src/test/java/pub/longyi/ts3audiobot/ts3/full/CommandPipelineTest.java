@@ -0,0 +1,83 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import org.junit.jupiter.api.Test;
+import pub.longyi.ts3audiobot.ts3.command.ParsedCommand;
+import pub.longyi.ts3audiobot.ts3.command.TsCommandParser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandPipelineTest {
+
+    @Test
+    void responsesShouldCompleteOutOfOrderByReturnCode() throws Exception {
+        CommandPipeline pipeline = new CommandPipeline(4);
+        CommandPipeline.Entry info = pipeline.tryRegister("clientinfo");
+        CommandPipeline.Entry move = pipeline.tryRegister("clientmove");
+        assertNotEquals(info.returnCode, move.returnCode);
+        assertSame(info, pipeline.oldest());
+
+        ParsedCommand line = parse("clientinfo cid=3");
+        pipeline.oldest().lines.add(line);
+        pipeline.complete(pipeline.find(move.returnCode), parse("error id=0 msg=ok return_code=" + move.returnCode));
+        assertTrue(move.future.isDone());
+        assertFalse(info.future.isDone());
+        assertTrue(move.future.get().commands().isEmpty());
+
+        pipeline.complete(pipeline.find(info.returnCode), parse("error id=0 msg=ok return_code=" + info.returnCode));
+        CommandPipeline.Response response = info.future.get(1, TimeUnit.SECONDS);
+        assertEquals(List.of(line), response.commands());
+        assertEquals(info.returnCode, response.returnCode());
+        assertEquals(0, pipeline.inFlight());
+    }
+
+
+    @Test
+    void tryRegisterShouldRespectWindowAndShrinkOnFlood() {
+        CommandPipeline pipeline = new CommandPipeline(2);
+        CommandPipeline.Entry first = pipeline.tryRegister("a");
+        CommandPipeline.Entry second = pipeline.tryRegister("b");
+        assertNull(pipeline.tryRegister("c"));
+        pipeline.release(first);
+        CommandPipeline.Entry third = pipeline.tryRegister("c");
+        assertNotNull(third);
+
+        pipeline.onFlood();
+        assertEquals(1, pipeline.window());
+        pipeline.release(second);
+        pipeline.release(third);
+        CommandPipeline.Entry only = pipeline.tryRegister("d");
+        assertNotNull(only);
+        assertNull(pipeline.tryRegister("e"));
+
+        pipeline.onSuccess();
+        assertEquals(2, pipeline.window());
+        assertNotNull(pipeline.tryRegister("e"));
+        pipeline.onSuccess();
+        assertEquals(2, pipeline.window());
+    }
+
+
+    @Test
+    void cancelAllShouldCompleteWithNullAndRestoreWindow() throws Exception {
+        CommandPipeline pipeline = new CommandPipeline(4);
+        CommandPipeline.Entry entry = pipeline.tryRegister("channelinfo");
+        pipeline.onFlood();
+        pipeline.cancelAll();
+        assertNull(entry.future.get(1, TimeUnit.SECONDS));
+        assertEquals(4, pipeline.window());
+        assertNull(pipeline.oldest());
+    }
+
+    private static ParsedCommand parse(String line) {
+        return TsCommandParser.parseLines(line).get(0);
+    }
+}
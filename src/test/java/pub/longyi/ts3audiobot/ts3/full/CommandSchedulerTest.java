@@ -0,0 +1,101 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandSchedulerTest {
+
+    @Test
+    void submitShouldNotBlockDuringFloodBackoff() throws Exception {
+        CommandPipeline pipeline = new CommandPipeline(4);
+        AtomicLong backoffUntil = new AtomicLong(System.currentTimeMillis() + 60_000L);
+        CommandScheduler scheduler = new CommandScheduler(pipeline, 2_000L, backoffUntil::get, () -> true);
+        List<String> sent = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<CommandPipeline.Entry> future = scheduler.submit("clientupdate", code -> sent.add("a"));
+
+        assertFalse(future.isDone());
+        Thread.sleep(50L);
+        assertTrue(sent.isEmpty());
+        assertEquals(1, scheduler.queued());
+        assertEquals(0, pipeline.inFlight());
+
+        backoffUntil.set(0L);
+        scheduler.wake();
+        assertNotNull(future.get(2, TimeUnit.SECONDS));
+        assertEquals(List.of("a"), sent);
+    }
+
+    @Test
+    void queuedCommandsShouldWaitForWindowAndKeepOrder() throws Exception {
+        CommandPipeline pipeline = new CommandPipeline(1);
+        CommandScheduler scheduler = new CommandScheduler(pipeline, 5_000L, () -> 0L, () -> true);
+        List<String> sent = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<CommandPipeline.Entry> first = scheduler.submit("a", code -> sent.add("a"));
+        CompletableFuture<CommandPipeline.Entry> second = scheduler.submit("b", code -> sent.add("b"));
+        CompletableFuture<CommandPipeline.Entry> third = scheduler.submit("c", code -> sent.add("c"));
+        CommandPipeline.Entry entry = first.get(2, TimeUnit.SECONDS);
+        Thread.sleep(50L);
+        assertFalse(second.isDone());
+        assertEquals(2, scheduler.queued());
+
+        pipeline.release(entry);
+        scheduler.wake();
+        pipeline.release(second.get(2, TimeUnit.SECONDS));
+        scheduler.wake();
+        assertNotNull(third.get(2, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b", "c"), sent);
+    }
+
+    @Test
+    void headShouldBeDroppedWhenWindowStaysFull() throws Exception {
+        CommandPipeline pipeline = new CommandPipeline(1);
+        assertNotNull(pipeline.tryRegister("busy"));
+        CommandScheduler scheduler = new CommandScheduler(pipeline, 100L, () -> 0L, () -> true);
+
+        CompletableFuture<CommandPipeline.Entry> future = scheduler.submit("a", code -> true);
+
+        assertNull(future.get(2, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.queued());
+    }
+
+    @Test
+    void closedConnectionAndFailedSendShouldCompleteWithNull() throws Exception {
+        CommandPipeline pipeline = new CommandPipeline(1);
+        AtomicBoolean open = new AtomicBoolean(true);
+        CommandScheduler scheduler = new CommandScheduler(pipeline, 2_000L, () -> 0L, open::get);
+
+        CompletableFuture<CommandPipeline.Entry> failed = scheduler.submit("a", code -> {
+            throw new IllegalStateException("socket closed");
+        });
+        assertNull(failed.get(2, TimeUnit.SECONDS));
+        assertEquals(0, pipeline.inFlight());
+
+        open.set(false);
+        assertNull(scheduler.submit("b", code -> true).get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void scheduledTaskShouldRunAfterDelay() throws Exception {
+        CommandScheduler scheduler = new CommandScheduler(new CommandPipeline(1), 100L, () -> 0L, () -> true);
+        CompletableFuture<Long> ran = new CompletableFuture<>();
+        long start = System.nanoTime();
+
+        scheduler.schedule(() -> ran.complete(System.nanoTime()), 50L);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(ran.get(2, TimeUnit.SECONDS) - start) >= 50L);
+    }
+}
@@ -0,0 +1,124 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.EAXBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EaxCipherTest {
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Test
+    void shouldMatchPublishedVectors() {
+        for (EaxCipher cipher : List.of(EaxCipher.bouncyCastle(), EaxCipher.jce())) {
+            assertVector(
+                cipher,
+                "91945D3F4DCBEE0BF45EF52255F095A4",
+                "BECAF043B0A23D843194BA972C66DEBD",
+                "FA3BFD4806EB53FA",
+                "F7FB",
+                "19DD",
+                "5C4C9331049D0BDA"
+            );
+            assertVector(
+                cipher,
+                "01F74AD64077F2E704C0F60ADA3DD523",
+                "70C3DB4F0D26368400A10ED05D2BFF5E",
+                "234A3463C1264AC6",
+                "1A47CB4933",
+                "D851D5BAE0",
+                "3A59F238A23E3919"
+            );
+        }
+    }
+
+
+    @Test
+    void shouldMatchBouncyCastleEaxAtPacketSizes() throws Exception {
+        Random random = new Random(42L);
+        EaxCipher[] ciphers = {EaxCipher.bouncyCastle(), EaxCipher.jce()};
+        for (int length = 0; length <= 500; length += length < 40 ? 1 : 37) {
+            byte[] key = bytes(random, 16);
+            byte[] nonce = bytes(random, 16);
+            byte[] header = bytes(random, 5);
+            byte[] plain = bytes(random, length);
+            byte[] expected = bouncyCastleEax(key, nonce, header, plain);
+            for (EaxCipher cipher : ciphers) {
+                byte[] sealed = new byte[length + EaxCipher.TAG_LEN];
+                cipher.encrypt(key, nonce, header, plain, 0, length, sealed, 0, sealed, length);
+                assertArrayEquals(expected, sealed, "length " + length);
+
+                byte[] opened = new byte[length];
+                assertTrue(cipher.decrypt(key, nonce, header, sealed, 0, length, sealed, length, opened, 0));
+                assertArrayEquals(plain, opened);
+            }
+        }
+    }
+
+
+    @Test
+    void shouldRejectTamperedPacketAndEncryptInPlace() {
+        byte[] key = HEX.parseHex("233952DEE4D5ED5F9B9C6D6FF80FF478");
+        byte[] nonce = HEX.parseHex("62EC67F9C3A4A407FCB2A8C49031A8B3");
+        byte[] header = {0, 1, 0, 2, 0};
+        byte[] plain = new byte[160];
+        Arrays.fill(plain, (byte) 0x5A);
+        for (EaxCipher cipher : List.of(EaxCipher.bouncyCastle(), EaxCipher.jce())) {
+            byte[] packet = Arrays.copyOf(plain, plain.length + EaxCipher.TAG_LEN);
+            cipher.encrypt(key, nonce, header, packet, 0, plain.length, packet, 0, packet, plain.length);
+
+            byte[] tampered = packet.clone();
+            tampered[7] ^= 1;
+            byte[] out = new byte[plain.length];
+            assertFalse(cipher.decrypt(key, nonce, header, tampered, 0, plain.length, tampered, plain.length, out, 0));
+            assertArrayEquals(new byte[plain.length], out);
+
+            assertTrue(cipher.decrypt(key, nonce, header, packet, 0, plain.length, packet, plain.length, packet, 0));
+            assertArrayEquals(plain, Arrays.copyOf(packet, plain.length));
+        }
+    }
+
+    private static void assertVector(
+        EaxCipher cipher,
+        String key,
+        String nonce,
+        String header,
+        String plain,
+        String expectedCipher,
+        String expectedTag
+    ) {
+        byte[] message = HEX.parseHex(plain);
+        byte[] out = new byte[message.length];
+        byte[] tag = new byte[EaxCipher.TAG_LEN];
+        cipher.encrypt(
+            HEX.parseHex(key), HEX.parseHex(nonce), HEX.parseHex(header), message, 0, message.length, out, 0, tag, 0
+        );
+        assertArrayEquals(HEX.parseHex(expectedCipher), out);
+        assertArrayEquals(HEX.parseHex(expectedTag), tag);
+    }
+
+    private static byte[] bouncyCastleEax(byte[] key, byte[] nonce, byte[] header, byte[] plain) throws Exception {
+        EAXBlockCipher eax = new EAXBlockCipher(new AESEngine());
+        eax.init(true, new AEADParameters(new KeyParameter(key), EaxCipher.TAG_LEN * 8, nonce, header));
+        byte[] out = new byte[eax.getOutputSize(plain.length)];
+        int len = eax.processBytes(plain, 0, plain.length, out, 0);
+        len += eax.doFinal(out, len);
+        return Arrays.copyOf(out, len);
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,119 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UdpReactorTest {
+    private static final int CONNECTIONS = 40;
+    private static final int DATAGRAMS = 20;
+
+    @Test
+    void connectionsShouldShareFixedThreadsAndKeepPerConnectionOrder() throws Exception {
+        String prefix = "udp-test-" + System.nanoTime();
+        UdpReactor reactor = new UdpReactor(prefix, 2);
+        try (DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            Thread echo = startEcho(server);
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+            CountDownLatch done = new CountDownLatch(CONNECTIONS * DATAGRAMS);
+            List<List<Integer>> received = new ArrayList<>();
+            List<UdpReactor.Registration> registrations = new ArrayList<>();
+            AtomicBoolean overlapped = new AtomicBoolean();
+            for (int c = 0; c < CONNECTIONS; c++) {
+                List<Integer> sequence = new CopyOnWriteArrayList<>();
+                AtomicInteger inFlight = new AtomicInteger();
+                received.add(sequence);
+                registrations.add(reactor.register(address, data -> {
+                    if (inFlight.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    sequence.add(data[0] & 0xFF);
+                    inFlight.decrementAndGet();
+                    done.countDown();
+                }, ex -> { }));
+            }
+            for (int n = 0; n < DATAGRAMS; n++) {
+                for (UdpReactor.Registration registration : registrations) {
+                    assertTrue(registration.send(new byte[] {(byte) n}));
+                }
+                Thread.sleep(5L);
+            }
+
+            // 回环 UDP 偶尔也会丢包，只要求每个连接收到数据且顺序不乱。
+            done.await(2, TimeUnit.SECONDS);
+            for (List<Integer> sequence : received) {
+                assertFalse(sequence.isEmpty());
+                for (int i = 1; i < sequence.size(); i++) {
+                    assertTrue(sequence.get(i) > sequence.get(i - 1), "同一连接按接收顺序处理");
+                }
+            }
+            assertFalse(overlapped.get(), "同一连接的回调不并发执行");
+            assertTrue(countThreads(prefix) <= reactor.threadCount(), "线程数不随连接数增长");
+            for (UdpReactor.Registration registration : registrations) {
+                registration.close();
+            }
+            echo.interrupt();
+        }
+    }
+
+    @Test
+    void closedRegistrationShouldStopPeriodicTasksAndSends() throws Exception {
+        UdpReactor reactor = new UdpReactor("udp-test-timer", 1);
+        try (DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+            UdpReactor.Registration registration = reactor.register(address, data -> { }, ex -> { });
+            AtomicInteger ticks = new AtomicInteger();
+            registration.schedule(ticks::incrementAndGet, 10L);
+            long deadline = System.currentTimeMillis() + 2000L;
+            while (ticks.get() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5L);
+            }
+            assertTrue(ticks.get() >= 3);
+
+            registration.close();
+            Thread.sleep(30L);
+            int after = ticks.get();
+            Thread.sleep(60L);
+            assertEquals(after, ticks.get());
+            assertFalse(registration.send(new byte[] {1}));
+        }
+    }
+
+    private static Thread startEcho(DatagramSocket server) {
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[64];
+            while (!Thread.currentThread().isInterrupted()) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    server.receive(packet);
+                    server.send(new DatagramPacket(packet.getData(), packet.getLength(), packet.getSocketAddress()));
+                } catch (Exception ex) {
+                    return;
+                }
+            }
+        }, "udp-test-echo");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static long countThreads(String prefix) {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.isAlive() && thread.getName().startsWith(prefix))
+            .count();
+    }
+}
@@ -0,0 +1,138 @@
+package pub.longyi.ts3audiobot.ts3.full;
+
+import org.junit.jupiter.api.Test;
+import pub.longyi.ts3audiobot.ts3.protocol.Packet;
+import pub.longyi.ts3audiobot.ts3.protocol.PacketDirection;
+import pub.longyi.ts3audiobot.ts3.protocol.PacketFlags;
+import pub.longyi.ts3audiobot.ts3.protocol.PacketType;
+import pub.longyi.ts3audiobot.ts3.protocol.ProtocolConst;
+
+import java.math.BigInteger;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoicePacketWriterTest {
+    private static final byte CODEC = 0x05;
+    private static final int CLIENT_ID = 0x0203;
+
+    @Test
+    void encryptedOutputShouldMatchPacketPath() {
+        TsCrypt crypt = new TsCrypt(new IdentityData(BigInteger.valueOf(123_456_789L), null));
+        VoicePacketWriter writer = new VoicePacketWriter();
+        byte[] opus = opus(120);
+
+        assertArrayEquals(
+            legacy(crypt, 0x1234, 3, opus, -1),
+            bytes(writer.write(crypt, CLIENT_ID, 0x1234, 3, CODEC, opus, opus.length, -1))
+        );
+        assertArrayEquals(
+            legacy(crypt, 0x1235, 3, opus, 7),
+            bytes(writer.write(crypt, CLIENT_ID, 0x1235, 3, CODEC, opus, opus.length, 7))
+        );
+    }
+
+
+    @Test
+    void unencryptedOutputShouldMatchPacketPathAcrossReuse() {
+        VoicePacketWriter writer = new VoicePacketWriter();
+        byte[] longFrame = opus(300);
+        byte[] shortFrame = opus(20);
+
+        assertArrayEquals(
+            legacy(null, 1, 0, longFrame, 9),
+            bytes(writer.write(null, CLIENT_ID, 1, 0, CODEC, longFrame, longFrame.length, 9))
+        );
+        assertArrayEquals(
+            legacy(null, 2, 0, shortFrame, -1),
+            bytes(writer.write(null, CLIENT_ID, 2, 0, CODEC, shortFrame, shortFrame.length, -1))
+        );
+    }
+
+
+    @Test
+    void largestPayloadShouldFillPacketLimit() {
+        TsCrypt crypt = new TsCrypt(new IdentityData(BigInteger.valueOf(987_654_321L), null));
+        VoicePacketWriter writer = new VoicePacketWriter();
+        byte[] opus = opus(ProtocolConst.MAX_VOICE_DATA);
+
+        byte[] sealed = bytes(writer.write(crypt, CLIENT_ID, 9, 0, CODEC, opus, opus.length, 7));
+        assertEquals(ProtocolConst.MAX_PACKET_SIZE, sealed.length);
+        assertArrayEquals(legacy(crypt, 9, 0, opus, 7), sealed);
+    }
+
+
+    @Test
+    void sendVoiceShouldDropAndCountOversizedFrames() throws Exception {
+        PacketHandler handler = new PacketHandler(new UdpReactor("voice-test", 1));
+        try (DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            assertTrue(handler.connect(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()), null
+            ));
+            byte[] oversized = opus(ProtocolConst.MAX_VOICE_DATA + 1);
+            assertFalse(handler.sendVoice(1, 0, CODEC, oversized, oversized.length, 7));
+            assertFalse(handler.sendVoice(2, 0, CODEC, oversized, oversized.length, -1));
+            assertEquals(2L, handler.getOversizedVoiceDropped());
+
+            byte[] largest = opus(ProtocolConst.MAX_VOICE_DATA);
+            assertTrue(handler.sendVoice(3, 0, CODEC, largest, largest.length, 7));
+            assertEquals(2L, handler.getOversizedVoiceDropped());
+        } finally {
+            handler.stop();
+        }
+    }
+
+
+    @Test
+    void oversizedPayloadShouldBeRejected() {
+        VoicePacketWriter writer = new VoicePacketWriter();
+        byte[] data = new byte[VoicePacketWriter.MAX_VOICE_DATA + 1];
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> writer.write(null, CLIENT_ID, 1, 0, CODEC, data, data.length, -1)
+        );
+    }
+
+    private static byte[] legacy(TsCrypt crypt, int packetId, int generation, byte[] opus, int sessionId) {
+        int extra = sessionId >= 0 ? 1 : 0;
+        byte[] voiceData = new byte[opus.length + 3 + extra];
+        voiceData[0] = (byte) (packetId >> 8);
+        voiceData[1] = (byte) packetId;
+        voiceData[2] = CODEC;
+        System.arraycopy(opus, 0, voiceData, 3, opus.length);
+        if (sessionId >= 0) {
+            voiceData[3 + opus.length] = (byte) sessionId;
+        }
+        Packet packet = new Packet(PacketDirection.C2S, PacketType.VOICE, packetId, generation, voiceData);
+        packet.setClientId(CLIENT_ID);
+        if (sessionId >= 0) {
+            packet.setFlag(PacketFlags.COMPRESSED, true);
+        }
+        if (crypt == null) {
+            return packet.toRaw();
+        }
+        crypt.encrypt(packet);
+        return packet.getRaw();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] out = new byte[buffer.remaining()];
+        buffer.get(out);
+        return out;
+    }
+
+    private static byte[] opus(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+}
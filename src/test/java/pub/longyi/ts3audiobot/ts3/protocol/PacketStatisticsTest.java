@@ -0,0 +1,66 @@
+package pub.longyi.ts3audiobot.ts3.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PacketStatisticsTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void windowsShouldOnlyCountRecentBytes() {
+        AtomicLong now = new AtomicLong(5_000L * MS);
+        PacketStatistics stats = new PacketStatistics(now::get);
+        stats.processOutgoing(100);
+        now.addAndGet(1_000L * MS);
+        stats.processOutgoing(200);
+        now.addAndGet(500L * MS);
+        stats.processOutgoing(50);
+
+        assertEquals(3, stats.getSentPackets());
+        assertEquals(350, stats.getSentBytes());
+        // 上一秒的桶只剩一半在窗口内，按一半折算。
+        assertEquals(300, stats.getSentBytesLastSecond());
+        assertEquals(350, stats.getSentBytesLastMinute());
+        assertEquals(0, stats.getReceivedBytesLastMinute());
+
+        now.addAndGet(61_000L * MS);
+        assertEquals(0, stats.getSentBytesLastMinute());
+        assertEquals(350, stats.getSentBytes(), "累计值不随窗口滑动");
+    }
+
+    @Test
+    void reusedBucketShouldStartFromZero() {
+        AtomicLong now = new AtomicLong();
+        PacketStatistics stats = new PacketStatistics(now::get);
+        stats.processIncoming(500);
+        now.addAndGet(61_000L * MS);
+        stats.processIncoming(7);
+
+        assertEquals(7, stats.getReceivedBytesLastSecond());
+        assertEquals(7, stats.getReceivedBytesLastMinute());
+        assertEquals(507, stats.getReceivedBytes());
+    }
+
+    @Test
+    void concurrentWritersShouldNotLoseBytes() throws InterruptedException {
+        PacketStatistics stats = new PacketStatistics();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    stats.processOutgoing(3);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, stats.getSentPackets());
+        assertEquals(120_000, stats.getSentBytesLastMinute());
+    }
+}
@@ -0,0 +1,52 @@
+package pub.longyi.ts3audiobot.web.internal;
+
+import org.junit.jupiter.api.Test;
+import pub.longyi.ts3audiobot.audio.TimingHistogram;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrometheusTextWriterTest {
+
+    @Test
+    void samplesShouldEscapeLabelValuesAndHelpText() {
+        PrometheusTextWriter out = new PrometheusTextWriter();
+        out.family("ts3audiobot_audio_frames_sent_total", PrometheusTextWriter.COUNTER, "Frames\nsent \\ total");
+        out.sample("ts3audiobot_audio_frames_sent_total", 42L, "bot", "a\"b\\c");
+        out.sample("ts3audiobot_audio_last_first_frame_seconds", 0.25);
+
+        assertEquals(
+            "# HELP ts3audiobot_audio_frames_sent_total Frames\\nsent \\\\ total\n"
+                + "# TYPE ts3audiobot_audio_frames_sent_total counter\n"
+                + "ts3audiobot_audio_frames_sent_total{bot=\"a\\\"b\\\\c\"} 42\n"
+                + "ts3audiobot_audio_last_first_frame_seconds 0.25\n",
+            out.toString()
+        );
+    }
+
+    @Test
+    void histogramShouldWriteCumulativeBucketsInSeconds() {
+        TimingHistogram histogram = new TimingHistogram(1_000L, 500_000L);
+        histogram.recordNanos(200_000L);
+        histogram.recordNanos(300_000_000L);
+        histogram.recordNanos(2_000_000_000L);
+        PrometheusTextWriter out = new PrometheusTextWriter();
+
+        out.histogram("first_frame_seconds", histogram.snapshot(), "bot", "b1");
+
+        assertEquals(
+            "first_frame_seconds_bucket{bot=\"b1\",le=\"0.001\"} 1\n"
+                + "first_frame_seconds_bucket{bot=\"b1\",le=\"0.5\"} 2\n"
+                + "first_frame_seconds_bucket{bot=\"b1\",le=\"+Inf\"} 3\n"
+                + "first_frame_seconds_sum{bot=\"b1\"} 2.3002\n"
+                + "first_frame_seconds_count{bot=\"b1\"} 3\n",
+            out.toString()
+        );
+    }
+
+    @Test
+    void oddLabelListShouldBeRejected() {
+        PrometheusTextWriter out = new PrometheusTextWriter();
+        assertThrows(IllegalArgumentException.class, () -> out.sample("metric", 1L, "bot"));
+    }
+}
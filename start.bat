@@ -45,7 +45,7 @@ for /f "tokens=*" %%i in ('"!JAVA!" -version 2^>^&1 ^| find "version"') do echo
 echo   JAR:  !JAR!
 echo.
 
-"!JAVA!" -jar "!JAR!" %*
+"!JAVA!" --add-modules jdk.incubator.vector -jar "!JAR!" %*
 if %ERRORLEVEL% NEQ 0 (
     echo.
     echo 程序已退出 (代码: %ERRORLEVEL%)
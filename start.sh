@@ -41,4 +41,4 @@ echo "  Java: $("$JAVA" -version 2>&1 | head -1)"
 echo "  JAR:  $JAR"
 echo ""
 
-exec "$JAVA" -jar "$JAR" "$@"
+exec "$JAVA" --add-modules jdk.incubator.vector -jar "$JAR" "$@"